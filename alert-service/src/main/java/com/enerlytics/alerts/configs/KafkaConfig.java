@@ -0,0 +1,68 @@
+package com.enerlytics.alerts.configs;
+
+import com.enerlytics.events.codec.EventSerializer;
+import com.enerlytics.support.kafka.ConsumerLagMonitor;
+import com.enerlytics.support.kafka.DeadLetterReplayService;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.retrytopic.RetryTopicBeanNames;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Retry topics back off on the task scheduler, hence @EnableScheduling
+@Configuration
+@EnableScheduling
+public class KafkaConfig {
+
+    public static final String DEAD_LETTER_SUFFIX = "-dlt";
+
+    // Publishes to the retry and dead-letter topics. Undeserializable records are forwarded as their original bytes
+    @Bean(RetryTopicBeanNames.DEFAULT_KAFKA_TEMPLATE_BEAN_NAME)
+    public KafkaTemplate<Object, Object> retryTopicKafkaTemplate(ProducerFactory<?, ?> producerFactory) {
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+                producerFactory.getConfigurationProperties(),
+                bytesOr(new StringSerializer()),
+                bytesOr(new EventSerializer())));
+    }
+
+    // replays energy-alerts-dlt through its own consumer group, see the deadletters endpoint
+    @Bean
+    public DeadLetterReplayService deadLetterReplayService(
+            ConsumerFactory<?, ?> consumerFactory, ProducerFactory<?, ?> producerFactory) {
+        return new DeadLetterReplayService(
+                consumerFactory,
+                producerFactory,
+                "energy-alerts",
+                "energy-alerts" + DEAD_LETTER_SUFFIX,
+                "alert-service-dlt-replay");
+    }
+
+    // alerts waiting out a backoff on the retry topics count as lag too
+    @Bean
+    public ConsumerLagMonitor consumerLagMonitor(
+            KafkaAdmin kafkaAdmin,
+            MeterRegistry meterRegistry,
+            TaskScheduler taskScheduler,
+            @Value("${alerts.kafka.lag.interval}") Duration interval,
+            @Value("${alerts.kafka.lag.timeout}") Duration timeout) {
+        return new ConsumerLagMonitor(kafkaAdmin, meterRegistry, taskScheduler, "alert-service", interval, timeout);
+    }
+
+    private static DelegatingByTypeSerializer bytesOr(Serializer<?> serializer) {
+        return new DelegatingByTypeSerializer(
+                Map.of(byte[].class, new ByteArraySerializer(), Object.class, serializer), true);
+    }
+}
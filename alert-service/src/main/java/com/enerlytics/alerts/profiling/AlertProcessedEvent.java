@@ -0,0 +1,25 @@
+package com.enerlytics.alerts.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.enerlytics.alert.AlertProcessed")
+@Label("Alert Processed")
+@Category({"Enerlytics", "Alerts"})
+@Description("Delivery of one alerting event, from the listener picking it up to the email being sent")
+@StackTrace(false)
+public class AlertProcessedEvent extends jdk.jfr.Event {
+
+    @Label("User Id")
+    public long userId;
+
+    // energy-alerts or one of its retry topics
+    @Label("Topic")
+    public String topic;
+
+    @Label("Failed")
+    public boolean failed;
+}
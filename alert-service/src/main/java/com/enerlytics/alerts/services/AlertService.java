@@ -1,9 +1,15 @@
 package com.enerlytics.alerts.services;
 
+import com.enerlytics.alerts.configs.KafkaConfig;
+import com.enerlytics.alerts.profiling.AlertProcessedEvent;
 import com.enerlytics.events.AlertingEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.BackOff;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
 
 @Slf4j
@@ -12,9 +18,43 @@ import org.springframework.stereotype.Service;
 public class AlertService {
 
     private final EmailService emailService;
+    private final PipelineMetrics pipelineMetrics;
 
+    // A failing alert moves through energy-alerts-retry-N topics with growing delays, then to energy-alerts-dlt,
+    // without holding up the alerts behind it. Malformed events skip the retries.
+    @RetryableTopic(
+            attempts = "${alerts.kafka.retry.attempts}",
+            backOff =
+                    @BackOff(
+                            delayString = "${alerts.kafka.retry.delay}",
+                            multiplier = 2.0,
+                            maxDelayString = "${alerts.kafka.retry.max-delay}"),
+            dltTopicSuffix = KafkaConfig.DEAD_LETTER_SUFFIX,
+            exclude = IllegalArgumentException.class)
     @KafkaListener(topics = "energy-alerts", groupId = "alert-service")
-    public void listen(AlertingEvent event) {
+    public void listen(
+            AlertingEvent event,
+            @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long publishedAt,
+            @Header(KafkaHeaders.RECEIVED_TOPIC) String topic) {
+        if (event.userId() == null || event.email() == null) {
+            throw new IllegalArgumentException("Malformed alerting event: " + event);
+        }
+        pipelineMetrics.received(publishedAt);
+        AlertProcessedEvent profile = new AlertProcessedEvent();
+        profile.begin();
+        try {
+            deliver(event);
+        } catch (RuntimeException e) {
+            profile.failed = true;
+            throw e;
+        } finally {
+            profile.userId = event.userId();
+            profile.topic = topic;
+            profile.commit();
+        }
+    }
+
+    private void deliver(AlertingEvent event) {
         log.info("Processing alerting event for user: {}", event.userId());
         log.debug("Full event data: {}", event);
 
@@ -16,6 +16,7 @@ import org.springframework.stereotype.Service;
 public class EmailService {
     private final JavaMailSender mailSender;
     private final AlertRepository alertRepository;
+    private final PipelineMetrics pipelineMetrics;
 
     public void sendMail(String recipientEmail, String subject, String body, Long userId) {
         log.info("Attempting to send email to user {}: {}", userId, recipientEmail);
@@ -26,8 +27,10 @@ public class EmailService {
         message.setSubject(subject);
         message.setText(body);
 
+        long started = System.nanoTime();
         try {
             mailSender.send(message);
+            pipelineMetrics.emailSent(started, false);
             log.info("Email successfully sent to {}", recipientEmail);
 
             Alert alert = Alert.builder()
@@ -37,6 +40,7 @@ public class EmailService {
                     .build();
             alertRepository.saveAndFlush(alert);
         } catch (MailException e) {
+            pipelineMetrics.emailSent(started, true);
             log.error("Failed to send email to {}. Error: {}", recipientEmail, e.getMessage());
 
             Alert alert = Alert.builder()
@@ -45,6 +49,8 @@ public class EmailService {
                     .createdAt(Instant.now())
                     .build();
             alertRepository.saveAndFlush(alert);
+            // rethrown so the listener retries the alert and dead-letters it once the attempts run out
+            throw e;
         }
     }
 }
@@ -0,0 +1,58 @@
+package com.enerlytics.alerts.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// The alert service's stages of the pipeline.latency histograms, registered once and told apart from the ingestion
+// and usage service stages by the stage tag.
+@Component
+public class PipelineMetrics {
+
+    static final String LATENCY = "pipeline.latency";
+
+    private final Clock clock;
+    private final Timer received;
+    private final Timer emailSend;
+    private final Timer emailSendFailed;
+
+    @Autowired
+    public PipelineMetrics(MeterRegistry meterRegistry) {
+        this(meterRegistry, Clock.systemUTC());
+    }
+
+    PipelineMetrics(MeterRegistry meterRegistry, Clock clock) {
+        this.clock = clock;
+        this.received = Timer.builder(LATENCY)
+                .description("Time a reading or alert spends in the pipeline up to the end of a stage")
+                .tag("stage", "alert.receive")
+                .tag("outcome", "success")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofMinutes(15))
+                .register(meterRegistry);
+        this.emailSend = stage(meterRegistry, "alert.email-send", "success");
+        this.emailSendFailed = stage(meterRegistry, "alert.email-send", "failure");
+    }
+
+    // from the usage service publishing the alert to this delivery, retry delays included
+    public void received(long publishedAtMillis) {
+        received.record(Math.max(0, clock.millis() - publishedAtMillis), TimeUnit.MILLISECONDS);
+    }
+
+    public void emailSent(long startedNanos, boolean failed) {
+        (failed ? emailSendFailed : emailSend).record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer stage(MeterRegistry meterRegistry, String stage, String outcome) {
+        return Timer.builder(LATENCY)
+                .description("Time a reading or alert spends in the pipeline up to the end of a stage")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
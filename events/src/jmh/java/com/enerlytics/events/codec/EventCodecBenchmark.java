@@ -0,0 +1,56 @@
+package com.enerlytics.events.codec;
+
+import com.enerlytics.events.EnergyUsageEvent;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Binary against JSON encode and decode of the hottest event, one energy-usage reading
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventCodecBenchmark {
+
+    private EnergyUsageEvent event;
+    private byte[] binary;
+    private byte[] json;
+
+    @Setup
+    public void setUp() {
+        event = new EnergyUsageEvent(123_456L, 3.75, Instant.parse("2026-05-01T12:34:56.789Z"));
+        binary = EventCodecs.encode(event);
+        json = EventCodecs.toJson(event);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return EventCodecs.encode(event);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() {
+        return EventCodecs.toJson(event);
+    }
+
+    @Benchmark
+    public Object decodeBinary() {
+        return EventCodecs.decode(binary);
+    }
+
+    @Benchmark
+    public EnergyUsageEvent decodeJson() {
+        return EventCodecs.fromJson(json, EnergyUsageEvent.class);
+    }
+}
@@ -0,0 +1,15 @@
+package com.enerlytics.events;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import java.time.Instant;
+
+// A reading far above its device's baseline: expected and standardDeviation describe the baseline before the reading,
+// score is how many standard deviations above it the reading lies
+public record AnomalyEvent(
+        Long deviceId,
+        Long userId,
+        @JsonFormat(shape = JsonFormat.Shape.STRING) Instant timestamp,
+        Double energyConsumed,
+        Double expected,
+        Double standardDeviation,
+        Double score) {}
@@ -0,0 +1,19 @@
+package com.enerlytics.events;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import java.time.Instant;
+import java.util.List;
+
+// Many readings of one device in one record, so the per-record overhead of Kafka is paid once per batch
+public record EnergyUsageBatchEvent(Long deviceId, List<Reading> readings) {
+
+    public record Reading(
+            Double energyConsumed,
+            @JsonFormat(shape = JsonFormat.Shape.STRING) Instant timestamp) {}
+
+    public List<EnergyUsageEvent> toEvents() {
+        return readings.stream()
+                .map(reading -> new EnergyUsageEvent(deviceId, reading.energyConsumed(), reading.timestamp()))
+                .toList();
+    }
+}
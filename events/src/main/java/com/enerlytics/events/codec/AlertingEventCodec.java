@@ -0,0 +1,64 @@
+package com.enerlytics.events.codec;
+
+import com.enerlytics.events.AlertingEvent;
+
+// v1: presence bits, userId varint, message string, threshold and energyConsumed doubles, email string
+public final class AlertingEventCodec implements EventCodec<AlertingEvent> {
+
+    private static final int USER_ID = 1;
+    private static final int MESSAGE = 1 << 1;
+    private static final int THRESHOLD = 1 << 2;
+    private static final int ENERGY_CONSUMED = 1 << 3;
+    private static final int EMAIL = 1 << 4;
+
+    @Override
+    public byte typeId() {
+        return 2;
+    }
+
+    @Override
+    public Class<AlertingEvent> type() {
+        return AlertingEvent.class;
+    }
+
+    @Override
+    public int expectedSize() {
+        return 128;
+    }
+
+    @Override
+    public void write(AlertingEvent event, EventWriter out) {
+        int present = (event.userId() == null ? 0 : USER_ID)
+                | (event.message() == null ? 0 : MESSAGE)
+                | (event.threshold() == null ? 0 : THRESHOLD)
+                | (event.energyConsumed() == null ? 0 : ENERGY_CONSUMED)
+                | (event.email() == null ? 0 : EMAIL);
+        out.writeByte(present);
+        if (event.userId() != null) {
+            out.writeVarLong(event.userId());
+        }
+        if (event.message() != null) {
+            out.writeString(event.message());
+        }
+        if (event.threshold() != null) {
+            out.writeDouble(event.threshold());
+        }
+        if (event.energyConsumed() != null) {
+            out.writeDouble(event.energyConsumed());
+        }
+        if (event.email() != null) {
+            out.writeString(event.email());
+        }
+    }
+
+    @Override
+    public AlertingEvent read(EventReader in, int version) {
+        int present = in.readByte();
+        Long userId = (present & USER_ID) == 0 ? null : in.readVarLong();
+        String message = (present & MESSAGE) == 0 ? null : in.readString();
+        Double threshold = (present & THRESHOLD) == 0 ? null : in.readDouble();
+        Double energyConsumed = (present & ENERGY_CONSUMED) == 0 ? null : in.readDouble();
+        String email = (present & EMAIL) == 0 ? null : in.readString();
+        return new AlertingEvent(userId, message, threshold, energyConsumed, email);
+    }
+}
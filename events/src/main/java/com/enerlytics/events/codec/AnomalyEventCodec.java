@@ -0,0 +1,80 @@
+package com.enerlytics.events.codec;
+
+import com.enerlytics.events.AnomalyEvent;
+import java.time.Instant;
+
+// v1: presence bits, deviceId and userId varints, timestamp as epoch-second varint plus nanos varint, then
+// energyConsumed, expected, standardDeviation and score doubles
+public final class AnomalyEventCodec implements EventCodec<AnomalyEvent> {
+
+    private static final int DEVICE_ID = 1;
+    private static final int USER_ID = 1 << 1;
+    private static final int TIMESTAMP = 1 << 2;
+    private static final int ENERGY_CONSUMED = 1 << 3;
+    private static final int EXPECTED = 1 << 4;
+    private static final int STANDARD_DEVIATION = 1 << 5;
+    private static final int SCORE = 1 << 6;
+
+    @Override
+    public byte typeId() {
+        return 4;
+    }
+
+    @Override
+    public Class<AnomalyEvent> type() {
+        return AnomalyEvent.class;
+    }
+
+    @Override
+    public int expectedSize() {
+        return 64;
+    }
+
+    @Override
+    public void write(AnomalyEvent event, EventWriter out) {
+        int present = (event.deviceId() == null ? 0 : DEVICE_ID)
+                | (event.userId() == null ? 0 : USER_ID)
+                | (event.timestamp() == null ? 0 : TIMESTAMP)
+                | (event.energyConsumed() == null ? 0 : ENERGY_CONSUMED)
+                | (event.expected() == null ? 0 : EXPECTED)
+                | (event.standardDeviation() == null ? 0 : STANDARD_DEVIATION)
+                | (event.score() == null ? 0 : SCORE);
+        out.writeByte(present);
+        if (event.deviceId() != null) {
+            out.writeVarLong(event.deviceId());
+        }
+        if (event.userId() != null) {
+            out.writeVarLong(event.userId());
+        }
+        if (event.timestamp() != null) {
+            out.writeVarLong(event.timestamp().getEpochSecond());
+            out.writeVarLong(event.timestamp().getNano());
+        }
+        if (event.energyConsumed() != null) {
+            out.writeDouble(event.energyConsumed());
+        }
+        if (event.expected() != null) {
+            out.writeDouble(event.expected());
+        }
+        if (event.standardDeviation() != null) {
+            out.writeDouble(event.standardDeviation());
+        }
+        if (event.score() != null) {
+            out.writeDouble(event.score());
+        }
+    }
+
+    @Override
+    public AnomalyEvent read(EventReader in, int version) {
+        int present = in.readByte();
+        Long deviceId = (present & DEVICE_ID) == 0 ? null : in.readVarLong();
+        Long userId = (present & USER_ID) == 0 ? null : in.readVarLong();
+        Instant timestamp =
+                (present & TIMESTAMP) == 0 ? null : Instant.ofEpochSecond(in.readVarLong(), in.readVarLong());
+        Double energyConsumed = (present & ENERGY_CONSUMED) == 0 ? null : in.readDouble();
+        Double expected = (present & EXPECTED) == 0 ? null : in.readDouble();
+        Double standardDeviation = (present & STANDARD_DEVIATION) == 0 ? null : in.readDouble();
+        Double score = (present & SCORE) == 0 ? null : in.readDouble();
+        return new AnomalyEvent(deviceId, userId, timestamp, energyConsumed, expected, standardDeviation, score);
+    }
+}
@@ -0,0 +1,84 @@
+package com.enerlytics.events.codec;
+
+import com.enerlytics.events.EnergyUsageBatchEvent;
+import com.enerlytics.events.EnergyUsageBatchEvent.Reading;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// v1: presence bits, deviceId varint, reading count varint, then per reading its presence bits, energyConsumed
+// double and timestamp as the epoch-second delta to the previous reading plus nanos. About 12 bytes per reading.
+public final class EnergyUsageBatchEventCodec implements EventCodec<EnergyUsageBatchEvent> {
+
+    private static final int DEVICE_ID = 1;
+    private static final int READINGS = 1 << 1;
+    private static final int ENERGY_CONSUMED = 1;
+    private static final int TIMESTAMP = 1 << 1;
+
+    @Override
+    public byte typeId() {
+        return 3;
+    }
+
+    @Override
+    public Class<EnergyUsageBatchEvent> type() {
+        return EnergyUsageBatchEvent.class;
+    }
+
+    @Override
+    public int expectedSize() {
+        return 1024;
+    }
+
+    @Override
+    public void write(EnergyUsageBatchEvent event, EventWriter out) {
+        out.writeByte((event.deviceId() == null ? 0 : DEVICE_ID) | (event.readings() == null ? 0 : READINGS));
+        if (event.deviceId() != null) {
+            out.writeVarLong(event.deviceId());
+        }
+        if (event.readings() == null) {
+            return;
+        }
+        out.writeVarLong(event.readings().size());
+        long previousSecond = 0;
+        for (Reading reading : event.readings()) {
+            out.writeByte((reading.energyConsumed() == null ? 0 : ENERGY_CONSUMED)
+                    | (reading.timestamp() == null ? 0 : TIMESTAMP));
+            if (reading.energyConsumed() != null) {
+                out.writeDouble(reading.energyConsumed());
+            }
+            if (reading.timestamp() != null) {
+                out.writeVarLong(reading.timestamp().getEpochSecond() - previousSecond);
+                out.writeVarLong(reading.timestamp().getNano());
+                previousSecond = reading.timestamp().getEpochSecond();
+            }
+        }
+    }
+
+    @Override
+    public EnergyUsageBatchEvent read(EventReader in, int version) {
+        int present = in.readByte();
+        Long deviceId = (present & DEVICE_ID) == 0 ? null : in.readVarLong();
+        if ((present & READINGS) == 0) {
+            return new EnergyUsageBatchEvent(deviceId, null);
+        }
+        long count = in.readVarLong();
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid reading count " + count);
+        }
+        // bounded by what the record can hold, so a corrupt count cannot allocate more than the record's size
+        List<Reading> readings = new ArrayList<>((int) Math.min(count, 1024));
+        long previousSecond = 0;
+        for (long i = 0; i < count; i++) {
+            int fields = in.readByte();
+            Double energyConsumed = (fields & ENERGY_CONSUMED) == 0 ? null : in.readDouble();
+            Instant timestamp = null;
+            if ((fields & TIMESTAMP) != 0) {
+                previousSecond += in.readVarLong();
+                timestamp = Instant.ofEpochSecond(previousSecond, in.readVarLong());
+            }
+            readings.add(new Reading(energyConsumed, timestamp));
+        }
+        return new EnergyUsageBatchEvent(deviceId, readings);
+    }
+}
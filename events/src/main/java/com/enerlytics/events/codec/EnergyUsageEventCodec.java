@@ -0,0 +1,56 @@
+package com.enerlytics.events.codec;
+
+import com.enerlytics.events.EnergyUsageEvent;
+import java.time.Instant;
+
+// v1: presence bits, deviceId varint, energyConsumed double, timestamp as epoch-second varint plus nanos varint.
+// Around 20 bytes against roughly 90 for the JSON form.
+public final class EnergyUsageEventCodec implements EventCodec<EnergyUsageEvent> {
+
+    private static final int DEVICE_ID = 1;
+    private static final int ENERGY_CONSUMED = 1 << 1;
+    private static final int TIMESTAMP = 1 << 2;
+
+    @Override
+    public byte typeId() {
+        return 1;
+    }
+
+    @Override
+    public Class<EnergyUsageEvent> type() {
+        return EnergyUsageEvent.class;
+    }
+
+    @Override
+    public int expectedSize() {
+        return 32;
+    }
+
+    @Override
+    public void write(EnergyUsageEvent event, EventWriter out) {
+        int present = (event.deviceId() == null ? 0 : DEVICE_ID)
+                | (event.energyConsumed() == null ? 0 : ENERGY_CONSUMED)
+                | (event.timestamp() == null ? 0 : TIMESTAMP);
+        out.writeByte(present);
+        if (event.deviceId() != null) {
+            out.writeVarLong(event.deviceId());
+        }
+        if (event.energyConsumed() != null) {
+            out.writeDouble(event.energyConsumed());
+        }
+        if (event.timestamp() != null) {
+            out.writeVarLong(event.timestamp().getEpochSecond());
+            out.writeVarLong(event.timestamp().getNano());
+        }
+    }
+
+    @Override
+    public EnergyUsageEvent read(EventReader in, int version) {
+        int present = in.readByte();
+        Long deviceId = (present & DEVICE_ID) == 0 ? null : in.readVarLong();
+        Double energyConsumed = (present & ENERGY_CONSUMED) == 0 ? null : in.readDouble();
+        Instant timestamp =
+                (present & TIMESTAMP) == 0 ? null : Instant.ofEpochSecond(in.readVarLong(), in.readVarLong());
+        return new EnergyUsageEvent(deviceId, energyConsumed, timestamp);
+    }
+}
@@ -0,0 +1,16 @@
+package com.enerlytics.events.codec;
+
+// Binary body of one event type. The envelope (magic, schema version, type id) is written by EventCodecs; read gets
+// the version the event was written with, so a codec can keep reading older versions after its format moves on.
+public interface EventCodec<T> {
+
+    byte typeId();
+
+    Class<T> type();
+
+    int expectedSize();
+
+    void write(T event, EventWriter out);
+
+    T read(EventReader in, int version);
+}
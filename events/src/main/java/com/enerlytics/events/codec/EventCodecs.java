@@ -0,0 +1,104 @@
+package com.enerlytics.events.codec;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+// Binary envelope: a magic byte that can never start JSON text, the schema version and the event type id, followed by
+// the type's body. JSON stays readable next to it, so consumers can be upgraded before producers switch format.
+public final class EventCodecs {
+
+    public static final byte MAGIC = (byte) 0xEB;
+    public static final int VERSION = 1;
+
+    private static final List<EventCodec<?>> CODECS = List.of(
+            new EnergyUsageEventCodec(),
+            new AlertingEventCodec(),
+            new EnergyUsageBatchEventCodec(),
+            new AnomalyEventCodec());
+    private static final ObjectMapper JSON = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private EventCodecs() {}
+
+    public static boolean hasCodec(Class<?> type) {
+        return codecFor(type) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> byte[] encode(T event) {
+        EventCodec<T> codec = (EventCodec<T>) codecFor(event.getClass());
+        if (codec == null) {
+            throw new IllegalArgumentException(
+                    "No binary codec for " + event.getClass().getName());
+        }
+        EventWriter out = new EventWriter(codec.expectedSize());
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(codec.typeId());
+        codec.write(event, out);
+        return out.toByteArray();
+    }
+
+    public static Class<?> typeNamed(String name) {
+        for (EventCodec<?> codec : CODECS) {
+            if (codec.type().getName().equals(name)) {
+                return codec.type();
+            }
+        }
+        return null;
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data.length > 0 && data[0] == MAGIC;
+    }
+
+    public static Object decode(byte[] data) {
+        EventReader in = new EventReader(data, 0);
+        if (in.readByte() != (MAGIC & 0xFF)) {
+            throw new IllegalArgumentException("Not a binary event");
+        }
+        int version = in.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported event schema version " + version);
+        }
+        int typeId = in.readByte();
+        for (EventCodec<?> codec : CODECS) {
+            if (codec.typeId() == typeId) {
+                return codec.read(in, version);
+            }
+        }
+        throw new IllegalArgumentException("Unknown event type " + typeId);
+    }
+
+    public static byte[] toJson(Object event) {
+        try {
+            return JSON.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static <T> T fromJson(byte[] data, Class<T> type) {
+        try {
+            return JSON.readValue(data, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static EventCodec<?> codecFor(Class<?> type) {
+        for (EventCodec<?> codec : CODECS) {
+            if (codec.type() == type) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.enerlytics.events.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+// Kafka value deserializer for events. Binary events carry their own type; JSON is read as the event type named in
+// its event-type header, or as events.codec.json-type for records written before the header existed. Anything
+// unreadable throws SerializationException for ErrorHandlingDeserializer.
+public class EventDeserializer implements Deserializer<Object> {
+
+    public static final String JSON_TYPE = "events.codec.json-type";
+
+    private Class<?> jsonType;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object type = configs.get(JSON_TYPE);
+        if (type instanceof Class<?> clazz) {
+            jsonType = clazz;
+        } else if (type != null) {
+            try {
+                jsonType = Class.forName(
+                        type.toString().trim(), true, Thread.currentThread().getContextClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Unknown " + JSON_TYPE + " " + type, e);
+            }
+        }
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return deserialize(topic, null, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            if (EventCodecs.isBinary(data)) {
+                return EventCodecs.decode(data);
+            }
+            Class<?> type = jsonTypeOf(headers);
+            if (type == null) {
+                throw new IllegalStateException("JSON record on " + topic + " but no " + JSON_TYPE + " configured");
+            }
+            return EventCodecs.fromJson(data, type);
+        } catch (RuntimeException e) {
+            throw new SerializationException("Failed to deserialize event from " + topic, e);
+        }
+    }
+
+    // only event types are ever instantiated from a header, never an arbitrary class named by the producer
+    private Class<?> jsonTypeOf(Headers headers) {
+        Header header = headers == null ? null : headers.lastHeader(EventSerializer.TYPE_HEADER);
+        if (header == null) {
+            return jsonType;
+        }
+        String name = new String(header.value(), StandardCharsets.UTF_8);
+        if (jsonType != null && jsonType.getName().equals(name)) {
+            return jsonType;
+        }
+        Class<?> type = EventCodecs.typeNamed(name);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown event type " + name);
+        }
+        return type;
+    }
+}
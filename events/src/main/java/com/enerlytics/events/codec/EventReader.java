@@ -0,0 +1,57 @@
+package com.enerlytics.events.codec;
+
+import java.nio.charset.StandardCharsets;
+
+// Reads what EventWriter wrote; running past the end or a malformed varint throws IllegalArgumentException
+public final class EventReader {
+
+    private final byte[] bytes;
+    private int position;
+
+    public EventReader(byte[] bytes, int offset) {
+        this.bytes = bytes;
+        this.position = offset;
+    }
+
+    public int readByte() {
+        require(1);
+        return bytes[position++] & 0xFF;
+    }
+
+    public long readVarLong() {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at byte " + position);
+    }
+
+    public double readDouble() {
+        require(8);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits |= (long) (bytes[position++] & 0xFF) << (i * 8);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    public String readString() {
+        long length = readVarLong();
+        if (length < 0 || length > bytes.length - position) {
+            throw new IllegalArgumentException("String length " + length + " exceeds the event");
+        }
+        String value = new String(bytes, position, (int) length, StandardCharsets.UTF_8);
+        position += (int) length;
+        return value;
+    }
+
+    private void require(int count) {
+        if (position + count > bytes.length) {
+            throw new IllegalArgumentException("Event truncated at byte " + position);
+        }
+    }
+}
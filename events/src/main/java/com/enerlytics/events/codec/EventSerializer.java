@@ -0,0 +1,49 @@
+package com.enerlytics.events.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+// Kafka value serializer for events: binary for types with a codec, JSON for the rest. Setting
+// events.codec.format=json keeps writing JSON while consumers are still being upgraded; JSON records name their type
+// in the event-type header so a topic can carry more than one.
+public class EventSerializer implements Serializer<Object> {
+
+    public static final String FORMAT = "events.codec.format";
+    public static final String TYPE_HEADER = "event-type";
+
+    private boolean binary = true;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object format = configs.get(FORMAT);
+        binary = format == null || !"json".equalsIgnoreCase(format.toString());
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object event) {
+        return serialize(topic, null, event);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object event) {
+        if (event == null) {
+            return null;
+        }
+        try {
+            if (binary && EventCodecs.hasCodec(event.getClass())) {
+                return EventCodecs.encode(event);
+            }
+            if (headers != null) {
+                headers.remove(TYPE_HEADER);
+                headers.add(TYPE_HEADER, event.getClass().getName().getBytes(StandardCharsets.UTF_8));
+            }
+            return EventCodecs.toJson(event);
+        } catch (RuntimeException e) {
+            throw new SerializationException(
+                    "Failed to serialize " + event.getClass().getSimpleName(), e);
+        }
+    }
+}
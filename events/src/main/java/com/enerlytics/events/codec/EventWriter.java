@@ -0,0 +1,57 @@
+package com.enerlytics.events.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Growable byte buffer for the binary event format: zig-zag varints for integers, 8 little-endian bytes for doubles
+// and varint-length-prefixed UTF-8 for strings
+public final class EventWriter {
+
+    private byte[] bytes;
+    private int size;
+
+    public EventWriter(int expectedSize) {
+        this.bytes = new byte[expectedSize];
+    }
+
+    public void writeByte(int value) {
+        ensure(1);
+        bytes[size++] = (byte) value;
+    }
+
+    public void writeVarLong(long value) {
+        ensure(10);
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        bytes[size++] = (byte) zigZag;
+    }
+
+    public void writeDouble(double value) {
+        ensure(8);
+        long bits = Double.doubleToRawLongBits(value);
+        for (int i = 0; i < 8; i++) {
+            bytes[size++] = (byte) (bits >>> (i * 8));
+        }
+    }
+
+    public void writeString(String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(utf8.length);
+        ensure(utf8.length);
+        System.arraycopy(utf8, 0, bytes, size, utf8.length);
+        size += utf8.length;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
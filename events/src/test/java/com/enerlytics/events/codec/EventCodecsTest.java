@@ -0,0 +1,135 @@
+package com.enerlytics.events.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.enerlytics.events.AlertingEvent;
+import com.enerlytics.events.AnomalyEvent;
+import com.enerlytics.events.EnergyUsageBatchEvent;
+import com.enerlytics.events.EnergyUsageEvent;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class EventCodecsTest {
+
+    private static final EnergyUsageEvent USAGE =
+            new EnergyUsageEvent(123_456L, 3.75, Instant.parse("2026-05-01T12:34:56.789Z"));
+    private static final AlertingEvent ALERT =
+            new AlertingEvent(42L, "Energy consumption threshold exceeded", 100.0, 123.4, "jane@example.com");
+    private static final AnomalyEvent ANOMALY =
+            new AnomalyEvent(123_456L, 42L, Instant.parse("2026-05-01T12:34:56.789Z"), 9.5, 1.1, 0.2, 42.0);
+
+    @Test
+    @DisplayName("Should round-trip events through the binary format, keeping nulls")
+    void encode_RoundTrips() {
+        // Arrange
+        EnergyUsageEvent partial = new EnergyUsageEvent(-7L, null, Instant.ofEpochSecond(-1, 999_999_999));
+        AlertingEvent unicode = new AlertingEvent(null, "Überschreitung ⚡", null, 0.0, null);
+
+        // Act & Assert
+        assertEquals(USAGE, EventCodecs.decode(EventCodecs.encode(USAGE)));
+        assertEquals(ALERT, EventCodecs.decode(EventCodecs.encode(ALERT)));
+        assertEquals(ANOMALY, EventCodecs.decode(EventCodecs.encode(ANOMALY)));
+        assertEquals(partial, EventCodecs.decode(EventCodecs.encode(partial)));
+        assertEquals(unicode, EventCodecs.decode(EventCodecs.encode(unicode)));
+    }
+
+    @Test
+    @DisplayName("Should encode a usage event in a fraction of its JSON size")
+    void encode_IsCompact() {
+        // Act
+        byte[] binary = EventCodecs.encode(USAGE);
+        byte[] json = EventCodecs.toJson(USAGE);
+
+        // Assert
+        assertTrue(binary.length * 3 < json.length, binary.length + " vs " + json.length + " bytes");
+    }
+
+    @Test
+    @DisplayName("Should read JSON written before the switch and binary written after it")
+    void deserialize_ReadsBothFormats() {
+        // Arrange
+        EventDeserializer deserializer = new EventDeserializer();
+        deserializer.configure(Map.of(EventDeserializer.JSON_TYPE, EnergyUsageEvent.class.getName()), false);
+        byte[] legacy = "{\"deviceId\":123456,\"energyConsumed\":3.75,\"timestamp\":\"2026-05-01T12:34:56.789Z\"}"
+                .getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        Object fromJson = deserializer.deserialize("energy-usage", legacy);
+        Object fromBinary =
+                deserializer.deserialize("energy-usage", new EventSerializer().serialize("energy-usage", USAGE));
+
+        // Assert
+        assertEquals(USAGE, fromJson);
+        assertEquals(USAGE, fromBinary);
+    }
+
+    @Test
+    @DisplayName("Should round-trip a batch with delta-encoded timestamps in a fraction of its JSON size")
+    void encode_RoundTripsBatch() {
+        // Arrange
+        List<EnergyUsageBatchEvent.Reading> readings = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            readings.add(
+                    new EnergyUsageBatchEvent.Reading(0.5 + i, USAGE.timestamp().plusSeconds(60L * i)));
+        }
+        readings.add(new EnergyUsageBatchEvent.Reading(null, null));
+        EnergyUsageBatchEvent batch = new EnergyUsageBatchEvent(123_456L, readings);
+
+        // Act
+        byte[] binary = EventCodecs.encode(batch);
+
+        // Assert
+        assertEquals(batch, EventCodecs.decode(binary));
+        assertTrue(binary.length * 3 < EventCodecs.toJson(batch).length);
+        assertEquals(101, batch.toEvents().size());
+        assertEquals(123_456L, batch.toEvents().getFirst().deviceId());
+    }
+
+    @Test
+    @DisplayName("Should read JSON as the type named in its header so one topic can carry several event types")
+    void deserialize_UsesTypeHeader() {
+        // Arrange
+        EventSerializer serializer = new EventSerializer();
+        serializer.configure(Map.of(EventSerializer.FORMAT, "json"), false);
+        EventDeserializer deserializer = new EventDeserializer();
+        deserializer.configure(Map.of(EventDeserializer.JSON_TYPE, EnergyUsageEvent.class.getName()), false);
+        EnergyUsageBatchEvent batch =
+                new EnergyUsageBatchEvent(1L, List.of(new EnergyUsageBatchEvent.Reading(1.0, USAGE.timestamp())));
+        RecordHeaders batchHeaders = new RecordHeaders();
+        RecordHeaders forgedHeaders = new RecordHeaders();
+        forgedHeaders.add(EventSerializer.TYPE_HEADER, "java.lang.ProcessBuilder".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        byte[] json = serializer.serialize("energy-usage", batchHeaders, batch);
+        Object read = deserializer.deserialize("energy-usage", batchHeaders, json);
+
+        // Assert
+        assertEquals(batch, read);
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("energy-usage", forgedHeaders, json));
+    }
+
+    @Test
+    @DisplayName("Should reject truncated records and unknown schema versions")
+    void deserialize_RejectsMalformed() {
+        // Arrange
+        EventDeserializer deserializer = new EventDeserializer();
+        byte[] encoded = EventCodecs.encode(USAGE);
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 3);
+        byte[] future = encoded.clone();
+        future[1] = (byte) (EventCodecs.VERSION + 1);
+
+        // Act & Assert
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("energy-usage", truncated));
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("energy-usage", future));
+    }
+}
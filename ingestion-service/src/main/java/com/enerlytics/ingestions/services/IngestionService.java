@@ -1,25 +1,113 @@
 package com.enerlytics.ingestions.services;
 
+import com.enerlytics.events.EnergyUsageBatchEvent;
 import com.enerlytics.events.EnergyUsageEvent;
 import com.enerlytics.ingestions.dtos.requests.IngestionRequest;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+// Readings are held per device and published as one batch envelope once a device has max-readings pending or the
+// linger interval passes, so a chatty device costs one record instead of one per reading. max-readings = 1 publishes
+// every reading on its own, as before.
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class IngestionService {
 
-    private final KafkaTemplate<String, EnergyUsageEvent> kafkaTemplate;
+    static final String TOPIC = "energy-usage";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final int maxReadings;
+    private final Timer accepted;
+    private final Timer acknowledged;
+    private final Timer rejected;
+
+    // deviceId -> readings not yet published, in arrival order
+    private final Map<Long, List<EnergyUsageBatchEvent.Reading>> pending = new ConcurrentHashMap<>();
+
+    public IngestionService(
+            KafkaTemplate<String, Object> kafkaTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${ingestion.batch.max-readings}") int maxReadings) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.maxReadings = Math.max(1, maxReadings);
+        this.accepted = latency(meterRegistry, "ingest.accept", "success");
+        this.acknowledged = latency(meterRegistry, "ingest.kafka-ack", "success");
+        this.rejected = latency(meterRegistry, "ingest.kafka-ack", "failure");
+    }
 
     public void ingestData(IngestionRequest request) {
+        accepted.record(() -> accept(request));
+    }
+
+    private void accept(IngestionRequest request) {
         log.info("Ingesting energy usage data for device: {}", request.deviceId());
-        EnergyUsageEvent event =
-                new EnergyUsageEvent(request.deviceId(), request.energyConsumed(), request.timestamp());
+        EnergyUsageBatchEvent.Reading reading =
+                new EnergyUsageBatchEvent.Reading(request.energyConsumed(), request.timestamp());
+        if (maxReadings == 1) {
+            publish(request.deviceId(), List.of(reading));
+            return;
+        }
+
+        pending.compute(request.deviceId(), (deviceId, readings) -> {
+            List<EnergyUsageBatchEvent.Reading> batch = readings == null ? new ArrayList<>() : readings;
+            batch.add(reading);
+            if (batch.size() < maxReadings) {
+                return batch;
+            }
+            publish(deviceId, batch);
+            return null;
+        });
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${ingestion.batch.linger}")
+    public void flush() {
+        for (Long deviceId : pending.keySet()) {
+            pending.computeIfPresent(deviceId, (id, readings) -> {
+                publish(id, readings);
+                return null;
+            });
+        }
+    }
+
+    // keyed by device so its readings stay on one partition, in order. Batches are taken out of pending and handed to
+    // the producer inside the same compute on the device's slot, so a linger flush and a full batch of one device are
+    // sent one after the other and in the order they were cut; send() only appends to the producer's buffer.
+    private void publish(Long deviceId, List<EnergyUsageBatchEvent.Reading> readings) {
+        Object event = readings.size() == 1
+                ? new EnergyUsageEvent(
+                        deviceId,
+                        readings.getFirst().energyConsumed(),
+                        readings.getFirst().timestamp())
+                : new EnergyUsageBatchEvent(deviceId, List.copyOf(readings));
+        long started = System.nanoTime();
+        kafkaTemplate.send(TOPIC, String.valueOf(deviceId), event).whenComplete((result, e) -> {
+            (e == null ? acknowledged : rejected).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            if (e != null) {
+                log.error("Kafka rejected {} readings for device {}: {}", readings.size(), deviceId, e.getMessage());
+            }
+        });
+        log.debug("Published {} energy usage readings for device {} to Kafka", readings.size(), deviceId);
+    }
 
-        kafkaTemplate.send("energy-usage", event);
-        log.debug("Published energy usage event to Kafka: {}", event);
+    // same meter as the other services' stages, so the whole pipeline reads off one histogram name
+    private static Timer latency(MeterRegistry meterRegistry, String stage, String outcome) {
+        return Timer.builder("pipeline.latency")
+                .description("Time a reading or alert spends in the pipeline up to the end of a stage")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 }
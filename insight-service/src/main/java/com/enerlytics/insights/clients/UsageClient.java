@@ -1,23 +1,53 @@
 package com.enerlytics.insights.clients;
 
+import com.enerlytics.insights.dtos.UsageJobResponse;
 import com.enerlytics.insights.dtos.UsageResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpMessageConverterExtractor;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.util.UriComponentsBuilder;
 
+// Usage queries answer inline, or with 202 and a job to poll when they are expensive; both are awaited here. A 429
+// from usage-service's admission control is retried after its Retry-After.
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class UsageClient {
+    private static final String SERVICE_ID_HEADER = "X-Service-Id";
+
     private final RestTemplate restTemplate;
 
     @Value("${usage-service.base-url}")
     private String baseUrl;
 
+    @Value("${usage-service.service-id}")
+    private String serviceId;
+
+    @Value("${usage-service.retry.max-attempts}")
+    private int maxAttempts;
+
+    @Value("${usage-service.retry.backoff}")
+    private Duration backoff;
+
+    @Value("${usage-service.jobs.poll-interval}")
+    private Duration pollInterval;
+
+    @Value("${usage-service.jobs.timeout}")
+    private Duration jobTimeout;
+
     public UsageResponse getXDaysUsageForUser(Long userId, int days) {
         String url = UriComponentsBuilder.fromUriString(baseUrl)
                 .path("/{userId}")
@@ -27,7 +57,82 @@ public class UsageClient {
 
         log.info("Calling endpoint: {}", url);
 
-        ResponseEntity<UsageResponse> response = restTemplate.getForEntity(url, UsageResponse.class);
-        return response.getBody();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Object body = restTemplate.execute(url, HttpMethod.GET, this::identify, this::readUsageOrJob);
+                return body instanceof UsageJobResponse job ? awaitJob(job) : (UsageResponse) body;
+            } catch (HttpClientErrorException.TooManyRequests e) {
+                if (attempt >= maxAttempts) {
+                    throw new ResponseStatusException(
+                            HttpStatus.SERVICE_UNAVAILABLE, "Usage service is busy, try again later", e);
+                }
+                Duration wait = retryAfter(e, attempt);
+                log.info("Usage query for userId: {} rejected (attempt {}), retrying in {}", userId, attempt, wait);
+                sleep(wait);
+            }
+        }
+    }
+
+    private UsageResponse awaitJob(UsageJobResponse job) {
+        String url = UriComponentsBuilder.fromUriString(baseUrl)
+                .path("/jobs/{jobId}")
+                .buildAndExpand(job.id())
+                .toUriString();
+        Instant deadline = Instant.now().plus(jobTimeout);
+        log.info("Usage query accepted as job {}, polling {}", job.id(), url);
+
+        while (true) {
+            switch (job.status()) {
+                case "SUCCEEDED" -> {
+                    return job.result();
+                }
+                case "FAILED" ->
+                    throw new ResponseStatusException(
+                            HttpStatus.BAD_GATEWAY, "Usage job " + job.id() + " failed: " + job.error());
+                default -> {
+                    if (Instant.now().isAfter(deadline)) {
+                        throw new ResponseStatusException(
+                                HttpStatus.GATEWAY_TIMEOUT,
+                                "Usage job " + job.id() + " did not complete within " + jobTimeout);
+                    }
+                    sleep(pollInterval);
+                    job = restTemplate.getForObject(url, UsageJobResponse.class);
+                }
+            }
+        }
+    }
+
+    private void identify(ClientHttpRequest request) {
+        request.getHeaders().set(SERVICE_ID_HEADER, serviceId);
+    }
+
+    private Object readUsageOrJob(ClientHttpResponse response) throws IOException {
+        Class<?> type = response.getStatusCode().isSameCodeAs(HttpStatus.ACCEPTED)
+                ? UsageJobResponse.class
+                : UsageResponse.class;
+        return new HttpMessageConverterExtractor<>(type, restTemplate.getMessageConverters()).extractData(response);
+    }
+
+    // Retry-After in seconds when usage-service sends it, else an exponential backoff
+    private Duration retryAfter(HttpClientErrorException e, int attempt) {
+        HttpHeaders headers = e.getResponseHeaders();
+        String seconds = headers != null ? headers.getFirst(HttpHeaders.RETRY_AFTER) : null;
+        if (seconds != null) {
+            try {
+                return Duration.ofSeconds(Long.parseLong(seconds.trim()));
+            } catch (NumberFormatException ignored) {
+                // an HTTP date, which usage-service never sends; fall back to the backoff
+            }
+        }
+        return backoff.multipliedBy(1L << Math.min(attempt - 1, 6));
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted waiting for usage data");
+        }
     }
 }
@@ -0,0 +1,4 @@
+package com.enerlytics.insights.dtos;
+
+// an expensive usage query accepted by usage-service as a job; status is QUEUED, RUNNING, SUCCEEDED or FAILED
+public record UsageJobResponse(String id, String status, UsageResponse result, String error) {}
@@ -0,0 +1,124 @@
+package com.enerlytics.support.kafka;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.scheduling.TaskScheduler;
+
+// Lag of a service's consumer group per partition, read from the broker as log end offset minus committed offset and
+// refreshed on the task scheduler. Unlike the client's own fetch metrics it also covers partitions that no replica is
+// consuming right now, and with async acks or retry topics it counts records consumed but not yet done with, which is
+// exactly what a restart would replay. Each service declares one for its own group.
+@Slf4j
+public class ConsumerLagMonitor {
+
+    static final String LAG = "pipeline.consumer.lag";
+
+    private final KafkaAdmin kafkaAdmin;
+    private final MeterRegistry meterRegistry;
+    private final TaskScheduler taskScheduler;
+    private final String groupId;
+    private final Duration interval;
+    private final long timeoutMillis;
+
+    private final Map<TopicPartition, Long> lags = new ConcurrentHashMap<>();
+    // created on first use, only touched by the refresh task
+    private Admin admin;
+    private ScheduledFuture<?> refreshTask;
+
+    public ConsumerLagMonitor(
+            KafkaAdmin kafkaAdmin,
+            MeterRegistry meterRegistry,
+            TaskScheduler taskScheduler,
+            String groupId,
+            Duration interval,
+            Duration timeout) {
+        this.kafkaAdmin = kafkaAdmin;
+        this.meterRegistry = meterRegistry;
+        this.taskScheduler = taskScheduler;
+        this.groupId = groupId;
+        this.interval = interval;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    @PostConstruct
+    public void start() {
+        refreshTask = taskScheduler.scheduleWithFixedDelay(this::refresh, interval);
+    }
+
+    public void refresh() {
+        try {
+            if (admin == null) {
+                admin = Admin.create(kafkaAdmin.getConfigurationProperties());
+            }
+            Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(groupId)
+                    .partitionsToOffsetAndMetadata()
+                    .get(timeoutMillis, TimeUnit.MILLISECONDS);
+            Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+            committed.keySet().forEach(partition -> latest.put(partition, OffsetSpec.latest()));
+            Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> ends =
+                    admin.listOffsets(latest).all().get(timeoutMillis, TimeUnit.MILLISECONDS);
+
+            Map<TopicPartition, Long> endOffsets = new HashMap<>();
+            ends.forEach((partition, info) -> endOffsets.put(partition, info.offset()));
+            update(committed, endOffsets);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Failed to read consumer lag of group {}: {}", groupId, e.getMessage());
+        }
+    }
+
+    // partitions the group no longer has offsets for read as NaN rather than their last lag
+    void update(Map<TopicPartition, OffsetAndMetadata> committed, Map<TopicPartition, Long> endOffsets) {
+        Map<TopicPartition, Long> current = new HashMap<>();
+        committed.forEach((partition, offset) -> {
+            Long end = endOffsets.get(partition);
+            if (offset != null && end != null) {
+                current.put(partition, Math.max(0, end - offset.offset()));
+            }
+        });
+        lags.keySet().retainAll(current.keySet());
+        current.forEach((partition, lag) -> {
+            if (lags.put(partition, lag) == null) {
+                register(partition);
+            }
+        });
+    }
+
+    private void register(TopicPartition partition) {
+        Gauge.builder(LAG, lags, map -> {
+                    Long lag = map.get(partition);
+                    return lag == null ? Double.NaN : lag;
+                })
+                .description("Records on a partition not yet committed by the consumer group")
+                .tag("group", groupId)
+                .tag("topic", partition.topic())
+                .tag("partition", String.valueOf(partition.partition()))
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+        }
+        if (admin != null) {
+            admin.close(Duration.ofSeconds(5));
+        }
+    }
+}
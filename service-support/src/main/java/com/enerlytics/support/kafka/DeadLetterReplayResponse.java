@@ -0,0 +1,3 @@
+package com.enerlytics.support.kafka;
+
+public record DeadLetterReplayResponse(String topic, int replayed, long remaining) {}
@@ -0,0 +1,139 @@
+package com.enerlytics.support.kafka;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.ProducerFactory;
+
+// Moves dead-lettered records back onto their original topic once the cause is fixed. Records keep their key, value
+// bytes and original headers. Progress is the committed offset of a dedicated consumer group, so each replay resumes
+// where the last one stopped. Offsets are committed after the batch is sent, so delivery is at-least-once: a crash or
+// failed commit in between sends that batch again on the next replay. Each service declares one for its own topic.
+@Slf4j
+public class DeadLetterReplayService {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
+
+    private final ConsumerFactory<?, ?> consumerFactory;
+    private final ProducerFactory<?, ?> producerFactory;
+    private final String originalTopic;
+    private final String topic;
+    private final String groupId;
+
+    public DeadLetterReplayService(
+            ConsumerFactory<?, ?> consumerFactory,
+            ProducerFactory<?, ?> producerFactory,
+            String originalTopic,
+            String topic,
+            String groupId) {
+        this.consumerFactory = consumerFactory;
+        this.producerFactory = producerFactory;
+        this.originalTopic = originalTopic;
+        this.topic = topic;
+        this.groupId = groupId;
+    }
+
+    public DeadLetterReplayResponse pending() {
+        try (Consumer<byte[], byte[]> consumer = replayConsumer(1)) {
+            return new DeadLetterReplayResponse(topic, 0, remaining(consumer, assign(consumer)));
+        }
+    }
+
+    public synchronized DeadLetterReplayResponse replay(int max) {
+        int replayed = 0;
+        try (Consumer<byte[], byte[]> consumer = replayConsumer(Math.min(max, 500));
+                Producer<byte[], byte[]> producer = new KafkaProducer<>(
+                        producerFactory.getConfigurationProperties(),
+                        new ByteArraySerializer(),
+                        new ByteArraySerializer())) {
+            List<TopicPartition> partitions = assign(consumer);
+            while (replayed < max) {
+                ConsumerRecords<byte[], byte[]> records = consumer.poll(POLL_TIMEOUT);
+                if (records.isEmpty()) {
+                    break;
+                }
+                Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                for (ConsumerRecord<byte[], byte[]> record : records) {
+                    if (replayed == max) {
+                        break;
+                    }
+                    producer.send(toOriginal(record));
+                    offsets.put(
+                            new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1));
+                    replayed++;
+                }
+                // committed only after the batch is acknowledged, so a failed replay sends a record again at worst
+                producer.flush();
+                consumer.commitSync(offsets);
+                if (replayed == max) {
+                    break;
+                }
+            }
+            log.info("Replayed {} dead-lettered records from {}", replayed, topic);
+            return new DeadLetterReplayResponse(topic, replayed, remaining(consumer, partitions));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Consumer<byte[], byte[]> replayConsumer(int batchSize) {
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        overrides.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        overrides.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchSize);
+        return (Consumer<byte[], byte[]>) consumerFactory.createConsumer(groupId, null, "-replay", overrides);
+    }
+
+    // manual assignment so the replay consumer never triggers a rebalance
+    private List<TopicPartition> assign(Consumer<byte[], byte[]> consumer) {
+        List<TopicPartition> partitions = consumer.partitionsFor(topic).stream()
+                .map(info -> new TopicPartition(topic, info.partition()))
+                .toList();
+        consumer.assign(partitions);
+        return partitions;
+    }
+
+    private static long remaining(Consumer<byte[], byte[]> consumer, List<TopicPartition> partitions) {
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+        Map<TopicPartition, Long> beginningOffsets = consumer.beginningOffsets(partitions);
+        Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(Set.copyOf(partitions));
+        long remaining = 0;
+        for (TopicPartition partition : partitions) {
+            OffsetAndMetadata offset = committed.get(partition);
+            long position = offset == null ? beginningOffsets.get(partition) : offset.offset();
+            remaining += Math.max(0, endOffsets.get(partition) - position);
+        }
+        return remaining;
+    }
+
+    // back onto the main topic rather than the topic it last failed on, with a fresh set of attempts
+    private ProducerRecord<byte[], byte[]> toOriginal(ConsumerRecord<byte[], byte[]> record) {
+        RecordHeaders headers = new RecordHeaders();
+        for (Header header : record.headers()) {
+            if (!header.key().startsWith("kafka_dlt-") && !header.key().startsWith("retry_topic-")) {
+                headers.add(header);
+            }
+        }
+        return new ProducerRecord<>(originalTopic, null, record.key(), record.value(), headers);
+    }
+}
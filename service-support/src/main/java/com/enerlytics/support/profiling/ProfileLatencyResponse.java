@@ -0,0 +1,4 @@
+package com.enerlytics.support.profiling;
+
+// site is null for Enerlytics events, which carry no stack trace
+public record ProfileLatencyResponse(String event, String site, long count, double totalMillis, double maxMillis) {}
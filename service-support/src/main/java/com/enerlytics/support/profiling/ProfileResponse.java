@@ -0,0 +1,11 @@
+package com.enerlytics.support.profiling;
+
+import java.time.Instant;
+import java.util.List;
+
+public record ProfileResponse(
+        Instant startedAt,
+        long durationSeconds,
+        List<ProfileSiteResponse> allocationSites,
+        List<ProfileSiteResponse> hotMethods,
+        List<ProfileLatencyResponse> latencySites) {}
@@ -0,0 +1,4 @@
+package com.enerlytics.support.profiling;
+
+// bytes is the sampled allocation weight, 0 for execution samples
+public record ProfileSiteResponse(String site, long samples, long bytes) {}
@@ -0,0 +1,33 @@
+package com.enerlytics.support.profiling;
+
+import java.time.Duration;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+// declared as a bean next to the service's ProfilingService
+@RequiredArgsConstructor
+@Endpoint(id = "jfr")
+public class ProfilingEndpoint {
+
+    private final ProfilingService profilingService;
+
+    // the last recording as a .jfr file
+    @ReadOperation
+    public WebEndpointResponse<Resource> download() {
+        return profilingService
+                .lastRecording()
+                .map(file -> new WebEndpointResponse<Resource>(new FileSystemResource(file)))
+                .orElseGet(() -> new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND));
+    }
+
+    @WriteOperation
+    public ProfileResponse record(@Nullable Integer seconds) {
+        return profilingService.record(Duration.ofSeconds(seconds == null ? 10 : seconds));
+    }
+}
@@ -0,0 +1,177 @@
+package com.enerlytics.support.profiling;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.extern.slf4j.Slf4j;
+
+// Runs bounded JDK Flight Recorder recordings on demand with the JDK's "profile" settings, which add allocation and
+// execution sampling to the low-overhead defaults, and sums them up into the heaviest allocation sites, hottest
+// methods and slowest blocking and Enerlytics events. The last recording is kept so it can be downloaded and opened in
+// JDK Mission Control. Each service declares one under its own name, together with a ProfilingEndpoint.
+@Slf4j
+public class ProfilingService {
+
+    // both Enerlytics event names and application packages
+    static final String APP_PREFIX = "com.enerlytics.";
+    private static final Set<String> BLOCKING_EVENTS = Set.of(
+            "jdk.JavaMonitorEnter",
+            "jdk.ThreadPark",
+            "jdk.SocketRead",
+            "jdk.SocketWrite",
+            "jdk.FileRead",
+            "jdk.FileWrite");
+
+    private final String serviceName;
+    private final Duration maxDuration;
+    private final int topSites;
+    private final Path directory;
+    private volatile Path lastRecording;
+
+    public ProfilingService(String serviceName, Duration maxDuration, int topSites) {
+        this.serviceName = serviceName;
+        this.maxDuration = maxDuration;
+        this.topSites = topSites;
+        try {
+            this.directory = Files.createTempDirectory(serviceName + "-profiles");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // blocks for the whole recording; concurrent callers wait for the one in progress
+    public synchronized ProfileResponse record(Duration duration) {
+        Duration bounded = duration.compareTo(maxDuration) > 0 ? maxDuration : duration;
+        if (bounded.toSeconds() < 1) {
+            bounded = Duration.ofSeconds(1);
+        }
+        Instant startedAt = Instant.now();
+        Path file = directory.resolve(serviceName + "-" + startedAt.toEpochMilli() + ".jfr");
+        try (Recording recording = new Recording(Configuration.getConfiguration("profile"))) {
+            recording.setName(serviceName + " on demand");
+            recording.start();
+            Thread.sleep(bounded.toMillis());
+            recording.stop();
+            recording.dump(file);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while recording a profile", e);
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Failed to record a profile: " + e.getMessage(), e);
+        }
+
+        Path previous = lastRecording;
+        lastRecording = file;
+        delete(previous);
+        log.info("Recorded a {} s profile to {}", bounded.toSeconds(), file);
+        return summarise(file, startedAt, bounded);
+    }
+
+    public Optional<Path> lastRecording() {
+        return Optional.ofNullable(lastRecording);
+    }
+
+    ProfileResponse summarise(Path file, Instant startedAt, Duration duration) {
+        Map<String, long[]> allocations = new HashMap<>();
+        Map<String, long[]> executions = new HashMap<>();
+        Map<LatencySite, long[]> latencies = new HashMap<>();
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                String type = event.getEventType().getName();
+                if (type.equals("jdk.ObjectAllocationSample")) {
+                    long[] site = allocations.computeIfAbsent(siteOf(event), s -> new long[2]);
+                    site[0]++;
+                    site[1] += event.getLong("weight");
+                } else if (type.equals("jdk.ExecutionSample")) {
+                    executions.computeIfAbsent(siteOf(event), s -> new long[1])[0]++;
+                } else if (type.startsWith(APP_PREFIX) || BLOCKING_EVENTS.contains(type)) {
+                    long nanos = event.getDuration().toNanos();
+                    long[] site = latencies.computeIfAbsent(new LatencySite(type, siteOf(event)), s -> new long[3]);
+                    site[0]++;
+                    site[1] += nanos;
+                    site[2] = Math.max(site[2], nanos);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new ProfileResponse(
+                startedAt,
+                duration.toSeconds(),
+                allocations.entrySet().stream()
+                        .sorted(Comparator.comparingLong((Map.Entry<String, long[]> site) -> site.getValue()[1])
+                                .reversed())
+                        .limit(topSites)
+                        .map(site -> new ProfileSiteResponse(site.getKey(), site.getValue()[0], site.getValue()[1]))
+                        .toList(),
+                executions.entrySet().stream()
+                        .sorted(Comparator.comparingLong((Map.Entry<String, long[]> site) -> site.getValue()[0])
+                                .reversed())
+                        .limit(topSites)
+                        .map(site -> new ProfileSiteResponse(site.getKey(), site.getValue()[0], 0))
+                        .toList(),
+                latencies.entrySet().stream()
+                        .sorted(Comparator.comparingLong((Map.Entry<LatencySite, long[]> site) -> site.getValue()[1])
+                                .reversed())
+                        .limit(topSites)
+                        .map(site -> new ProfileLatencyResponse(
+                                site.getKey().event(),
+                                site.getKey().site(),
+                                site.getValue()[0],
+                                site.getValue()[1] / 1e6,
+                                site.getValue()[2] / 1e6))
+                        .toList());
+    }
+
+    // the innermost application frame, so time parked in a JDK lock or bytes allocated by an ArrayList are charged
+    // to the code that asked for them; the top frame when no application code is on the stack
+    private static String siteOf(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return null;
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        RecordedFrame site = frames.stream()
+                .filter(frame -> frame.getMethod().getType().getName().startsWith(APP_PREFIX))
+                .findFirst()
+                .orElse(frames.getFirst());
+        return site.getMethod().getType().getName() + "." + site.getMethod().getName() + ":" + site.getLineNumber();
+    }
+
+    @PreDestroy
+    public void close() {
+        delete(lastRecording);
+    }
+
+    private static void delete(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete profile {}: {}", file, e.getMessage());
+        }
+    }
+
+    private record LatencySite(String event, String site) {}
+}
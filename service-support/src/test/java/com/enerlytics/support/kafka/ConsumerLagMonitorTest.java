@@ -0,0 +1,68 @@
+package com.enerlytics.support.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+
+class ConsumerLagMonitorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConsumerLagMonitor monitor = new ConsumerLagMonitor(
+            new KafkaAdmin(Map.of()),
+            meterRegistry,
+            new SimpleAsyncTaskScheduler(),
+            "usage-service",
+            Duration.ofSeconds(15),
+            Duration.ofSeconds(1));
+
+    private static TopicPartition partition(int partition) {
+        return new TopicPartition("energy-usage", partition);
+    }
+
+    private double lag(int partition) {
+        return meterRegistry
+                .get(ConsumerLagMonitor.LAG)
+                .tag("topic", "energy-usage")
+                .tag("partition", String.valueOf(partition))
+                .gauge()
+                .value();
+    }
+
+    @Test
+    @DisplayName("Should report the end offset minus the committed offset per partition")
+    void update_ReportsLagPerPartition() {
+        // Act
+        monitor.update(
+                Map.of(partition(0), new OffsetAndMetadata(40), partition(1), new OffsetAndMetadata(100)),
+                Map.of(partition(0), 100L, partition(1), 100L));
+
+        // Assert
+        assertEquals(60, lag(0));
+        assertEquals(0, lag(1));
+    }
+
+    @Test
+    @DisplayName("Should stop reporting a partition the group no longer has offsets for")
+    void update_DropsLeftPartitions() {
+        // Arrange
+        monitor.update(
+                Map.of(partition(0), new OffsetAndMetadata(40), partition(1), new OffsetAndMetadata(90)),
+                Map.of(partition(0), 100L, partition(1), 100L));
+
+        // Act
+        monitor.update(Map.of(partition(0), new OffsetAndMetadata(70)), Map.of(partition(0), 100L));
+
+        // Assert
+        assertEquals(30, lag(0));
+        assertTrue(Double.isNaN(lag(1)));
+    }
+}
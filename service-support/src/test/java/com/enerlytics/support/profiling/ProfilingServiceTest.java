@@ -0,0 +1,69 @@
+package com.enerlytics.support.profiling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import jdk.jfr.Event;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProfilingServiceTest {
+
+    private final ProfilingService profilingService = new ProfilingService("test-service", Duration.ofSeconds(1), 5);
+
+    @Name("com.enerlytics.test.Processed")
+    static class ProcessedEvent extends Event {
+        long id;
+    }
+
+    @Test
+    @DisplayName("Should sum Enerlytics events per type with their count and durations")
+    void summarise_AggregatesAppEvents(@TempDir Path directory) throws Exception {
+        // Arrange
+        Path file = directory.resolve("test.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ProcessedEvent.class);
+            recording.start();
+            for (int i = 0; i < 3; i++) {
+                ProcessedEvent event = new ProcessedEvent();
+                event.begin();
+                Thread.sleep(5);
+                event.id = i;
+                event.commit();
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        // Act
+        ProfileResponse profile = profilingService.summarise(file, Instant.EPOCH, Duration.ofSeconds(1));
+
+        // Assert
+        ProfileLatencyResponse processed = profile.latencySites().stream()
+                .filter(site -> site.event().equals("com.enerlytics.test.Processed"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(3, processed.count());
+        assertTrue(processed.maxMillis() >= 5);
+        assertTrue(processed.totalMillis() >= 15);
+    }
+
+    @Test
+    @DisplayName("Should cap a recording at the maximum duration and keep it for download")
+    void record_CapsDurationAndKeepsFile() {
+        // Act
+        ProfileResponse profile = profilingService.record(Duration.ofMinutes(5));
+
+        // Assert
+        assertEquals(1, profile.durationSeconds());
+        assertTrue(profilingService.lastRecording().map(Files::exists).orElse(false));
+        profilingService.close();
+    }
+}
@@ -0,0 +1,62 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.dtos.DeviceEnergy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Seeded generators shaped like the threshold check's inputs: an hour of per-device sums as the Flux CSV the store
+// streams back, devices spread over users, and user thresholds that roughly one user in ten exceeds.
+final class SyntheticUsage {
+
+    static final int DEVICES_PER_USER = 4;
+    private static final double MEAN_DEVICE_ENERGY = 2.5;
+
+    private SyntheticUsage() {}
+
+    // header plus one row per device, as returned by sum() over a deviceId group
+    static List<String> fluxCsv(int devices, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<String> lines = new ArrayList<>(devices + 1);
+        lines.add(",result,table,deviceId,_value\r");
+        for (int device = 0; device < devices; device++) {
+            lines.add(",_result," + device + "," + (100_000 + device) + "," + energy(random) + "\r");
+        }
+        return lines;
+    }
+
+    static List<DeviceEnergy> deviceEnergies(int devices, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int users = users(devices);
+        List<DeviceEnergy> deviceEnergies = new ArrayList<>(devices);
+        for (int device = 0; device < devices; device++) {
+            deviceEnergies.add(DeviceEnergy.builder()
+                    .deviceId(100_000L + device)
+                    .userId((long) random.nextInt(users))
+                    .energyConsumed(energy(random))
+                    .build());
+        }
+        return deviceEnergies;
+    }
+
+    static Map<Long, Double> thresholds(int devices, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int users = users(devices);
+        Map<Long, Double> thresholds = new HashMap<>(users * 2);
+        for (long user = 0; user < users; user++) {
+            double mean = DEVICES_PER_USER * MEAN_DEVICE_ENERGY;
+            thresholds.put(user, random.nextDouble() < 0.1 ? mean / 2 : mean * 2);
+        }
+        return thresholds;
+    }
+
+    private static int users(int devices) {
+        return Math.max(1, devices / DEVICES_PER_USER);
+    }
+
+    private static double energy(SplittableRandom random) {
+        return random.nextDouble(0, 2 * MEAN_DEVICE_ENERGY);
+    }
+}
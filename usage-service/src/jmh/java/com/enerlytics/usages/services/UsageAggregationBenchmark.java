@@ -0,0 +1,64 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.dtos.DeviceEnergy;
+import com.enerlytics.usages.utils.FluxCsvSumCollector;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The store-independent steps of the hourly threshold check, each on synthetic data: parsing the Flux sums into
+// device energies, grouping them by user, and comparing per-user totals against thresholds
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UsageAggregationBenchmark {
+
+    private static final long SEED = 42;
+
+    @Param({"1000", "100000", "1000000"})
+    private int devices;
+
+    private List<String> fluxCsv;
+    private List<DeviceEnergy> deviceEnergies;
+    private Map<Long, List<DeviceEnergy>> byUser;
+    private Map<Long, Double> thresholds;
+
+    @Setup
+    public void setUp() {
+        fluxCsv = SyntheticUsage.fluxCsv(devices, SEED);
+        deviceEnergies = SyntheticUsage.deviceEnergies(devices, SEED);
+        byUser = UsageService.groupByUser(deviceEnergies);
+        thresholds = SyntheticUsage.thresholds(devices, SEED);
+    }
+
+    @Benchmark
+    public List<DeviceEnergy> parseFluxRows() {
+        FluxCsvSumCollector collector = new FluxCsvSumCollector("deviceId");
+        fluxCsv.forEach(collector);
+        return UsageService.toDeviceEnergies(collector.sums());
+    }
+
+    @Benchmark
+    public Map<Long, List<DeviceEnergy>> groupByUser() {
+        return UsageService.groupByUser(deviceEnergies);
+    }
+
+    @Benchmark
+    public Map<Long, Double> checkThresholds() {
+        return UsageService.usersOverThreshold(byUser, thresholds);
+    }
+}
@@ -1,3 +0,0 @@
-package com.enerlytics.events;
-
-public record AlertingEvent(Long userId, String message, Double threshold, Double energyConsumed, String email) {}
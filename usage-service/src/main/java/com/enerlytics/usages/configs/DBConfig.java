@@ -3,10 +3,12 @@ package com.enerlytics.usages.configs;
 import com.influxdb.client.InfluxDBClient;
 import com.influxdb.client.InfluxDBClientFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@ConditionalOnProperty(name = "usage.storage.type", havingValue = "influx", matchIfMissing = true)
 public class DBConfig {
 
     @Value("${influx.url}")
@@ -0,0 +1,121 @@
+package com.enerlytics.usages.configs;
+
+import com.enerlytics.events.codec.EventSerializer;
+import com.enerlytics.support.kafka.ConsumerLagMonitor;
+import com.enerlytics.support.kafka.DeadLetterReplayService;
+import com.enerlytics.usages.utils.KeyOrderedExecutor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.backoff.FixedBackOff;
+
+@Configuration
+public class KafkaConfig {
+
+    public static final String DEAD_LETTER_SUFFIX = "-dlt";
+
+    // the partition count is also the number of user shards threshold evaluation is split into, so it caps how many
+    // replicas can share that work
+    @Bean
+    public NewTopic energyUsageTopic(@Value("${usage.kafka.partitions}") int partitions) {
+        return TopicBuilder.name("energy-usage").partitions(partitions).build();
+    }
+
+    @Bean
+    public NewTopic energyUsageDeadLetterTopic(@Value("${usage.kafka.partitions}") int partitions) {
+        return TopicBuilder.name("energy-usage" + DEAD_LETTER_SUFFIX)
+                .partitions(partitions)
+                .build();
+    }
+
+    // one virtual thread per consumed reading, ordered per device
+    @Bean(destroyMethod = "close")
+    public KeyOrderedExecutor usageWorkers(
+            MeterRegistry meterRegistry, @Value("${usage.consumer.max-in-flight}") int maxInFlight) {
+        KeyOrderedExecutor workers = new KeyOrderedExecutor(Executors.newVirtualThreadPerTaskExecutor(), maxInFlight);
+        Gauge.builder("usage.consumer.in-flight", workers, KeyOrderedExecutor::inFlight)
+                .description("Consumed readings queued or being processed")
+                .register(meterRegistry);
+        Gauge.builder("usage.consumer.active-devices", workers, KeyOrderedExecutor::activeKeys)
+                .description("Devices with readings queued or being processed")
+                .register(meterRegistry);
+        return workers;
+    }
+
+    // Publishes to <topic>-dlt on the same partition; undeserializable records keep their bytes. Records built by
+    // flow control carry no partition and are placed by their device key, which lands on the same partition number.
+    @Bean
+    public DeadLetterPublishingRecoverer deadLetterRecoverer(ProducerFactory<?, ?> producerFactory) {
+        KafkaTemplate<Object, Object> deadLetterTemplate = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+                producerFactory.getConfigurationProperties(),
+                bytesOr(new StringSerializer()),
+                bytesOr(new EventSerializer())));
+        return new DeadLetterPublishingRecoverer(
+                deadLetterTemplate,
+                (record, e) -> new TopicPartition(record.topic() + DEAD_LETTER_SUFFIX, record.partition()));
+    }
+
+    // A record the listener cannot take goes to the dead-letter topic instead of stalling its partition. Malformed
+    // records go there at once, anything else after a few short retries. Store failures never reach this handler:
+    // flow control buffers and retries those, so a retried reading may be stored after later readings of its device,
+    // which neither store minds since points are keyed by timestamp, and dead-letters the ones it gives up on.
+    @Bean
+    public CommonErrorHandler kafkaErrorHandler(
+            DeadLetterPublishingRecoverer deadLetterRecoverer,
+            @Value("${usage.kafka.retry.attempts}") int attempts,
+            @Value("${usage.kafka.retry.delay}") Duration delay) {
+        DefaultErrorHandler errorHandler =
+                new DefaultErrorHandler(deadLetterRecoverer, new FixedBackOff(delay.toMillis(), attempts - 1L));
+        errorHandler.addNotRetryableExceptions(IllegalArgumentException.class);
+        return errorHandler;
+    }
+
+    // replays energy-usage-dlt through its own consumer group, see the deadletters endpoint
+    @Bean
+    public DeadLetterReplayService deadLetterReplayService(
+            ConsumerFactory<?, ?> consumerFactory, ProducerFactory<?, ?> producerFactory) {
+        return new DeadLetterReplayService(
+                consumerFactory,
+                producerFactory,
+                "energy-usage",
+                "energy-usage" + DEAD_LETTER_SUFFIX,
+                "usage-service-dlt-replay");
+    }
+
+    // reading consumed but not yet stored counts as lag until it is acknowledged
+    @Bean
+    public ConsumerLagMonitor consumerLagMonitor(
+            KafkaAdmin kafkaAdmin,
+            MeterRegistry meterRegistry,
+            TaskScheduler taskScheduler,
+            @Value("${usage.kafka.lag.interval}") Duration interval,
+            @Value("${usage.kafka.lag.timeout}") Duration timeout) {
+        return new ConsumerLagMonitor(kafkaAdmin, meterRegistry, taskScheduler, "usage-service", interval, timeout);
+    }
+
+    private static DelegatingByTypeSerializer bytesOr(Serializer<?> serializer) {
+        return new DelegatingByTypeSerializer(
+                Map.of(byte[].class, new ByteArraySerializer(), Object.class, serializer), true);
+    }
+}
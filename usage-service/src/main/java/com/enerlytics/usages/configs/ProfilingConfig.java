@@ -0,0 +1,24 @@
+package com.enerlytics.usages.configs;
+
+import com.enerlytics.support.profiling.ProfilingEndpoint;
+import com.enerlytics.support.profiling.ProfilingService;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ProfilingConfig {
+
+    @Bean
+    public ProfilingService profilingService(
+            @Value("${usage.profiling.max-duration}") Duration maxDuration,
+            @Value("${usage.profiling.top-sites}") int topSites) {
+        return new ProfilingService("usage-service", maxDuration, topSites);
+    }
+
+    @Bean
+    public ProfilingEndpoint profilingEndpoint(ProfilingService profilingService) {
+        return new ProfilingEndpoint(profilingService);
+    }
+}
@@ -0,0 +1,228 @@
+package com.enerlytics.usages.configs;
+
+import com.enerlytics.usages.stores.RollupWatermark;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.domain.BucketRetentionRules;
+import com.influxdb.client.domain.Organization;
+import com.influxdb.client.domain.Task;
+import com.influxdb.client.domain.TaskCreateRequest;
+import com.influxdb.client.domain.TaskStatusType;
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.client.write.Point;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression("'${usage.storage.type:influx}' == 'influx' and ${influx.rollups.enabled:true}")
+public class RollupProvisioner {
+
+    private static final String HOURLY_TASK = "energy_usage_rollup_hourly";
+    private static final String DAILY_TASK = "energy_usage_rollup_daily";
+    private static final String WATERMARK = "rollup_watermark";
+
+    private final InfluxDBClient influxDBClient;
+    private final RollupWatermark rollupWatermark;
+
+    @Value("${influx.bucket}")
+    private String dbBucket;
+
+    @Value("${influx.org}")
+    private String dbOrg;
+
+    @Value("${influx.rollups.hourly-bucket}")
+    private String hourlyBucket;
+
+    @Value("${influx.rollups.hourly-retention}")
+    private Duration hourlyRetention;
+
+    @Value("${influx.rollups.daily-bucket}")
+    private String dailyBucket;
+
+    @Value("${influx.rollups.daily-retention}")
+    private Duration dailyRetention;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void provision() {
+        try {
+            String orgId = influxDBClient.getOrganizationsApi().findOrganizations().stream()
+                    .filter(org -> dbOrg.equals(org.getName()))
+                    .map(Organization::getId)
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("InfluxDB organization not found: " + dbOrg));
+
+            ensureBucket(hourlyBucket, hourlyRetention, orgId);
+            ensureBucket(dailyBucket, dailyRetention, orgId);
+
+            List<Task> tasks = influxDBClient.getTasksApi().findTasksByOrganizationID(orgId);
+            ensureTask(tasks, HOURLY_TASK, rollupFlux(HOURLY_TASK, "1h", "-2h", hourlyBucket));
+            ensureTask(tasks, DAILY_TASK, rollupFlux(DAILY_TASK, "1d", "-2d", dailyBucket));
+
+            // every replica provisions; the first to find no watermark backfills and the others reuse its watermark.
+            // Deployments that predate keeping it in the daily bucket still find it in the hourly one
+            Instant validFrom = storedWatermark(dailyBucket)
+                    .or(() -> storedWatermark(hourlyBucket))
+                    .orElseGet(this::backfill);
+            storeWatermark(validFrom);
+            rollupWatermark.set(validFrom);
+            log.info("Rollups valid from {}", validFrom);
+        } catch (Exception e) {
+            log.error("Failed to provision InfluxDB rollups: {}", e.getMessage());
+        }
+    }
+
+    private void ensureBucket(String name, Duration retention, String orgId) {
+        if (influxDBClient.getBucketsApi().findBucketByName(name) != null) {
+            return;
+        }
+        BucketRetentionRules rules = new BucketRetentionRules().everySeconds((int) retention.toSeconds());
+        influxDBClient.getBucketsApi().createBucket(name, rules, orgId);
+        log.info("Created rollup bucket {} with retention {}", name, retention);
+    }
+
+    private void ensureTask(List<Task> existing, String name, String flux) {
+        Task task = existing.stream()
+                .filter(candidate -> name.equals(candidate.getName()))
+                .findFirst()
+                .orElse(null);
+        if (task != null) {
+            if (!flux.equals(task.getFlux())) {
+                influxDBClient.getTasksApi().updateTask(task.flux(flux));
+                log.info("Updated rollup task {}", name);
+            }
+            return;
+        }
+        influxDBClient
+                .getTasksApi()
+                .createTask(new TaskCreateRequest()
+                        .org(dbOrg)
+                        .status(TaskStatusType.ACTIVE)
+                        .description("Energy usage rollup maintained by usage-service")
+                        .flux(flux));
+        log.info("Created rollup task {}", name);
+    }
+
+    // windows are re-aggregated with one period of lookback so late readings are picked up;
+    // to() overwrites the same series and timestamp, which keeps reruns idempotent.
+    // Untagged points are superseded by their userId-tagged copies once backfilled.
+    private String rollupFlux(String name, String every, String lookback, String targetBucket) {
+        return String.format("""
+                option task = {name: "%s", every: %s, offset: 5m}
+
+                """, name, every) + rollup("start: " + lookback, every, targetBucket);
+    }
+
+    private String rollup(String range, String every, String targetBucket) {
+        return String.format("""
+                from(bucket: "%s")
+                  |> range(%s)
+                  |> filter(fn: (r) => r["_measurement"] == "energy_usage")
+                  |> filter(fn: (r) => r["_field"] == "energyConsumed")
+                  |> filter(fn: (r) => exists r["userId"])
+                  |> aggregateWindow(every: %s, fn: sum, timeSrc: "_start", createEmpty: false)
+                  |> to(bucket: "%s", org: "%s")
+                """, dbBucket, range, every, targetBucket, dbOrg);
+    }
+
+    // Rolls up all raw data from the first whole day after the earliest point, one day per query, up to where the
+    // tasks take over. The first day is skipped because retention may already have trimmed part of its raw data.
+    private Instant backfill() {
+        Instant now = Instant.now();
+        Instant validFrom = earliestRawPoint()
+                .map(earliest -> earliest.truncatedTo(ChronoUnit.DAYS).plus(1, ChronoUnit.DAYS))
+                .orElse(now.truncatedTo(ChronoUnit.DAYS));
+        Instant hourlyStop = now.truncatedTo(ChronoUnit.HOURS);
+        Instant dailyStop = now.truncatedTo(ChronoUnit.DAYS);
+        for (Instant day = validFrom; day.isBefore(hourlyStop); day = day.plus(1, ChronoUnit.DAYS)) {
+            Instant next = day.plus(1, ChronoUnit.DAYS);
+            run(rollup(range(day, next.isBefore(hourlyStop) ? next : hourlyStop), "1h", hourlyBucket));
+            if (!next.isAfter(dailyStop)) {
+                run(rollup(range(day, next), "1d", dailyBucket));
+            }
+        }
+        log.info("Backfilled rollups from {} to {}", validFrom, hourlyStop);
+        return validFrom;
+    }
+
+    private Optional<Instant> earliestRawPoint() {
+        String fluxQuery = String.format("""
+                from(bucket: "%s")
+                  |> range(start: 0)
+                  |> filter(fn: (r) => r["_measurement"] == "energy_usage")
+                  |> filter(fn: (r) => r["_field"] == "energyConsumed")
+                  |> filter(fn: (r) => exists r["userId"])
+                  |> first()
+                  |> group()
+                  |> min(column: "_time")
+                """, dbBucket);
+        return run(fluxQuery).stream()
+                .map(FluxRecord::getTime)
+                .filter(Objects::nonNull)
+                .findFirst();
+    }
+
+    // rewritten with every daily rollup, so the watermark survives a finite daily retention as long as rollups run
+    @Scheduled(cron = "0 5 0 * * *", zone = "UTC")
+    public void refreshWatermark() {
+        rollupWatermark.validFrom().ifPresent(validFrom -> {
+            try {
+                storeWatermark(validFrom);
+            } catch (Exception e) {
+                log.warn("Failed to refresh the rollup watermark: {}", e.getMessage());
+            }
+        });
+    }
+
+    private Optional<Instant> storedWatermark(String bucket) {
+        String fluxQuery = String.format("""
+                from(bucket: "%s")
+                  |> range(start: 0)
+                  |> filter(fn: (r) => r["_measurement"] == "%s" and r["_field"] == "validFrom")
+                  |> last()
+                """, bucket, WATERMARK);
+        return run(fluxQuery).stream()
+                .map(FluxRecord::getValue)
+                .filter(Number.class::isInstance)
+                .map(value -> Instant.ofEpochSecond(((Number) value).longValue()))
+                .findFirst();
+    }
+
+    // kept in the daily bucket, whose retention is infinite by default, rather than in the hourly bucket where it
+    // would expire with the rollups
+    private void storeWatermark(Instant validFrom) {
+        influxDBClient
+                .getWriteApiBlocking()
+                .writePoint(
+                        dailyBucket,
+                        dbOrg,
+                        Point.measurement(WATERMARK)
+                                .addField("validFrom", validFrom.getEpochSecond())
+                                .time(Instant.now(), WritePrecision.S));
+    }
+
+    private static String range(Instant start, Instant stop) {
+        return String.format("start: time(v: \"%s\"), stop: time(v: \"%s\")", start, stop);
+    }
+
+    private List<FluxRecord> run(String fluxQuery) {
+        return influxDBClient.getQueryApi().query(fluxQuery, dbOrg).stream()
+                .map(FluxTable::getRecords)
+                .flatMap(List::stream)
+                .toList();
+    }
+}
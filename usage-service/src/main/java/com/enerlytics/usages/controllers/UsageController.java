@@ -1,26 +1,169 @@
 package com.enerlytics.usages.controllers;
 
-import com.enerlytics.usages.dtos.responses.UsageResponse;
+import com.enerlytics.usages.dtos.FleetDimension;
+import com.enerlytics.usages.dtos.QueryLane;
+import com.enerlytics.usages.dtos.TopDimension;
+import com.enerlytics.usages.dtos.UsageCaller;
+import com.enerlytics.usages.dtos.UsageQueryPlan;
+import com.enerlytics.usages.dtos.UsageSeriesPlan;
+import com.enerlytics.usages.dtos.responses.FleetUsageResponse;
+import com.enerlytics.usages.dtos.responses.TopUsageResponse;
+import com.enerlytics.usages.dtos.responses.UsageAnalyticsResponse;
+import com.enerlytics.usages.dtos.responses.UsageJobResponse;
+import com.enerlytics.usages.services.TopUsageService;
+import com.enerlytics.usages.services.UsageAdmissionService;
+import com.enerlytics.usages.services.UsageJobService;
+import com.enerlytics.usages.services.UsageSeriesService;
 import com.enerlytics.usages.services.UsageService;
+import com.enerlytics.usages.services.UsageStreamService;
+import com.enerlytics.usages.stores.FleetRollups;
+import com.enerlytics.usages.stores.UsageSketches;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import java.net.URI;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api/v1/usages")
 public class UsageController {
 
+    // set by internal services calling on behalf of their own users, e.g. insight-service
+    public static final String SERVICE_ID_HEADER = "X-Service-Id";
+
     private final UsageService usageService;
+    private final UsageAdmissionService admissionService;
+    private final UsageJobService jobService;
+    private final UsageSeriesService seriesService;
+    private final UsageStreamService streamService;
+    private final FleetRollups fleetRollups;
+    private final TopUsageService topUsageService;
+    private final UsageSketches usageSketches;
+
+    // fleet totals per device type or location over the last hours, from the consumer-maintained hourly rollups
+    @GetMapping("/fleet")
+    public ResponseEntity<FleetUsageResponse> getFleetUsage(
+            @RequestParam(defaultValue = "deviceType") String groupBy,
+            @RequestParam(defaultValue = "24") @Min(1) int hours) {
+        Instant now = Instant.now();
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(fleetRollups.totals(FleetDimension.fromParam(groupBy), now.minus(hours, ChronoUnit.HOURS), now));
+    }
+
+    // approximate reading-size quantiles and distinct reporting devices per device type, merged from hourly sketches
+    @GetMapping("/analytics")
+    public ResponseEntity<UsageAnalyticsResponse> getUsageAnalytics(
+            @RequestParam(defaultValue = "24") @Min(1) int hours,
+            @RequestParam(required = false) String deviceType,
+            @RequestParam(defaultValue = "0.5,0.95,0.99") double[] quantiles) {
+        for (double rank : quantiles) {
+            if (rank < 0 || rank > 1) {
+                throw new IllegalArgumentException("quantiles must be between 0 and 1");
+            }
+        }
+        Instant now = Instant.now();
+        return ResponseEntity.status(HttpStatus.OK)
+                .body(usageSketches.analyze(now.minus(hours, ChronoUnit.HOURS), now, deviceType, quantiles));
+    }
 
+    // heaviest devices or users over the last hours from the consumer-maintained summaries; exact=true re-ranks the
+    // candidates the summaries can't rule out on exact totals from the query path
+    @GetMapping("/top")
+    public ResponseEntity<TopUsageResponse> getTopUsage(
+            @RequestParam(defaultValue = "device") String by,
+            @RequestParam(defaultValue = "1") @Min(1) @Max(24) int hours,
+            @RequestParam(defaultValue = "100") @Min(1) int n,
+            @RequestParam(defaultValue = "false") boolean exact,
+            HttpServletRequest request) {
+        TopDimension dimension = TopDimension.fromParam(by);
+        if (!exact) {
+            return ResponseEntity.status(HttpStatus.OK).body(topUsageService.getTop(dimension, hours, n, false));
+        }
+        try (UsageAdmissionService.Permit permit = admissionService.acquireInteractive(callerOf(request))) {
+            return ResponseEntity.status(HttpStatus.OK).body(topUsageService.getTop(dimension, hours, n, true));
+        }
+    }
+
+    // cheap queries are answered inline; expensive ones are accepted as a job to poll at the returned location
     @GetMapping("/{userId}")
-    public ResponseEntity<UsageResponse> getUserDeviceUsage(
-            @PathVariable Long userId, @RequestParam(defaultValue = "3") int days) {
-        return ResponseEntity.status(HttpStatus.OK).body(usageService.getUsageForUserOverDays(userId, days));
+    public ResponseEntity<?> getUserDeviceUsage(
+            @PathVariable Long userId, @RequestParam(defaultValue = "3") @Min(1) int days, HttpServletRequest request) {
+        UsageCaller caller = callerOf(request);
+        UsageQueryPlan plan = usageService.planUsageQuery(userId, days);
+
+        if (admissionService.isInteractive(plan.estimatedCost())) {
+            try (UsageAdmissionService.Permit permit = admissionService.acquireInteractive(caller)) {
+                return ResponseEntity.status(HttpStatus.OK)
+                        .body(usageService.executeUsageQuery(plan, QueryLane.INTERACTIVE));
+            }
+        }
+
+        UsageJobResponse job = jobService.submit(caller, plan);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/usages/jobs/" + job.id()))
+                .body(job);
+    }
+
+    // bucket sums per device (groupBy=device) or summed over the user's devices (groupBy=user); with points set,
+    // each series is downsampled to about that many points for charting. Admitted like GET /{userId}: expensive
+    // series are accepted as a job
+    @GetMapping("/{userId}/series")
+    public ResponseEntity<?> getUsageSeries(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = "1") @Min(1) int days,
+            @RequestParam(defaultValue = "1h") String every,
+            @RequestParam(required = false) Long deviceId,
+            @RequestParam(defaultValue = "device") String groupBy,
+            @RequestParam(required = false) Integer points,
+            HttpServletRequest request) {
+        if (!"device".equalsIgnoreCase(groupBy) && !"user".equalsIgnoreCase(groupBy)) {
+            throw new IllegalArgumentException("groupBy must be 'device' or 'user'");
+        }
+        UsageCaller caller = callerOf(request);
+        UsageSeriesPlan plan = seriesService.planSeries(
+                userId, days, DurationStyle.detectAndParse(every), deviceId, "user".equalsIgnoreCase(groupBy), points);
+
+        if (admissionService.isInteractive(plan.estimatedCost())) {
+            try (UsageAdmissionService.Permit permit = admissionService.acquireInteractive(caller)) {
+                return ResponseEntity.status(HttpStatus.OK)
+                        .body(seriesService.executeSeries(plan, QueryLane.INTERACTIVE));
+            }
+        }
+
+        UsageJobResponse job = jobService.submit(caller, plan);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/usages/jobs/" + job.id()))
+                .body(job);
+    }
+
+    // live per-device deltas as "usage" events; clients add them to a snapshot from GET /{userId} instead of polling.
+    // "scope" events list the devices this instance streams, only those on the partitions it consumes
+    @GetMapping(path = "/{userId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUsage(@PathVariable Long userId) {
+        return streamService.subscribe(userId);
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<UsageJobResponse> getUsageJob(@PathVariable String jobId) {
+        return ResponseEntity.status(HttpStatus.OK).body(jobService.getJob(jobId));
+    }
+
+    // a service id is only honoured when it names a configured service, so a client cannot spread its queries over as
+    // many budgets as it likes; everyone else is charged by address
+    private UsageCaller callerOf(HttpServletRequest request) {
+        return admissionService.callerOf(request.getHeader(SERVICE_ID_HEADER), request.getRemoteAddr());
     }
 }
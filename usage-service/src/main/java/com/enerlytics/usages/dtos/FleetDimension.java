@@ -0,0 +1,38 @@
+package com.enerlytics.usages.dtos;
+
+import com.enerlytics.usages.dtos.external.DeviceServiceResponse;
+import java.util.function.Function;
+
+public enum FleetDimension {
+    DEVICE_TYPE("deviceType", DeviceServiceResponse::deviceType),
+    LOCATION("location", DeviceServiceResponse::location);
+
+    // readings of devices that could not be resolved, or that lack the attribute
+    public static final String UNKNOWN = "UNKNOWN";
+
+    private final String param;
+    private final Function<DeviceServiceResponse, String> attribute;
+
+    FleetDimension(String param, Function<DeviceServiceResponse, String> attribute) {
+        this.param = param;
+        this.attribute = attribute;
+    }
+
+    public String param() {
+        return param;
+    }
+
+    public String keyOf(DeviceServiceResponse device) {
+        String key = device == null ? null : attribute.apply(device);
+        return key == null || key.isBlank() ? UNKNOWN : key;
+    }
+
+    public static FleetDimension fromParam(String param) {
+        for (FleetDimension dimension : values()) {
+            if (dimension.param.equalsIgnoreCase(param)) {
+                return dimension;
+            }
+        }
+        throw new IllegalArgumentException("groupBy must be 'deviceType' or 'location'");
+    }
+}
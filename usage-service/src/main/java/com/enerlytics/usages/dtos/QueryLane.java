@@ -0,0 +1,7 @@
+package com.enerlytics.usages.dtos;
+
+// interactive and analytical queries draw from separate storage concurrency budgets
+public enum QueryLane {
+    INTERACTIVE,
+    ANALYTICAL
+}
@@ -0,0 +1,5 @@
+package com.enerlytics.usages.dtos;
+
+import java.time.Instant;
+
+public record QuerySegment(Resolution resolution, Instant start, Instant stop) {}
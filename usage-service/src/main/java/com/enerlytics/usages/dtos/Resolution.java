@@ -0,0 +1,7 @@
+package com.enerlytics.usages.dtos;
+
+public enum Resolution {
+    RAW,
+    HOURLY,
+    DAILY
+}
@@ -0,0 +1,8 @@
+package com.enerlytics.usages.dtos;
+
+import java.time.Instant;
+import java.util.List;
+
+// the keys that may rank among the top n over [start, stop); complete is false when a key no summary tracked, or one
+// on a partition consumed elsewhere, may belong among them too
+public record TopCandidates(Instant start, Instant stop, List<Long> ids, boolean complete) {}
@@ -0,0 +1,25 @@
+package com.enerlytics.usages.dtos;
+
+public enum TopDimension {
+    DEVICE("device"),
+    USER("user");
+
+    private final String param;
+
+    TopDimension(String param) {
+        this.param = param;
+    }
+
+    public String param() {
+        return param;
+    }
+
+    public static TopDimension fromParam(String param) {
+        for (TopDimension dimension : values()) {
+            if (dimension.param.equalsIgnoreCase(param)) {
+                return dimension;
+            }
+        }
+        throw new IllegalArgumentException("by must be 'device' or 'user'");
+    }
+}
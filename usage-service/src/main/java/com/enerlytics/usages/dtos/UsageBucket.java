@@ -0,0 +1,5 @@
+package com.enerlytics.usages.dtos;
+
+import java.time.Instant;
+
+public record UsageBucket(Long deviceId, Instant start, double energyConsumed) {}
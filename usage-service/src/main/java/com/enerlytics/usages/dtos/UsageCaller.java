@@ -0,0 +1,10 @@
+package com.enerlytics.usages.dtos;
+
+// who a usage query is charged to: one of the configured internal services, or else the client address
+public record UsageCaller(String id, boolean service) {
+
+    @Override
+    public String toString() {
+        return service ? "service " + id : id;
+    }
+}
@@ -0,0 +1,8 @@
+package com.enerlytics.usages.dtos;
+
+public enum UsageJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+}
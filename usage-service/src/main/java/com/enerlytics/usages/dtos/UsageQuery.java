@@ -0,0 +1,64 @@
+package com.enerlytics.usages.dtos;
+
+import java.time.Instant;
+import java.util.stream.IntStream;
+
+// userId == null selects every device with a known owner; deviceShards > 1 narrows that to the devices whose id
+// falls into deviceShard (deviceId mod deviceShards), and userShards > 1 to the devices whose owner's user shard falls
+// into userShard (userShardOf(userId) mod userShards)
+public record UsageQuery(
+        Resolution resolution,
+        Instant start,
+        Instant stop,
+        Long userId,
+        int deviceShards,
+        int deviceShard,
+        int userShards,
+        int userShard) {
+
+    // every point is tagged with its owner's user shard at write time, so a user shard filter is a tag match
+    public static final int USER_SHARDS = 64;
+
+    public UsageQuery(Resolution resolution, Instant start, Instant stop, Long userId) {
+        this(resolution, start, stop, userId, 1, 0, 1, 0);
+    }
+
+    public boolean isDeviceSharded() {
+        return deviceShards > 1;
+    }
+
+    public boolean includesDevice(long deviceId) {
+        return !isDeviceSharded() || Math.floorMod(deviceId, deviceShards) == deviceShard;
+    }
+
+    public boolean isUserSharded() {
+        return userShards > 1;
+    }
+
+    public boolean includesOwner(long userId) {
+        return !isUserSharded() || Math.floorMod(userShardOf(userId), userShards) == userShard;
+    }
+
+    // the write-time user shards this query's userShard groups together
+    public int[] ownerTagShards() {
+        return IntStream.range(0, USER_SHARDS)
+                .filter(shard -> shard % userShards == userShard)
+                .toArray();
+    }
+
+    public static int userShardOf(long userId) {
+        return Math.floorMod(userId, USER_SHARDS);
+    }
+
+    public UsageQuery withRange(Instant start, Instant stop) {
+        return new UsageQuery(resolution, start, stop, userId, deviceShards, deviceShard, userShards, userShard);
+    }
+
+    public UsageQuery withDeviceShard(int deviceShards, int deviceShard) {
+        return new UsageQuery(resolution, start, stop, userId, deviceShards, deviceShard, userShards, userShard);
+    }
+
+    public UsageQuery withUserShard(int userShards, int userShard) {
+        return new UsageQuery(resolution, start, stop, userId, deviceShards, deviceShard, userShards, userShard);
+    }
+}
@@ -0,0 +1,14 @@
+package com.enerlytics.usages.dtos;
+
+import com.enerlytics.usages.dtos.external.DeviceServiceResponse;
+import java.time.Instant;
+import java.util.List;
+
+// estimatedCost is the approximate number of stored points the segments will scan
+public record UsageQueryPlan(
+        Long userId,
+        int days,
+        List<DeviceServiceResponse> devices,
+        Instant now,
+        List<QuerySegment> segments,
+        long estimatedCost) {}
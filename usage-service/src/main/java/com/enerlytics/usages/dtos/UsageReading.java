@@ -0,0 +1,5 @@
+package com.enerlytics.usages.dtos;
+
+import java.time.Instant;
+
+public record UsageReading(Long deviceId, Long userId, Instant timestamp, double energyConsumed) {}
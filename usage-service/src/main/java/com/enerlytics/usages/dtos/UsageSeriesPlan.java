@@ -0,0 +1,20 @@
+package com.enerlytics.usages.dtos;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+// segments already read a source no coarser than every; deviceIds is null when the user's devices could not be
+// resolved, and estimatedCost is the approximate number of stored points the segments will scan
+public record UsageSeriesPlan(
+        Long userId,
+        int days,
+        Duration every,
+        Long deviceId,
+        boolean perUser,
+        Integer points,
+        List<Long> deviceIds,
+        Instant start,
+        Instant now,
+        List<QuerySegment> segments,
+        long estimatedCost) {}
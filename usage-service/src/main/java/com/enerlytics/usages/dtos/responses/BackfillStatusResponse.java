@@ -0,0 +1,17 @@
+package com.enerlytics.usages.dtos.responses;
+
+import java.time.Instant;
+
+public record BackfillStatusResponse(
+        boolean running,
+        Instant startedAt,
+        Instant finishedAt,
+        int devicesTagged,
+        int devicesSkipped,
+        long pointsCopied,
+        String error) {
+
+    public static BackfillStatusResponse idle() {
+        return new BackfillStatusResponse(false, null, null, 0, 0, 0, null);
+    }
+}
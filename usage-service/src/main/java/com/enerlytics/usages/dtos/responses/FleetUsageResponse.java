@@ -0,0 +1,9 @@
+package com.enerlytics.usages.dtos.responses;
+
+import java.time.Instant;
+import java.util.List;
+
+// complete is false when the range starts before the rollups began (startup), after they were evicted, or before
+// this replica was assigned every energy-usage partition; the totals then only cover the partitions consumed here
+public record FleetUsageResponse(
+        String groupBy, Instant start, Instant stop, boolean complete, List<GroupUsageResponse> groups) {}
@@ -0,0 +1,14 @@
+package com.enerlytics.usages.dtos.responses;
+
+import java.time.Instant;
+
+// profile holds the InfluxDB profiler tables as CSV when the profiler is enabled
+public record FluxQueryResponse(
+        String type,
+        String outcome,
+        Instant startedAt,
+        double durationMillis,
+        long tables,
+        long rows,
+        String query,
+        String profile) {}
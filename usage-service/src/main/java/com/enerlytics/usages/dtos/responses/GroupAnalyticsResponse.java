@@ -0,0 +1,4 @@
+package com.enerlytics.usages.dtos.responses;
+
+// quantiles of single reading sizes, in the order of the requested ranks
+public record GroupAnalyticsResponse(String deviceType, long readings, long distinctDevices, double[] quantiles) {}
@@ -0,0 +1,3 @@
+package com.enerlytics.usages.dtos.responses;
+
+public record GroupUsageResponse(String key, double energyConsumed, long readings) {}
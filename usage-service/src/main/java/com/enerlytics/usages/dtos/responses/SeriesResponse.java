@@ -0,0 +1,5 @@
+package com.enerlytics.usages.dtos.responses;
+
+// columnar to keep chart payloads small: timestamps are bucket starts in epoch millis, deviceId is null for the
+// per-user total
+public record SeriesResponse(Long deviceId, long[] timestamps, double[] values) {}
@@ -0,0 +1,5 @@
+package com.enerlytics.usages.dtos.responses;
+
+// for approximate answers energyConsumed is an upper bound and guaranteedEnergy a lower bound; exact answers have both
+// equal
+public record TopUsageEntryResponse(Long id, double energyConsumed, double guaranteedEnergy) {}
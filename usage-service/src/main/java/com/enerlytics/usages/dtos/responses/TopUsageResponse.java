@@ -0,0 +1,7 @@
+package com.enerlytics.usages.dtos.responses;
+
+import java.time.Instant;
+import java.util.List;
+
+public record TopUsageResponse(
+        String by, Instant start, Instant stop, boolean exact, boolean complete, List<TopUsageEntryResponse> entries) {}
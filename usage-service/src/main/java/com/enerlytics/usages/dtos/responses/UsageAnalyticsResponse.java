@@ -0,0 +1,14 @@
+package com.enerlytics.usages.dtos.responses;
+
+import java.time.Instant;
+import java.util.List;
+
+// complete is false when the range starts before startup, past the retention, or before this replica was assigned
+// every energy-usage partition; the sketches then only cover the partitions consumed here
+public record UsageAnalyticsResponse(
+        Instant start,
+        Instant stop,
+        boolean complete,
+        double[] ranks,
+        GroupAnalyticsResponse fleet,
+        List<GroupAnalyticsResponse> deviceTypes) {}
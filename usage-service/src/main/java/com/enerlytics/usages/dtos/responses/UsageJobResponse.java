@@ -0,0 +1,30 @@
+package com.enerlytics.usages.dtos.responses;
+
+import com.enerlytics.usages.dtos.UsageJobStatus;
+import java.time.Instant;
+
+public record UsageJobResponse(
+        String id,
+        Long userId,
+        int days,
+        long estimatedCost,
+        UsageJobStatus status,
+        Instant submittedAt,
+        Instant completedAt,
+        UsageJobResult result,
+        String error) {
+
+    public UsageJobResponse withStatus(UsageJobStatus status) {
+        return new UsageJobResponse(id, userId, days, estimatedCost, status, submittedAt, null, null, null);
+    }
+
+    public UsageJobResponse succeeded(UsageJobResult result) {
+        return new UsageJobResponse(
+                id, userId, days, estimatedCost, UsageJobStatus.SUCCEEDED, submittedAt, Instant.now(), result, null);
+    }
+
+    public UsageJobResponse failed(String error) {
+        return new UsageJobResponse(
+                id, userId, days, estimatedCost, UsageJobStatus.FAILED, submittedAt, Instant.now(), null, error);
+    }
+}
@@ -0,0 +1,4 @@
+package com.enerlytics.usages.dtos.responses;
+
+// what an async usage job produces: the totals of GET /{userId} or the buckets of GET /{userId}/series
+public sealed interface UsageJobResult permits UsageResponse, UsageSeriesResponse {}
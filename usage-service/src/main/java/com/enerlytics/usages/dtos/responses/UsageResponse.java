@@ -2,4 +2,4 @@ package com.enerlytics.usages.dtos.responses;
 
 import java.util.List;
 
-public record UsageResponse(Long userId, List<DeviceUsageResponse> devices) {}
+public record UsageResponse(Long userId, List<DeviceUsageResponse> devices) implements UsageJobResult {}
@@ -0,0 +1,9 @@
+package com.enerlytics.usages.dtos.responses;
+
+import java.time.Instant;
+import java.util.List;
+
+// every is the bucket width in seconds; downsampled reports whether LTTB dropped buckets from any series
+public record UsageSeriesResponse(
+        Long userId, Instant start, Instant stop, long every, boolean downsampled, List<SeriesResponse> series)
+        implements UsageJobResult {}
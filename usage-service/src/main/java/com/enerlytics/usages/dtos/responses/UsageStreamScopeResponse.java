@@ -0,0 +1,7 @@
+package com.enerlytics.usages.dtos.responses;
+
+import java.util.List;
+
+// which of the user's devices this instance streams: only those on the energy-usage partitions it consumes. complete
+// is false when other devices' readings are consumed elsewhere and never reach this stream
+public record UsageStreamScopeResponse(Long userId, boolean complete, List<Long> devices, List<Long> streamedDevices) {}
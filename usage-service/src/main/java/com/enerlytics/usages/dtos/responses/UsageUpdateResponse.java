@@ -0,0 +1,9 @@
+package com.enerlytics.usages.dtos.responses;
+
+import java.time.Instant;
+import java.util.Map;
+
+// energy consumed per device by the readings consumed since the previous update to the same subscriber; complete is
+// false while some of the user's devices are consumed by another instance (see UsageStreamScopeResponse)
+public record UsageUpdateResponse(
+        Long userId, Instant from, Instant to, long readings, boolean complete, Map<Long, Double> devices) {}
@@ -0,0 +1,28 @@
+package com.enerlytics.usages.endpoints;
+
+import com.enerlytics.support.kafka.DeadLetterReplayResponse;
+import com.enerlytics.support.kafka.DeadLetterReplayService;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Endpoint(id = "deadletters")
+public class DeadLetterEndpoint {
+
+    private final DeadLetterReplayService replayService;
+
+    @ReadOperation
+    public DeadLetterReplayResponse pending() {
+        return replayService.pending();
+    }
+
+    @WriteOperation
+    public DeadLetterReplayResponse replay(@Nullable Integer max) {
+        return replayService.replay(max == null ? 1000 : max);
+    }
+}
@@ -0,0 +1,26 @@
+package com.enerlytics.usages.endpoints;
+
+import com.enerlytics.usages.dtos.responses.FluxQueryResponse;
+import com.enerlytics.usages.stores.FluxQueryProfiler;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "usage.storage.type", havingValue = "influx", matchIfMissing = true)
+@Endpoint(id = "fluxqueries")
+public class FluxQueryEndpoint {
+
+    private final FluxQueryProfiler profiler;
+
+    // the slowest of the recently run Flux queries, slowest first
+    @ReadOperation
+    public List<FluxQueryResponse> mostExpensive(@Nullable Integer limit) {
+        return profiler.mostExpensive(limit == null ? 10 : limit);
+    }
+}
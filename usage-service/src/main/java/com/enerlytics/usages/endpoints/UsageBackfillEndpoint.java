@@ -0,0 +1,30 @@
+package com.enerlytics.usages.endpoints;
+
+import com.enerlytics.usages.dtos.responses.BackfillStatusResponse;
+import com.enerlytics.usages.services.UserTagBackfillService;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "usage.storage.type", havingValue = "influx", matchIfMissing = true)
+@Endpoint(id = "usagebackfill")
+public class UsageBackfillEndpoint {
+
+    private final UserTagBackfillService backfillService;
+
+    @ReadOperation
+    public BackfillStatusResponse status() {
+        return backfillService.getStatus();
+    }
+
+    @WriteOperation
+    public BackfillStatusResponse start(@Nullable Integer days) {
+        return backfillService.start(days == null ? 7 : days);
+    }
+}
@@ -0,0 +1,53 @@
+package com.enerlytics.usages.exceptions;
+
+import java.net.URI;
+import java.time.Instant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
+
+@Slf4j
+@RestControllerAdvice
+public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
+
+    @ExceptionHandler(ResourceNotFoundException.class)
+    public ProblemDetail handleNotFound(ResourceNotFoundException ex) {
+        return buildProblemDetail(HttpStatus.NOT_FOUND, ex.getMessage(), "/errors/not-found");
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ProblemDetail handleBadRequest(IllegalArgumentException ex) {
+        return buildProblemDetail(HttpStatus.BAD_REQUEST, ex.getMessage(), "/errors/bad-request");
+    }
+
+    @ExceptionHandler(QueryRejectedException.class)
+    public ResponseEntity<ProblemDetail> handleRejected(QueryRejectedException ex) {
+        ProblemDetail problemDetail =
+                buildProblemDetail(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage(), "/errors/too-many-requests");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(
+                        HttpHeaders.RETRY_AFTER,
+                        Long.toString(ex.getRetryAfter().toSeconds()))
+                .body(problemDetail);
+    }
+
+    @ExceptionHandler(Exception.class)
+    public ProblemDetail handleUnexpected(Exception ex) {
+        log.error("Unhandled exception", ex);
+        return buildProblemDetail(
+                HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error", "/errors/internal-server-error");
+    }
+
+    private ProblemDetail buildProblemDetail(HttpStatus status, String detail, String typePath) {
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(status, detail);
+        problemDetail.setType(URI.create(typePath));
+        problemDetail.setTitle(status.getReasonPhrase());
+        problemDetail.setProperty("timestamp", Instant.now());
+        return problemDetail;
+    }
+}
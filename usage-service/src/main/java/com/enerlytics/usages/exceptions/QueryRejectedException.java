@@ -0,0 +1,15 @@
+package com.enerlytics.usages.exceptions;
+
+import java.time.Duration;
+import lombok.Getter;
+
+@Getter
+public class QueryRejectedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public QueryRejectedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,7 @@
+package com.enerlytics.usages.exceptions;
+
+public class ResourceNotFoundException extends RuntimeException {
+    public ResourceNotFoundException(String message) {
+        super(message);
+    }
+}
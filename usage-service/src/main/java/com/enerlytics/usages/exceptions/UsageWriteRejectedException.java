@@ -0,0 +1,9 @@
+package com.enerlytics.usages.exceptions;
+
+// The store refused the readings themselves, e.g. a field type conflict, so writing them again cannot succeed.
+public class UsageWriteRejectedException extends RuntimeException {
+
+    public UsageWriteRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
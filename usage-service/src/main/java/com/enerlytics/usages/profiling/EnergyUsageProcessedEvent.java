@@ -0,0 +1,23 @@
+package com.enerlytics.usages.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// One consumed energy-usage record, from the worker picking it up to every in-memory view having taken its readings.
+// Store writes that fail are retried outside of it.
+@Name("com.enerlytics.usage.EnergyUsageProcessed")
+@Label("Energy Usage Processed")
+@Category({"Enerlytics", "Usage"})
+@Description("Processing of one consumed energy-usage record")
+@StackTrace(false)
+public class EnergyUsageProcessedEvent extends jdk.jfr.Event {
+
+    @Label("Device Id")
+    public long deviceId;
+
+    @Label("Readings")
+    public int readings;
+}
@@ -0,0 +1,27 @@
+package com.enerlytics.usages.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.enerlytics.usage.ThresholdCheck")
+@Label("Threshold Check")
+@Category({"Enerlytics", "Usage"})
+@Description("One scheduled aggregation and threshold check over the owned user shards")
+@StackTrace(false)
+public class ThresholdCheckEvent extends jdk.jfr.Event {
+
+    @Label("User Shards")
+    public int shards;
+
+    @Label("Devices")
+    public int devices;
+
+    @Label("Users")
+    public int users;
+
+    @Label("Alerts")
+    public int alerts;
+}
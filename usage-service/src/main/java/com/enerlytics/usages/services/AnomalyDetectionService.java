@@ -0,0 +1,140 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.events.AnomalyEvent;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.utils.EwmaBaseline;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+// Scores every consumed reading against its device's EWMA baseline and publishes readings far above it to the
+// energy-anomalies topic, catching runaway devices within one reading instead of after an hourly threshold check.
+// A device is reported at most once per cooldown. Each device's state is locked on its own, so readings of different
+// devices are scored in parallel; the least recently scored devices are dropped beyond max-devices, and a device
+// silent for the idle expiry starts a fresh baseline.
+@Slf4j
+@Service
+public class AnomalyDetectionService {
+
+    static final String TOPIC = "energy-anomalies";
+
+    private final KafkaTemplate<String, AnomalyEvent> kafkaTemplate;
+    private final boolean enabled;
+    private final double alpha;
+    private final int warmup;
+    private final double scoreThreshold;
+    private final double minRelativeDeviation;
+    private final long cooldownMillis;
+
+    private final Cache<Long, DeviceBaseline> baselines;
+    private final Counter detected;
+    private final Counter suppressed;
+
+    public AnomalyDetectionService(
+            KafkaTemplate<String, AnomalyEvent> kafkaTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${usage.anomaly.enabled}") boolean enabled,
+            @Value("${usage.anomaly.alpha}") double alpha,
+            @Value("${usage.anomaly.warmup}") int warmup,
+            @Value("${usage.anomaly.score-threshold}") double scoreThreshold,
+            @Value("${usage.anomaly.min-relative-deviation}") double minRelativeDeviation,
+            @Value("${usage.anomaly.cooldown}") Duration cooldown,
+            @Value("${usage.anomaly.max-devices}") long maxDevices,
+            @Value("${usage.anomaly.idle-expiry}") Duration idleExpiry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.enabled = enabled;
+        this.alpha = alpha;
+        this.warmup = warmup;
+        this.scoreThreshold = scoreThreshold;
+        this.minRelativeDeviation = minRelativeDeviation;
+        this.cooldownMillis = cooldown.toMillis();
+        this.baselines = Caffeine.newBuilder()
+                .maximumSize(maxDevices)
+                .expireAfterAccess(idleExpiry)
+                .build();
+
+        Gauge.builder("usage.anomaly.devices", baselines, Cache::estimatedSize)
+                .description("Devices with an anomaly baseline")
+                .register(meterRegistry);
+        this.detected = Counter.builder("usage.anomaly.detected")
+                .description("Readings published as anomalies")
+                .register(meterRegistry);
+        this.suppressed = Counter.builder("usage.anomaly.suppressed")
+                .description("Anomalous readings not published because the device is cooling down")
+                .register(meterRegistry);
+    }
+
+    public void inspect(UsageReading reading) {
+        if (!enabled) {
+            return;
+        }
+        AnomalyEvent event = score(reading);
+        if (event == null) {
+            return;
+        }
+        try {
+            kafkaTemplate.send(TOPIC, String.valueOf(reading.deviceId()), event);
+            log.info(
+                    "ANOMALY: device {} consumed {} (expected {}, score {})",
+                    reading.deviceId(),
+                    reading.energyConsumed(),
+                    event.expected(),
+                    event.score());
+        } catch (Exception e) {
+            log.error("Failed to send anomaly event for device {}: {}", reading.deviceId(), e.getMessage());
+        }
+    }
+
+    AnomalyEvent score(UsageReading reading) {
+        DeviceBaseline device = baselines.get(
+                reading.deviceId(),
+                deviceId -> new DeviceBaseline(new EwmaBaseline(alpha, warmup, minRelativeDeviation)));
+        double expected;
+        double deviation;
+        synchronized (device) {
+            expected = device.baseline.mean();
+            deviation = device.baseline.standardDeviation();
+            double score = device.baseline.update(reading.energyConsumed());
+            if (Double.isNaN(score) || score < scoreThreshold) {
+                return null;
+            }
+
+            long timestamp = reading.timestamp().toEpochMilli();
+            if (device.reported && timestamp - device.lastReported < cooldownMillis) {
+                suppressed.increment();
+                return null;
+            }
+            device.reported = true;
+            device.lastReported = timestamp;
+            detected.increment();
+            return new AnomalyEvent(
+                    reading.deviceId(),
+                    reading.userId(),
+                    reading.timestamp(),
+                    reading.energyConsumed(),
+                    expected,
+                    deviation,
+                    score);
+        }
+    }
+
+    // guarded by its own monitor
+    private static final class DeviceBaseline {
+
+        private final EwmaBaseline baseline;
+        private boolean reported;
+        // epoch millis of the last reported anomaly
+        private long lastReported;
+
+        private DeviceBaseline(EwmaBaseline baseline) {
+            this.baseline = baseline;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.clients.DeviceClient;
+import com.enerlytics.usages.dtos.external.DeviceServiceResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class DeviceDirectory {
+
+    private final DeviceClient deviceClient;
+    private final Cache<Long, DeviceServiceResponse> devicesById;
+    private final Cache<Long, List<DeviceServiceResponse>> devicesByUser;
+
+    public DeviceDirectory(
+            DeviceClient deviceClient,
+            MeterRegistry meterRegistry,
+            @Value("${device-service.cache.ttl}") Duration ttl,
+            @Value("${device-service.cache.max-size}") long maxSize) {
+        this.deviceClient = deviceClient;
+        this.devicesById = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        this.devicesByUser = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, devicesById, "devices.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, devicesByUser, "devices.by-user");
+    }
+
+    public DeviceServiceResponse getDevice(Long deviceId) {
+        return devicesById.get(deviceId, deviceClient::getDeviceById);
+    }
+
+    public Long getOwner(Long deviceId) {
+        DeviceServiceResponse device = getDevice(deviceId);
+        return device == null ? null : device.userId();
+    }
+
+    public List<DeviceServiceResponse> getDevicesForUser(Long userId) {
+        return devicesByUser.get(userId, id -> {
+            List<DeviceServiceResponse> devices = deviceClient.getAllDevicesForUser(id);
+            if (devices == null) {
+                return List.of();
+            }
+            devices.stream()
+                    .filter(device -> device != null && device.id() != null)
+                    .forEach(device -> devicesById.put(device.id(), device));
+            return devices;
+        });
+    }
+}
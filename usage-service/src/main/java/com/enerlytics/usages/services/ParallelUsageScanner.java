@@ -0,0 +1,175 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.dtos.QueryLane;
+import com.enerlytics.usages.dtos.Resolution;
+import com.enerlytics.usages.dtos.UsageBucket;
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Splits a usage query into time chunks (and, for fleet-wide queries, device shards), runs the chunks on virtual
+// threads and merges the partial per-device sums. A service-wide semaphore per lane bounds how many chunks hit
+// storage at once, so analytical jobs never hold the permits interactive queries wait for.
+@Slf4j
+@Component
+public class ParallelUsageScanner {
+
+    private final Map<Resolution, Duration> chunkDurations = new EnumMap<>(Resolution.class);
+    private final int deviceShards;
+    private final Map<QueryLane, Semaphore> permits = new EnumMap<>(QueryLane.class);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<ChunkKind, Timer> chunkTimers = new HashMap<>();
+
+    public ParallelUsageScanner(
+            MeterRegistry meterRegistry,
+            @Value("${usage.query.parallelism}") int parallelism,
+            @Value("${usage.query.analytical-parallelism}") int analyticalParallelism,
+            @Value("${usage.query.chunk.raw}") Duration rawChunk,
+            @Value("${usage.query.chunk.hourly}") Duration hourlyChunk,
+            @Value("${usage.query.chunk.daily}") Duration dailyChunk,
+            @Value("${usage.query.device-shards}") int deviceShards) {
+        for (Resolution resolution : Resolution.values()) {
+            for (boolean fleet : new boolean[] {true, false}) {
+                for (QueryLane lane : QueryLane.values()) {
+                    chunkTimers.put(
+                            new ChunkKind(resolution, fleet, lane),
+                            Timer.builder("usage.query.chunk")
+                                    .description("Time spent loading one usage query chunk")
+                                    .tag("resolution", resolution.name().toLowerCase())
+                                    .tag("scope", fleet ? "fleet" : "user")
+                                    .tag("lane", lane.name().toLowerCase())
+                                    .publishPercentileHistogram()
+                                    .register(meterRegistry));
+                }
+            }
+        }
+        permits.put(QueryLane.INTERACTIVE, new Semaphore(Math.max(1, parallelism)));
+        permits.put(QueryLane.ANALYTICAL, new Semaphore(Math.max(1, analyticalParallelism)));
+        this.deviceShards = Math.max(1, deviceShards);
+        chunkDurations.put(Resolution.RAW, rawChunk);
+        chunkDurations.put(Resolution.HOURLY, hourlyChunk);
+        chunkDurations.put(Resolution.DAILY, dailyChunk);
+    }
+
+    public LongDoubleHashMap sumByDevice(
+            QueryLane lane, UsageQuery query, Function<UsageQuery, LongDoubleHashMap> loader) {
+        List<LongDoubleHashMap> partials = scan(lane, query, loader);
+        if (partials.size() == 1) {
+            return partials.getFirst();
+        }
+        LongDoubleHashMap sums = new LongDoubleHashMap();
+        partials.forEach(sums::addAll);
+        log.debug("Merged {} usage chunks for {} to {}", partials.size(), query.start(), query.stop());
+        return sums;
+    }
+
+    // a window cut by a chunk boundary comes back once per chunk, each part stamped with its chunk's start
+    public List<UsageBucket> window(QueryLane lane, UsageQuery query, Function<UsageQuery, List<UsageBucket>> loader) {
+        List<List<UsageBucket>> partials = scan(lane, query, loader);
+        if (partials.size() == 1) {
+            return partials.getFirst();
+        }
+        List<UsageBucket> buckets = new ArrayList<>();
+        partials.forEach(buckets::addAll);
+        log.debug("Merged {} usage window chunks for {} to {}", partials.size(), query.start(), query.stop());
+        return buckets;
+    }
+
+    private <T> List<T> scan(QueryLane lane, UsageQuery query, Function<UsageQuery, T> loader) {
+        Semaphore lanePermits = permits.get(lane);
+        List<UsageQuery> chunks = split(query);
+        if (chunks.size() == 1) {
+            return List.of(load(lane, lanePermits, chunks.getFirst(), loader));
+        }
+
+        List<Future<T>> futures = new ArrayList<>(chunks.size());
+        for (UsageQuery chunk : chunks) {
+            futures.add(executor.submit(() -> load(lane, lanePermits, chunk, loader)));
+        }
+
+        List<T> partials = new ArrayList<>(chunks.size());
+        try {
+            for (Future<T> future : futures) {
+                partials.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning usage chunks", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return partials;
+    }
+
+    List<UsageQuery> split(UsageQuery query) {
+        Duration chunkDuration = chunkDurations.get(query.resolution());
+        List<UsageQuery> ranges = new ArrayList<>();
+        Instant start = query.start();
+        while (start.isBefore(query.stop())) {
+            Instant stop = start.plus(chunkDuration);
+            if (stop.isAfter(query.stop())) {
+                stop = query.stop();
+            }
+            ranges.add(query.withRange(start, stop));
+            start = stop;
+        }
+
+        // user queries already filter on a single tag, so only fleet-wide queries are split by device
+        if (query.userId() != null || deviceShards == 1 || query.isDeviceSharded()) {
+            return ranges;
+        }
+        List<UsageQuery> chunks = new ArrayList<>(ranges.size() * deviceShards);
+        for (UsageQuery range : ranges) {
+            for (int shard = 0; shard < deviceShards; shard++) {
+                chunks.add(range.withDeviceShard(deviceShards, shard));
+            }
+        }
+        return chunks;
+    }
+
+    private <T> T load(QueryLane lane, Semaphore lanePermits, UsageQuery chunk, Function<UsageQuery, T> loader) {
+        try {
+            lanePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a usage query slot", e);
+        }
+        try {
+            return chunkTimers
+                    .get(new ChunkKind(chunk.resolution(), chunk.userId() == null, lane))
+                    .record(() -> loader.apply(chunk));
+        } finally {
+            lanePermits.release();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private record ChunkKind(Resolution resolution, boolean fleet, QueryLane lane) {}
+}
@@ -0,0 +1,82 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.stores.HotUsageTier;
+import com.enerlytics.usages.stores.PartitionCoverage;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+// Tracks which energy-usage partitions this replica consumes. Users are sharded across replicas by their user shard
+// (see UsageQuery.USER_SHARDS) mod partition count, and a replica owns the shards numbered like its assigned
+// partitions, so
+// per-user work such as threshold evaluation is split across the consumer group and moves with each rebalance.
+// The hot tier and the in-memory rollups are told about every change too, since they only cover the devices on the
+// partitions consumed here.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PartitionOwnership implements ConsumerAwareRebalanceListener {
+
+    static final String TOPIC = "energy-usage";
+
+    private final HotUsageTier hotTier;
+    private final PartitionCoverage coverage;
+
+    private final NavigableSet<Integer> ownedPartitions = new ConcurrentSkipListSet<>();
+    private volatile int partitionCount;
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        partitionCount = consumer.partitionsFor(TOPIC).size();
+        List<Integer> assigned = partitions.stream()
+                .filter(partition -> TOPIC.equals(partition.topic()))
+                .map(TopicPartition::partition)
+                .toList();
+        ownedPartitions.addAll(assigned);
+        hotTier.assign(partitionCount, assigned);
+        coverage.assign(partitionCount, assigned);
+        log.info("Now owning user shards {} of {}", ownedPartitions, partitionCount);
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        release(partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        release(partitions);
+    }
+
+    public int shardCount() {
+        return partitionCount;
+    }
+
+    public int[] ownedShards() {
+        return ownedPartitions.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public boolean owns(long userId) {
+        int shards = partitionCount;
+        return shards > 0 && ownedPartitions.contains(Math.floorMod(UsageQuery.userShardOf(userId), shards));
+    }
+
+    private void release(Collection<TopicPartition> partitions) {
+        List<Integer> released = partitions.stream()
+                .filter(partition -> TOPIC.equals(partition.topic()))
+                .map(TopicPartition::partition)
+                .toList();
+        ownedPartitions.removeAll(released);
+        hotTier.revoke(released);
+        coverage.revoke(released);
+        log.info("Released user shards, now owning {} of {}", ownedPartitions, partitionCount);
+    }
+}
@@ -0,0 +1,89 @@
+package com.enerlytics.usages.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Per-stage latency histograms of the reading and alert pipeline, all under pipeline.latency and told apart by the
+// stage tag, so ingestion, usage and alert service stages line up on one dashboard. Stages measured against a
+// reading's own timestamp include everything upstream of them, so the first stage whose latency jumps is the
+// bottleneck.
+@Component
+public class PipelineMetrics {
+
+    static final String LATENCY = "pipeline.latency";
+
+    private final Clock clock;
+    private final Timer received;
+    private final Timer stored;
+    private final Timer storeWrite;
+    private final Timer storeWriteFailed;
+    private final Timer alertPublish;
+    private final Timer alertPublishFailed;
+
+    @Autowired
+    public PipelineMetrics(MeterRegistry meterRegistry) {
+        this(meterRegistry, Clock.systemUTC());
+    }
+
+    PipelineMetrics(MeterRegistry meterRegistry, Clock clock) {
+        this.clock = clock;
+        this.received = sinceReading(meterRegistry, "usage.receive");
+        this.stored = sinceReading(meterRegistry, "usage.stored");
+        this.storeWrite = stage(meterRegistry, "usage.store-write", "success");
+        this.storeWriteFailed = stage(meterRegistry, "usage.store-write", "failure");
+        this.alertPublish = stage(meterRegistry, "usage.alert-publish", "success");
+        this.alertPublishFailed = stage(meterRegistry, "usage.alert-publish", "failure");
+    }
+
+    // from the reading's timestamp to the consumer picking it up
+    public void received(Instant timestamp) {
+        recordSince(received, timestamp);
+    }
+
+    // from the reading's timestamp to its write to the store succeeding, retries included
+    public void stored(Instant timestamp) {
+        recordSince(stored, timestamp);
+    }
+
+    public void storeWrite(long startedNanos, boolean failed) {
+        (failed ? storeWriteFailed : storeWrite).record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // from handing the alert to the producer to the broker acknowledging it
+    public void alertPublished(long startedNanos, boolean failed) {
+        (failed ? alertPublishFailed : alertPublish).record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // device clocks run ahead at times; those readings would only pile up in the lowest bucket
+    private void recordSince(Timer timer, Instant timestamp) {
+        long millis = clock.millis() - timestamp.toEpochMilli();
+        if (millis >= 0) {
+            timer.record(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Timer sinceReading(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder(LATENCY)
+                .description("Time a reading or alert spends in the pipeline up to the end of a stage")
+                .tag("stage", stage)
+                .tag("outcome", "success")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofMinutes(15))
+                .register(meterRegistry);
+    }
+
+    private static Timer stage(MeterRegistry meterRegistry, String stage, String outcome) {
+        return Timer.builder(LATENCY)
+                .description("Time a reading or alert spends in the pipeline up to the end of a stage")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,105 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.dtos.QueryLane;
+import com.enerlytics.usages.dtos.TopCandidates;
+import com.enerlytics.usages.dtos.TopDimension;
+import com.enerlytics.usages.dtos.responses.TopUsageEntryResponse;
+import com.enerlytics.usages.dtos.responses.TopUsageResponse;
+import com.enerlytics.usages.stores.HeavyHitters;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TopUsageService {
+
+    private final HeavyHitters heavyHitters;
+    private final UsageService usageService;
+    private final DeviceDirectory deviceDirectory;
+
+    public TopUsageResponse getTop(TopDimension dimension, int hours, int n, boolean exact) {
+        if (n > heavyHitters.capacity()) {
+            throw new IllegalArgumentException("n must not exceed " + heavyHitters.capacity());
+        }
+        Instant now = Instant.now();
+        Instant start = now.minus(hours, ChronoUnit.HOURS);
+        if (!exact) {
+            return heavyHitters.top(dimension, start, now, n);
+        }
+
+        // only the keys the summaries can't rule out are totalled exactly, each through the regular per-user query
+        // path, which serves the recent hours from the hot tier
+        TopCandidates candidates = heavyHitters.candidates(dimension, start, now, n);
+        LongDoubleHashMap totals = new LongDoubleHashMap();
+        boolean resolved =
+                dimension == TopDimension.USER ? sumUsers(candidates, totals) : sumDevices(candidates, totals);
+
+        List<TopUsageEntryResponse> entries = new ArrayList<>(totals.size());
+        totals.forEach((id, energy) -> entries.add(new TopUsageEntryResponse(id, energy, energy)));
+        entries.sort(Comparator.comparingDouble(TopUsageEntryResponse::energyConsumed)
+                .reversed());
+        return new TopUsageResponse(
+                dimension.param(),
+                candidates.start(),
+                now,
+                true,
+                candidates.complete() && resolved,
+                entries.subList(0, Math.min(n, entries.size())));
+    }
+
+    private boolean sumUsers(TopCandidates candidates, LongDoubleHashMap totals) {
+        boolean resolved = true;
+        for (Long userId : candidates.ids()) {
+            try {
+                LongDoubleHashMap devices = usageService.sumUserByDevice(
+                        userId, candidates.start(), candidates.stop(), QueryLane.INTERACTIVE);
+                devices.forEach((deviceId, energy) -> totals.add(userId, energy));
+            } catch (Exception e) {
+                log.warn("Failed to total usage of user {}: {}", userId, e.getMessage());
+                resolved = false;
+            }
+        }
+        return resolved;
+    }
+
+    // devices are totalled through their owner's query, once per owner
+    private boolean sumDevices(TopCandidates candidates, LongDoubleHashMap totals) {
+        boolean resolved = true;
+        Map<Long, List<Long>> devicesByOwner = new HashMap<>();
+        for (Long deviceId : candidates.ids()) {
+            try {
+                Long owner = deviceDirectory.getOwner(deviceId);
+                if (owner == null) {
+                    resolved = false;
+                    continue;
+                }
+                devicesByOwner.computeIfAbsent(owner, key -> new ArrayList<>()).add(deviceId);
+            } catch (Exception e) {
+                log.warn("Failed to resolve owner for device {}: {}", deviceId, e.getMessage());
+                resolved = false;
+            }
+        }
+
+        for (Map.Entry<Long, List<Long>> owner : devicesByOwner.entrySet()) {
+            try {
+                LongDoubleHashMap devices = usageService.sumUserByDevice(
+                        owner.getKey(), candidates.start(), candidates.stop(), QueryLane.INTERACTIVE);
+                owner.getValue().forEach(deviceId -> totals.put(deviceId, devices.get(deviceId, 0.0)));
+            } catch (Exception e) {
+                log.warn("Failed to total usage of user {}: {}", owner.getKey(), e.getMessage());
+                resolved = false;
+            }
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,93 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.dtos.UsageCaller;
+import com.enerlytics.usages.exceptions.QueryRejectedException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Decides whether a planned usage query runs inline or as an async job, and enforces per-caller concurrency budgets
+// for the inline ones. Internal services that name themselves get a larger budget of their own instead of sharing
+// one with everything else behind their address; an unknown name counts as the address, so a client can at most
+// borrow a configured service's budget, never mint new ones.
+@Slf4j
+@Service
+public class UsageAdmissionService {
+
+    private final long interactiveMaxCost;
+    private final int perCallerConcurrency;
+    private final Set<String> services;
+    private final int perServiceConcurrency;
+    private final Duration retryAfter;
+    private final Cache<UsageCaller, Semaphore> callerPermits;
+
+    private final Counter interactive;
+    private final Counter async;
+    private final Counter rejected;
+
+    public UsageAdmissionService(
+            MeterRegistry meterRegistry,
+            @Value("${usage.admission.interactive-max-cost}") long interactiveMaxCost,
+            @Value("${usage.admission.per-caller-concurrency}") int perCallerConcurrency,
+            @Value("${usage.admission.services}") Set<String> services,
+            @Value("${usage.admission.per-service-concurrency}") int perServiceConcurrency,
+            @Value("${usage.admission.retry-after}") Duration retryAfter) {
+        this.interactiveMaxCost = interactiveMaxCost;
+        this.perCallerConcurrency = perCallerConcurrency;
+        this.services = Set.copyOf(services);
+        this.perServiceConcurrency = perServiceConcurrency;
+        this.retryAfter = retryAfter;
+        this.callerPermits =
+                Caffeine.newBuilder().expireAfterAccess(Duration.ofMinutes(10)).build();
+
+        this.interactive = decisions(meterRegistry, "interactive");
+        this.async = decisions(meterRegistry, "async");
+        this.rejected = decisions(meterRegistry, "rejected");
+    }
+
+    public UsageCaller callerOf(String serviceId, String address) {
+        return serviceId != null && services.contains(serviceId)
+                ? new UsageCaller(serviceId, true)
+                : new UsageCaller(address, false);
+    }
+
+    public boolean isInteractive(long estimatedCost) {
+        return estimatedCost <= interactiveMaxCost;
+    }
+
+    public void recordAsync() {
+        async.increment();
+    }
+
+    public Permit acquireInteractive(UsageCaller caller) {
+        int concurrency = caller.service() ? perServiceConcurrency : perCallerConcurrency;
+        Semaphore permits = callerPermits.get(caller, key -> new Semaphore(concurrency));
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            log.info("Rejected usage query from {}: {} concurrent queries in flight", caller, concurrency);
+            throw new QueryRejectedException("Too many concurrent usage queries for caller " + caller, retryAfter);
+        }
+        interactive.increment();
+        return permits::release;
+    }
+
+    @FunctionalInterface
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static Counter decisions(MeterRegistry meterRegistry, String decision) {
+        return Counter.builder("usage.admission.decisions")
+                .description("Usage query admission decisions")
+                .tag("decision", decision)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,157 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.dtos.QueryLane;
+import com.enerlytics.usages.dtos.UsageCaller;
+import com.enerlytics.usages.dtos.UsageJobStatus;
+import com.enerlytics.usages.dtos.UsageQueryPlan;
+import com.enerlytics.usages.dtos.UsageSeriesPlan;
+import com.enerlytics.usages.dtos.responses.UsageJobResponse;
+import com.enerlytics.usages.dtos.responses.UsageJobResult;
+import com.enerlytics.usages.exceptions.QueryRejectedException;
+import com.enerlytics.usages.exceptions.ResourceNotFoundException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Runs expensive usage and series queries in the background on the analytical lane; results are kept for polling
+// until they expire.
+@Slf4j
+@Service
+public class UsageJobService {
+
+    private final UsageService usageService;
+    private final UsageSeriesService seriesService;
+    private final UsageAdmissionService admissionService;
+    private final Cache<String, UsageJobResponse> jobs;
+    private final Semaphore running;
+    private final int perCallerJobs;
+    private final int perServiceJobs;
+    private final Duration retryAfter;
+    // callers with jobs queued or running; an entry is removed when its count drops to zero
+    private final ConcurrentMap<UsageCaller, Integer> outstandingByCaller = new ConcurrentHashMap<>();
+
+    public UsageJobService(
+            UsageService usageService,
+            UsageSeriesService seriesService,
+            UsageAdmissionService admissionService,
+            @Value("${usage.jobs.concurrency}") int concurrency,
+            @Value("${usage.jobs.per-caller}") int perCallerJobs,
+            @Value("${usage.jobs.per-service}") int perServiceJobs,
+            @Value("${usage.jobs.ttl}") Duration ttl,
+            @Value("${usage.jobs.max-retained}") long maxRetained,
+            @Value("${usage.admission.retry-after}") Duration retryAfter) {
+        this.usageService = usageService;
+        this.seriesService = seriesService;
+        this.admissionService = admissionService;
+        this.running = new Semaphore(Math.max(1, concurrency));
+        this.perCallerJobs = perCallerJobs;
+        this.perServiceJobs = perServiceJobs;
+        this.retryAfter = retryAfter;
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxRetained)
+                .build();
+    }
+
+    public UsageJobResponse submit(UsageCaller caller, UsageQueryPlan plan) {
+        return submit(
+                caller,
+                plan.userId(),
+                plan.days(),
+                plan.estimatedCost(),
+                lane -> usageService.executeUsageQuery(plan, lane));
+    }
+
+    public UsageJobResponse submit(UsageCaller caller, UsageSeriesPlan plan) {
+        return submit(
+                caller,
+                plan.userId(),
+                plan.days(),
+                plan.estimatedCost(),
+                lane -> seriesService.executeSeries(plan, lane));
+    }
+
+    private UsageJobResponse submit(
+            UsageCaller caller, Long userId, int days, long estimatedCost, Function<QueryLane, UsageJobResult> query) {
+        if (!reserve(caller)) {
+            throw new QueryRejectedException("Too many pending usage jobs for caller " + caller, retryAfter);
+        }
+
+        UsageJobResponse job = new UsageJobResponse(
+                UUID.randomUUID().toString(),
+                userId,
+                days,
+                estimatedCost,
+                UsageJobStatus.QUEUED,
+                Instant.now(),
+                null,
+                null,
+                null);
+        jobs.put(job.id(), job);
+        admissionService.recordAsync();
+        log.info(
+                "Queued usage job {} for user {} over {} days (estimated cost {})",
+                job.id(),
+                userId,
+                days,
+                estimatedCost);
+
+        Thread.ofVirtual().name("usage-job-" + job.id()).start(() -> run(job, query, caller));
+        return job;
+    }
+
+    public UsageJobResponse getJob(String id) {
+        UsageJobResponse job = jobs.getIfPresent(id);
+        if (job == null) {
+            throw new ResourceNotFoundException("Usage job not found: " + id);
+        }
+        return job;
+    }
+
+    private void run(UsageJobResponse job, Function<QueryLane, UsageJobResult> query, UsageCaller caller) {
+        try {
+            running.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            jobs.put(job.id(), job.failed("Interrupted while queued"));
+            release(caller);
+            return;
+        }
+
+        try {
+            jobs.put(job.id(), job.withStatus(UsageJobStatus.RUNNING));
+            jobs.put(job.id(), job.succeeded(query.apply(QueryLane.ANALYTICAL)));
+            log.info("Completed usage job {}", job.id());
+        } catch (Exception e) {
+            log.error("Usage job {} failed: {}", job.id(), e.getMessage());
+            jobs.put(job.id(), job.failed(e.getMessage()));
+        } finally {
+            running.release();
+            release(caller);
+        }
+    }
+
+    private boolean reserve(UsageCaller caller) {
+        int limit = caller.service() ? perServiceJobs : perCallerJobs;
+        boolean[] reserved = new boolean[1];
+        outstandingByCaller.compute(caller, (key, outstanding) -> {
+            int current = outstanding == null ? 0 : outstanding;
+            reserved[0] = current < limit;
+            return reserved[0] ? current + 1 : outstanding;
+        });
+        return reserved[0];
+    }
+
+    private void release(UsageCaller caller) {
+        outstandingByCaller.computeIfPresent(caller, (key, outstanding) -> outstanding > 1 ? outstanding - 1 : null);
+    }
+}
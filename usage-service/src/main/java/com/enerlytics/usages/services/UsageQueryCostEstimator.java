@@ -0,0 +1,41 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.dtos.QuerySegment;
+import com.enerlytics.usages.dtos.Resolution;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Estimates how many stored points a planned query scans: devices x range / point spacing of each segment's source.
+@Component
+public class UsageQueryCostEstimator {
+
+    private final long rawPointIntervalMillis;
+
+    public UsageQueryCostEstimator(@Value("${usage.admission.raw-point-interval}") Duration rawPointInterval) {
+        this.rawPointIntervalMillis = Math.max(1, rawPointInterval.toMillis());
+    }
+
+    public long estimate(int devices, List<QuerySegment> segments) {
+        long pointsPerDevice = 0;
+        for (QuerySegment segment : segments) {
+            long rangeMillis = Duration.between(segment.start(), segment.stop()).toMillis();
+            long stepMillis = stepMillis(segment.resolution());
+            pointsPerDevice += (rangeMillis + stepMillis - 1) / stepMillis;
+        }
+        try {
+            return Math.multiplyExact(devices, pointsPerDevice);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private long stepMillis(Resolution resolution) {
+        return switch (resolution) {
+            case RAW -> rawPointIntervalMillis;
+            case HOURLY -> Duration.ofHours(1).toMillis();
+            case DAILY -> Duration.ofDays(1).toMillis();
+        };
+    }
+}
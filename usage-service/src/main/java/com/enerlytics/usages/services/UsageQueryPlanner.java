@@ -0,0 +1,113 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.dtos.QuerySegment;
+import com.enerlytics.usages.dtos.Resolution;
+import com.enerlytics.usages.stores.RollupWatermark;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class UsageQueryPlanner {
+
+    private final RollupWatermark rollupWatermark;
+
+    @Value("${influx.rollups.enabled}")
+    private boolean rollupsEnabled;
+
+    @Value("${influx.rollups.settle-delay}")
+    private Duration settleDelay;
+
+    @Value("${usage.archive.enabled}")
+    private boolean archiveEnabled;
+
+    @Value("${usage.archive.read-after}")
+    private Duration archiveReadAfter;
+
+    public List<QuerySegment> plan(Instant start, Instant stop, Instant now) {
+        if (!start.isBefore(stop)) {
+            return List.of();
+        }
+        List<QuerySegment> segments = segments(start, stop, now);
+        // the archive only answers segments ending before its read-after point, so one reaching past it is split at
+        // the day boundary there and its settled part is served from the archive
+        return archiveEnabled ? splitAt(segments, floor(now.minus(archiveReadAfter), ChronoUnit.DAYS)) : segments;
+    }
+
+    private List<QuerySegment> segments(Instant start, Instant stop, Instant now) {
+        // rollup tasks run with an offset, so only trust them up to the settle point
+        Instant settled = now.minus(settleDelay);
+        Instant hourlyStart = ceil(start, ChronoUnit.HOURS);
+        Instant hourlyEnd = floor(stop.isBefore(settled) ? stop : settled, ChronoUnit.HOURS);
+
+        if (!hourlyStart.isBefore(hourlyEnd)) {
+            return List.of(new QuerySegment(Resolution.RAW, start, stop));
+        }
+
+        // without rollups the aligned segments still read raw data, which keeps them cacheable once settled
+        Resolution hourly = rollupsEnabled ? Resolution.HOURLY : Resolution.RAW;
+        Resolution daily = rollupsEnabled ? Resolution.DAILY : Resolution.RAW;
+        // rollups before the watermark may be missing windows, so those aligned segments read raw data instead
+        Instant rollupsFrom = rollupWatermark.validFrom().orElse(Instant.MAX);
+
+        List<QuerySegment> segments = new ArrayList<>();
+        add(segments, Resolution.RAW, start, hourlyStart, rollupsFrom);
+
+        Instant dailyStart = ceil(hourlyStart, ChronoUnit.DAYS);
+        Instant dailyEnd = floor(hourlyEnd, ChronoUnit.DAYS);
+        if (dailyStart.isBefore(dailyEnd)) {
+            add(segments, hourly, hourlyStart, dailyStart, rollupsFrom);
+            add(segments, daily, dailyStart, dailyEnd, rollupsFrom);
+            add(segments, hourly, dailyEnd, hourlyEnd, rollupsFrom);
+        } else {
+            add(segments, hourly, hourlyStart, hourlyEnd, rollupsFrom);
+        }
+
+        add(segments, Resolution.RAW, hourlyEnd, stop, rollupsFrom);
+        return segments;
+    }
+
+    private static List<QuerySegment> splitAt(List<QuerySegment> segments, Instant boundary) {
+        List<QuerySegment> split = new ArrayList<>(segments.size() + 1);
+        for (QuerySegment segment : segments) {
+            if (segment.start().isBefore(boundary) && boundary.isBefore(segment.stop())) {
+                split.add(new QuerySegment(segment.resolution(), segment.start(), boundary));
+                split.add(new QuerySegment(segment.resolution(), boundary, segment.stop()));
+            } else {
+                split.add(segment);
+            }
+        }
+        return split;
+    }
+
+    private static void add(
+            List<QuerySegment> segments, Resolution resolution, Instant start, Instant stop, Instant rollupsFrom) {
+        if (!start.isBefore(stop)) {
+            return;
+        }
+        if (resolution != Resolution.RAW && start.isBefore(rollupsFrom)) {
+            Instant split = stop.isBefore(rollupsFrom) ? stop : rollupsFrom;
+            segments.add(new QuerySegment(Resolution.RAW, start, split));
+            if (split.isBefore(stop)) {
+                segments.add(new QuerySegment(resolution, split, stop));
+            }
+            return;
+        }
+        segments.add(new QuerySegment(resolution, start, stop));
+    }
+
+    private static Instant floor(Instant instant, ChronoUnit unit) {
+        return instant.truncatedTo(unit);
+    }
+
+    private static Instant ceil(Instant instant, ChronoUnit unit) {
+        Instant floored = instant.truncatedTo(unit);
+        return floored.equals(instant) ? floored : floored.plus(1, unit);
+    }
+}
@@ -0,0 +1,100 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.dtos.QuerySegment;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Caches per-segment usage sums once a segment has settled: raw data once flow-control retries of its readings are
+// over, rollups once their task's lookback has passed as well, so no rollup rerun rewrites them afterwards. A reading
+// stored for a time before the raw settle point (a dead-letter replay, or one held up by a long consumer pause) moves
+// its owner's scope to a new generation, so that user's segments are recomputed. Entries also expire after ttl, which
+// bounds how long anything invalidation misses is served.
+@Component
+public class UsageResultCache {
+
+    private final Cache<SegmentKey, LongDoubleHashMap> cache;
+    // scope -> generation, bumped by late readings; kept as long as entries, so an expired generation only ever
+    // forgets entries that have expired too
+    private final Cache<String, Long> generations;
+    private final boolean enabled;
+    private final Duration rawSettle;
+    private final Duration hourlySettle;
+    private final Duration dailySettle;
+    private final Counter lateReadings;
+
+    public UsageResultCache(
+            MeterRegistry meterRegistry,
+            @Value("${usage.cache.enabled}") boolean enabled,
+            @Value("${usage.cache.max-weight}") long maxWeight,
+            @Value("${usage.cache.ttl}") Duration ttl,
+            @Value("${usage.cache.settle.raw}") Duration rawSettle,
+            @Value("${usage.cache.settle.hourly}") Duration hourlySettle,
+            @Value("${usage.cache.settle.daily}") Duration dailySettle) {
+        this.enabled = enabled;
+        this.rawSettle = rawSettle;
+        this.hourlySettle = hourlySettle;
+        this.dailySettle = dailySettle;
+        // weighted by the number of device sums held, so a few large fleets cannot crowd out everything else
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .<SegmentKey, LongDoubleHashMap>weigher((key, value) -> value.size() + 1)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.generations = Caffeine.newBuilder().expireAfterWrite(ttl).build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "usage.results");
+        this.lateReadings = Counter.builder("usage.cache.late-readings")
+                .description("Readings stored for an already settled time, invalidating their owner's cached segments")
+                .register(meterRegistry);
+    }
+
+    public static String userScope(Long userId) {
+        return "user:" + userId;
+    }
+
+    // cached maps are shared between callers and must be treated as read-only
+    public LongDoubleHashMap get(
+            String scope, QuerySegment segment, Instant now, Function<QuerySegment, LongDoubleHashMap> loader) {
+        // only settled segments are immutable; the open head is always recomputed
+        if (!enabled || segment.stop().isAfter(now.minus(settleDelayOf(segment)))) {
+            return loader.apply(segment);
+        }
+        long generation = generations.asMap().getOrDefault(scope, 0L);
+        return cache.get(new SegmentKey(scope, generation, segment), key -> loader.apply(segment));
+    }
+
+    // called for every reading once it is in the store
+    public void stored(UsageReading reading) {
+        if (!enabled
+                || reading.userId() == null
+                || !reading.timestamp().isBefore(Instant.now().minus(rawSettle))) {
+            return;
+        }
+        lateReadings.increment();
+        generations.asMap().merge(userScope(reading.userId()), 1L, Long::sum);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private Duration settleDelayOf(QuerySegment segment) {
+        return switch (segment.resolution()) {
+            case RAW -> rawSettle;
+            case HOURLY -> hourlySettle;
+            case DAILY -> dailySettle;
+        };
+    }
+
+    private record SegmentKey(String scope, long generation, QuerySegment segment) {}
+}
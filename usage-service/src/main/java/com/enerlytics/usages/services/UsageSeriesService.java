@@ -0,0 +1,177 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.dtos.QueryLane;
+import com.enerlytics.usages.dtos.QuerySegment;
+import com.enerlytics.usages.dtos.Resolution;
+import com.enerlytics.usages.dtos.UsageBucket;
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.dtos.UsageSeriesPlan;
+import com.enerlytics.usages.dtos.responses.SeriesResponse;
+import com.enerlytics.usages.dtos.responses.UsageSeriesResponse;
+import com.enerlytics.usages.stores.HotUsageTier;
+import com.enerlytics.usages.stores.UsageArchive;
+import com.enerlytics.usages.stores.UsageStore;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import com.enerlytics.usages.utils.Lttb;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UsageSeriesService {
+
+    private final UsageStore usageStore;
+    private final HotUsageTier hotTier;
+    private final UsageArchive archive;
+    private final DeviceDirectory deviceDirectory;
+    private final UsageQueryPlanner queryPlanner;
+    private final UsageQueryCostEstimator costEstimator;
+    private final ParallelUsageScanner usageScanner;
+
+    @Value("${usage.series.min-every}")
+    private Duration minEvery;
+
+    @Value("${usage.series.max-buckets}")
+    private long maxBuckets;
+
+    public UsageSeriesPlan planSeries(
+            Long userId, int days, Duration every, Long deviceId, boolean perUser, Integer points) {
+        if (every.compareTo(minEvery) < 0) {
+            throw new IllegalArgumentException("Bucket width must be at least " + minEvery);
+        }
+        if (points != null && points < 3) {
+            throw new IllegalArgumentException("Target point count must be at least 3");
+        }
+
+        Instant now = Instant.now();
+        long everyMillis = every.toMillis();
+        // buckets are aligned to the epoch, as aggregateWindow does, so partial buckets at segment edges line up
+        Instant start = Instant.ofEpochMilli(
+                Math.floorDiv(now.minus(days, ChronoUnit.DAYS).toEpochMilli(), everyMillis) * everyMillis);
+        long buckets = (now.toEpochMilli() - start.toEpochMilli() + everyMillis - 1) / everyMillis;
+        if (buckets > maxBuckets) {
+            throw new IllegalArgumentException(
+                    "Series of " + buckets + " buckets exceeds the limit of " + maxBuckets + "; use a wider bucket");
+        }
+
+        // the hot tier only answers a user's query when it covers every device of that user
+        List<Long> deviceIds;
+        try {
+            deviceIds = UsageService.deviceIds(deviceDirectory.getDevicesForUser(userId));
+        } catch (Exception e) {
+            log.warn("Failed to fetch devices for user {}: {}", userId, e.getMessage());
+            deviceIds = null;
+        }
+
+        Resolution finest = finestResolutionFor(every);
+        List<QuerySegment> segments = new ArrayList<>();
+        for (QuerySegment segment : queryPlanner.plan(start, now, now)) {
+            // rollups coarser than the bucket width cannot be split, so such segments read a finer source
+            Resolution resolution = segment.resolution().compareTo(finest) > 0 ? finest : segment.resolution();
+            segments.add(new QuerySegment(resolution, segment.start(), segment.stop()));
+        }
+        // the store filters on the owner, not the device, so every device of the user is scanned either way
+        int devices = deviceIds == null ? 1 : Math.max(1, deviceIds.size());
+        return new UsageSeriesPlan(
+                userId,
+                days,
+                every,
+                deviceId,
+                perUser,
+                points,
+                deviceIds,
+                start,
+                now,
+                segments,
+                costEstimator.estimate(devices, segments));
+    }
+
+    public UsageSeriesResponse executeSeries(UsageSeriesPlan plan, QueryLane lane) {
+        Long userId = plan.userId();
+        long everyMillis = plan.every().toMillis();
+        Map<Long, LongDoubleHashMap> bucketsByDevice = new TreeMap<>();
+        for (QuerySegment segment : plan.segments()) {
+            UsageQuery query = new UsageQuery(segment.resolution(), segment.start(), segment.stop(), userId);
+            List<UsageBucket> buckets =
+                    usageScanner.window(lane, query, chunk -> window(chunk, plan.deviceIds(), plan.every()));
+            for (UsageBucket bucket : buckets) {
+                if (plan.deviceId() != null && !plan.deviceId().equals(bucket.deviceId())) {
+                    continue;
+                }
+                // a window cut by a segment or chunk start is stamped with that start rather than the window's own
+                long bucketStart = Math.floorDiv(bucket.start().toEpochMilli(), everyMillis) * everyMillis;
+                long key = plan.perUser() ? 0L : bucket.deviceId();
+                bucketsByDevice
+                        .computeIfAbsent(key, k -> new LongDoubleHashMap())
+                        .add(bucketStart, bucket.energyConsumed());
+            }
+        }
+
+        List<SeriesResponse> series = new ArrayList<>(bucketsByDevice.size());
+        boolean downsampled = false;
+        for (Map.Entry<Long, LongDoubleHashMap> entry : bucketsByDevice.entrySet()) {
+            SeriesResponse response = toSeries(plan.perUser() ? null : entry.getKey(), entry.getValue(), plan.points());
+            downsampled |= response.timestamps().length < entry.getValue().size();
+            series.add(response);
+        }
+
+        log.debug(
+                "Built {} usage series for user {} over {} days in {} buckets",
+                series.size(),
+                userId,
+                plan.days(),
+                plan.every());
+        return new UsageSeriesResponse(
+                userId, plan.start(), plan.now(), plan.every().toSeconds(), downsampled, series);
+    }
+
+    // the same tiers as total queries: recent ranges from the hot tier when it saw every point in them, aged ranges
+    // from the raw points in the archive, which keeps buckets past the store's raw retention
+    private List<UsageBucket> window(UsageQuery query, List<Long> deviceIds, Duration every) {
+        return hotTier.window(query, deviceIds, every)
+                .or(() -> archive.window(query, every))
+                .orElseGet(() -> usageStore.window(query, every));
+    }
+
+    private static SeriesResponse toSeries(Long deviceId, LongDoubleHashMap buckets, Integer points) {
+        long[] timestamps = buckets.keys();
+        Arrays.sort(timestamps);
+        double[] values = new double[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            values[i] = buckets.get(timestamps[i], 0.0);
+        }
+        if (points == null || points >= timestamps.length) {
+            return new SeriesResponse(deviceId, timestamps, values);
+        }
+
+        int[] selected = Lttb.select(timestamps, values, timestamps.length, points);
+        long[] sampledTimestamps = new long[selected.length];
+        double[] sampledValues = new double[selected.length];
+        for (int i = 0; i < selected.length; i++) {
+            sampledTimestamps[i] = timestamps[selected[i]];
+            sampledValues[i] = values[selected[i]];
+        }
+        return new SeriesResponse(deviceId, sampledTimestamps, sampledValues);
+    }
+
+    private static Resolution finestResolutionFor(Duration every) {
+        if (every.toMillis() % Duration.ofDays(1).toMillis() == 0) {
+            return Resolution.DAILY;
+        }
+        if (every.toMillis() % Duration.ofHours(1).toMillis() == 0) {
+            return Resolution.HOURLY;
+        }
+        return Resolution.RAW;
+    }
+}
@@ -1,20 +1,31 @@
 package com.enerlytics.usages.services;
 
 import com.enerlytics.events.AlertingEvent;
+import com.enerlytics.events.EnergyUsageBatchEvent;
 import com.enerlytics.events.EnergyUsageEvent;
-import com.enerlytics.usages.clients.DeviceClient;
 import com.enerlytics.usages.clients.UserClient;
 import com.enerlytics.usages.dtos.DeviceEnergy;
+import com.enerlytics.usages.dtos.QueryLane;
+import com.enerlytics.usages.dtos.QuerySegment;
+import com.enerlytics.usages.dtos.Resolution;
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.dtos.UsageQueryPlan;
+import com.enerlytics.usages.dtos.UsageReading;
 import com.enerlytics.usages.dtos.external.DeviceServiceResponse;
 import com.enerlytics.usages.dtos.external.UserServiceResponse;
 import com.enerlytics.usages.dtos.responses.DeviceUsageResponse;
 import com.enerlytics.usages.dtos.responses.UsageResponse;
-import com.influxdb.client.InfluxDBClient;
-import com.influxdb.client.QueryApi;
-import com.influxdb.client.domain.WritePrecision;
-import com.influxdb.client.write.Point;
-import com.influxdb.query.FluxRecord;
-import com.influxdb.query.FluxTable;
+import com.enerlytics.usages.profiling.EnergyUsageProcessedEvent;
+import com.enerlytics.usages.profiling.ThresholdCheckEvent;
+import com.enerlytics.usages.stores.FleetRollups;
+import com.enerlytics.usages.stores.HeavyHitters;
+import com.enerlytics.usages.stores.HotUsageTier;
+import com.enerlytics.usages.stores.UsageArchive;
+import com.enerlytics.usages.stores.UsageSketches;
+import com.enerlytics.usages.stores.UsageStore;
+import com.enerlytics.usages.utils.KeyOrderedExecutor;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -25,9 +36,12 @@ import java.util.Objects;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
@@ -36,86 +50,192 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class UsageService {
 
-    private final InfluxDBClient influxDBClient;
-    private final DeviceClient deviceClient;
+    private final UsageStore usageStore;
+    private final HotUsageTier hotTier;
+    private final UsageArchive archive;
+    private final FleetRollups fleetRollups;
+    private final HeavyHitters heavyHitters;
+    private final UsageSketches usageSketches;
+    private final AnomalyDetectionService anomalyDetection;
+    private final PartitionOwnership partitionOwnership;
+    private final DeviceDirectory deviceDirectory;
     private final UserClient userClient;
     private final KafkaTemplate<String, AlertingEvent> kafkaTemplate;
+    private final UsageQueryPlanner queryPlanner;
+    private final UsageResultCache resultCache;
+    private final ParallelUsageScanner usageScanner;
+    private final UsageQueryCostEstimator costEstimator;
+    private final UsageStreamService streamService;
+    private final KeyOrderedExecutor usageWorkers;
+    private final UsageWriteFlowControl writeFlowControl;
+    private final PipelineMetrics pipelineMetrics;
+    private final DeadLetterPublishingRecoverer deadLetterRecoverer;
+
+    @Value("${usage.cache.window-alignment}")
+    private Duration windowAlignment;
+
+    @Value("${usage.consumer.parallel}")
+    private boolean parallelConsumer;
+
+    // Records fan out to per-device ordered workers and are acknowledged once stored; with async acks the container
+    // commits each partition only up to its lowest contiguous acknowledged offset. A record is either one reading or a
+    // batch envelope of one device's readings, which is written to the store in one go.
+    @KafkaListener(id = UsageWriteFlowControl.LISTENER_ID, topics = "energy-usage", groupId = "usage-service")
+    public void onEnergyUsage(ConsumerRecord<String, Object> record, Acknowledgment ack) throws InterruptedException {
+        Object payload = record.value();
+        List<EnergyUsageEvent> events =
+                switch (payload) {
+                    case EnergyUsageEvent event -> List.of(event);
+                    case EnergyUsageBatchEvent batch
+                    when batch.deviceId() != null && batch.readings() != null -> batch.toEvents();
+                    default -> throw new IllegalArgumentException("Malformed energy usage record: " + payload);
+                };
+        // rejected before a worker or the retry buffer could hold on to it; the error handler dead-letters it
+        if (events.isEmpty() || !events.stream().allMatch(UsageService::isWellFormed)) {
+            throw new IllegalArgumentException("Malformed energy usage record: " + payload);
+        }
+        events.forEach(event -> pipelineMetrics.received(event.timestamp()));
+        long deviceId = events.getFirst().deviceId();
+        if (!parallelConsumer) {
+            processEnergyUsage(deviceId, events, ack::acknowledge);
+            return;
+        }
+        usageWorkers.submit(deviceId, () -> {
+            try {
+                processEnergyUsage(deviceId, events, ack::acknowledge);
+            } catch (RuntimeException e) {
+                // failed before flow control took the readings, so nothing would ever acknowledge the record and
+                // its partition could never commit past it; the error handler is out of reach on a worker thread
+                deadLetter(record, ack, e);
+            }
+        });
+    }
 
-    @Value("${influx.bucket}")
-    private String dbBucket;
+    private void deadLetter(ConsumerRecord<String, Object> record, Acknowledgment ack, RuntimeException cause) {
+        log.error(
+                "Failed to process record {}-{}@{}, dead-lettering it: {}",
+                record.topic(),
+                record.partition(),
+                record.offset(),
+                cause.getMessage());
+        try {
+            deadLetterRecoverer.accept(record, cause);
+        } catch (Exception e) {
+            // left unacknowledged, so a restart replays it rather than the offset moving past it
+            log.error(
+                    "Failed to dead-letter record {}-{}@{}: {}",
+                    record.topic(),
+                    record.partition(),
+                    record.offset(),
+                    e.getMessage());
+            return;
+        }
+        ack.acknowledge();
+    }
 
-    @Value("${influx.org}")
-    private String dbOrg;
+    public void processEnergyUsage(long deviceId, List<EnergyUsageEvent> events, Runnable onStored) {
+        EnergyUsageProcessedEvent profile = new EnergyUsageProcessedEvent();
+        profile.begin();
+        try {
+            recordEnergyUsage(deviceId, events, onStored);
+        } finally {
+            profile.deviceId = deviceId;
+            profile.readings = events.size();
+            profile.commit();
+        }
+    }
 
-    @KafkaListener(topics = "energy-usage", groupId = "usage-service")
-    public void processEnergyUsage(EnergyUsageEvent event) {
-        log.debug("Processing energy usage event for device: {}", event.deviceId());
+    private void recordEnergyUsage(long deviceId, List<EnergyUsageEvent> events, Runnable onStored) {
+        log.debug("Processing {} energy usage readings for device: {}", events.size(), deviceId);
 
-        Point point = Point.measurement("energy_usage")
-                .addTag("deviceId", event.deviceId().toString())
-                .addField("energyConsumed", event.energyConsumed())
-                .time(event.timestamp(), WritePrecision.MS);
+        DeviceServiceResponse device = null;
+        try {
+            device = deviceDirectory.getDevice(deviceId);
+        } catch (Exception e) {
+            log.warn("Failed to resolve owner for device {}: {}", deviceId, e.getMessage());
+        }
 
+        Long userId = device == null ? null : device.userId();
+        List<UsageReading> readings = events.stream()
+                .map(event -> new UsageReading(deviceId, userId, event.timestamp(), event.energyConsumed()))
+                .toList();
+        // a failed write or owner lookup is retried by flow control, so in-memory views still take the readings now and
+        // in order
+        writeFlowControl.write(readings, onStored);
         try {
-            influxDBClient.getWriteApiBlocking().writePoint(dbBucket, dbOrg, point);
-            log.trace("Successfully recorded energy usage for device: {}", event.deviceId());
+            for (UsageReading reading : readings) {
+                hotTier.append(reading);
+                fleetRollups.record(reading, device);
+                heavyHitters.record(reading);
+                usageSketches.record(reading, device);
+                anomalyDetection.inspect(reading);
+                streamService.publish(reading);
+            }
+            log.trace("Successfully recorded energy usage for device: {}", deviceId);
         } catch (Exception e) {
-            log.error("Failed to write energy usage to InfluxDB for device {}: {}", event.deviceId(), e.getMessage());
+            log.error("Failed to record energy usage for device {}: {}", deviceId, e.getMessage());
         }
     }
 
+    private static boolean isWellFormed(EnergyUsageEvent event) {
+        return event.deviceId() != null
+                && event.timestamp() != null
+                && event.energyConsumed() != null
+                && Double.isFinite(event.energyConsumed());
+    }
+
     @Scheduled(cron = "*/10 * * * * *")
     public void aggregateAndCheckThresholds() {
+        ThresholdCheckEvent profile = new ThresholdCheckEvent();
+        profile.begin();
+        try {
+            checkThresholds(profile);
+        } finally {
+            profile.commit();
+        }
+    }
+
+    private void checkThresholds(ThresholdCheckEvent profile) {
         log.info("Starting scheduled energy usage aggregation and threshold check");
         final Instant now = Instant.now();
         final Instant oneHourAgo = now.minus(1, ChronoUnit.HOURS);
 
-        String fluxQuery = String.format("""
-                from(bucket: "%s")
-                  |> range(start: time(v: "%s"), stop: time(v: "%s"))
-                  |> filter(fn: (r) => r["_measurement"] == "energy_usage")
-                  |> filter(fn: (r) => r["_field"] == "energyConsumed")
-                  |> group(columns: ["deviceId"])
-                  |> sum(column: "_value")
-                """, dbBucket, oneHourAgo.toString(), now);
-
-        QueryApi queryApi = influxDBClient.getQueryApi();
-        List<FluxTable> tables;
-        try {
-            tables = queryApi.query(fluxQuery, dbOrg);
-        } catch (Exception e) {
-            log.error("Failed to query InfluxDB for aggregation: {}", e.getMessage());
+        // each replica only evaluates the users hashed onto the partitions it consumes
+        int shardCount = partitionOwnership.shardCount();
+        int[] ownedShards = partitionOwnership.ownedShards();
+        profile.shards = ownedShards.length;
+        if (ownedShards.length == 0) {
+            log.info("No energy-usage partitions assigned, skipping threshold check");
             return;
         }
 
-        List<DeviceEnergy> deviceEnergies = new ArrayList<>();
-
-        for (FluxTable table : tables) {
-            for (FluxRecord record : table.getRecords()) {
-                String deviceIdStr = (String) record.getValueByKey("deviceId");
-                Double energyConsumed = record.getValueByKey("_value") instanceof Number
-                        ? ((Number) record.getValueByKey("_value")).doubleValue()
-                        : 0.0;
-
-                if (deviceIdStr != null) {
-                    deviceEnergies.add(DeviceEnergy.builder()
-                            .deviceId(Long.valueOf(deviceIdStr))
-                            .energyConsumed(energyConsumed)
-                            .build());
-                }
+        // straight from the store: the hot tier only covers the devices on this replica's partitions, which are not
+        // the devices of the users it owns
+        LongDoubleHashMap usageByDevice = new LongDoubleHashMap();
+        try {
+            UsageQuery query = new UsageQuery(Resolution.RAW, oneHourAgo, now, null);
+            for (int shard : ownedShards) {
+                usageByDevice.addAll(usageScanner.sumByDevice(
+                        QueryLane.INTERACTIVE, query.withUserShard(shardCount, shard), usageStore::sumByDevice));
             }
+        } catch (Exception e) {
+            log.error("Failed to query usage store for aggregation: {}", e.getMessage());
+            return;
         }
 
+        List<DeviceEnergy> deviceEnergies = toDeviceEnergies(usageByDevice);
+
         if (deviceEnergies.isEmpty()) {
             log.info("No energy usage data found for the last hour");
             return;
         }
 
-        log.info("Aggregated usage for {} devices", deviceEnergies.size());
+        log.info("Aggregated usage for {} devices in user shards {}", deviceEnergies.size(), ownedShards);
+        profile.devices = deviceEnergies.size();
 
         for (DeviceEnergy deviceEnergy : deviceEnergies) {
             try {
-                final DeviceServiceResponse deviceDetails = deviceClient.getDeviceById(deviceEnergy.getDeviceId());
+                final DeviceServiceResponse deviceDetails = deviceDirectory.getDevice(deviceEnergy.getDeviceId());
 
                 if (deviceDetails == null || deviceDetails.id() == null) {
                     log.warn("Device details not found for ID: {}", deviceEnergy.getDeviceId());
@@ -127,12 +247,12 @@ public class UsageService {
             }
         }
 
-        // remove devices with null userId
-        deviceEnergies.removeIf(deviceEnergy -> deviceEnergy.getUserId() == null);
+        // remove devices with null userId, and those whose owner changed to a user of another replica
+        deviceEnergies.removeIf(
+                deviceEnergy -> deviceEnergy.getUserId() == null || !partitionOwnership.owns(deviceEnergy.getUserId()));
 
         // Get user-device mapping and aggregate per user
-        Map<Long, List<DeviceEnergy>> userDeviceEnergyMap =
-                deviceEnergies.stream().collect(Collectors.groupingBy(DeviceEnergy::getUserId));
+        Map<Long, List<DeviceEnergy>> userDeviceEnergyMap = groupByUser(deviceEnergies);
 
         log.debug("Grouped usage by {} users", userDeviceEnergyMap.size());
 
@@ -161,107 +281,123 @@ public class UsageService {
             }
         }
 
+        profile.users = userThresholdMap.size();
+
         // Check thresholds against aggregated usage
-        for (final Long userId : userThresholdMap.keySet()) {
+        Map<Long, Double> exceeded = usersOverThreshold(userDeviceEnergyMap, userThresholdMap);
+        log.debug(
+                "{} of {} users within threshold", userThresholdMap.size() - exceeded.size(), userThresholdMap.size());
+        exceeded.forEach((userId, totalConsumption) -> {
             final Double threshold = userThresholdMap.get(userId);
-            final List<DeviceEnergy> devices = userDeviceEnergyMap.get(userId);
+            log.info(
+                    "THRESHOLD EXCEEDED: User {} consumed {} units (Threshold: {})",
+                    userId,
+                    totalConsumption,
+                    threshold);
+
+            final AlertingEvent alertingEvent = new AlertingEvent(
+                    userId,
+                    "Energy consumption threshold exceeded",
+                    threshold,
+                    totalConsumption,
+                    userEmailMap.get(userId));
+
+            profile.alerts++;
+            try {
+                long started = System.nanoTime();
+                kafkaTemplate.send("energy-alerts", alertingEvent).whenComplete((result, e) -> {
+                    pipelineMetrics.alertPublished(started, e != null);
+                    if (e != null) {
+                        log.error("Kafka rejected alerting event for user {}: {}", userId, e.getMessage());
+                    }
+                });
+                log.info("Sent alerting event to Kafka for user: {}", userId);
+            } catch (Exception e) {
+                log.error("Failed to send alerting event to Kafka for user {}: {}", userId, e.getMessage());
+            }
+        });
+        log.info("Finished energy usage aggregation and threshold check");
+    }
 
-            final Double totalConsumption = devices.stream()
+    // the steps of the threshold check that need no store or remote service, kept apart so the aggregation
+    // benchmarks in src/jmh measure this code rather than a copy of it
+    static List<DeviceEnergy> toDeviceEnergies(LongDoubleHashMap usageByDevice) {
+        List<DeviceEnergy> deviceEnergies = new ArrayList<>(usageByDevice.size());
+        usageByDevice.forEach((deviceId, energyConsumed) -> deviceEnergies.add(DeviceEnergy.builder()
+                .deviceId(deviceId)
+                .energyConsumed(energyConsumed)
+                .build()));
+        return deviceEnergies;
+    }
+
+    static Map<Long, List<DeviceEnergy>> groupByUser(List<DeviceEnergy> deviceEnergies) {
+        return deviceEnergies.stream().collect(Collectors.groupingBy(DeviceEnergy::getUserId));
+    }
+
+    // userId -> total consumption, for the users with a threshold whose devices consumed more than it
+    static Map<Long, Double> usersOverThreshold(
+            Map<Long, List<DeviceEnergy>> userDeviceEnergyMap, Map<Long, Double> userThresholdMap) {
+        Map<Long, Double> exceeded = new HashMap<>();
+        userThresholdMap.forEach((userId, threshold) -> {
+            List<DeviceEnergy> devices = userDeviceEnergyMap.get(userId);
+            if (devices == null || threshold == null) {
+                return;
+            }
+            double totalConsumption = devices.stream()
                     .mapToDouble(DeviceEnergy::getEnergyConsumed)
                     .sum();
-
             if (totalConsumption > threshold) {
-                log.info(
-                        "THRESHOLD EXCEEDED: User {} consumed {} units (Threshold: {})",
-                        userId,
-                        totalConsumption,
-                        threshold);
-
-                final AlertingEvent alertingEvent = new AlertingEvent(
-                        userId,
-                        "Energy consumption threshold exceeded",
-                        threshold,
-                        totalConsumption,
-                        userEmailMap.get(userId));
-
-                try {
-                    kafkaTemplate.send("energy-alerts", alertingEvent);
-                    log.info("Sent alerting event to Kafka for user: {}", userId);
-                } catch (Exception e) {
-                    log.error("Failed to send alerting event to Kafka for user {}: {}", userId, e.getMessage());
-                }
-            } else {
-                log.debug("User {} within threshold: {}/{}", userId, totalConsumption, threshold);
+                exceeded.put(userId, totalConsumption);
             }
-        }
-        log.info("Finished energy usage aggregation and threshold check");
+        });
+        return exceeded;
     }
 
-    public UsageResponse getUsageForUserOverDays(Long userId, int days) {
-        log.info("Fetching energy usage for user {} over the past {} days", userId, days);
-
+    public UsageQueryPlan planUsageQuery(Long userId, int days) {
         List<DeviceServiceResponse> deviceServiceResponses;
         try {
-            deviceServiceResponses = deviceClient.getAllDevicesForUser(userId);
+            deviceServiceResponses = deviceDirectory.getDevicesForUser(userId);
         } catch (Exception e) {
             log.error("Failed to fetch devices for user {}: {}", userId, e.getMessage());
-            return new UsageResponse(userId, List.of());
+            deviceServiceResponses = List.of();
         }
-
-        if (deviceServiceResponses == null || deviceServiceResponses.isEmpty()) {
-            log.info("No devices found for user {}", userId);
-            return new UsageResponse(userId, List.of());
+        if (deviceServiceResponses == null) {
+            deviceServiceResponses = List.of();
         }
 
-        List<String> deviceIdStrings = deviceServiceResponses.stream()
-                .map(DeviceServiceResponse::id)
-                .filter(Objects::nonNull)
-                .map(String::valueOf)
-                .toList();
-
         Instant now = Instant.now();
-        Instant start = now.minus(days, ChronoUnit.DAYS);
+        // align the window start so repeated queries resolve to the same cached segments
+        long alignmentMillis = windowAlignment.toMillis();
+        Instant start = Instant.ofEpochMilli(
+                Math.floorDiv(now.minus(days, ChronoUnit.DAYS).toEpochMilli(), alignmentMillis) * alignmentMillis);
+
+        List<QuerySegment> segments = deviceServiceResponses.isEmpty() ? List.of() : queryPlanner.plan(start, now, now);
+        return new UsageQueryPlan(
+                userId,
+                days,
+                deviceServiceResponses,
+                now,
+                segments,
+                costEstimator.estimate(deviceServiceResponses.size(), segments));
+    }
 
-        final String deviceFilter = deviceIdStrings.stream()
-                .map(idStr -> String.format("r[\"deviceId\"] == \"%s\"", idStr))
-                .collect(Collectors.joining(" or "));
+    public UsageResponse executeUsageQuery(UsageQueryPlan plan, QueryLane lane) {
+        final Long userId = plan.userId();
+        log.info("Fetching energy usage for user {} over the past {} days", userId, plan.days());
 
-        String fluxQuery = String.format("""
-                from(bucket: "%s")
-                  |> range(start: time(v: "%s"), stop: time(v: "%s"))
-                  |> filter(fn: (r) => r["_measurement"] == "energy_usage")
-                  |> filter(fn: (r) => r["_field"] == "energyConsumed")
-                  |> filter(fn: (r) => %s)
-                  |> group(columns: ["deviceId"])
-                  |> sum(column: "_value")
-                """, dbBucket, start.toString(), now, deviceFilter);
+        final List<DeviceServiceResponse> deviceServiceResponses = plan.devices();
+        if (deviceServiceResponses.isEmpty()) {
+            log.info("No devices found for user {}", userId);
+            return new UsageResponse(userId, List.of());
+        }
 
-        final Map<Long, Double> usageByDeviceMap = new HashMap<>();
+        final LongDoubleHashMap usageByDeviceMap;
 
         try {
-            QueryApi queryApi = influxDBClient.getQueryApi();
-            List<FluxTable> tables = queryApi.query(fluxQuery, dbOrg);
-
-            for (FluxTable table : tables) {
-                for (FluxRecord record : table.getRecords()) {
-                    Object deviceIdObj = record.getValueByKey("deviceId");
-                    String deviceIdStr = deviceIdObj == null ? null : deviceIdObj.toString();
-                    if (deviceIdStr == null) continue;
-
-                    Double energyConsumed = record.getValueByKey("_value") instanceof Number
-                            ? ((Number) record.getValueByKey("_value")).doubleValue()
-                            : 0.0;
-
-                    try {
-                        Long deviceId = Long.valueOf(deviceIdStr);
-                        usageByDeviceMap.put(deviceId, usageByDeviceMap.getOrDefault(deviceId, 0.0) + energyConsumed);
-                    } catch (NumberFormatException nfe) {
-                        log.warn("Failed to parse deviceId from record: {}", deviceIdStr);
-                    }
-                }
-            }
+            usageByDeviceMap =
+                    sumUserByDevice(userId, deviceIds(deviceServiceResponses), plan.segments(), plan.now(), lane);
         } catch (Exception e) {
-            log.error("InfluxDB query failed for user {} over {} days: {}", userId, days, e.getMessage());
+            log.error("Usage query failed for user {} over {} days: {}", userId, plan.days(), e.getMessage());
             // Return empty usage for all devices as fallback
             final List<DeviceUsageResponse> fallbackResponses = deviceServiceResponses.stream()
                     .map(device -> new DeviceUsageResponse(
@@ -280,9 +416,62 @@ public class UsageService {
                         device.deviceType(),
                         device.location(),
                         device.userId(),
-                        device.id() == null ? 0.0 : usageByDeviceMap.getOrDefault(device.id(), 0.0)))
+                        device.id() == null ? 0.0 : usageByDeviceMap.get(device.id(), 0.0)))
                 .toList();
 
         return new UsageResponse(userId, usageDevices);
     }
+
+    // exact per-device sums of one user's devices, through the same cache, tiers and chunking as user queries
+    public LongDoubleHashMap sumUserByDevice(Long userId, Instant start, Instant stop, QueryLane lane) {
+        List<Long> deviceIds = deviceIds(deviceDirectory.getDevicesForUser(userId));
+        if (deviceIds.isEmpty()) {
+            return new LongDoubleHashMap();
+        }
+        Instant now = Instant.now();
+        return sumUserByDevice(userId, deviceIds, queryPlanner.plan(start, stop, now), now, lane);
+    }
+
+    // deviceIds must be every device of the user: the hot tier only answers when it covers all of them
+    private LongDoubleHashMap sumUserByDevice(
+            Long userId, List<Long> deviceIds, List<QuerySegment> segments, Instant now, QueryLane lane) {
+        String cacheScope = UsageResultCache.userScope(userId);
+        LongDoubleHashMap sums = new LongDoubleHashMap();
+        for (QuerySegment segment : segments) {
+            log.debug(
+                    "Querying {} usage for user {} from {} to {}",
+                    segment.resolution(),
+                    userId,
+                    segment.start(),
+                    segment.stop());
+            sums.addAll(resultCache.get(
+                    cacheScope,
+                    segment,
+                    now,
+                    s -> usageScanner.sumByDevice(
+                            lane,
+                            new UsageQuery(s.resolution(), s.start(), s.stop(), userId),
+                            query -> sumByDevice(query, deviceIds))));
+        }
+        return sums;
+    }
+
+    static List<Long> deviceIds(List<DeviceServiceResponse> devices) {
+        if (devices == null) {
+            return List.of();
+        }
+        return devices.stream()
+                .filter(Objects::nonNull)
+                .map(DeviceServiceResponse::id)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // recent ranges are served from the in-process hot tier when it saw every point in them, aged ranges from the
+    // archive once every day in them has been exported; deviceIds are the devices of a single user's query
+    private LongDoubleHashMap sumByDevice(UsageQuery query, List<Long> deviceIds) {
+        return hotTier.sumByDevice(query, deviceIds)
+                .or(() -> archive.sumByDevice(query))
+                .orElseGet(() -> usageStore.sumByDevice(query));
+    }
 }
@@ -0,0 +1,272 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.dtos.external.DeviceServiceResponse;
+import com.enerlytics.usages.dtos.responses.UsageStreamScopeResponse;
+import com.enerlytics.usages.dtos.responses.UsageUpdateResponse;
+import com.enerlytics.usages.exceptions.QueryRejectedException;
+import com.enerlytics.usages.stores.PartitionCoverage;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Pushes live usage to dashboard subscribers over SSE. The consumer only adds each reading to the pending per-device
+// deltas of the owner's subscribers; a periodic flush sends whatever accumulated. A subscriber whose previous send is
+// still in progress is skipped, so a slow client receives one merged update later instead of a growing queue.
+// Readings are consumed per device partition, so a stream only carries the devices on the partitions this instance
+// consumes. That scope is sent as a "scope" event when the stream opens and again whenever a rebalance changes it,
+// and every update says whether it covers all of the user's devices.
+@Slf4j
+@Service
+public class UsageStreamService {
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Executor executor;
+    private final DeviceDirectory deviceDirectory;
+    private final PartitionCoverage coverage;
+    private final int maxSubscribers;
+    private final Duration timeout;
+    private final long heartbeatNanos;
+    private final Duration retryAfter;
+
+    private final Counter sent;
+    private final Counter coalesced;
+
+    @Autowired
+    public UsageStreamService(
+            MeterRegistry meterRegistry,
+            DeviceDirectory deviceDirectory,
+            PartitionCoverage coverage,
+            @Value("${usage.stream.max-subscribers}") int maxSubscribers,
+            @Value("${usage.stream.timeout}") Duration timeout,
+            @Value("${usage.stream.heartbeat-interval}") Duration heartbeatInterval,
+            @Value("${usage.admission.retry-after}") Duration retryAfter) {
+        this(
+                meterRegistry,
+                Executors.newVirtualThreadPerTaskExecutor(),
+                deviceDirectory,
+                coverage,
+                maxSubscribers,
+                timeout,
+                heartbeatInterval,
+                retryAfter);
+    }
+
+    UsageStreamService(
+            MeterRegistry meterRegistry,
+            Executor executor,
+            DeviceDirectory deviceDirectory,
+            PartitionCoverage coverage,
+            int maxSubscribers,
+            Duration timeout,
+            Duration heartbeatInterval,
+            Duration retryAfter) {
+        this.executor = executor;
+        this.deviceDirectory = deviceDirectory;
+        this.coverage = coverage;
+        this.maxSubscribers = maxSubscribers;
+        this.timeout = timeout;
+        this.heartbeatNanos = heartbeatInterval.toNanos();
+        this.retryAfter = retryAfter;
+
+        Gauge.builder("usage.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open live usage subscriptions")
+                .register(meterRegistry);
+        this.sent = Counter.builder("usage.stream.updates")
+                .description("Live usage updates sent to subscribers")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("usage.stream.coalesced")
+                .description("Flushes skipped because the subscriber was still receiving the previous update")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(Long userId) {
+        return subscribe(userId, devicesOf(userId), new SseEmitter(timeout.toMillis()));
+    }
+
+    // deviceIds is null when the user's devices could not be resolved, so the scope is unknown
+    SseEmitter subscribe(Long userId, List<Long> deviceIds, SseEmitter emitter) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new QueryRejectedException("Too many live usage subscriptions", retryAfter);
+        }
+
+        Subscriber subscriber = new Subscriber(userId, deviceIds, emitter);
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        log.debug("Opened live usage subscription for user {}", userId);
+        return emitter;
+    }
+
+    public void publish(UsageReading reading) {
+        if (reading.userId() == null) {
+            return;
+        }
+        Set<Subscriber> userSubscribers = subscribers.get(reading.userId());
+        if (userSubscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : userSubscribers) {
+            subscriber.add(reading);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${usage.stream.flush-interval}")
+    public void flush() {
+        long now = System.nanoTime();
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : userSubscribers) {
+                if (!subscriber.sending.compareAndSet(false, true)) {
+                    coalesced.increment();
+                    continue;
+                }
+                UsageStreamScopeResponse scope = scopeOf(subscriber);
+                UsageStreamScopeResponse changedScope = scope.equals(subscriber.scope) ? null : scope;
+                UsageUpdateResponse update = subscriber.drain(scope.complete());
+                if (update == null && changedScope == null && now - subscriber.lastSentNanos < heartbeatNanos) {
+                    subscriber.sending.set(false);
+                    continue;
+                }
+                subscriber.scope = scope;
+                subscriber.lastSentNanos = now;
+                executor.execute(() -> send(subscriber, changedScope, update));
+            }
+        }
+    }
+
+    private UsageStreamScopeResponse scopeOf(Subscriber subscriber) {
+        int partitionCount = coverage.partitionCount();
+        if (subscriber.deviceIds == null || partitionCount == 0) {
+            return new UsageStreamScopeResponse(subscriber.userId, false, List.of(), List.of());
+        }
+        List<Long> streamed = subscriber.deviceIds.stream()
+                .filter(deviceId -> coverage.owns(PartitionCoverage.partitionOf(deviceId, partitionCount)))
+                .toList();
+        return new UsageStreamScopeResponse(
+                subscriber.userId, streamed.size() == subscriber.deviceIds.size(), subscriber.deviceIds, streamed);
+    }
+
+    private List<Long> devicesOf(Long userId) {
+        try {
+            return deviceDirectory.getDevicesForUser(userId).stream()
+                    .filter(Objects::nonNull)
+                    .map(DeviceServiceResponse::id)
+                    .filter(Objects::nonNull)
+                    .toList();
+        } catch (Exception e) {
+            log.warn("Failed to fetch devices for live usage of user {}: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void send(Subscriber subscriber, UsageStreamScopeResponse scope, UsageUpdateResponse update) {
+        try {
+            if (scope != null) {
+                subscriber.emitter.send(SseEmitter.event().name("scope").data(scope));
+            }
+            if (update != null) {
+                subscriber.emitter.send(SseEmitter.event().name("usage").data(update));
+                sent.increment();
+            } else if (scope == null) {
+                // keeps proxies from closing an idle stream and detects clients that went away
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping live usage subscription for user {}: {}", subscriber.userId, e.getMessage());
+            remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        } finally {
+            subscriber.sending.set(false);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (!subscriber.removed.compareAndSet(false, true)) {
+            return;
+        }
+        subscribers.computeIfPresent(subscriber.userId, (userId, userSubscribers) -> {
+            userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+        subscriberCount.decrementAndGet();
+    }
+
+    @PreDestroy
+    public void close() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(s -> s.emitter.complete()));
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static final class Subscriber {
+
+        private final Long userId;
+        private final List<Long> deviceIds;
+        private final SseEmitter emitter;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean removed = new AtomicBoolean();
+        private volatile long lastSentNanos = System.nanoTime();
+        // the scope last sent, or null before the first flush
+        private volatile UsageStreamScopeResponse scope;
+
+        // guarded by this
+        private LongDoubleHashMap pending = new LongDoubleHashMap();
+        private long readings;
+        private Instant from;
+        private Instant to;
+
+        private Subscriber(Long userId, List<Long> deviceIds, SseEmitter emitter) {
+            this.userId = userId;
+            this.deviceIds = deviceIds;
+            this.emitter = emitter;
+        }
+
+        private synchronized void add(UsageReading reading) {
+            pending.add(reading.deviceId(), reading.energyConsumed());
+            readings++;
+            if (from == null || reading.timestamp().isBefore(from)) {
+                from = reading.timestamp();
+            }
+            if (to == null || reading.timestamp().isAfter(to)) {
+                to = reading.timestamp();
+            }
+        }
+
+        private synchronized UsageUpdateResponse drain(boolean complete) {
+            if (readings == 0) {
+                return null;
+            }
+            UsageUpdateResponse update = new UsageUpdateResponse(userId, from, to, readings, complete, pending.toMap());
+            pending = new LongDoubleHashMap();
+            readings = 0;
+            from = null;
+            to = null;
+            return update;
+        }
+    }
+}
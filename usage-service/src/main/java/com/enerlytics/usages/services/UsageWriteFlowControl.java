@@ -0,0 +1,434 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.events.EnergyUsageEvent;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.exceptions.UsageWriteRejectedException;
+import com.enerlytics.usages.stores.UsageArchive;
+import com.enerlytics.usages.stores.UsageStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Flow control between the energy-usage consumer and the usage store. Every write is timed, and when the last check
+// interval's failure rate or mean write latency crosses its limit, or the retry buffer is more than half full, every
+// assigned partition is paused. Once healthy again partitions are resumed one per interval, so the store ramps back
+// up instead of taking the whole backlog at once. Failed writes wait in a buffer and are retried in batches; their
+// records are acknowledged only once stored, so committed offsets never pass a reading missing from the store. The
+// buffer never blocks the consumer: once it holds buffer-capacity readings every partition is paused at once, so it
+// only
+// grows by what is already in flight. Readings whose owner could not be resolved are never written untagged, since
+// every query filters on the owner: they wait in the same buffer and are tagged when retried. A reading the store
+// rejects outright, or that is still failing after max-attempts retries, goes to energy-usage-dlt and its record is
+// acknowledged, so one bad reading cannot hold up the buffer.
+@Slf4j
+@Component
+public class UsageWriteFlowControl {
+
+    static final String LISTENER_ID = "energy-usage";
+    static final String TOPIC = "energy-usage";
+
+    private final UsageStore usageStore;
+    private final UsageResultCache resultCache;
+    private final UsageArchive archive;
+    private final Function<Long, Long> ownerOf;
+    private final PipelineMetrics pipelineMetrics;
+    private final Supplier<MessageListenerContainer> container;
+    private final ConsumerRecordRecoverer deadLetters;
+    private final long maxLatencyNanos;
+    private final double maxFailureRate;
+    private final int minSamples;
+    private final int bufferCapacity;
+    private final int retryBatch;
+    private final int maxAttempts;
+
+    private final BlockingQueue<PendingWrite> buffer = new LinkedBlockingQueue<>();
+    // the batch being retried, only touched by the retry task
+    private volatile List<PendingWrite> retrying = List.of();
+
+    // outcomes since the last check
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder readings = new LongAdder();
+    private final LongAdder failedReadings = new LongAdder();
+
+    private final Counter retried;
+    private final Counter deadLettered;
+    private final Counter pauses;
+
+    @Autowired
+    public UsageWriteFlowControl(
+            UsageStore usageStore,
+            UsageResultCache resultCache,
+            UsageArchive archive,
+            DeviceDirectory deviceDirectory,
+            PipelineMetrics pipelineMetrics,
+            KafkaListenerEndpointRegistry listenerRegistry,
+            DeadLetterPublishingRecoverer deadLetterRecoverer,
+            MeterRegistry meterRegistry,
+            @Value("${usage.flow.max-write-latency}") Duration maxLatency,
+            @Value("${usage.flow.max-failure-rate}") double maxFailureRate,
+            @Value("${usage.flow.min-samples}") int minSamples,
+            @Value("${usage.flow.buffer-capacity}") int bufferCapacity,
+            @Value("${usage.flow.retry-batch}") int retryBatch,
+            @Value("${usage.flow.max-attempts}") int maxAttempts) {
+        this(
+                usageStore,
+                resultCache,
+                archive,
+                deviceDirectory::getOwner,
+                pipelineMetrics,
+                () -> listenerRegistry.getListenerContainer(LISTENER_ID),
+                deadLetterRecoverer,
+                meterRegistry,
+                maxLatency,
+                maxFailureRate,
+                minSamples,
+                bufferCapacity,
+                retryBatch,
+                maxAttempts);
+    }
+
+    UsageWriteFlowControl(
+            UsageStore usageStore,
+            UsageResultCache resultCache,
+            UsageArchive archive,
+            Function<Long, Long> ownerOf,
+            PipelineMetrics pipelineMetrics,
+            Supplier<MessageListenerContainer> container,
+            ConsumerRecordRecoverer deadLetters,
+            MeterRegistry meterRegistry,
+            Duration maxLatency,
+            double maxFailureRate,
+            int minSamples,
+            int bufferCapacity,
+            int retryBatch,
+            int maxAttempts) {
+        this.usageStore = usageStore;
+        this.resultCache = resultCache;
+        this.archive = archive;
+        this.ownerOf = ownerOf;
+        this.pipelineMetrics = pipelineMetrics;
+        this.container = container;
+        this.deadLetters = deadLetters;
+        this.maxLatencyNanos = maxLatency.toNanos();
+        this.maxFailureRate = maxFailureRate;
+        this.minSamples = minSamples;
+        this.bufferCapacity = bufferCapacity;
+        this.retryBatch = retryBatch;
+        this.maxAttempts = maxAttempts;
+
+        Gauge.builder("usage.flow.buffered", this, UsageWriteFlowControl::buffered)
+                .description("Readings waiting to be retried against the usage store")
+                .register(meterRegistry);
+        Gauge.builder("usage.flow.paused-partitions", this, UsageWriteFlowControl::pausedPartitions)
+                .description("energy-usage partitions paused by flow control")
+                .register(meterRegistry);
+        this.retried = Counter.builder("usage.flow.retried")
+                .description("Readings stored by a retry")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("usage.flow.dead-lettered")
+                .description("Buffered readings rejected by the store or out of attempts, sent to energy-usage-dlt")
+                .register(meterRegistry);
+        this.pauses = Counter.builder("usage.flow.pauses")
+                .description("Times the consumer was paused for a saturated usage store")
+                .register(meterRegistry);
+    }
+
+    // onStored runs once all readings are in the store, or once flow control has dead-lettered them
+    public void write(List<UsageReading> readings, Runnable onStored) {
+        if (readings.stream().anyMatch(reading -> reading.userId() == null)) {
+            log.warn(
+                    "Owner of device {} unknown, buffering {} readings until it resolves",
+                    readings.getFirst().deviceId(),
+                    readings.size());
+            buffer(readings, onStored);
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            usageStore.write(readings);
+        } catch (Exception e) {
+            record(started, readings.size(), true);
+            log.warn(
+                    "Failed to write {} readings for device {}, buffering for retry: {}",
+                    readings.size(),
+                    readings.getFirst().deviceId(),
+                    e.getMessage());
+            buffer(readings, onStored);
+            return;
+        }
+        record(started, readings.size(), false);
+        readings.forEach(this::stored);
+        onStored.run();
+    }
+
+    @Scheduled(fixedDelayString = "${usage.flow.retry-interval}")
+    public void retry() {
+        List<PendingWrite> batch = retrying;
+        if (batch.isEmpty()) {
+            batch = new ArrayList<>(Math.min(buffer.size(), retryBatch));
+            buffer.drainTo(batch, retryBatch);
+            if (batch.isEmpty()) {
+                return;
+            }
+            retrying = batch;
+        }
+
+        // readings whose owner still can't be resolved fail on their own, the rest are written together
+        List<PendingWrite> failed = new ArrayList<>();
+        List<PendingWrite> tagged = tag(batch, failed);
+        int stored = tagged.size();
+        if (!tagged.isEmpty()) {
+            List<PendingWrite> notStored = write(tagged);
+            stored -= notStored.size();
+            failed.addAll(notStored);
+        }
+
+        List<PendingWrite> remaining = new ArrayList<>(failed.size());
+        for (PendingWrite pending : failed) {
+            if (pending.attempts() + 1 >= maxAttempts) {
+                deadLetter(
+                        pending,
+                        new IllegalStateException("Still failing after " + maxAttempts + " attempts"),
+                        remaining);
+            } else {
+                remaining.add(pending.failedAgain());
+            }
+        }
+        retrying = remaining.isEmpty() ? List.of() : remaining;
+        if (stored > 0) {
+            retried.increment(stored);
+            log.info("Stored {} buffered readings, {} still buffered", stored, buffered());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${usage.flow.check-interval}")
+    public void adjust() {
+        long callCount = calls.sumThenReset();
+        long latency = latencyNanos.sumThenReset();
+        long readingCount = readings.sumThenReset();
+        long failed = failedReadings.sumThenReset();
+
+        MessageListenerContainer listener = container.get();
+        Collection<TopicPartition> assigned = listener == null ? null : listener.getAssignedPartitions();
+        if (assigned == null || assigned.isEmpty()) {
+            return;
+        }
+
+        long meanLatency = callCount == 0 ? 0 : latency / callCount;
+        boolean saturated = buffered() > bufferCapacity / 2
+                || meanLatency > maxLatencyNanos
+                || (readingCount >= minSamples && (double) failed / readingCount > maxFailureRate);
+        if (saturated) {
+            int paused = pause(listener, assigned);
+            if (paused > 0) {
+                pauses.increment();
+                log.warn(
+                        "Usage store saturated ({} of {} readings failed, {} ms mean write latency, {} buffered), "
+                                + "paused {} partitions",
+                        failed,
+                        readingCount,
+                        Duration.ofNanos(meanLatency).toMillis(),
+                        buffered(),
+                        paused);
+            }
+            return;
+        }
+
+        for (TopicPartition partition : assigned) {
+            if (listener.isPartitionPauseRequested(partition)) {
+                listener.resumePartition(partition);
+                log.info("Usage store healthy, resumed partition {}", partition);
+                return;
+            }
+        }
+    }
+
+    int buffered() {
+        return buffer.size() + retrying.size();
+    }
+
+    private static int pause(MessageListenerContainer listener, Collection<TopicPartition> assigned) {
+        int paused = 0;
+        for (TopicPartition partition : assigned) {
+            if (!listener.isPartitionPauseRequested(partition)) {
+                listener.pausePartition(partition);
+                paused++;
+            }
+        }
+        return paused;
+    }
+
+    private int pausedPartitions() {
+        MessageListenerContainer listener = container.get();
+        Collection<TopicPartition> assigned = listener == null ? null : listener.getAssignedPartitions();
+        if (assigned == null) {
+            return 0;
+        }
+        return (int)
+                assigned.stream().filter(listener::isPartitionPauseRequested).count();
+    }
+
+    private void buffer(List<UsageReading> readings, Runnable onStored) {
+        Runnable lastStored = onLast(readings.size(), onStored);
+        for (UsageReading reading : readings) {
+            buffer.offer(new PendingWrite(reading, lastStored, 0));
+        }
+        if (buffered() >= bufferCapacity) {
+            MessageListenerContainer listener = container.get();
+            Collection<TopicPartition> assigned = listener == null ? null : listener.getAssignedPartitions();
+            if (assigned != null && pause(listener, assigned) > 0) {
+                pauses.increment();
+                log.warn("Usage write buffer full with {} readings, paused all partitions", buffered());
+            }
+        }
+    }
+
+    // returns the readings that failed for a reason worth retrying; rejected ones are dead-lettered here
+    private List<PendingWrite> write(List<PendingWrite> batch) {
+        long started = System.nanoTime();
+        try {
+            usageStore.write(batch.stream().map(PendingWrite::reading).toList());
+        } catch (UsageWriteRejectedException e) {
+            record(started, batch.size(), true);
+            List<PendingWrite> failed = new ArrayList<>();
+            if (batch.size() == 1) {
+                deadLetter(batch.getFirst(), e, failed);
+                return failed;
+            }
+            // a single bad reading rejects the whole batch, so each one is written on its own to find it
+            log.warn(
+                    "Store rejected a batch of {} buffered readings, writing them one by one: {}",
+                    batch.size(),
+                    e.getMessage());
+            for (PendingWrite pending : batch) {
+                failed.addAll(write(List.of(pending)));
+            }
+            return failed;
+        } catch (Exception e) {
+            record(started, batch.size(), true);
+            log.warn("Retry of {} buffered readings failed: {}", batch.size(), e.getMessage());
+            return batch;
+        }
+        record(started, batch.size(), false);
+        batch.forEach(pending -> {
+            stored(pending.reading());
+            pending.onStored().run();
+        });
+        return List.of();
+    }
+
+    // a reading stored after its time settled would otherwise leave cached totals and archived days stale
+    private void stored(UsageReading reading) {
+        pipelineMetrics.stored(reading.timestamp());
+        resultCache.stored(reading);
+        archive.stored(reading);
+    }
+
+    // an owner lookup that fails or finds no owner fails that reading like a failed write would
+    private List<PendingWrite> tag(List<PendingWrite> batch, List<PendingWrite> failed) {
+        Map<Long, Optional<Long>> owners = new HashMap<>();
+        List<PendingWrite> tagged = new ArrayList<>(batch.size());
+        for (PendingWrite pending : batch) {
+            UsageReading reading = pending.reading();
+            if (reading.userId() != null) {
+                tagged.add(pending);
+                continue;
+            }
+            Optional<Long> owner = owners.computeIfAbsent(reading.deviceId(), this::resolveOwner);
+            if (owner.isEmpty()) {
+                failed.add(pending);
+                continue;
+            }
+            tagged.add(new PendingWrite(
+                    new UsageReading(reading.deviceId(), owner.get(), reading.timestamp(), reading.energyConsumed()),
+                    pending.onStored(),
+                    pending.attempts()));
+        }
+        return tagged;
+    }
+
+    private Optional<Long> resolveOwner(Long deviceId) {
+        try {
+            return Optional.ofNullable(ownerOf.apply(deviceId));
+        } catch (Exception e) {
+            log.warn("Failed to resolve owner for device {}: {}", deviceId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // published as a single reading keyed by device; a failed publish keeps the reading buffered
+    private void deadLetter(PendingWrite pending, Exception cause, List<PendingWrite> remaining) {
+        UsageReading reading = pending.reading();
+        EnergyUsageEvent event =
+                new EnergyUsageEvent(reading.deviceId(), reading.energyConsumed(), reading.timestamp());
+        try {
+            deadLetters.accept(new ConsumerRecord<>(TOPIC, -1, -1, String.valueOf(reading.deviceId()), event), cause);
+        } catch (Exception e) {
+            log.error("Failed to dead-letter a reading of device {}: {}", reading.deviceId(), e.getMessage());
+            remaining.add(pending);
+            return;
+        }
+        deadLettered.increment();
+        log.error(
+                "Dead-lettered a reading of device {} at {}: {}",
+                reading.deviceId(),
+                reading.timestamp(),
+                cause.getMessage());
+        pending.onStored().run();
+    }
+
+    // the readings of one record may be retried in different batches; the record is done once the last is stored
+    private static Runnable onLast(int count, Runnable onStored) {
+        if (count == 1) {
+            return onStored;
+        }
+        AtomicInteger remaining = new AtomicInteger(count);
+        return () -> {
+            if (remaining.decrementAndGet() == 0) {
+                onStored.run();
+            }
+        };
+    }
+
+    private void record(long started, int count, boolean failed) {
+        pipelineMetrics.storeWrite(started, failed);
+        calls.increment();
+        latencyNanos.add(System.nanoTime() - started);
+        readings.add(count);
+        if (failed) {
+            failedReadings.add(count);
+        }
+    }
+
+    private record PendingWrite(UsageReading reading, Runnable onStored, int attempts) {
+
+        private PendingWrite failedAgain() {
+            return new PendingWrite(reading, onStored, attempts + 1);
+        }
+    }
+}
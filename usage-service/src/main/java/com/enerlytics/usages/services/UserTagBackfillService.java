@@ -0,0 +1,197 @@
+package com.enerlytics.usages.services;
+
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.dtos.responses.BackfillStatusResponse;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "usage.storage.type", havingValue = "influx", matchIfMissing = true)
+public class UserTagBackfillService {
+
+    private final InfluxDBClient influxDBClient;
+    private final DeviceDirectory deviceDirectory;
+    private final UsageResultCache resultCache;
+
+    private final AtomicReference<BackfillStatusResponse> status = new AtomicReference<>(BackfillStatusResponse.idle());
+
+    @Value("${influx.bucket}")
+    private String dbBucket;
+
+    @Value("${influx.org}")
+    private String dbOrg;
+
+    @Value("${influx.rollups.enabled}")
+    private boolean rollupsEnabled;
+
+    @Value("${influx.rollups.hourly-bucket}")
+    private String hourlyBucket;
+
+    @Value("${influx.rollups.daily-bucket}")
+    private String dailyBucket;
+
+    public BackfillStatusResponse getStatus() {
+        return status.get();
+    }
+
+    public BackfillStatusResponse start(int days) {
+        BackfillStatusResponse current = status.get();
+        if (current.running()) {
+            log.info("User tag backfill already running since {}", current.startedAt());
+            return current;
+        }
+
+        BackfillStatusResponse started = new BackfillStatusResponse(true, Instant.now(), null, 0, 0, 0, null);
+        if (!status.compareAndSet(current, started)) {
+            return status.get();
+        }
+
+        Thread.ofVirtual().name("usage-user-tag-backfill").start(() -> run(started.startedAt(), days));
+        return started;
+    }
+
+    private void run(Instant startedAt, int days) {
+        Instant stop = startedAt.truncatedTo(ChronoUnit.HOURS);
+        Instant start = stop.minus(days, ChronoUnit.DAYS);
+        log.info("Starting userId tag backfill from {} to {}", start, stop);
+
+        int tagged = 0;
+        int skipped = 0;
+        long copied = 0;
+        try {
+            for (String deviceId : findUntaggedDevices(start, stop)) {
+                Long userId;
+                try {
+                    userId = deviceDirectory.getOwner(Long.valueOf(deviceId));
+                } catch (Exception e) {
+                    log.warn("Failed to resolve owner for device {}: {}", deviceId, e.getMessage());
+                    userId = null;
+                }
+
+                if (userId == null) {
+                    skipped++;
+                    continue;
+                }
+
+                for (Instant day = start; day.isBefore(stop); day = day.plus(1, ChronoUnit.DAYS)) {
+                    Instant dayStop = day.plus(1, ChronoUnit.DAYS).isBefore(stop) ? day.plus(1, ChronoUnit.DAYS) : stop;
+                    copied += copyWithUserTag(deviceId, userId, day, dayStop);
+                }
+                tagged++;
+                status.set(new BackfillStatusResponse(true, startedAt, null, tagged, skipped, copied, null));
+            }
+
+            if (rollupsEnabled) {
+                rebuildRollups(start, stop);
+            }
+            resultCache.invalidateAll();
+
+            log.info(
+                    "Finished userId tag backfill: {} devices tagged, {} skipped, {} points copied",
+                    tagged,
+                    skipped,
+                    copied);
+            status.set(new BackfillStatusResponse(false, startedAt, Instant.now(), tagged, skipped, copied, null));
+        } catch (Exception e) {
+            log.error("UserId tag backfill failed: {}", e.getMessage());
+            status.set(new BackfillStatusResponse(
+                    false, startedAt, Instant.now(), tagged, skipped, copied, e.getMessage()));
+        }
+    }
+
+    private List<String> findUntaggedDevices(Instant start, Instant stop) {
+        String fluxQuery = String.format("""
+                from(bucket: "%s")
+                  |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                  |> filter(fn: (r) => r["_measurement"] == "energy_usage")
+                  |> filter(fn: (r) => not exists r["userId"])
+                  |> keep(columns: ["deviceId"])
+                  |> group()
+                  |> distinct(column: "deviceId")
+                """, dbBucket, start, stop);
+
+        List<String> deviceIds = new ArrayList<>();
+        for (FluxTable table : influxDBClient.getQueryApi().query(fluxQuery, dbOrg)) {
+            for (FluxRecord record : table.getRecords()) {
+                if (record.getValue() != null) {
+                    deviceIds.add(record.getValue().toString());
+                }
+            }
+        }
+        return deviceIds;
+    }
+
+    // untagged originals are left to age out; every query filters on the userId tag
+    private long copyWithUserTag(String deviceId, Long userId, Instant start, Instant stop) {
+        String fluxQuery = String.format(
+                """
+                from(bucket: "%s")
+                  |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                  |> filter(fn: (r) => r["_measurement"] == "energy_usage")
+                  |> filter(fn: (r) => r["deviceId"] == "%s" and not exists r["userId"])
+                  |> set(key: "userId", value: "%s")
+                  |> set(key: "userShard", value: "%d")
+                  |> to(bucket: "%s", org: "%s")
+                  |> count()
+                """, dbBucket, start, stop, deviceId, userId, UsageQuery.userShardOf(userId), dbBucket, dbOrg);
+
+        return countRecords(fluxQuery);
+    }
+
+    // the first window is skipped because retention may already have trimmed part of its raw data
+    private void rebuildRollups(Instant start, Instant stop) {
+        rebuildRollup(
+                hourlyBucket,
+                "1h",
+                start.truncatedTo(ChronoUnit.HOURS).plus(1, ChronoUnit.HOURS),
+                stop.truncatedTo(ChronoUnit.HOURS));
+        rebuildRollup(
+                dailyBucket,
+                "1d",
+                start.truncatedTo(ChronoUnit.DAYS).plus(1, ChronoUnit.DAYS),
+                stop.truncatedTo(ChronoUnit.DAYS));
+    }
+
+    private void rebuildRollup(String targetBucket, String every, Instant start, Instant stop) {
+        if (!start.isBefore(stop)) {
+            return;
+        }
+        String fluxQuery = String.format("""
+                from(bucket: "%s")
+                  |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                  |> filter(fn: (r) => r["_measurement"] == "energy_usage")
+                  |> filter(fn: (r) => r["_field"] == "energyConsumed")
+                  |> filter(fn: (r) => exists r["userId"])
+                  |> aggregateWindow(every: %s, fn: sum, timeSrc: "_start", createEmpty: false)
+                  |> to(bucket: "%s", org: "%s")
+                  |> count()
+                """, dbBucket, start, stop, every, targetBucket, dbOrg);
+
+        log.info("Rebuilt {} rollup points in {}", countRecords(fluxQuery), targetBucket);
+    }
+
+    private long countRecords(String fluxQuery) {
+        long count = 0;
+        for (FluxTable table : influxDBClient.getQueryApi().query(fluxQuery, dbOrg)) {
+            for (FluxRecord record : table.getRecords()) {
+                if (record.getValue() instanceof Number number) {
+                    count += number.longValue();
+                }
+            }
+        }
+        return count;
+    }
+}
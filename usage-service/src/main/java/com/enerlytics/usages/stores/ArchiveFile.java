@@ -0,0 +1,289 @@
+package com.enerlytics.usages.stores;
+
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Archive file holding one day of raw points for one device shard. Each series is a deflate-compressed
+// segment of two columns (zigzag varint timestamp deltas, then raw doubles); a trailing index records per-series
+// min/max/sum and offsets, and a fixed-size footer records the same for the whole file plus the index position.
+final class ArchiveFile {
+
+    static final String SUFFIX = ".ua";
+
+    private static final int MAGIC = 0x45554131;
+    private static final int ENTRY_BYTES = 8 + 8 + 4 + 8 + 8 + 8 + 8 + 8 + 8 + 4;
+    private static final int FOOTER_BYTES = 8 + 4 + 8 + 8 + 8 + 8 + 4;
+
+    private ArchiveFile() {}
+
+    record Entry(
+            long deviceId,
+            long userId,
+            int count,
+            long minTimestamp,
+            long maxTimestamp,
+            double sum,
+            double minValue,
+            double maxValue,
+            long offset,
+            int length) {
+
+        boolean overlaps(long start, long stop) {
+            return count > 0 && maxTimestamp >= start && minTimestamp < stop;
+        }
+
+        boolean within(long start, long stop) {
+            return minTimestamp >= start && maxTimestamp < stop;
+        }
+    }
+
+    record Footer(long minTimestamp, long maxTimestamp, long points, double sum) {
+
+        boolean overlaps(long start, long stop) {
+            return points > 0 && maxTimestamp >= start && minTimestamp < stop;
+        }
+    }
+
+    record Index(Footer footer, List<Entry> entries) {}
+
+    static final class Writer implements AutoCloseable {
+
+        private final Path tempPath;
+        private final FileChannel channel;
+        private final List<Entry> entries = new ArrayList<>();
+        private final ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        private long position;
+
+        Writer(Path tempPath) throws IOException {
+            this.tempPath = tempPath;
+            this.channel = FileChannel.open(
+                    tempPath,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+        }
+
+        // timestamps must be in ascending order
+        void append(long deviceId, long userId, long[] timestamps, double[] values, int count) throws IOException {
+            if (count == 0) {
+                return;
+            }
+            segment.reset();
+            double sum = 0;
+            double minValue = Double.POSITIVE_INFINITY;
+            double maxValue = Double.NEGATIVE_INFINITY;
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(segment, deflater))) {
+                long previous = 0;
+                for (int i = 0; i < count; i++) {
+                    writeVarLong(out, zigzag(timestamps[i] - previous));
+                    previous = timestamps[i];
+                }
+                for (int i = 0; i < count; i++) {
+                    double value = values[i];
+                    out.writeDouble(value);
+                    sum += value;
+                    minValue = Math.min(minValue, value);
+                    maxValue = Math.max(maxValue, value);
+                }
+            } finally {
+                deflater.end();
+            }
+
+            byte[] bytes = segment.toByteArray();
+            write(ByteBuffer.wrap(bytes));
+            entries.add(new Entry(
+                    deviceId,
+                    userId,
+                    count,
+                    timestamps[0],
+                    timestamps[count - 1],
+                    sum,
+                    minValue,
+                    maxValue,
+                    position - bytes.length,
+                    bytes.length));
+        }
+
+        // writes the index and footer and atomically moves the file into place
+        void finish(Path target) throws IOException {
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate(entries.size() * ENTRY_BYTES);
+            long minTimestamp = Long.MAX_VALUE;
+            long maxTimestamp = Long.MIN_VALUE;
+            long points = 0;
+            double sum = 0;
+            for (Entry entry : entries) {
+                index.putLong(entry.deviceId())
+                        .putLong(entry.userId())
+                        .putInt(entry.count())
+                        .putLong(entry.minTimestamp())
+                        .putLong(entry.maxTimestamp())
+                        .putDouble(entry.sum())
+                        .putDouble(entry.minValue())
+                        .putDouble(entry.maxValue())
+                        .putLong(entry.offset())
+                        .putInt(entry.length());
+                minTimestamp = Math.min(minTimestamp, entry.minTimestamp());
+                maxTimestamp = Math.max(maxTimestamp, entry.maxTimestamp());
+                points += entry.count();
+                sum += entry.sum();
+            }
+            write(index.flip());
+
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES)
+                    .putLong(indexOffset)
+                    .putInt(entries.size())
+                    .putLong(points)
+                    .putLong(minTimestamp)
+                    .putLong(maxTimestamp)
+                    .putDouble(sum)
+                    .putInt(MAGIC);
+            write(footer.flip());
+            channel.force(true);
+            channel.close();
+            Files.move(tempPath, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel.isOpen()) {
+                channel.close();
+                Files.deleteIfExists(tempPath);
+            }
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+        }
+    }
+
+    static Index readIndex(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < FOOTER_BYTES) {
+                throw new IOException("Truncated usage archive: " + path);
+            }
+            ByteBuffer footer = read(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+            long indexOffset = footer.getLong();
+            int entryCount = footer.getInt();
+            long points = footer.getLong();
+            long minTimestamp = footer.getLong();
+            long maxTimestamp = footer.getLong();
+            double sum = footer.getDouble();
+            if (footer.getInt() != MAGIC) {
+                throw new IOException("Not a usage archive: " + path);
+            }
+
+            ByteBuffer index = read(channel, indexOffset, entryCount * ENTRY_BYTES);
+            List<Entry> entries = new ArrayList<>(entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                entries.add(new Entry(
+                        index.getLong(),
+                        index.getLong(),
+                        index.getInt(),
+                        index.getLong(),
+                        index.getLong(),
+                        index.getDouble(),
+                        index.getDouble(),
+                        index.getDouble(),
+                        index.getLong(),
+                        index.getInt()));
+            }
+            return new Index(new Footer(minTimestamp, maxTimestamp, points, sum), entries);
+        }
+    }
+
+    // decompresses one series and sums the points falling inside [start, stop)
+    static double sumInRange(Path path, Entry entry, long start, long stop) throws IOException {
+        double[] sum = new double[1];
+        forEachInRange(path, entry, start, stop, (timestamp, value) -> sum[0] += value);
+        return sum[0];
+    }
+
+    // decompresses one series and hands over the points falling inside [start, stop) in time order
+    static void forEachInRange(
+            Path path, Entry entry, long start, long stop, LongDoubleHashMap.LongDoubleConsumer consumer)
+            throws IOException {
+        byte[] compressed;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            compressed = read(channel, entry.offset(), entry.length()).array();
+        }
+
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed)))) {
+            long[] timestamps = new long[entry.count()];
+            long previous = 0;
+            for (int i = 0; i < timestamps.length; i++) {
+                previous += unzigzag(readVarLong(in));
+                timestamps[i] = previous;
+            }
+            for (long timestamp : timestamps) {
+                double value = in.readDouble();
+                if (timestamp >= start && timestamp < stop) {
+                    consumer.accept(timestamp, value);
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
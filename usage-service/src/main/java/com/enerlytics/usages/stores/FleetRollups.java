@@ -0,0 +1,127 @@
+package com.enerlytics.usages.stores;
+
+import com.enerlytics.usages.dtos.FleetDimension;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.dtos.external.DeviceServiceResponse;
+import com.enerlytics.usages.dtos.responses.FleetUsageResponse;
+import com.enerlytics.usages.dtos.responses.GroupUsageResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Hourly fleet totals per device type and per location, updated by the consumer as readings arrive, so fleet-wide
+// group-by questions cost hours x groups instead of a scan over every device. Like the hot tier it only counts
+// readings consumed by this instance, so with several replicas each holds the totals of its own partitions; an answer
+// is only complete when this replica owned every partition for the whole range.
+@Component
+public class FleetRollups {
+
+    private final boolean enabled;
+    private final PartitionCoverage coverage;
+    private final HourlyBuckets<HourRollup> hours;
+    private final Counter late;
+
+    @Autowired
+    public FleetRollups(
+            MeterRegistry meterRegistry,
+            PartitionCoverage coverage,
+            @Value("${usage.fleet.enabled}") boolean enabled,
+            @Value("${usage.fleet.retention}") Duration retention) {
+        this(meterRegistry, Clock.systemUTC(), coverage, enabled, retention);
+    }
+
+    FleetRollups(
+            MeterRegistry meterRegistry, Clock clock, PartitionCoverage coverage, boolean enabled, Duration retention) {
+        this.enabled = enabled;
+        this.coverage = coverage;
+        this.hours = new HourlyBuckets<>(clock, retention, HourRollup::new);
+
+        Gauge.builder("usage.fleet.hours", hours, HourlyBuckets::size)
+                .description("Hourly fleet rollups held in memory")
+                .register(meterRegistry);
+        this.late = Counter.builder("usage.fleet.late")
+                .description("Readings dropped because their hour was already evicted")
+                .register(meterRegistry);
+    }
+
+    public void record(UsageReading reading, DeviceServiceResponse device) {
+        if (!enabled) {
+            return;
+        }
+        HourRollup rollup = hours.bucketFor(reading.timestamp().toEpochMilli());
+        if (rollup == null) {
+            late.increment();
+            return;
+        }
+        for (FleetDimension dimension : FleetDimension.values()) {
+            rollup.groups
+                    .get(dimension)
+                    .computeIfAbsent(dimension.keyOf(device), key -> new GroupTotals())
+                    .add(reading.energyConsumed());
+        }
+    }
+
+    public FleetUsageResponse totals(FleetDimension dimension, Instant start, Instant stop) {
+        long from = HourlyBuckets.floorHour(start.toEpochMilli());
+        Map<String, double[]> totals = new HashMap<>();
+        for (HourRollup rollup : hours.range(from, stop.toEpochMilli())) {
+            rollup.groups.get(dimension).forEach((key, group) -> {
+                double[] total = totals.computeIfAbsent(key, k -> new double[2]);
+                total[0] += group.energy.sum();
+                total[1] += group.readings.sum();
+            });
+        }
+
+        List<GroupUsageResponse> groups = totals.entrySet().stream()
+                .map(entry -> new GroupUsageResponse(entry.getKey(), entry.getValue()[0], (long) entry.getValue()[1]))
+                .sorted(Comparator.comparingDouble(GroupUsageResponse::energyConsumed)
+                        .reversed())
+                .toList();
+        boolean complete = enabled && hours.covers(from) && coverage.coversAll(from);
+        return new FleetUsageResponse(dimension.param(), Instant.ofEpochMilli(from), stop, complete, groups);
+    }
+
+    @Scheduled(fixedDelayString = "${usage.fleet.eviction-interval}")
+    public void evict() {
+        hours.evict();
+    }
+
+    private static final class HourRollup {
+
+        private final Map<FleetDimension, ConcurrentMap<String, GroupTotals>> groups =
+                new EnumMap<>(FleetDimension.class);
+
+        private HourRollup() {
+            for (FleetDimension dimension : FleetDimension.values()) {
+                groups.put(dimension, new ConcurrentHashMap<>());
+            }
+        }
+    }
+
+    private static final class GroupTotals {
+
+        private final DoubleAdder energy = new DoubleAdder();
+        private final LongAdder readings = new LongAdder();
+
+        private void add(double value) {
+            energy.add(value);
+            readings.increment();
+        }
+    }
+}
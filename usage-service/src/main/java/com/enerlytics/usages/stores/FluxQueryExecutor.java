@@ -0,0 +1,135 @@
+package com.enerlytics.usages.stores;
+
+import com.enerlytics.usages.utils.FluxCsvResultTap;
+import com.influxdb.Cancellable;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.domain.Dialect;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "usage.storage.type", havingValue = "influx", matchIfMissing = true)
+public class FluxQueryExecutor {
+
+    // header row only; annotations would add three extra rows per table
+    private static final Dialect CSV_DIALECT = new Dialect().header(true).annotations(List.of());
+    // appends query and per-operator timings as tables of the _profiler result
+    private static final String PROFILER_PREAMBLE = """
+            import "profiler"
+            option profiler.enabledProfilers = ["query", "operator"]
+            """;
+
+    private final InfluxDBClient influxDBClient;
+    private final FluxQueryProfiler profiler;
+
+    @Value("${influx.org}")
+    private String dbOrg;
+
+    @Value("${influx.query-timeout}")
+    private Duration queryTimeout;
+
+    // queryType names the query for its metrics and the slow-query log, e.g. sum-by-device.hourly
+    public void stream(String queryType, String fluxQuery, Consumer<String> lineConsumer) throws Exception {
+        FluxCsvResultTap tap = new FluxCsvResultTap(lineConsumer);
+        Instant startedAt = Instant.now();
+        long started = System.nanoTime();
+        String outcome = "failure";
+        try {
+            run(profiler.profilerEnabled() ? PROFILER_PREAMBLE + fluxQuery : fluxQuery, tap);
+            outcome = "success";
+        } catch (TimeoutException e) {
+            outcome = "timeout";
+            throw e;
+        } catch (InterruptedException e) {
+            outcome = "cancelled";
+            throw e;
+        } finally {
+            profiler.record(
+                    queryType,
+                    fluxQuery,
+                    startedAt,
+                    System.nanoTime() - started,
+                    outcome,
+                    tap.tables(),
+                    tap.rows(),
+                    tap.profile());
+        }
+    }
+
+    private void run(String fluxQuery, Consumer<String> lineConsumer) throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // the client only hands out the query's Cancellable with a line, so a query given up on before its first line
+        // is cancelled as that line arrives instead of being streamed to the end; whichever of the two sides comes
+        // second sees the other's write and cancels
+        AtomicReference<Cancellable> cancellable = new AtomicReference<>();
+        AtomicBoolean abandoned = new AtomicBoolean();
+
+        influxDBClient
+                .getQueryApi()
+                .queryRaw(
+                        fluxQuery,
+                        CSV_DIALECT,
+                        dbOrg,
+                        (query, line) -> {
+                            cancellable.compareAndSet(null, query);
+                            if (abandoned.get()) {
+                                query.cancel();
+                                return;
+                            }
+                            try {
+                                lineConsumer.accept(line);
+                            } catch (RuntimeException e) {
+                                failure.compareAndSet(null, e);
+                                query.cancel();
+                                done.countDown();
+                            }
+                        },
+                        error -> {
+                            failure.compareAndSet(null, error);
+                            done.countDown();
+                        },
+                        done::countDown);
+
+        boolean completed;
+        try {
+            completed = done.await(queryTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // a scan chunk cancelled by its caller
+            abandon(abandoned, cancellable);
+            throw e;
+        }
+        if (!completed) {
+            abandon(abandoned, cancellable);
+            throw new TimeoutException("Flux query did not complete within " + queryTimeout);
+        }
+
+        Throwable error = failure.get();
+        if (error instanceof Exception exception) {
+            throw exception;
+        }
+        if (error != null) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    private static void abandon(AtomicBoolean abandoned, AtomicReference<Cancellable> cancellable) {
+        abandoned.set(true);
+        Cancellable query = cancellable.get();
+        if (query != null) {
+            query.cancel();
+        }
+    }
+}
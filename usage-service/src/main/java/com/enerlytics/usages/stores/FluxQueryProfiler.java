@@ -0,0 +1,141 @@
+package com.enerlytics.usages.stores;
+
+import com.enerlytics.usages.dtos.responses.FluxQueryResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Times every Flux query by type and counts the tables and rows it returned. Queries slower than the threshold are
+// logged with their rendered Flux, plus the InfluxDB profiler tables when the profiler is enabled, and the most recent
+// queries are kept so the fluxqueries endpoint can list the most expensive of them.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "usage.storage.type", havingValue = "influx", matchIfMissing = true)
+public class FluxQueryProfiler {
+
+    // the outcomes FluxQueryExecutor reports
+    static final List<String> OUTCOMES = List.of("success", "failure", "timeout", "cancelled");
+
+    private final MeterRegistry meterRegistry;
+    private final long slowQueryNanos;
+    private final boolean profilerEnabled;
+    private final int recentQueries;
+
+    // query type -> its meters
+    private final ConcurrentMap<String, QueryMeters> meters = new ConcurrentHashMap<>();
+    // guarded by itself, newest last
+    private final Deque<FluxQueryResponse> recent = new ArrayDeque<>();
+
+    public FluxQueryProfiler(
+            MeterRegistry meterRegistry,
+            @Value("${influx.slow-query-threshold}") Duration slowQueryThreshold,
+            @Value("${influx.profiler.enabled}") boolean profilerEnabled,
+            @Value("${influx.recent-queries}") int recentQueries) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryNanos = slowQueryThreshold.toNanos();
+        this.profilerEnabled = profilerEnabled;
+        this.recentQueries = recentQueries;
+    }
+
+    public boolean profilerEnabled() {
+        return profilerEnabled;
+    }
+
+    public void record(
+            String type,
+            String fluxQuery,
+            Instant startedAt,
+            long nanos,
+            String outcome,
+            long tables,
+            long rows,
+            String profile) {
+        QueryMeters queryMeters = meters.computeIfAbsent(type, this::register);
+        Timer timer = queryMeters.timers().get(outcome);
+        (timer == null ? timer(type, outcome) : timer).record(nanos, TimeUnit.NANOSECONDS);
+        queryMeters.tables().increment(tables);
+        queryMeters.rows().increment(rows);
+
+        FluxQueryResponse query =
+                new FluxQueryResponse(type, outcome, startedAt, nanos / 1e6, tables, rows, fluxQuery, profile);
+        if (nanos >= slowQueryNanos) {
+            queryMeters.slow().increment();
+            log.warn(
+                    "Slow Flux query {} ({}) took {} ms for {} rows in {} tables:\n{}{}",
+                    type,
+                    outcome,
+                    Math.round(query.durationMillis()),
+                    rows,
+                    tables,
+                    fluxQuery,
+                    profile == null ? "" : "\nProfile:\n" + profile);
+        }
+
+        synchronized (recent) {
+            recent.addLast(query);
+            if (recent.size() > recentQueries) {
+                recent.removeFirst();
+            }
+        }
+    }
+
+    // every meter of a query type is registered with its first query, so later queries skip the registry lookup
+    private QueryMeters register(String type) {
+        Map<String, Timer> timers = new HashMap<>();
+        for (String outcome : OUTCOMES) {
+            timers.put(outcome, timer(type, outcome));
+        }
+        return new QueryMeters(
+                Map.copyOf(timers),
+                Counter.builder("usage.flux.tables")
+                        .description("Tables returned by Flux queries")
+                        .tag("type", type)
+                        .register(meterRegistry),
+                Counter.builder("usage.flux.rows")
+                        .description("Rows returned by Flux queries")
+                        .tag("type", type)
+                        .register(meterRegistry),
+                Counter.builder("usage.flux.slow")
+                        .description("Flux queries slower than the slow-query threshold")
+                        .tag("type", type)
+                        .register(meterRegistry));
+    }
+
+    private Timer timer(String type, String outcome) {
+        return Timer.builder("usage.flux.query")
+                .description("Time spent running one Flux query")
+                .tag("type", type)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public List<FluxQueryResponse> mostExpensive(int limit) {
+        List<FluxQueryResponse> queries;
+        synchronized (recent) {
+            queries = List.copyOf(recent);
+        }
+        return queries.stream()
+                .sorted(Comparator.comparingDouble(FluxQueryResponse::durationMillis)
+                        .reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    private record QueryMeters(Map<String, Timer> timers, Counter tables, Counter rows, Counter slow) {}
+}
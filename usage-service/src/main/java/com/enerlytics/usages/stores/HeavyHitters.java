@@ -0,0 +1,172 @@
+package com.enerlytics.usages.stores;
+
+import com.enerlytics.usages.dtos.TopCandidates;
+import com.enerlytics.usages.dtos.TopDimension;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.dtos.responses.TopUsageEntryResponse;
+import com.enerlytics.usages.dtos.responses.TopUsageResponse;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import com.enerlytics.usages.utils.SpaceSaving;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Per-hour Space-Saving summaries of consumption by device and by user, updated by the consumer, so top-N questions
+// are answered from a few thousand counters instead of a fleet-wide sum. Hours are merged at query time: a key's
+// upper bound adds the smallest counter of every full hour it is missing from. Like the hot tier it only sees
+// readings consumed by this instance since startup, so an answer is only complete when this replica owned every
+// partition for the whole range.
+@Component
+public class HeavyHitters {
+
+    private final boolean enabled;
+    private final PartitionCoverage coverage;
+    private final int capacity;
+    private final HourlyBuckets<HourSketches> hours;
+    private final Counter late;
+
+    @Autowired
+    public HeavyHitters(
+            MeterRegistry meterRegistry,
+            PartitionCoverage coverage,
+            @Value("${usage.top.enabled}") boolean enabled,
+            @Value("${usage.top.capacity}") int capacity,
+            @Value("${usage.top.retention}") Duration retention) {
+        this(meterRegistry, Clock.systemUTC(), coverage, enabled, capacity, retention);
+    }
+
+    HeavyHitters(
+            MeterRegistry meterRegistry,
+            Clock clock,
+            PartitionCoverage coverage,
+            boolean enabled,
+            int capacity,
+            Duration retention) {
+        this.enabled = enabled;
+        this.coverage = coverage;
+        this.capacity = capacity;
+        this.hours = new HourlyBuckets<>(clock, retention, () -> new HourSketches(capacity));
+        this.late = Counter.builder("usage.top.late")
+                .description("Readings dropped because their hour was already evicted")
+                .register(meterRegistry);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public void record(UsageReading reading) {
+        if (!enabled) {
+            return;
+        }
+        HourSketches sketches = hours.bucketFor(reading.timestamp().toEpochMilli());
+        if (sketches == null) {
+            late.increment();
+            return;
+        }
+        sketches.offer(reading);
+    }
+
+    public TopUsageResponse top(TopDimension dimension, Instant start, Instant stop, int n) {
+        long from = HourlyBuckets.floorHour(start.toEpochMilli());
+        Ranking ranking = rank(dimension, from, stop.toEpochMilli());
+        return new TopUsageResponse(
+                dimension.param(),
+                Instant.ofEpochMilli(from),
+                stop,
+                false,
+                covers(from),
+                ranking.entries.subList(0, Math.min(n, ranking.entries.size())));
+    }
+
+    // every key whose upper bound reaches the n-th largest lower bound, so exact totals of just these rank the true
+    // top n. A key no hour tracked is bounded by the untracked weight; if that reaches the threshold too, the
+    // candidates may miss one.
+    public TopCandidates candidates(TopDimension dimension, Instant start, Instant stop, int n) {
+        long from = HourlyBuckets.floorHour(start.toEpochMilli());
+        Ranking ranking = rank(dimension, from, stop.toEpochMilli());
+        double[] lowers = ranking.entries.stream()
+                .mapToDouble(TopUsageEntryResponse::guaranteedEnergy)
+                .sorted()
+                .toArray();
+        double threshold = lowers.length >= n ? lowers[lowers.length - n] : 0;
+        List<Long> ids = ranking.entries.stream()
+                .filter(entry -> entry.energyConsumed() >= threshold)
+                .map(TopUsageEntryResponse::id)
+                .toList();
+        boolean complete = covers(from) && (ranking.untracked == 0 || ranking.untracked < threshold);
+        return new TopCandidates(Instant.ofEpochMilli(from), stop, ids, complete);
+    }
+
+    private boolean covers(long from) {
+        return enabled && hours.covers(from) && coverage.coversAll(from);
+    }
+
+    // merged bounds of every tracked key, largest upper bound first
+    private Ranking rank(TopDimension dimension, long from, long stop) {
+        LongDoubleHashMap upper = new LongDoubleHashMap();
+        LongDoubleHashMap lower = new LongDoubleHashMap();
+        // per key, the sum of the smallest counters of the hours that do track it
+        LongDoubleHashMap trackedMin = new LongDoubleHashMap();
+        double totalMin = 0;
+
+        for (HourSketches sketches : hours.range(from, stop)) {
+            synchronized (sketches) {
+                SpaceSaving sketch = sketches.of(dimension);
+                double min = sketch.minCount();
+                totalMin += min;
+                sketch.forEach((key, count, error) -> {
+                    upper.add(key, count);
+                    lower.add(key, count - error);
+                    trackedMin.add(key, min);
+                });
+            }
+        }
+
+        List<TopUsageEntryResponse> entries = new ArrayList<>(upper.size());
+        double untracked = totalMin;
+        upper.forEach((key, count) -> entries.add(
+                new TopUsageEntryResponse(key, count + untracked - trackedMin.get(key, 0.0), lower.get(key, 0.0))));
+        entries.sort(Comparator.comparingDouble(TopUsageEntryResponse::energyConsumed)
+                .reversed());
+        return new Ranking(entries, untracked);
+    }
+
+    @Scheduled(fixedDelayString = "${usage.top.eviction-interval}")
+    public void evict() {
+        hours.evict();
+    }
+
+    private record Ranking(List<TopUsageEntryResponse> entries, double untracked) {}
+
+    private static final class HourSketches {
+
+        private final SpaceSaving devices;
+        private final SpaceSaving users;
+
+        private HourSketches(int capacity) {
+            this.devices = new SpaceSaving(capacity);
+            this.users = new SpaceSaving(capacity);
+        }
+
+        private synchronized void offer(UsageReading reading) {
+            devices.offer(reading.deviceId(), reading.energyConsumed());
+            if (reading.userId() != null) {
+                users.offer(reading.userId(), reading.energyConsumed());
+            }
+        }
+
+        private SpaceSaving of(TopDimension dimension) {
+            return dimension == TopDimension.DEVICE ? devices : users;
+        }
+    }
+}
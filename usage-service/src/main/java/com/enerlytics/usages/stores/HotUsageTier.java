@@ -0,0 +1,461 @@
+package com.enerlytics.usages.stores;
+
+import com.enerlytics.usages.dtos.UsageBucket;
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.utils.GorillaBlock;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// In-process tier holding the most recent raw points per device in Gorilla-compressed off-heap blocks.
+// A range is only answered here when every point in it was seen by this instance; otherwise callers fall back
+// to the usage store. Readings are keyed by device, so a replica only sees the devices on the energy-usage
+// partitions it consumes: coverage is tracked per assigned partition, starts over whenever a partition is
+// assigned again, and a query touching a device on any other partition is declined.
+@Slf4j
+@Component
+public class HotUsageTier {
+
+    private final Clock clock;
+    private final boolean enabled;
+    private final long retentionMillis;
+    private final long blockMillis;
+    private final long maxBytes;
+
+    private final ConcurrentMap<Long, DeviceSeries> devices = new ConcurrentHashMap<>();
+    // owner -> the series whose latest reading was tagged with that owner
+    private final ConcurrentMap<Long, Set<DeviceSeries>> devicesByOwner = new ConcurrentHashMap<>();
+    // assigned partition -> its coverage; replaced on every assignment so series from an earlier one are ignored
+    private final ConcurrentMap<Integer, Coverage> partitions = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong totalPoints = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter rejected;
+
+    private volatile int partitionCount;
+
+    @Autowired
+    public HotUsageTier(
+            MeterRegistry meterRegistry,
+            @Value("${usage.hot-tier.enabled}") boolean enabled,
+            @Value("${usage.hot-tier.retention}") Duration retention,
+            @Value("${usage.hot-tier.block-duration}") Duration blockDuration,
+            @Value("${usage.hot-tier.max-bytes}") long maxBytes) {
+        this(meterRegistry, Clock.systemUTC(), enabled, retention, blockDuration, maxBytes);
+    }
+
+    HotUsageTier(
+            MeterRegistry meterRegistry,
+            Clock clock,
+            boolean enabled,
+            Duration retention,
+            Duration blockDuration,
+            long maxBytes) {
+        this.clock = clock;
+        this.enabled = enabled;
+        this.retentionMillis = retention.toMillis();
+        this.blockMillis = blockDuration.toMillis();
+        this.maxBytes = maxBytes;
+
+        Gauge.builder("usage.hot.bytes", totalBytes, AtomicLong::get)
+                .description("Off-heap bytes held by the hot usage tier")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("usage.hot.points", totalPoints, AtomicLong::get)
+                .description("Raw points held by the hot usage tier")
+                .register(meterRegistry);
+        Gauge.builder("usage.hot.devices", devices, ConcurrentMap::size)
+                .description("Devices tracked by the hot usage tier")
+                .register(meterRegistry);
+        this.hits = Counter.builder("usage.hot.queries").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("usage.hot.queries").tag("result", "miss").register(meterRegistry);
+        this.rejected = Counter.builder("usage.hot.rejected")
+                .description("Points dropped because they arrived out of order")
+                .register(meterRegistry);
+    }
+
+    // called by the rebalance listener; a partition count change moves devices between partitions, so everything
+    // held so far is dropped
+    public synchronized void assign(int partitionCount, Collection<Integer> assigned) {
+        if (!enabled) {
+            return;
+        }
+        if (partitionCount != this.partitionCount) {
+            this.partitionCount = partitionCount;
+            partitions.clear();
+            devices.values().forEach(this::remove);
+        }
+        long now = clock.millis();
+        for (int partition : assigned) {
+            // readings of this partition may have been consumed elsewhere since it was last assigned here
+            partitions.put(partition, new Coverage(now));
+        }
+        devices.values().stream()
+                .filter(series -> partitions.get(series.partition) != series.coverage)
+                .forEach(this::remove);
+        log.info("Hot usage tier covering partitions {} of {}", partitions.keySet(), partitionCount);
+    }
+
+    public synchronized void revoke(Collection<Integer> revoked) {
+        if (!enabled) {
+            return;
+        }
+        revoked.forEach(partitions::remove);
+        devices.values().stream()
+                .filter(series -> revoked.contains(series.partition))
+                .forEach(this::remove);
+    }
+
+    public void append(UsageReading reading) {
+        long timestamp = reading.timestamp().toEpochMilli();
+        int count = partitionCount;
+        if (!enabled || count == 0) {
+            return;
+        }
+        int partition = PartitionCoverage.partitionOf(reading.deviceId(), count);
+        Coverage coverage = partitions.get(partition);
+        if (coverage == null || timestamp < coverage.from) {
+            return;
+        }
+        // a series retired by a concurrent eviction pass or left from an earlier assignment is replaced
+        AppendResult result;
+        do {
+            DeviceSeries series = devices.compute(reading.deviceId(), (deviceId, current) -> {
+                if (current != null && current.coverage == coverage) {
+                    return current;
+                }
+                if (current != null) {
+                    current.retire();
+                }
+                return new DeviceSeries(deviceId, partition, coverage);
+            });
+            result = series.append(reading.userId(), timestamp, reading.energyConsumed());
+        } while (result == AppendResult.RETIRED);
+        if (result == AppendResult.REJECTED) {
+            rejected.increment();
+        }
+    }
+
+    // empty when any part of the range may be missing from this tier. A single user's query needs the ids of
+    // that user's devices, so it can be declined when one of them lives on a partition this instance doesn't own;
+    // any other query is only answered when this instance owns every partition.
+    public Optional<LongDoubleHashMap> sumByDevice(UsageQuery query, Collection<Long> deviceIds) {
+        long start = query.start().toEpochMilli();
+        long stop = query.stop().toEpochMilli();
+        LongDoubleHashMap sums = new LongDoubleHashMap();
+        return visit(query, deviceIds, series -> series.sum(start, stop, sums)) ? Optional.of(sums) : Optional.empty();
+    }
+
+    // bucket sums per device over windows of every aligned to the epoch; empty under the same conditions as sumByDevice
+    public Optional<List<UsageBucket>> window(UsageQuery query, Collection<Long> deviceIds, Duration every) {
+        long start = query.start().toEpochMilli();
+        long stop = query.stop().toEpochMilli();
+        long everyMillis = every.toMillis();
+        List<UsageBucket> buckets = new ArrayList<>();
+        return visit(query, deviceIds, series -> series.window(start, stop, everyMillis, buckets))
+                ? Optional.of(buckets)
+                : Optional.empty();
+    }
+
+    // hands every selected series to visitor, or returns false as soon as the range may be missing a point
+    private boolean visit(UsageQuery query, Collection<Long> deviceIds, Predicate<DeviceSeries> visitor) {
+        long start = query.start().toEpochMilli();
+        int count = partitionCount;
+        if (!enabled || count == 0 || (query.userId() != null && deviceIds == null)) {
+            misses.increment();
+            return false;
+        }
+
+        Collection<DeviceSeries> candidates;
+        if (query.userId() == null) {
+            for (int partition = 0; partition < count; partition++) {
+                if (!covers(partition, start)) {
+                    misses.increment();
+                    return false;
+                }
+            }
+            candidates = devices.values();
+        } else {
+            for (Long deviceId : deviceIds) {
+                if (deviceId == null || !query.includesDevice(deviceId)) {
+                    continue;
+                }
+                // a device that never had a tagged reading here isn't indexed under its owner yet
+                DeviceSeries series = devices.get(deviceId);
+                if (!covers(PartitionCoverage.partitionOf(deviceId, count), start)
+                        || (series != null && !series.covers(start))) {
+                    misses.increment();
+                    return false;
+                }
+            }
+            candidates = devicesByOwner.getOrDefault(query.userId(), Set.of());
+        }
+
+        for (DeviceSeries series : candidates) {
+            Long owner = series.owner;
+            if (owner == null && query.includesDevice(series.deviceId) && !series.covers(start)) {
+                misses.increment();
+                return false;
+            }
+            if (owner == null
+                    || (query.userId() != null && !query.userId().equals(owner))
+                    || !query.includesDevice(series.deviceId)
+                    || !query.includesOwner(owner)) {
+                continue;
+            }
+            if (!covers(series.partition, start) || !visitor.test(series)) {
+                misses.increment();
+                return false;
+            }
+        }
+        hits.increment();
+        return true;
+    }
+
+    private boolean covers(int partition, long start) {
+        Coverage coverage = partitions.get(partition);
+        return coverage != null && start >= coverage.from;
+    }
+
+    @Scheduled(fixedDelayString = "${usage.hot-tier.eviction-interval}")
+    public void evict() {
+        if (!enabled) {
+            return;
+        }
+        long cutoff = alignToBlock(clock.millis() - retentionMillis);
+        evictBefore(cutoff);
+
+        // over budget: give up the oldest blocks until the tier fits again
+        long now = clock.millis();
+        while (totalBytes.get() > maxBytes && cutoff < now) {
+            cutoff += blockMillis;
+            evictBefore(cutoff);
+        }
+        if (cutoff > alignToBlock(now - retentionMillis)) {
+            log.warn(
+                    "Hot usage tier over its {} byte budget, retention shortened to {} minutes",
+                    maxBytes,
+                    Duration.ofMillis(now - cutoff).toMinutes());
+        }
+    }
+
+    private void evictBefore(long cutoff) {
+        for (Coverage coverage : partitions.values()) {
+            if (cutoff > coverage.from) {
+                coverage.from = cutoff;
+            }
+        }
+        for (DeviceSeries series : devices.values()) {
+            if (series.evictBefore(cutoff)) {
+                remove(series);
+            }
+        }
+    }
+
+    private void remove(DeviceSeries series) {
+        if (devices.remove(series.deviceId, series)) {
+            series.retire();
+        }
+    }
+
+    private void index(DeviceSeries series, Long previousOwner, Long owner) {
+        if (previousOwner != null) {
+            unindex(series, previousOwner);
+        }
+        devicesByOwner
+                .computeIfAbsent(owner, id -> ConcurrentHashMap.newKeySet())
+                .add(series);
+    }
+
+    private void unindex(DeviceSeries series, Long owner) {
+        devicesByOwner.computeIfPresent(owner, (id, owned) -> {
+            owned.remove(series);
+            return owned.isEmpty() ? null : owned;
+        });
+    }
+
+    private long alignToBlock(long timestamp) {
+        return Math.floorDiv(timestamp, blockMillis) * blockMillis;
+    }
+
+    private final class DeviceSeries {
+
+        private final long deviceId;
+        private final int partition;
+        private final Coverage coverage;
+        private final ArrayDeque<Block> blocks = new ArrayDeque<>();
+        private volatile Long owner;
+        // raised past any point dropped for arriving out of order
+        private long coveredFrom;
+        private boolean retired;
+
+        private DeviceSeries(Long deviceId, int partition, Coverage coverage) {
+            this.deviceId = deviceId;
+            this.partition = partition;
+            this.coverage = coverage;
+        }
+
+        private synchronized AppendResult append(Long userId, long timestamp, double value) {
+            if (retired) {
+                return AppendResult.RETIRED;
+            }
+            // the store only takes the point once flow control has tagged it, so the range up to it isn't covered here
+            if (userId == null) {
+                coveredFrom = Math.max(coveredFrom, timestamp + 1);
+                return AppendResult.UNTAGGED;
+            }
+            if (!userId.equals(owner)) {
+                index(this, owner, userId);
+                owner = userId;
+            }
+
+            Block last = blocks.peekLast();
+            if (last != null && timestamp < last.gorilla.lastTimestamp()) {
+                coveredFrom = Math.max(coveredFrom, timestamp + 1);
+                return AppendResult.REJECTED;
+            }
+
+            long blockStart = alignToBlock(timestamp);
+            if (last == null || last.start != blockStart) {
+                if (last != null) {
+                    int before = last.gorilla.capacityBytes();
+                    last.gorilla.trim();
+                    totalBytes.addAndGet(last.gorilla.capacityBytes() - before);
+                }
+                last = new Block(blockStart, new GorillaBlock());
+                blocks.addLast(last);
+                totalBytes.addAndGet(last.gorilla.capacityBytes());
+            }
+
+            int before = last.gorilla.capacityBytes();
+            last.gorilla.append(timestamp, value);
+            totalBytes.addAndGet(last.gorilla.capacityBytes() - before);
+            totalPoints.incrementAndGet();
+            return AppendResult.APPENDED;
+        }
+
+        private synchronized boolean covers(long start) {
+            return start >= coveredFrom;
+        }
+
+        private synchronized boolean sum(long start, long stop, LongDoubleHashMap sums) {
+            // replaced by a fresh series, which is counted instead
+            if (retired) {
+                return true;
+            }
+            if (start < coveredFrom) {
+                return false;
+            }
+            double[] total = new double[1];
+            boolean[] found = new boolean[1];
+            for (Block block : blocks) {
+                if (block.start + blockMillis <= start || block.start >= stop) {
+                    continue;
+                }
+                block.gorilla.forEach((timestamp, value) -> {
+                    if (timestamp >= start && timestamp < stop) {
+                        total[0] += value;
+                        found[0] = true;
+                    }
+                });
+            }
+            if (found[0]) {
+                sums.add(deviceId, total[0]);
+            }
+            return true;
+        }
+
+        private synchronized boolean window(long start, long stop, long everyMillis, List<UsageBucket> buckets) {
+            if (retired) {
+                return true;
+            }
+            if (start < coveredFrom) {
+                return false;
+            }
+            LongDoubleHashMap windows = new LongDoubleHashMap();
+            for (Block block : blocks) {
+                if (block.start + blockMillis <= start || block.start >= stop) {
+                    continue;
+                }
+                block.gorilla.forEach((timestamp, value) -> {
+                    if (timestamp >= start && timestamp < stop) {
+                        windows.add(Math.floorDiv(timestamp, everyMillis), value);
+                    }
+                });
+            }
+            long[] windowIndexes = windows.keys();
+            Arrays.sort(windowIndexes);
+            for (long index : windowIndexes) {
+                buckets.add(
+                        new UsageBucket(deviceId, Instant.ofEpochMilli(index * everyMillis), windows.get(index, 0.0)));
+            }
+            return true;
+        }
+
+        // returns true when the series holds nothing and can be dropped
+        private synchronized boolean evictBefore(long cutoff) {
+            while (!blocks.isEmpty() && blocks.peekFirst().start + blockMillis <= cutoff) {
+                Block evicted = blocks.removeFirst();
+                totalBytes.addAndGet(-evicted.gorilla.capacityBytes());
+                totalPoints.addAndGet(-evicted.gorilla.count());
+            }
+            retired = blocks.isEmpty() && coveredFrom <= cutoff;
+            return retired;
+        }
+
+        // frees whatever is left; a series can be retired with blocks when its partition is revoked
+        private synchronized void retire() {
+            retired = true;
+            while (!blocks.isEmpty()) {
+                Block evicted = blocks.removeFirst();
+                totalBytes.addAndGet(-evicted.gorilla.capacityBytes());
+                totalPoints.addAndGet(-evicted.gorilla.count());
+            }
+            if (owner != null) {
+                unindex(this, owner);
+            }
+        }
+    }
+
+    private static final class Coverage {
+
+        // points before this instant were never seen (before the partition was assigned) or have been evicted
+        private volatile long from;
+
+        private Coverage(long from) {
+            this.from = from;
+        }
+    }
+
+    private enum AppendResult {
+        APPENDED,
+        REJECTED,
+        UNTAGGED,
+        RETIRED
+    }
+
+    private record Block(long start, GorillaBlock gorilla) {}
+}
@@ -0,0 +1,67 @@
+package com.enerlytics.usages.stores;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+// Hour-aligned buckets of consumer-maintained state, created on first use and dropped once older than the retention.
+// Shared by the in-memory rollups and sketches, which all only know about readings seen since startup, and only those
+// of the partitions consumed here (see PartitionCoverage).
+final class HourlyBuckets<T> {
+
+    private static final long HOUR_MILLIS = Duration.ofHours(1).toMillis();
+
+    private final Clock clock;
+    private final long retentionMillis;
+    private final long startedAt;
+    private final Supplier<T> factory;
+    private final ConcurrentSkipListMap<Long, T> buckets = new ConcurrentSkipListMap<>();
+
+    // hours before this have been evicted
+    private volatile long evictedBefore;
+
+    HourlyBuckets(Clock clock, Duration retention, Supplier<T> factory) {
+        this.clock = clock;
+        this.retentionMillis = retention.toMillis();
+        this.startedAt = clock.millis();
+        this.factory = factory;
+        this.evictedBefore = floorHour(startedAt - retentionMillis);
+    }
+
+    // null when the hour of the timestamp has already been evicted
+    T bucketFor(long timestamp) {
+        long hour = floorHour(timestamp);
+        if (hour < evictedBefore) {
+            return null;
+        }
+        return buckets.computeIfAbsent(hour, h -> factory.get());
+    }
+
+    // buckets of the hours overlapping [from, stop), where from is hour-aligned
+    Collection<T> range(long from, long stop) {
+        return buckets.subMap(from, true, stop, false).values();
+    }
+
+    // true when every reading consumed in hours from the given one on is still held
+    boolean covers(long from) {
+        return from >= startedAt && from >= evictedBefore;
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    void evict() {
+        long cutoff = floorHour(clock.millis() - retentionMillis);
+        if (cutoff > evictedBefore) {
+            evictedBefore = cutoff;
+        }
+        buckets.headMap(cutoff).clear();
+    }
+
+    static long floorHour(long timestamp) {
+        return Math.floorDiv(timestamp, HOUR_MILLIS) * HOUR_MILLIS;
+    }
+}
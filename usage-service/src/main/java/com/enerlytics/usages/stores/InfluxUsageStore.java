@@ -0,0 +1,182 @@
+package com.enerlytics.usages.stores;
+
+import com.enerlytics.usages.dtos.Resolution;
+import com.enerlytics.usages.dtos.UsageBucket;
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.exceptions.UsageWriteRejectedException;
+import com.enerlytics.usages.utils.FluxCsvPointCollector;
+import com.enerlytics.usages.utils.FluxCsvSeriesCollector;
+import com.enerlytics.usages.utils.FluxCsvSumCollector;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.client.write.Point;
+import com.influxdb.exceptions.InfluxException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "usage.storage.type", havingValue = "influx", matchIfMissing = true)
+public class InfluxUsageStore implements UsageStore {
+
+    private final InfluxDBClient influxDBClient;
+    private final FluxQueryExecutor fluxQueryExecutor;
+
+    @Value("${influx.bucket}")
+    private String dbBucket;
+
+    @Value("${influx.org}")
+    private String dbOrg;
+
+    @Value("${influx.rollups.hourly-bucket}")
+    private String hourlyBucket;
+
+    @Value("${influx.rollups.daily-bucket}")
+    private String dailyBucket;
+
+    // a 4xx other than a timeout or throttling means InfluxDB refused the points themselves
+    @Override
+    public void write(List<UsageReading> readings) {
+        List<Point> points = readings.stream().map(InfluxUsageStore::toPoint).toList();
+        try {
+            influxDBClient.getWriteApiBlocking().writePoints(dbBucket, dbOrg, points);
+        } catch (InfluxException e) {
+            if (e.status() >= 400 && e.status() < 500 && e.status() != 408 && e.status() != 429) {
+                throw new UsageWriteRejectedException(e.getMessage(), e);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public LongDoubleHashMap sumByDevice(UsageQuery query) {
+        String fluxQuery =
+                String.format("""
+                from(bucket: "%s")
+                  |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                  |> filter(fn: (r) => r["_measurement"] == "energy_usage")
+                  |> filter(fn: (r) => r["_field"] == "energyConsumed")
+                  |> filter(fn: (r) => %s)
+                  |> group(columns: ["deviceId"])
+                  |> sum(column: "_value")
+                  |> keep(columns: ["deviceId", "_value"])
+                """, bucketFor(query.resolution()), query.start(), query.stop(), ownerFilter(query));
+
+        FluxCsvSumCollector collector = new FluxCsvSumCollector("deviceId");
+        execute(queryType("sum-by-device", query), fluxQuery, collector);
+        if (collector.skipped() > 0) {
+            log.warn("Skipped {} unparseable usage rows", collector.skipped());
+        }
+        return collector.sums();
+    }
+
+    @Override
+    public List<UsageBucket> window(UsageQuery query, Duration every) {
+        String fluxQuery = String.format(
+                """
+                from(bucket: "%s")
+                  |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                  |> filter(fn: (r) => r["_measurement"] == "energy_usage")
+                  |> filter(fn: (r) => r["_field"] == "energyConsumed")
+                  |> filter(fn: (r) => %s)
+                  |> group(columns: ["deviceId"])
+                  |> aggregateWindow(every: %ds, fn: sum, timeSrc: "_start", createEmpty: false)
+                  |> keep(columns: ["deviceId", "_time", "_value"])
+                """, bucketFor(query.resolution()), query.start(), query.stop(), ownerFilter(query), every.toSeconds());
+
+        FluxCsvSeriesCollector collector = new FluxCsvSeriesCollector();
+        execute(queryType("window", query), fluxQuery, collector);
+        if (collector.skipped() > 0) {
+            log.warn("Skipped {} unparseable usage series rows", collector.skipped());
+        }
+        return collector.buckets();
+    }
+
+    @Override
+    public void scan(UsageQuery query, SeriesConsumer consumer) {
+        String fluxQuery =
+                String.format("""
+                from(bucket: "%s")
+                  |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                  |> filter(fn: (r) => r["_measurement"] == "energy_usage")
+                  |> filter(fn: (r) => r["_field"] == "energyConsumed")
+                  |> filter(fn: (r) => %s)
+                  |> group(columns: ["deviceId", "userId"])
+                  |> sort(columns: ["_time"])
+                  |> keep(columns: ["deviceId", "userId", "_time", "_value"])
+                """, bucketFor(query.resolution()), query.start(), query.stop(), ownerFilter(query));
+
+        FluxCsvPointCollector collector = new FluxCsvPointCollector(consumer);
+        execute(queryType("scan", query), fluxQuery, collector);
+        collector.finish();
+        if (collector.skipped() > 0) {
+            log.warn("Skipped {} unparseable usage points", collector.skipped());
+        }
+    }
+
+    private void execute(String queryType, String fluxQuery, Consumer<String> collector) {
+        try {
+            fluxQueryExecutor.stream(queryType, fluxQuery, collector);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running a Flux query", e);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static String queryType(String name, UsageQuery query) {
+        return name + "." + query.resolution().name().toLowerCase();
+    }
+
+    private String bucketFor(Resolution resolution) {
+        return switch (resolution) {
+            case RAW -> dbBucket;
+            case HOURLY -> hourlyBucket;
+            case DAILY -> dailyBucket;
+        };
+    }
+
+    // untagged points are superseded by their backfilled copies, so only owned points are read
+    private static String ownerFilter(UsageQuery query) {
+        String filter = query.userId() == null
+                ? "exists r[\"userId\"]"
+                : String.format("r[\"userId\"] == \"%s\"", query.userId());
+        if (query.isDeviceSharded()) {
+            filter += String.format(
+                    " and int(v: r[\"deviceId\"]) %% %d == %d", query.deviceShards(), query.deviceShard());
+        }
+        if (query.isUserSharded()) {
+            String shards = Arrays.stream(query.ownerTagShards())
+                    .mapToObj(shard -> String.format("r[\"userShard\"] == \"%d\"", shard))
+                    .collect(Collectors.joining(" or "));
+            filter += " and (" + (shards.isEmpty() ? "false" : shards) + ")";
+        }
+        return filter;
+    }
+
+    private static Point toPoint(UsageReading reading) {
+        Point point = Point.measurement("energy_usage")
+                .addTag("deviceId", reading.deviceId().toString())
+                .addField("energyConsumed", reading.energyConsumed())
+                .time(reading.timestamp(), WritePrecision.MS);
+        if (reading.userId() != null) {
+            point.addTag("userId", reading.userId().toString());
+            point.addTag("userShard", String.valueOf(UsageQuery.userShardOf(reading.userId())));
+        }
+        return point;
+    }
+}
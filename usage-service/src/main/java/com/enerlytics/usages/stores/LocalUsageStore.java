@@ -0,0 +1,369 @@
+package com.enerlytics.usages.stores;
+
+import com.enerlytics.usages.dtos.UsageBucket;
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import com.enerlytics.usages.utils.SeriesBuffer;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Embedded engine: one directory per device holding fixed-capacity, memory-mapped columnar chunk files
+// named <partitionStartMillis>_<sequence>.chunk with a header followed by a timestamp column and a value column. Every
+// chunk holds the points of one owner, recorded in its header, so a device changing hands starts a new chunk and its
+// earlier points stay with the previous owner. Chunks are listed and mapped once and indexed per device in memory.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "usage.storage.type", havingValue = "local")
+public class LocalUsageStore implements UsageStore {
+
+    private static final int MAGIC = 0x45555347;
+    // magic, capacity, count, 4 unused bytes, owner
+    private static final int HEADER_BYTES = 24;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+    private static final int OWNER_OFFSET = 16;
+    private static final long NO_OWNER = Long.MIN_VALUE;
+    private static final String CHUNK_SUFFIX = ".chunk";
+
+    private final Path root;
+    private final long chunkMillis;
+    private final int chunkCapacity;
+    private final ConcurrentMap<Long, DeviceChunks> devices = new ConcurrentHashMap<>();
+
+    public LocalUsageStore(
+            @Value("${usage.storage.local.path}") Path root,
+            @Value("${usage.storage.local.chunk-duration}") Duration chunkDuration,
+            @Value("${usage.storage.local.chunk-capacity}") int chunkCapacity)
+            throws IOException {
+        this.root = root;
+        this.chunkMillis = chunkDuration.toMillis();
+        this.chunkCapacity = chunkCapacity;
+
+        Files.createDirectories(root);
+        try (Stream<Path> deviceDirs = Files.list(root)) {
+            deviceDirs.filter(Files::isDirectory).forEach(this::loadDevice);
+        }
+        log.info("Opened local usage store at {} with {} devices", root.toAbsolutePath(), devices.size());
+    }
+
+    @Override
+    public void write(List<UsageReading> readings) {
+        for (UsageReading reading : readings) {
+            DeviceChunks device = devices.computeIfAbsent(reading.deviceId(), this::createDevice);
+            device.append(
+                    reading.userId() == null ? NO_OWNER : reading.userId(),
+                    reading.timestamp().toEpochMilli(),
+                    reading.energyConsumed());
+        }
+    }
+
+    @Override
+    public LongDoubleHashMap sumByDevice(UsageQuery query) {
+        long start = query.start().toEpochMilli();
+        long stop = query.stop().toEpochMilli();
+
+        LongDoubleHashMap sums = new LongDoubleHashMap();
+        for (DeviceChunks device : selectDevices(query)) {
+            double[] total = new double[1];
+            boolean[] found = new boolean[1];
+            device.scan(start, stop, owner -> owns(query, owner), (timestamp, value) -> {
+                total[0] += value;
+                found[0] = true;
+            });
+            if (found[0]) {
+                sums.add(device.deviceId, total[0]);
+            }
+        }
+        return sums;
+    }
+
+    @Override
+    public List<UsageBucket> window(UsageQuery query, Duration every) {
+        long start = query.start().toEpochMilli();
+        long stop = query.stop().toEpochMilli();
+        long everyMillis = every.toMillis();
+
+        List<UsageBucket> buckets = new ArrayList<>();
+        for (DeviceChunks device : selectDevices(query)) {
+            LongDoubleHashMap windows = new LongDoubleHashMap();
+            device.scan(
+                    start,
+                    stop,
+                    owner -> owns(query, owner),
+                    (timestamp, value) -> windows.add(Math.floorDiv(timestamp, everyMillis), value));
+
+            long[] windowIndexes = windows.keys();
+            Arrays.sort(windowIndexes);
+            for (long index : windowIndexes) {
+                buckets.add(new UsageBucket(
+                        device.deviceId, Instant.ofEpochMilli(index * everyMillis), windows.get(index, 0.0)));
+            }
+        }
+        return buckets;
+    }
+
+    @Override
+    public void scan(UsageQuery query, SeriesConsumer consumer) {
+        long start = query.start().toEpochMilli();
+        long stop = query.stop().toEpochMilli();
+
+        SeriesBuffer series = new SeriesBuffer();
+        for (DeviceChunks device : selectDevices(query)) {
+            for (long owner : device.owners(start, stop, candidate -> owns(query, candidate))) {
+                series.clear();
+                device.scan(start, stop, candidate -> candidate == owner, series::add);
+                if (series.count() > 0) {
+                    // late readings land in later chunks of the same partition
+                    series.sortByTime();
+                    consumer.accept(device.deviceId, owner, series.timestamps(), series.values(), series.count());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        devices.values().forEach(DeviceChunks::flush);
+    }
+
+    private List<DeviceChunks> selectDevices(UsageQuery query) {
+        return devices.values().stream()
+                .filter(device -> query.includesDevice(device.deviceId))
+                .filter(device -> query.userId() == null || device.everOwnedBy(query.userId()))
+                .sorted(Comparator.comparingLong(device -> device.deviceId))
+                .toList();
+    }
+
+    private static boolean owns(UsageQuery query, long owner) {
+        return owner != NO_OWNER && (query.userId() == null || query.userId() == owner) && query.includesOwner(owner);
+    }
+
+    private void loadDevice(Path dir) {
+        try {
+            long deviceId = Long.parseLong(dir.getFileName().toString());
+            DeviceChunks device = new DeviceChunks(deviceId, dir);
+            device.load();
+            devices.put(deviceId, device);
+        } catch (NumberFormatException | IOException e) {
+            log.warn("Ignoring unreadable device directory {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private DeviceChunks createDevice(Long deviceId) {
+        Path dir = root.resolve(deviceId.toString());
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new DeviceChunks(deviceId, dir);
+    }
+
+    @FunctionalInterface
+    private interface PointConsumer {
+        void accept(long timestamp, double value);
+    }
+
+    private final class DeviceChunks {
+
+        private final long deviceId;
+        private final Path dir;
+        // partition start -> its chunks in sequence order, all mapped; guarded by this
+        private final NavigableMap<Long, List<Chunk>> chunks = new TreeMap<>();
+        // every owner with a chunk here, so user queries skip other devices without touching their chunks
+        private final Set<Long> owners = ConcurrentHashMap.newKeySet();
+        private Chunk active;
+
+        private DeviceChunks(long deviceId, Path dir) {
+            this.deviceId = deviceId;
+            this.dir = dir;
+        }
+
+        private synchronized void load() throws IOException {
+            List<Path> files;
+            try (Stream<Path> listed = Files.list(dir)) {
+                files = listed.filter(file -> file.toString().endsWith(CHUNK_SUFFIX))
+                        .sorted(Comparator.comparingLong(LocalUsageStore::partitionOf)
+                                .thenComparingInt(LocalUsageStore::sequenceOf))
+                        .toList();
+            }
+            for (Path file : files) {
+                index(openMapped(file));
+            }
+        }
+
+        private boolean everOwnedBy(long userId) {
+            return owners.contains(userId);
+        }
+
+        private synchronized void append(long owner, long timestamp, double value) {
+            try {
+                long partition = Math.floorDiv(timestamp, chunkMillis) * chunkMillis;
+                if (active == null || active.partition != partition || active.owner != owner || active.isFull()) {
+                    flush();
+                    active = writable(partition, owner);
+                }
+                active.append(timestamp, value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private synchronized List<Long> owners(long start, long stop, LongPredicate ownerFilter) {
+            List<Long> found = new ArrayList<>(1);
+            for (List<Chunk> partition : overlapping(start, stop)) {
+                for (Chunk chunk : partition) {
+                    if (ownerFilter.test(chunk.owner) && !found.contains(chunk.owner)) {
+                        found.add(chunk.owner);
+                    }
+                }
+            }
+            return found;
+        }
+
+        private synchronized void scan(long start, long stop, LongPredicate ownerFilter, PointConsumer consumer) {
+            for (List<Chunk> partition : overlapping(start, stop)) {
+                for (Chunk chunk : partition) {
+                    if (ownerFilter.test(chunk.owner)) {
+                        chunk.scan(start, stop, consumer);
+                    }
+                }
+            }
+        }
+
+        private Collection<List<Chunk>> overlapping(long start, long stop) {
+            long firstPartition = Math.floorDiv(start, chunkMillis) * chunkMillis;
+            return chunks.subMap(firstPartition, true, stop, false).values();
+        }
+
+        private synchronized void flush() {
+            if (active != null) {
+                active.buffer.force();
+            }
+        }
+
+        // the partition's last chunk while it has room and the same owner, else a new one after it
+        private Chunk writable(long partition, long owner) throws IOException {
+            List<Chunk> partitionChunks = chunks.get(partition);
+            Chunk latest = partitionChunks == null ? null : partitionChunks.getLast();
+            if (latest != null && latest.owner == owner && !latest.isFull()) {
+                return latest;
+            }
+            int sequence = latest == null ? 0 : latest.sequence + 1;
+            Chunk created = createChunk(dir.resolve(partition + "_" + sequence + CHUNK_SUFFIX), owner);
+            index(created);
+            return created;
+        }
+
+        private void index(Chunk chunk) {
+            chunks.computeIfAbsent(chunk.partition, partition -> new ArrayList<>())
+                    .add(chunk);
+            if (chunk.owner != NO_OWNER) {
+                owners.add(chunk.owner);
+            }
+        }
+
+        private Chunk createChunk(Path path, long owner) throws IOException {
+            long size = HEADER_BYTES + (long) chunkCapacity * (Long.BYTES + Double.BYTES);
+            try (FileChannel channel = FileChannel.open(
+                    path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(CAPACITY_OFFSET, chunkCapacity);
+                buffer.putInt(COUNT_OFFSET, 0);
+                buffer.putLong(OWNER_OFFSET, owner);
+                return new Chunk(path, buffer);
+            }
+        }
+
+        // mapped writable so a reopened partition's last chunk can take more points without remapping
+        private Chunk openMapped(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                if (buffer.getInt(0) != MAGIC) {
+                    throw new IOException("Not a usage chunk: " + path);
+                }
+                return new Chunk(path, buffer);
+            }
+        }
+    }
+
+    private static long partitionOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('_')));
+    }
+
+    private static int sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(name.indexOf('_') + 1, name.length() - CHUNK_SUFFIX.length()));
+    }
+
+    private static final class Chunk {
+
+        private final long partition;
+        private final int sequence;
+        private final long owner;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final int valuesOffset;
+
+        private Chunk(Path path, MappedByteBuffer buffer) {
+            this.partition = partitionOf(path);
+            this.sequence = sequenceOf(path);
+            this.owner = buffer.getLong(OWNER_OFFSET);
+            this.buffer = buffer;
+            this.capacity = buffer.getInt(CAPACITY_OFFSET);
+            this.valuesOffset = HEADER_BYTES + capacity * Long.BYTES;
+        }
+
+        private int count() {
+            return buffer.getInt(COUNT_OFFSET);
+        }
+
+        private boolean isFull() {
+            return count() >= capacity;
+        }
+
+        private void append(long timestamp, double value) {
+            int count = count();
+            buffer.putLong(HEADER_BYTES + count * Long.BYTES, timestamp);
+            buffer.putDouble(valuesOffset + count * Double.BYTES, value);
+            buffer.putInt(COUNT_OFFSET, count + 1);
+        }
+
+        private void scan(long start, long stop, PointConsumer consumer) {
+            int count = count();
+            for (int i = 0; i < count; i++) {
+                long timestamp = buffer.getLong(HEADER_BYTES + i * Long.BYTES);
+                if (timestamp >= start && timestamp < stop) {
+                    consumer.accept(timestamp, buffer.getDouble(valuesOffset + i * Double.BYTES));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.enerlytics.usages.stores;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.kafka.common.utils.Utils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// The energy-usage partitions this replica consumes, and since when. Readings are keyed by device, so the
+// consumer-maintained rollups, summaries and sketches only ever see the partitions consumed here; they answer for
+// the whole fleet over a window only when this replica has owned every partition since the window began. Ownership
+// of a partition starts over whenever it is assigned again, since it may have been consumed elsewhere in between.
+@Component
+public class PartitionCoverage {
+
+    private final Clock clock;
+    // assigned partition -> when it was assigned here
+    private final ConcurrentMap<Integer, Long> ownedSince = new ConcurrentHashMap<>();
+
+    private volatile int partitionCount;
+
+    @Autowired
+    public PartitionCoverage() {
+        this(Clock.systemUTC());
+    }
+
+    PartitionCoverage(Clock clock) {
+        this.clock = clock;
+    }
+
+    // called by the rebalance listener; a partition count change moves devices between partitions, so nothing owned
+    // before it counts
+    public synchronized void assign(int partitionCount, Collection<Integer> assigned) {
+        if (partitionCount != this.partitionCount) {
+            this.partitionCount = partitionCount;
+            ownedSince.clear();
+        }
+        long now = clock.millis();
+        assigned.forEach(partition -> ownedSince.put(partition, now));
+    }
+
+    public synchronized void revoke(Collection<Integer> revoked) {
+        revoked.forEach(ownedSince::remove);
+    }
+
+    public int partitionCount() {
+        return partitionCount;
+    }
+
+    public boolean owns(int partition) {
+        return ownedSince.containsKey(partition);
+    }
+
+    // true when this replica has owned the partition since the given time
+    public boolean covers(int partition, long from) {
+        Long since = ownedSince.get(partition);
+        return since != null && since <= from;
+    }
+
+    // true when every reading since the given time was consumed by this replica
+    public boolean coversAll(long from) {
+        int count = partitionCount;
+        if (count == 0) {
+            return false;
+        }
+        for (int partition = 0; partition < count; partition++) {
+            if (!covers(partition, from)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the partition the producer's default partitioner picks for the device's record key
+    public static int partitionOf(long deviceId, int partitionCount) {
+        byte[] key = String.valueOf(deviceId).getBytes(StandardCharsets.UTF_8);
+        return Utils.toPositive(Utils.murmur2(key)) % partitionCount;
+    }
+}
@@ -0,0 +1,22 @@
+package com.enerlytics.usages.stores;
+
+import java.time.Instant;
+import java.util.Optional;
+import org.springframework.stereotype.Component;
+
+// The instant from which the hourly and daily rollup buckets hold every window of the raw data. Rollup tasks only
+// look one period back, so windows before their first run stay empty until the provisioner has backfilled them;
+// until it has recorded a watermark no rollup is trusted and queries read raw data.
+@Component
+public class RollupWatermark {
+
+    private volatile Instant validFrom;
+
+    public Optional<Instant> validFrom() {
+        return Optional.ofNullable(validFrom);
+    }
+
+    public void set(Instant validFrom) {
+        this.validFrom = validFrom;
+    }
+}
@@ -0,0 +1,469 @@
+package com.enerlytics.usages.stores;
+
+import com.enerlytics.usages.dtos.Resolution;
+import com.enerlytics.usages.dtos.UsageBucket;
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Cold tier: settled UTC days are exported from the usage store into one compressed columnar file per device
+// shard (<path>/<yyyy-MM-dd>/shard-<n>.ua). A day is only visible to queries once its COMPLETE marker exists.
+// The path is shared by all replicas: only the one consuming partition 0 exports, and every replica reloads the
+// markers on each export run. A reading stored into an archived day marks it STALE, which takes it out of service
+// everywhere until the exporter writes it again; that only holds within max-backfill, since older raw points may
+// already be gone from the store, so later readings for older days reach the store and rollups but not the archive.
+@Slf4j
+@Component
+public class UsageArchive {
+
+    private static final String COMPLETE_MARKER = "COMPLETE";
+    private static final String STALE_MARKER = "STALE";
+    private static final int EXPORTER_PARTITION = 0;
+
+    private final UsageStore usageStore;
+    private final PartitionCoverage coverage;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Path root;
+    private final int shards;
+    private final Duration exportDelay;
+    private final Duration maxBackfill;
+    private final Duration readAfter;
+    private final Duration exportInterval;
+
+    // archived day -> modification time of its COMPLETE marker, which changes whenever the day is written again
+    private final NavigableMap<LocalDate, Long> archivedDays = new ConcurrentSkipListMap<>();
+    private final Cache<Path, ArchiveFile.Index> indexes;
+    private final Counter exportedPoints;
+    private final Counter staleDays;
+    private final Counter decodedSeries;
+
+    @Autowired
+    public UsageArchive(
+            UsageStore usageStore,
+            PartitionCoverage coverage,
+            MeterRegistry meterRegistry,
+            @Value("${usage.archive.enabled}") boolean enabled,
+            @Value("${usage.archive.path}") Path root,
+            @Value("${usage.archive.shards}") int shards,
+            @Value("${usage.archive.export-delay}") Duration exportDelay,
+            @Value("${usage.archive.max-backfill}") Duration maxBackfill,
+            @Value("${usage.archive.read-after}") Duration readAfter,
+            @Value("${usage.archive.export-interval}") Duration exportInterval,
+            @Value("${usage.archive.index-cache-size}") long indexCacheSize)
+            throws IOException {
+        this(
+                usageStore,
+                coverage,
+                meterRegistry,
+                Clock.systemUTC(),
+                enabled,
+                root,
+                shards,
+                exportDelay,
+                maxBackfill,
+                readAfter,
+                exportInterval,
+                indexCacheSize);
+    }
+
+    UsageArchive(
+            UsageStore usageStore,
+            PartitionCoverage coverage,
+            MeterRegistry meterRegistry,
+            Clock clock,
+            boolean enabled,
+            Path root,
+            int shards,
+            Duration exportDelay,
+            Duration maxBackfill,
+            Duration readAfter,
+            Duration exportInterval,
+            long indexCacheSize)
+            throws IOException {
+        this.usageStore = usageStore;
+        this.coverage = coverage;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.root = root;
+        this.shards = shards;
+        this.exportDelay = exportDelay;
+        this.maxBackfill = maxBackfill;
+        this.readAfter = readAfter;
+        this.exportInterval = exportInterval;
+
+        this.indexes =
+                Caffeine.newBuilder().maximumSize(indexCacheSize).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, indexes, "usage.archive.index");
+        this.exportedPoints = Counter.builder("usage.archive.exported.points").register(meterRegistry);
+        this.decodedSeries = Counter.builder("usage.archive.decoded.series")
+                .description("Archived series decompressed because the footer alone could not answer the range")
+                .register(meterRegistry);
+        this.staleDays = Counter.builder("usage.archive.stale-days")
+                .description("Archived days taken out of service by a reading stored after their export")
+                .register(meterRegistry);
+
+        if (enabled) {
+            Files.createDirectories(root);
+            refreshArchivedDays();
+            log.info("Opened usage archive at {} with {} archived days", root.toAbsolutePath(), archivedDays.size());
+        }
+    }
+
+    // called for every stored reading; readings newer than the export delay can't belong to an archived day
+    public void stored(UsageReading reading) {
+        Instant now = clock.instant();
+        if (!enabled || reading.timestamp().isAfter(now.minus(exportDelay))) {
+            return;
+        }
+        LocalDate day = dayOf(reading.timestamp());
+        // only days the exporter may have written already and would write again
+        if (!exportable(day, now) || !day.isAfter(dayOf(now.minus(maxBackfill)))) {
+            return;
+        }
+        Path dayDir = root.resolve(day.toString());
+        try {
+            // checked on disk, since the day may have been written again since this replica last refreshed
+            if (Files.exists(dayDir.resolve(COMPLETE_MARKER))) {
+                Files.writeString(
+                        dayDir.resolve(STALE_MARKER),
+                        Long.toString(now.toEpochMilli()),
+                        StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE);
+                staleDays.increment();
+                log.info("Archived usage for {} is stale after a late reading of device {}", day, reading.deviceId());
+            }
+        } catch (FileAlreadyExistsException e) {
+            // already waiting for its next export
+        } catch (IOException e) {
+            log.warn("Failed to mark archived usage for {} stale: {}", day, e.getMessage());
+        }
+        withdraw(day);
+    }
+
+    // empty unless the range is old enough to be served from the archive and every day in it has been archived
+    public Optional<LongDoubleHashMap> sumByDevice(UsageQuery query) {
+        if (!enabled || query.stop().isAfter(clock.instant().minus(readAfter)) || !covers(query)) {
+            return Optional.empty();
+        }
+
+        long start = query.start().toEpochMilli();
+        long stop = query.stop().toEpochMilli();
+        LongDoubleHashMap sums = new LongDoubleHashMap();
+        try {
+            for (LocalDate day = dayOf(query.start()); dayStart(day) < stop; day = day.plusDays(1)) {
+                for (int shard = 0; shard < shards; shard++) {
+                    sumShard(shardPath(day, shard), query, start, stop, sums);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read usage archive for {} to {}: {}", query.start(), query.stop(), e.getMessage());
+            return Optional.empty();
+        }
+        return Optional.of(sums);
+    }
+
+    // bucket sums per device over windows of every aligned to the epoch, read from the raw points; empty under the
+    // same conditions as sumByDevice
+    public Optional<List<UsageBucket>> window(UsageQuery query, Duration every) {
+        if (!enabled || query.stop().isAfter(clock.instant().minus(readAfter)) || !covers(query)) {
+            return Optional.empty();
+        }
+
+        long start = query.start().toEpochMilli();
+        long stop = query.stop().toEpochMilli();
+        long everyMillis = every.toMillis();
+        // a device's series is split over one file per day, so its windows are collected across all of them
+        Map<Long, LongDoubleHashMap> windowsByDevice = new TreeMap<>();
+        try {
+            for (LocalDate day = dayOf(query.start()); dayStart(day) < stop; day = day.plusDays(1)) {
+                for (int shard = 0; shard < shards; shard++) {
+                    Path path = shardPath(day, shard);
+                    for (ArchiveFile.Entry entry : matching(path, query, start, stop)) {
+                        LongDoubleHashMap windows =
+                                windowsByDevice.computeIfAbsent(entry.deviceId(), id -> new LongDoubleHashMap());
+                        ArchiveFile.forEachInRange(
+                                path,
+                                entry,
+                                start,
+                                stop,
+                                (timestamp, value) -> windows.add(Math.floorDiv(timestamp, everyMillis), value));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read usage archive for {} to {}: {}", query.start(), query.stop(), e.getMessage());
+            return Optional.empty();
+        }
+
+        List<UsageBucket> buckets = new ArrayList<>();
+        windowsByDevice.forEach((deviceId, windows) -> {
+            long[] windowIndexes = windows.keys();
+            Arrays.sort(windowIndexes);
+            for (long index : windowIndexes) {
+                buckets.add(
+                        new UsageBucket(deviceId, Instant.ofEpochMilli(index * everyMillis), windows.get(index, 0.0)));
+            }
+        });
+        return Optional.of(buckets);
+    }
+
+    @Scheduled(
+            initialDelayString = "${usage.archive.initial-delay}",
+            fixedDelayString = "${usage.archive.export-interval}")
+    public void exportPendingDays() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            refreshArchivedDays();
+        } catch (IOException e) {
+            log.warn("Failed to reload usage archive at {}: {}", root, e.getMessage());
+        }
+        if (!coverage.owns(EXPORTER_PARTITION)) {
+            return;
+        }
+
+        Instant now = clock.instant();
+        // raw points older than the backfill window may already have been dropped by retention
+        for (LocalDate day = dayOf(now.minus(maxBackfill)).plusDays(1); exportable(day, now); day = day.plusDays(1)) {
+            try {
+                if (needsExport(day, now)) {
+                    exportDay(day);
+                }
+            } catch (Exception e) {
+                log.error("Failed to archive usage for {}: {}", day, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private boolean exportable(LocalDate day, Instant now) {
+        return !Instant.ofEpochMilli(dayStart(day.plusDays(1)))
+                .plus(exportDelay)
+                .isAfter(now);
+    }
+
+    // a stale day is written again only once every replica has reloaded the markers since it went stale, so none
+    // still reads its files while they are replaced
+    private boolean needsExport(LocalDate day, Instant now) throws IOException {
+        Path dayDir = root.resolve(day.toString());
+        Path stale = dayDir.resolve(STALE_MARKER);
+        if (Files.exists(stale)) {
+            // holds the time the day went stale; a marker still being written reads as just now
+            long since;
+            try {
+                since = Long.parseLong(Files.readString(stale).trim());
+            } catch (NumberFormatException e) {
+                since = now.toEpochMilli();
+            }
+            return since + exportInterval.toMillis() <= now.toEpochMilli();
+        }
+        return !Files.exists(dayDir.resolve(COMPLETE_MARKER));
+    }
+
+    void exportDay(LocalDate day) throws IOException {
+        Path dayDir = root.resolve(day.toString());
+        Files.createDirectories(dayDir);
+        // the markers go before the scan, so a reading stored from here on is either in it or marks the day again
+        withdraw(day);
+        Files.deleteIfExists(dayDir.resolve(COMPLETE_MARKER));
+        Files.deleteIfExists(dayDir.resolve(STALE_MARKER));
+
+        ArchiveFile.Writer[] writers = new ArchiveFile.Writer[shards];
+        long[] points = new long[1];
+        try {
+            for (int shard = 0; shard < shards; shard++) {
+                // unique, so an exporter that lost partition 0 mid-export never writes into the new one's files
+                writers[shard] = new ArchiveFile.Writer(Files.createTempFile(dayDir, "shard-" + shard + "-", ".tmp"));
+            }
+
+            UsageQuery query = new UsageQuery(
+                    Resolution.RAW,
+                    Instant.ofEpochMilli(dayStart(day)),
+                    Instant.ofEpochMilli(dayStart(day.plusDays(1))),
+                    null);
+            usageStore.scan(query, (deviceId, userId, timestamps, values, count) -> {
+                try {
+                    writers[shardOf(deviceId)].append(deviceId, userId, timestamps, values, count);
+                    points[0] += count;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            for (int shard = 0; shard < shards; shard++) {
+                Path target = shardPath(day, shard);
+                writers[shard].finish(target);
+                indexes.invalidate(target);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (ArchiveFile.Writer writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+
+        Path complete = dayDir.resolve(COMPLETE_MARKER);
+        Files.writeString(complete, Integer.toString(shards));
+        archivedDays.put(day, Files.getLastModifiedTime(complete).toMillis());
+        exportedPoints.increment(points[0]);
+        log.info("Archived {} usage points for {} into {} shards", points[0], day, shards);
+    }
+
+    private boolean covers(UsageQuery query) {
+        long stop = query.stop().toEpochMilli();
+        for (LocalDate day = dayOf(query.start()); dayStart(day) < stop; day = day.plusDays(1)) {
+            if (!archivedDays.containsKey(day)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sumShard(Path path, UsageQuery query, long start, long stop, LongDoubleHashMap sums)
+            throws IOException {
+        for (ArchiveFile.Entry entry : matching(path, query, start, stop)) {
+            if (entry.within(start, stop)) {
+                sums.add(entry.deviceId(), entry.sum());
+            } else {
+                decodedSeries.increment();
+                sums.add(entry.deviceId(), ArchiveFile.sumInRange(path, entry, start, stop));
+            }
+        }
+    }
+
+    // the series in one shard file the query selects that have points in [start, stop)
+    private List<ArchiveFile.Entry> matching(Path path, UsageQuery query, long start, long stop) throws IOException {
+        ArchiveFile.Index index = index(path);
+        if (!index.footer().overlaps(start, stop)) {
+            return List.of();
+        }
+        List<ArchiveFile.Entry> entries = new ArrayList<>();
+        for (ArchiveFile.Entry entry : index.entries()) {
+            if ((query.userId() == null || entry.userId() == query.userId())
+                    && query.includesDevice(entry.deviceId())
+                    && query.includesOwner(entry.userId())
+                    && entry.overlaps(start, stop)) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private ArchiveFile.Index index(Path path) throws IOException {
+        try {
+            return indexes.get(path, p -> {
+                try {
+                    return ArchiveFile.readIndex(p);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // serves the days complete on disk and not stale; a day written again since the last refresh drops its indexes
+    private void refreshArchivedDays() throws IOException {
+        Map<LocalDate, Long> complete = new HashMap<>();
+        try (Stream<Path> dayDirs = Files.list(root)) {
+            dayDirs.filter(dir ->
+                            Files.exists(dir.resolve(COMPLETE_MARKER)) && !Files.exists(dir.resolve(STALE_MARKER)))
+                    .forEach(dir -> {
+                        try {
+                            Path marker = dir.resolve(COMPLETE_MARKER);
+                            int dayShards =
+                                    Integer.parseInt(Files.readString(marker).trim());
+                            if (dayShards != shards) {
+                                log.warn(
+                                        "Ignoring archived day {} written with {} shards",
+                                        dir.getFileName(),
+                                        dayShards);
+                                return;
+                            }
+                            complete.put(
+                                    LocalDate.parse(dir.getFileName().toString()),
+                                    Files.getLastModifiedTime(marker).toMillis());
+                        } catch (IOException | NumberFormatException | DateTimeParseException e) {
+                            log.warn("Ignoring unreadable archive directory {}: {}", dir, e.getMessage());
+                        }
+                    });
+        }
+        for (LocalDate day : archivedDays.keySet()) {
+            if (!complete.containsKey(day)) {
+                withdraw(day);
+            }
+        }
+        complete.forEach((day, generation) -> {
+            Long previous = archivedDays.put(day, generation);
+            if (previous != null && !previous.equals(generation)) {
+                invalidate(day);
+            }
+        });
+    }
+
+    private void withdraw(LocalDate day) {
+        if (archivedDays.remove(day) != null) {
+            invalidate(day);
+        }
+    }
+
+    private void invalidate(LocalDate day) {
+        for (int shard = 0; shard < shards; shard++) {
+            indexes.invalidate(shardPath(day, shard));
+        }
+    }
+
+    private Path shardPath(LocalDate day, int shard) {
+        return root.resolve(day.toString()).resolve("shard-" + shard + ArchiveFile.SUFFIX);
+    }
+
+    private int shardOf(long deviceId) {
+        return (int) Math.floorMod(deviceId, (long) shards);
+    }
+
+    private static LocalDate dayOf(Instant instant) {
+        return LocalDate.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    private static long dayStart(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+}
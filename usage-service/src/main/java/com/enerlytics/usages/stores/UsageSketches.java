@@ -0,0 +1,144 @@
+package com.enerlytics.usages.stores;
+
+import com.enerlytics.usages.dtos.FleetDimension;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.dtos.external.DeviceServiceResponse;
+import com.enerlytics.usages.dtos.responses.GroupAnalyticsResponse;
+import com.enerlytics.usages.dtos.responses.UsageAnalyticsResponse;
+import com.enerlytics.usages.utils.HyperLogLog;
+import com.enerlytics.usages.utils.KllSketch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Per-hour, per-device-type KLL sketches of reading sizes and HyperLogLog sketches of reporting devices, updated by
+// the consumer. Both merge, so any hour range is answered by merging its buckets in memory bounded by
+// hours x device types. Like the hot tier it only sees readings consumed by this instance since startup, so an answer
+// is only complete when this replica owned every partition for the whole range.
+@Component
+public class UsageSketches {
+
+    private final boolean enabled;
+    private final PartitionCoverage coverage;
+    private final int kllK;
+    private final int hllPrecision;
+    private final HourlyBuckets<HourSketches> hours;
+    private final Counter late;
+
+    @Autowired
+    public UsageSketches(
+            MeterRegistry meterRegistry,
+            PartitionCoverage coverage,
+            @Value("${usage.sketches.enabled}") boolean enabled,
+            @Value("${usage.sketches.retention}") Duration retention,
+            @Value("${usage.sketches.kll-k}") int kllK,
+            @Value("${usage.sketches.hll-precision}") int hllPrecision) {
+        this(meterRegistry, Clock.systemUTC(), coverage, enabled, retention, kllK, hllPrecision);
+    }
+
+    UsageSketches(
+            MeterRegistry meterRegistry,
+            Clock clock,
+            PartitionCoverage coverage,
+            boolean enabled,
+            Duration retention,
+            int kllK,
+            int hllPrecision) {
+        this.enabled = enabled;
+        this.coverage = coverage;
+        this.kllK = kllK;
+        this.hllPrecision = hllPrecision;
+        this.hours = new HourlyBuckets<>(clock, retention, HourSketches::new);
+        this.late = Counter.builder("usage.sketches.late")
+                .description("Readings dropped because their hour was already evicted")
+                .register(meterRegistry);
+    }
+
+    public void record(UsageReading reading, DeviceServiceResponse device) {
+        if (!enabled) {
+            return;
+        }
+        HourSketches sketches = hours.bucketFor(reading.timestamp().toEpochMilli());
+        if (sketches == null) {
+            late.increment();
+            return;
+        }
+        String deviceType = FleetDimension.DEVICE_TYPE.keyOf(device);
+        synchronized (sketches) {
+            sketches.byType
+                    .computeIfAbsent(deviceType, type -> new TypeSketches())
+                    .record(reading);
+        }
+    }
+
+    // deviceType narrows the per-type list to one type; the fleet row always covers every type
+    public UsageAnalyticsResponse analyze(Instant start, Instant stop, String deviceType, double[] ranks) {
+        long from = HourlyBuckets.floorHour(start.toEpochMilli());
+        Map<String, TypeSketches> merged = new TreeMap<>();
+        for (HourSketches sketches : hours.range(from, stop.toEpochMilli())) {
+            synchronized (sketches) {
+                sketches.byType.forEach((type, typeSketches) ->
+                        merged.computeIfAbsent(type, t -> new TypeSketches()).merge(typeSketches));
+            }
+        }
+
+        TypeSketches fleet = new TypeSketches();
+        List<GroupAnalyticsResponse> deviceTypes = new ArrayList<>();
+        merged.forEach((type, typeSketches) -> {
+            fleet.merge(typeSketches);
+            if (deviceType == null || deviceType.equalsIgnoreCase(type)) {
+                deviceTypes.add(typeSketches.toResponse(type, ranks));
+            }
+        });
+        return new UsageAnalyticsResponse(
+                Instant.ofEpochMilli(from),
+                stop,
+                enabled && hours.covers(from) && coverage.coversAll(from),
+                ranks,
+                fleet.toResponse(null, ranks),
+                deviceTypes);
+    }
+
+    @Scheduled(fixedDelayString = "${usage.sketches.eviction-interval}")
+    public void evict() {
+        hours.evict();
+    }
+
+    private static final class HourSketches {
+
+        // guarded by the enclosing HourSketches
+        private final Map<String, TypeSketches> byType = new HashMap<>();
+    }
+
+    private final class TypeSketches {
+
+        private final KllSketch readings = new KllSketch(kllK);
+        private final HyperLogLog devices = new HyperLogLog(hllPrecision);
+
+        private void record(UsageReading reading) {
+            readings.update(reading.energyConsumed());
+            devices.add(reading.deviceId());
+        }
+
+        private void merge(TypeSketches other) {
+            readings.merge(other.readings);
+            devices.merge(other.devices);
+        }
+
+        private GroupAnalyticsResponse toResponse(String deviceType, double[] ranks) {
+            return new GroupAnalyticsResponse(
+                    deviceType, readings.count(), devices.estimate(), readings.quantiles(ranks));
+        }
+    }
+}
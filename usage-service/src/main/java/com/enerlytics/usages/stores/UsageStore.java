@@ -0,0 +1,25 @@
+package com.enerlytics.usages.stores;
+
+import com.enerlytics.usages.dtos.UsageBucket;
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import java.time.Duration;
+import java.util.List;
+
+public interface UsageStore {
+
+    void write(List<UsageReading> readings);
+
+    LongDoubleHashMap sumByDevice(UsageQuery query);
+
+    List<UsageBucket> window(UsageQuery query, Duration every);
+
+    // streams owned raw points one device and owner at a time, each series in time order
+    void scan(UsageQuery query, SeriesConsumer consumer);
+
+    @FunctionalInterface
+    interface SeriesConsumer {
+        void accept(long deviceId, long userId, long[] timestamps, double[] values, int count);
+    }
+}
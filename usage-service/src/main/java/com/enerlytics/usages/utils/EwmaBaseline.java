@@ -0,0 +1,58 @@
+package com.enerlytics.usages.utils;
+
+// Exponentially weighted mean and variance of one device's reading sizes, updated in O(1) with no allocation.
+// update() reports how many standard deviations a reading lies above the baseline before that reading is folded in.
+// Not thread-safe.
+public final class EwmaBaseline {
+
+    private final double alpha;
+    private final int warmup;
+    private final double minRelativeDeviation;
+
+    private double mean = Double.NaN;
+    private double variance;
+    private long count;
+
+    public EwmaBaseline(double alpha, int warmup, double minRelativeDeviation) {
+        this.alpha = alpha;
+        this.warmup = warmup;
+        this.minRelativeDeviation = minRelativeDeviation;
+    }
+
+    // NaN while the baseline is warming up
+    public double update(double value) {
+        if (count++ == 0) {
+            mean = value;
+            return Double.NaN;
+        }
+
+        double score = Double.NaN;
+        if (count > warmup) {
+            score = (value - mean) / standardDeviation();
+        }
+
+        double diff = value - mean;
+        double increment = alpha * diff;
+        mean += increment;
+        variance = (1 - alpha) * (variance + diff * increment);
+        return score;
+    }
+
+    // NaN before the first reading
+    public double mean() {
+        return mean;
+    }
+
+    // floored at a fraction of the mean, so a device with a near-constant draw does not flag tiny wobbles
+    public double standardDeviation() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double floor = Math.max(minRelativeDeviation * Math.abs(mean), Double.MIN_NORMAL);
+        return Math.max(Math.sqrt(variance), floor);
+    }
+
+    public long count() {
+        return count;
+    }
+}
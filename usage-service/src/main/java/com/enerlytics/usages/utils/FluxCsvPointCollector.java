@@ -0,0 +1,117 @@
+package com.enerlytics.usages.utils;
+
+import com.enerlytics.usages.stores.UsageStore;
+import java.time.Instant;
+import java.util.function.Consumer;
+
+// Streams annotation-free Flux CSV rows of (deviceId, userId, _time, _value) grouped by series, handing each
+// completed series to the consumer. Rows of one series must be contiguous, as produced by group() |> sort().
+public final class FluxCsvPointCollector implements Consumer<String> {
+
+    private final UsageStore.SeriesConsumer consumer;
+    private final SeriesBuffer series = new SeriesBuffer(1024);
+
+    private boolean expectingHeader = true;
+    private boolean errorTable;
+    private int deviceIndex = -1;
+    private int userIndex = -1;
+    private int timeIndex = -1;
+    private int valueIndex = -1;
+    private long deviceId;
+    private long userId;
+    private long points;
+    private long skipped;
+
+    public FluxCsvPointCollector(UsageStore.SeriesConsumer consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void accept(String line) {
+        if (line == null || line.isBlank()) {
+            expectingHeader = true;
+            return;
+        }
+        if (line.endsWith("\r")) {
+            line = line.substring(0, line.length() - 1);
+        }
+        String[] fields = line.split(",", -1);
+        if (expectingHeader) {
+            readHeader(fields);
+            return;
+        }
+        if (errorTable) {
+            throw new IllegalStateException("Flux query failed: " + line);
+        }
+        if (deviceIndex < 0 || userIndex < 0 || timeIndex < 0 || valueIndex < 0 || fields.length <= max()) {
+            skipped++;
+            return;
+        }
+
+        long rowDevice;
+        long rowUser;
+        long timestamp;
+        double value;
+        try {
+            rowDevice = Long.parseLong(fields[deviceIndex]);
+            rowUser = Long.parseLong(fields[userIndex]);
+            timestamp = Instant.parse(fields[timeIndex]).toEpochMilli();
+            value = Double.parseDouble(fields[valueIndex]);
+        } catch (RuntimeException e) {
+            skipped++;
+            return;
+        }
+
+        if (series.count() > 0 && (rowDevice != deviceId || rowUser != userId)) {
+            flush();
+        }
+        deviceId = rowDevice;
+        userId = rowUser;
+        series.add(timestamp, value);
+        points++;
+    }
+
+    // hands over the trailing series; call once the query has completed
+    public void finish() {
+        if (series.count() > 0) {
+            flush();
+        }
+    }
+
+    public long points() {
+        return points;
+    }
+
+    public long skipped() {
+        return skipped;
+    }
+
+    private void flush() {
+        series.sortByTime();
+        consumer.accept(deviceId, userId, series.timestamps(), series.values(), series.count());
+        series.clear();
+    }
+
+    private void readHeader(String[] columns) {
+        expectingHeader = false;
+        errorTable = false;
+        deviceIndex = -1;
+        userIndex = -1;
+        timeIndex = -1;
+        valueIndex = -1;
+        for (int i = 0; i < columns.length; i++) {
+            switch (columns[i].trim()) {
+                case "deviceId" -> deviceIndex = i;
+                case "userId" -> userIndex = i;
+                case "_time" -> timeIndex = i;
+                case "_value" -> valueIndex = i;
+                case "error" -> errorTable = true;
+                default -> {}
+            }
+        }
+    }
+
+    private int max() {
+        return Math.max(Math.max(deviceIndex, userIndex), Math.max(timeIndex, valueIndex));
+    }
+}
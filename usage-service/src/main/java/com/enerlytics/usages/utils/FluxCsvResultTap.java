@@ -0,0 +1,114 @@
+package com.enerlytics.usages.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Sits between an annotation-free Flux CSV stream and its collector, counting tables and rows and diverting the tables
+// the InfluxDB profiler appends under the _profiler result, so collectors only ever see the query's own tables. A
+// header starts a block of tables sharing one schema, so tables are counted by the distinct values of the table
+// column, which change from one table to the next. A header is held back until its first row shows which result the
+// block belongs to.
+public final class FluxCsvResultTap implements Consumer<String> {
+
+    private static final String PROFILER_ROW = ",_profiler,";
+    private static final String TABLE_COLUMN = "table";
+
+    private final Consumer<String> downstream;
+    private final List<String> profile = new ArrayList<>();
+
+    private boolean expectingHeader = true;
+    private String pendingHeader;
+    private boolean profilerTable;
+    // index of the table column in the current block's header, -1 when it has none
+    private int tableColumn;
+    private String lastTable;
+    private long tables;
+    private long rows;
+
+    public FluxCsvResultTap(Consumer<String> downstream) {
+        this.downstream = downstream;
+    }
+
+    @Override
+    public void accept(String line) {
+        if (line == null || line.isBlank()) {
+            expectingHeader = true;
+            pendingHeader = null;
+            downstream.accept(line);
+            return;
+        }
+        if (expectingHeader) {
+            expectingHeader = false;
+            pendingHeader = line;
+            return;
+        }
+        if (pendingHeader != null) {
+            profilerTable = line.startsWith(PROFILER_ROW);
+            if (profilerTable) {
+                profile.add(strip(pendingHeader));
+            } else {
+                downstream.accept(pendingHeader);
+                tableColumn = indexOf(strip(pendingHeader).split(",", -1), TABLE_COLUMN);
+                lastTable = null;
+                if (tableColumn < 0) {
+                    tables++;
+                }
+            }
+            pendingHeader = null;
+        }
+        if (profilerTable) {
+            profile.add(strip(line));
+            return;
+        }
+        if (tableColumn >= 0) {
+            String table = field(line, tableColumn);
+            if (!table.equals(lastTable)) {
+                lastTable = table;
+                tables++;
+            }
+        }
+        rows++;
+        downstream.accept(line);
+    }
+
+    public long tables() {
+        return tables;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    // the profiler tables as CSV, null when the query was not profiled
+    public String profile() {
+        return profile.isEmpty() ? null : String.join("\n", profile);
+    }
+
+    private static int indexOf(String[] columns, String name) {
+        for (int i = 0; i < columns.length; i++) {
+            if (name.equals(columns[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // the column-th comma-separated field; the columns up to the table column are never quoted
+    private static String field(String line, int column) {
+        int start = 0;
+        for (int i = 0; i < column; i++) {
+            int comma = line.indexOf(',', start);
+            if (comma < 0) {
+                return "";
+            }
+            start = comma + 1;
+        }
+        int end = line.indexOf(',', start);
+        return strip(end < 0 ? line.substring(start) : line.substring(start, end));
+    }
+
+    private static String strip(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+}
@@ -0,0 +1,81 @@
+package com.enerlytics.usages.utils;
+
+import com.enerlytics.usages.dtos.UsageBucket;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Collects annotation-free Flux CSV rows of (deviceId, _time, _value) into usage buckets.
+public final class FluxCsvSeriesCollector implements Consumer<String> {
+
+    private final List<UsageBucket> buckets = new ArrayList<>();
+
+    private boolean expectingHeader = true;
+    private boolean errorTable;
+    private int deviceIndex = -1;
+    private int timeIndex = -1;
+    private int valueIndex = -1;
+    private long skipped;
+
+    @Override
+    public void accept(String line) {
+        if (line == null || line.isBlank()) {
+            expectingHeader = true;
+            return;
+        }
+        if (line.endsWith("\r")) {
+            line = line.substring(0, line.length() - 1);
+        }
+        String[] fields = line.split(",", -1);
+        if (expectingHeader) {
+            readHeader(fields);
+            return;
+        }
+        if (errorTable) {
+            throw new IllegalStateException("Flux query failed: " + line);
+        }
+        if (deviceIndex < 0 || timeIndex < 0 || valueIndex < 0 || fields.length <= max()) {
+            skipped++;
+            return;
+        }
+
+        try {
+            buckets.add(new UsageBucket(
+                    Long.valueOf(fields[deviceIndex]),
+                    Instant.parse(fields[timeIndex]),
+                    Double.parseDouble(fields[valueIndex])));
+        } catch (RuntimeException e) {
+            skipped++;
+        }
+    }
+
+    public List<UsageBucket> buckets() {
+        return buckets;
+    }
+
+    public long skipped() {
+        return skipped;
+    }
+
+    private void readHeader(String[] columns) {
+        expectingHeader = false;
+        errorTable = false;
+        deviceIndex = -1;
+        timeIndex = -1;
+        valueIndex = -1;
+        for (int i = 0; i < columns.length; i++) {
+            switch (columns[i].trim()) {
+                case "deviceId" -> deviceIndex = i;
+                case "_time" -> timeIndex = i;
+                case "_value" -> valueIndex = i;
+                case "error" -> errorTable = true;
+                default -> {}
+            }
+        }
+    }
+
+    private int max() {
+        return Math.max(deviceIndex, Math.max(timeIndex, valueIndex));
+    }
+}
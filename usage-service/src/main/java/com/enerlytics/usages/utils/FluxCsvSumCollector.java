@@ -0,0 +1,127 @@
+package com.enerlytics.usages.utils;
+
+import java.util.function.Consumer;
+
+// Accumulates annotation-free Flux CSV rows of (key, _value) straight into a primitive map, one line at a time.
+public final class FluxCsvSumCollector implements Consumer<String> {
+
+    private final String keyColumn;
+    private final LongDoubleHashMap sums;
+
+    private boolean expectingHeader = true;
+    private boolean errorTable;
+    private int keyIndex = -1;
+    private int valueIndex = -1;
+    private long rows;
+    private long tables;
+    private long skipped;
+
+    public FluxCsvSumCollector(String keyColumn) {
+        this(keyColumn, new LongDoubleHashMap());
+    }
+
+    public FluxCsvSumCollector(String keyColumn, LongDoubleHashMap sums) {
+        this.keyColumn = keyColumn;
+        this.sums = sums;
+    }
+
+    @Override
+    public void accept(String line) {
+        if (line == null || line.isBlank()) {
+            expectingHeader = true;
+            return;
+        }
+        if (line.endsWith("\r")) {
+            line = line.substring(0, line.length() - 1);
+        }
+        if (expectingHeader) {
+            readHeader(line);
+            return;
+        }
+        if (errorTable) {
+            throw new IllegalStateException("Flux query failed: " + line);
+        }
+        readRow(line);
+    }
+
+    public LongDoubleHashMap sums() {
+        return sums;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public long tables() {
+        return tables;
+    }
+
+    public long skipped() {
+        return skipped;
+    }
+
+    private void readHeader(String line) {
+        expectingHeader = false;
+        errorTable = false;
+        keyIndex = -1;
+        valueIndex = -1;
+
+        String[] columns = line.split(",", -1);
+        for (int i = 0; i < columns.length; i++) {
+            String column = columns[i].trim();
+            if (column.equals(keyColumn)) {
+                keyIndex = i;
+            } else if (column.equals("_value")) {
+                valueIndex = i;
+            } else if (column.equals("error")) {
+                errorTable = true;
+            }
+        }
+        tables++;
+    }
+
+    private void readRow(String line) {
+        if (keyIndex < 0 || valueIndex < 0) {
+            skipped++;
+            return;
+        }
+
+        long key = 0;
+        boolean hasKey = false;
+        int valueStart = -1;
+        int valueEnd = -1;
+
+        int column = 0;
+        int fieldStart = 0;
+        int length = line.length();
+        for (int i = 0; i <= length; i++) {
+            if (i < length && line.charAt(i) != ',') {
+                continue;
+            }
+            if (column == keyIndex) {
+                hasKey = i > fieldStart;
+                for (int j = fieldStart; j < i && hasKey; j++) {
+                    char c = line.charAt(j);
+                    if (c < '0' || c > '9') {
+                        hasKey = false;
+                    } else {
+                        key = key * 10 + (c - '0');
+                    }
+                }
+            } else if (column == valueIndex) {
+                valueStart = fieldStart;
+                valueEnd = i;
+            }
+            column++;
+            fieldStart = i + 1;
+        }
+
+        if (!hasKey || valueStart < 0 || valueEnd <= valueStart) {
+            skipped++;
+            return;
+        }
+
+        sums.add(key, Double.parseDouble(line.substring(valueStart, valueEnd)));
+        rows++;
+    }
+}
@@ -0,0 +1,232 @@
+package com.enerlytics.usages.utils;
+
+import java.nio.ByteBuffer;
+
+// Append-only time series block using Gorilla compression: delta-of-delta timestamps and XOR-encoded doubles,
+// bit-packed into an off-heap buffer that grows by doubling and can be trimmed once the block is closed.
+public final class GorillaBlock {
+
+    private static final int MIN_BYTES = 32;
+
+    private ByteBuffer buffer;
+    private long bitPosition;
+    private int count;
+
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long lastDelta;
+    private long lastValueBits;
+    private int lastLeadingZeros = Integer.MAX_VALUE;
+    private int lastTrailingZeros;
+
+    public GorillaBlock() {
+        this(MIN_BYTES);
+    }
+
+    public GorillaBlock(int initialBytes) {
+        this.buffer = ByteBuffer.allocateDirect(Math.max(MIN_BYTES, initialBytes));
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public int capacityBytes() {
+        return buffer.capacity();
+    }
+
+    public int sizeBytes() {
+        return (int) ((bitPosition + 7) >>> 3);
+    }
+
+    // returns false when the timestamp is older than the last appended one; Gorilla blocks are strictly ordered
+    public boolean append(long timestamp, double value) {
+        long valueBits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            ensureCapacity(128);
+            writeBits(timestamp, 64);
+            writeBits(valueBits, 64);
+            firstTimestamp = timestamp;
+            lastTimestamp = timestamp;
+            lastValueBits = valueBits;
+            count = 1;
+            return true;
+        }
+        if (timestamp < lastTimestamp) {
+            return false;
+        }
+
+        // worst case: 4 + 64 timestamp bits and 2 + 5 + 6 + 64 value bits
+        ensureCapacity(145);
+        long delta = timestamp - lastTimestamp;
+        writeDeltaOfDelta(delta - lastDelta);
+        writeValue(valueBits);
+
+        lastDelta = delta;
+        lastTimestamp = timestamp;
+        count++;
+        return true;
+    }
+
+    public void forEach(LongDoubleHashMap.LongDoubleConsumer consumer) {
+        if (count == 0) {
+            return;
+        }
+        Reader reader = new Reader();
+        long timestamp = reader.readBits(64);
+        long valueBits = reader.readBits(64);
+        consumer.accept(timestamp, Double.longBitsToDouble(valueBits));
+
+        long delta = 0;
+        int leadingZeros = 0;
+        int trailingZeros = 0;
+        for (int i = 1; i < count; i++) {
+            delta += reader.readDeltaOfDelta();
+            timestamp += delta;
+
+            if (reader.readBit() != 0) {
+                if (reader.readBit() != 0) {
+                    leadingZeros = (int) reader.readBits(5);
+                    int significantBits = (int) reader.readBits(6);
+                    trailingZeros = 64 - leadingZeros - (significantBits == 0 ? 64 : significantBits);
+                }
+                int significantBits = 64 - leadingZeros - trailingZeros;
+                valueBits ^= reader.readBits(significantBits) << trailingZeros;
+            }
+            consumer.accept(timestamp, Double.longBitsToDouble(valueBits));
+        }
+    }
+
+    // shrinks the buffer to the encoded size once no more points will be appended
+    public void trim() {
+        int size = Math.max(1, sizeBytes());
+        if (size >= buffer.capacity()) {
+            return;
+        }
+        ByteBuffer trimmed = ByteBuffer.allocateDirect(size);
+        trimmed.put(0, buffer, 0, size);
+        buffer = trimmed;
+    }
+
+    private void writeDeltaOfDelta(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            writeBits(0b0, 1);
+        } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+            writeBits(0b10, 2);
+            writeBits(deltaOfDelta, 7);
+        } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+            writeBits(0b110, 3);
+            writeBits(deltaOfDelta, 9);
+        } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+            writeBits(0b1110, 4);
+            writeBits(deltaOfDelta, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    private void writeValue(long valueBits) {
+        long xor = valueBits ^ lastValueBits;
+        lastValueBits = valueBits;
+        if (xor == 0) {
+            writeBits(0b0, 1);
+            return;
+        }
+
+        // leading zeros are capped at 31 so they fit in five bits
+        int leadingZeros = Math.min(31, Long.numberOfLeadingZeros(xor));
+        int trailingZeros = Long.numberOfTrailingZeros(xor);
+        if (leadingZeros >= lastLeadingZeros && trailingZeros >= lastTrailingZeros) {
+            writeBits(0b10, 2);
+            writeBits(xor >>> lastTrailingZeros, 64 - lastLeadingZeros - lastTrailingZeros);
+            return;
+        }
+
+        int significantBits = 64 - leadingZeros - trailingZeros;
+        writeBits(0b11, 2);
+        writeBits(leadingZeros, 5);
+        // 64 significant bits are stored as 0
+        writeBits(significantBits, 6);
+        writeBits(xor >>> trailingZeros, significantBits);
+        lastLeadingZeros = leadingZeros;
+        lastTrailingZeros = trailingZeros;
+    }
+
+    private void ensureCapacity(int extraBits) {
+        long requiredBytes = (bitPosition + extraBits + 7) >>> 3;
+        if (requiredBytes <= buffer.capacity()) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        while (capacity < requiredBytes) {
+            capacity <<= 1;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        grown.put(0, buffer, 0, sizeBytes());
+        buffer = grown;
+    }
+
+    private void writeBits(long value, int bits) {
+        while (bits > 0) {
+            int byteIndex = (int) (bitPosition >>> 3);
+            int freeBits = 8 - (int) (bitPosition & 7);
+            int taken = Math.min(freeBits, bits);
+            int chunk = (int) ((value >>> (bits - taken)) & ((1L << taken) - 1));
+            buffer.put(byteIndex, (byte) (buffer.get(byteIndex) | (chunk << (freeBits - taken))));
+            bitPosition += taken;
+            bits -= taken;
+        }
+    }
+
+    private final class Reader {
+
+        private long position;
+
+        private int readBit() {
+            return (int) readBits(1);
+        }
+
+        private long readBits(int bits) {
+            long value = 0;
+            while (bits > 0) {
+                int byteIndex = (int) (position >>> 3);
+                int availableBits = 8 - (int) (position & 7);
+                int taken = Math.min(availableBits, bits);
+                int chunk = (buffer.get(byteIndex) >>> (availableBits - taken)) & ((1 << taken) - 1);
+                value = (value << taken) | chunk;
+                position += taken;
+                bits -= taken;
+            }
+            return value;
+        }
+
+        private long readDeltaOfDelta() {
+            if (readBit() == 0) {
+                return 0;
+            }
+            if (readBit() == 0) {
+                return signExtend(readBits(7), 7);
+            }
+            if (readBit() == 0) {
+                return signExtend(readBits(9), 9);
+            }
+            if (readBit() == 0) {
+                return signExtend(readBits(12), 12);
+            }
+            return readBits(64);
+        }
+
+        private static long signExtend(long value, int bits) {
+            return (value << (64 - bits)) >> (64 - bits);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.enerlytics.usages.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+// Runs tasks on an executor so that tasks sharing a key run one after another in submission order while tasks for
+// different keys run in parallel. Each key keeps only the tail of its chain, dropped once it completes, so memory
+// follows the keys with queued work. At most maxInFlight tasks are queued or running; submit blocks beyond that.
+// A failing task does not stop the tasks queued behind it.
+public final class KeyOrderedExecutor implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final ConcurrentMap<Long, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    public KeyOrderedExecutor(ExecutorService executor, int maxInFlight) {
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    public void submit(long key, Runnable task) throws InterruptedException {
+        permits.acquire();
+        CompletableFuture<Void> next;
+        try {
+            next = tails.compute(
+                    key,
+                    (k, tail) -> tail == null
+                            ? CompletableFuture.runAsync(task, executor)
+                            : tail.exceptionally(e -> null).thenRunAsync(task, executor));
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        next.whenComplete((result, e) -> {
+            tails.remove(key, next);
+            permits.release();
+        });
+    }
+
+    public int inFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public int activeKeys() {
+        return tails.size();
+    }
+
+    // tasks still chained behind a running one when the executor shuts down are rejected and never run
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
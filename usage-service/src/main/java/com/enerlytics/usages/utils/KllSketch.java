@@ -0,0 +1,174 @@
+package com.enerlytics.usages.utils;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// KLL quantile sketch. Level h holds items that each stand for 2^h inputs; a full level is sorted and every other
+// item (random offset) is promoted to the level above. Lower levels get geometrically smaller capacities (ratio 2/3),
+// which keeps the rank error around 1.7 / k with O(k) memory. Sketches merge by concatenating levels and compacting,
+// so per-bucket sketches combine into any range. Not thread-safe.
+public final class KllSketch {
+
+    private static final double CAPACITY_RATIO = 2.0 / 3.0;
+
+    private final int k;
+    private final SplittableRandom random = new SplittableRandom(1);
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private int retained;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public KllSketch(int k) {
+        this.k = k;
+        levels[0] = new double[capacity(0)];
+    }
+
+    public void update(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        append(0, value);
+        count++;
+        min = Double.isNaN(min) ? value : Math.min(min, value);
+        max = Double.isNaN(max) ? value : Math.max(max, value);
+        compressIfFull();
+    }
+
+    public void merge(KllSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        while (levels.length < other.levels.length) {
+            grow();
+        }
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        min = Double.isNaN(min) ? other.min : Math.min(min, other.min);
+        max = Double.isNaN(max) ? other.max : Math.max(max, other.max);
+        compressIfFull();
+    }
+
+    public long count() {
+        return count;
+    }
+
+    // values at the given ranks in [0, 1]; NaN for an empty sketch
+    public double[] quantiles(double[] ranks) {
+        double[] result = new double[ranks.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int next = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[next] = levels[h][i];
+                weights[next++] = 1L << h;
+            }
+        }
+        Integer[] order = new Integer[retained];
+        for (int i = 0; i < retained; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        long totalWeight = 0;
+        for (long weight : weights) {
+            totalWeight += weight;
+        }
+        for (int q = 0; q < ranks.length; q++) {
+            if (ranks[q] <= 0) {
+                result[q] = min;
+                continue;
+            }
+            if (ranks[q] >= 1) {
+                result[q] = max;
+                continue;
+            }
+            double target = ranks[q] * totalWeight;
+            long cumulative = 0;
+            result[q] = max;
+            for (int index : order) {
+                cumulative += weights[index];
+                if (cumulative >= target) {
+                    result[q] = values[index];
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private void append(int level, double value) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+        retained++;
+    }
+
+    private void compressIfFull() {
+        while (retained >= maxRetained()) {
+            compactOne();
+        }
+    }
+
+    // compacts the lowest level that is over its capacity
+    private void compactOne() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] < capacity(h)) {
+                continue;
+            }
+            if (h + 1 == levels.length) {
+                grow();
+            }
+            double[] level = levels[h];
+            int size = sizes[h];
+            Arrays.sort(level, 0, size);
+
+            // an odd item out stays behind so the promoted half represents exactly twice its weight
+            int even = size & ~1;
+            int offset = random.nextBoolean() ? 1 : 0;
+            for (int i = offset; i < even; i += 2) {
+                append(h + 1, level[i]);
+            }
+            retained -= even;
+            if (even < size) {
+                level[0] = level[size - 1];
+                sizes[h] = 1;
+            } else {
+                sizes[h] = 0;
+            }
+            return;
+        }
+    }
+
+    private void grow() {
+        int height = levels.length + 1;
+        levels = Arrays.copyOf(levels, height);
+        sizes = Arrays.copyOf(sizes, height);
+        levels[height - 1] = new double[capacity(height - 1)];
+    }
+
+    private int capacity(int level) {
+        int depth = levels.length - level - 1;
+        return (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, depth)) + 1;
+    }
+
+    private int maxRetained() {
+        int total = 0;
+        for (int h = 0; h < levels.length; h++) {
+            total += capacity(h);
+        }
+        return total;
+    }
+}
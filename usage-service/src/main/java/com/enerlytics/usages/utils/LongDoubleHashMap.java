@@ -0,0 +1,197 @@
+package com.enerlytics.usages.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class LongDoubleHashMap {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private double[] values;
+    private boolean[] used;
+    private int size;
+    private int resizeAt;
+
+    public LongDoubleHashMap() {
+        this(16);
+    }
+
+    public LongDoubleHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return used[indexOf(key)];
+    }
+
+    public double get(long key, double defaultValue) {
+        int index = indexOf(key);
+        return used[index] ? values[index] : defaultValue;
+    }
+
+    public void put(long key, double value) {
+        int index = indexOf(key);
+        if (!used[index]) {
+            insert(index, key, value);
+            return;
+        }
+        values[index] = value;
+    }
+
+    public void add(long key, double delta) {
+        int index = indexOf(key);
+        if (!used[index]) {
+            insert(index, key, delta);
+            return;
+        }
+        values[index] += delta;
+    }
+
+    public void remove(long key) {
+        int mask = keys.length - 1;
+        int hole = indexOf(key);
+        if (!used[hole]) {
+            return;
+        }
+        used[hole] = false;
+        size--;
+
+        // shift later entries of the probe run back so lookups never stop at the hole
+        for (int next = (hole + 1) & mask; used[next]; next = (next + 1) & mask) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                used[hole] = true;
+                used[next] = false;
+                hole = next;
+            }
+        }
+    }
+
+    public void addAll(LongDoubleHashMap other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.used[i]) {
+                add(other.keys[i], other.values[i]);
+            }
+        }
+    }
+
+    public void forEach(LongDoubleConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public long[] keys() {
+        long[] result = new long[size];
+        int next = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                result[next++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    public Map<Long, Double> toMap() {
+        Map<Long, Double> map = new HashMap<>(size * 2);
+        forEach(map::put);
+        return map;
+    }
+
+    private void insert(int index, long key, double value) {
+        keys[index] = key;
+        values[index] = value;
+        used[index] = true;
+        if (++size > resizeAt) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        while (used[index] && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+                used[index] = true;
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new double[capacity];
+        used = new boolean[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof LongDoubleHashMap other) || other.size != size) {
+            return false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i] && (!other.containsKey(keys[i]) || Double.compare(other.get(keys[i], 0.0), values[i]) != 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        long[] sorted = keys();
+        Arrays.sort(sorted);
+        int hash = 1;
+        for (long key : sorted) {
+            hash = 31 * hash + Long.hashCode(key);
+            hash = 31 * hash + Double.hashCode(get(key, 0.0));
+        }
+        return hash;
+    }
+
+    @FunctionalInterface
+    public interface LongDoubleConsumer {
+        void accept(long key, double value);
+    }
+}
@@ -0,0 +1,65 @@
+package com.enerlytics.usages.utils;
+
+// Largest-Triangle-Three-Buckets downsampling: keeps the first and last point and, from each of threshold - 2 equal
+// buckets in between, the point forming the largest triangle with the previously kept point and the next bucket's
+// average. Preserves the visual shape of a series far better than averaging or striding.
+public final class Lttb {
+
+    private Lttb() {}
+
+    // returns the indexes of the points to keep, in order; all of them when the series already fits
+    public static int[] select(long[] x, double[] y, int count, int threshold) {
+        if (threshold >= count || threshold < 3) {
+            int[] all = new int[count];
+            for (int i = 0; i < count; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] selected = new int[threshold];
+        selected[0] = 0;
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+        int previous = 0;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+
+            // average of the next bucket, or the last point for the final bucket
+            int nextStart = end;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, count);
+            double averageX = 0;
+            double averageY = 0;
+            if (nextStart >= count - 1 || nextEnd <= nextStart) {
+                averageX = x[count - 1];
+                averageY = y[count - 1];
+            } else {
+                for (int i = nextStart; i < nextEnd; i++) {
+                    averageX += x[i];
+                    averageY += y[i];
+                }
+                averageX /= nextEnd - nextStart;
+                averageY /= nextEnd - nextStart;
+            }
+
+            double previousX = x[previous];
+            double previousY = y[previous];
+            double maxArea = -1;
+            int chosen = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs(
+                        (previousX - averageX) * (y[i] - previousY) - (previousX - x[i]) * (averageY - previousY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = i;
+                }
+            }
+            selected[bucket + 1] = chosen;
+            previous = chosen;
+        }
+
+        selected[threshold - 1] = count - 1;
+        return selected;
+    }
+}
@@ -0,0 +1,71 @@
+package com.enerlytics.usages.utils;
+
+import java.util.Arrays;
+
+// Growable parallel (timestamp, value) arrays for handing one series at a time to a consumer without boxing.
+public final class SeriesBuffer {
+
+    private long[] timestamps;
+    private double[] values;
+    private int count;
+
+    public SeriesBuffer() {
+        this(64);
+    }
+
+    public SeriesBuffer(int initialCapacity) {
+        this.timestamps = new long[Math.max(1, initialCapacity)];
+        this.values = new double[timestamps.length];
+    }
+
+    public void add(long timestamp, double value) {
+        if (count == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, count << 1);
+            values = Arrays.copyOf(values, count << 1);
+        }
+        timestamps[count] = timestamp;
+        values[count++] = value;
+    }
+
+    public long[] timestamps() {
+        return timestamps;
+    }
+
+    public double[] values() {
+        return values;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public void sortByTime() {
+        for (int i = 1; i < count; i++) {
+            if (timestamps[i] < timestamps[i - 1]) {
+                sortUnordered();
+                return;
+            }
+        }
+    }
+
+    private void sortUnordered() {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(timestamps[a], timestamps[b]));
+
+        long[] sortedTimestamps = new long[timestamps.length];
+        double[] sortedValues = new double[values.length];
+        for (int i = 0; i < count; i++) {
+            sortedTimestamps[i] = timestamps[order[i]];
+            sortedValues[i] = values[order[i]];
+        }
+        timestamps = sortedTimestamps;
+        values = sortedValues;
+    }
+}
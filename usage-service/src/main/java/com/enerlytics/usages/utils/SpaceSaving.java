@@ -0,0 +1,128 @@
+package com.enerlytics.usages.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Weighted Space-Saving heavy-hitter summary with a fixed number of counters. A key not being tracked takes over the
+// smallest counter, inheriting its count as error, so every count overestimates the key's true weight by at most
+// its error, and any key heavier than total / capacity is guaranteed to be tracked. Counters are kept in a min-heap
+// so an update costs O(log capacity). Not thread-safe.
+public final class SpaceSaving {
+
+    private final int capacity;
+    private final long[] keys;
+    private final double[] counts;
+    private final double[] errors;
+    // key -> heap position
+    private final LongDoubleHashMap positions;
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new double[capacity];
+        this.errors = new double[capacity];
+        this.positions = new LongDoubleHashMap(capacity);
+    }
+
+    public void offer(long key, double weight) {
+        double position = positions.get(key, -1);
+        if (position >= 0) {
+            int index = (int) position;
+            counts[index] += weight;
+            siftDown(index);
+            return;
+        }
+
+        if (size < capacity) {
+            keys[size] = key;
+            counts[size] = weight;
+            errors[size] = 0;
+            positions.put(key, size);
+            siftUp(size++);
+            return;
+        }
+
+        positions.remove(keys[0]);
+        keys[0] = key;
+        errors[0] = counts[0];
+        counts[0] += weight;
+        positions.put(key, 0);
+        siftDown(0);
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    // upper bound on the weight of any key that is not tracked
+    public double minCount() {
+        return isFull() ? counts[0] : 0;
+    }
+
+    public void forEach(CounterConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(keys[i], counts[i], errors[i]);
+        }
+    }
+
+    public List<Counter> top(int n) {
+        List<Counter> counters = new ArrayList<>(size);
+        forEach((key, count, error) -> counters.add(new Counter(key, count, error)));
+        counters.sort(Comparator.comparingDouble(Counter::count).reversed());
+        return counters.subList(0, Math.min(n, counters.size()));
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (counts[parent] <= counts[index]) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        double count = counts[a];
+        counts[a] = counts[b];
+        counts[b] = count;
+        double error = errors[a];
+        errors[a] = errors[b];
+        errors[b] = error;
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+    }
+
+    // count - error is a guaranteed lower bound on the key's true weight
+    public record Counter(long key, double count, double error) {}
+
+    @FunctionalInterface
+    public interface CounterConsumer {
+        void accept(long key, double count, double error);
+    }
+}
@@ -0,0 +1,44 @@
+package com.enerlytics.usages.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.enerlytics.events.AnomalyEvent;
+import com.enerlytics.usages.dtos.UsageReading;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AnomalyDetectionServiceTest {
+
+    private static final Instant START = Instant.parse("2026-05-01T00:00:00Z");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AnomalyDetectionService service = new AnomalyDetectionService(
+            null, meterRegistry, true, 0.05, 30, 4.0, 0.1, Duration.ofMinutes(15), 1_000, Duration.ofDays(2));
+
+    @Test
+    @DisplayName("Should report a runaway device once per cooldown")
+    void score_ReportsOncePerCooldown() {
+        // Arrange
+        for (int i = 0; i < 100; i++) {
+            service.score(new UsageReading(1L, 7L, START.plusSeconds(i * 60L), i % 2 == 0 ? 1.0 : 1.2));
+        }
+
+        // Act
+        AnomalyEvent first = service.score(new UsageReading(1L, 7L, START.plusSeconds(6_000), 5.0));
+        AnomalyEvent duringCooldown = service.score(new UsageReading(1L, 7L, START.plusSeconds(6_060), 9.0));
+        AnomalyEvent afterCooldown = service.score(new UsageReading(1L, 7L, START.plusSeconds(7_000), 50.0));
+
+        // Assert
+        assertNotNull(first);
+        assertEquals(7L, first.userId());
+        assertEquals(1.1, first.expected(), 0.05);
+        assertNull(duringCooldown);
+        assertNotNull(afterCooldown);
+        assertEquals(1.0, meterRegistry.counter("usage.anomaly.suppressed").count());
+    }
+}
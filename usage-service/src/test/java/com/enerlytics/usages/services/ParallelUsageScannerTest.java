@@ -0,0 +1,80 @@
+package com.enerlytics.usages.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.enerlytics.usages.dtos.QueryLane;
+import com.enerlytics.usages.dtos.Resolution;
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ParallelUsageScannerTest {
+
+    private static final Instant START = Instant.parse("2026-05-01T00:00:00Z");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ParallelUsageScanner scanner = new ParallelUsageScanner(
+            meterRegistry, 2, 1, Duration.ofDays(1), Duration.ofDays(7), Duration.ofDays(365), 3);
+
+    @Test
+    @DisplayName("Should split user queries by time only and fleet queries by device shard too")
+    void split_ChunksByTimeAndDevice() {
+        // Arrange
+        Instant stop = START.plus(Duration.ofDays(2)).plus(Duration.ofHours(6));
+
+        // Act
+        List<UsageQuery> userChunks = scanner.split(new UsageQuery(Resolution.RAW, START, stop, 10L));
+        List<UsageQuery> fleetChunks = scanner.split(new UsageQuery(Resolution.RAW, START, stop, null));
+
+        // Assert
+        assertEquals(3, userChunks.size());
+        assertEquals(stop, userChunks.getLast().stop());
+        assertEquals(9, fleetChunks.size());
+        assertTrue(fleetChunks.stream().allMatch(UsageQuery::isDeviceSharded));
+    }
+
+    @Test
+    @DisplayName("Should merge partial sums without exceeding the configured parallelism")
+    void sumByDevice_MergesWithinParallelism() {
+        // Arrange
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        UsageQuery query = new UsageQuery(Resolution.RAW, START, START.plus(Duration.ofDays(10)), 10L);
+
+        // Act
+        LongDoubleHashMap sums = scanner.sumByDevice(QueryLane.INTERACTIVE, query, chunk -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            LongDoubleHashMap partial = new LongDoubleHashMap();
+            partial.put(1L, 1.0);
+            partial.put(chunk.start().getEpochSecond(), 2.0);
+            return partial;
+        });
+
+        // Assert
+        assertEquals(10.0, sums.get(1L, 0.0));
+        assertEquals(11, sums.size());
+        assertTrue(peak.get() <= 2, "peak parallelism was " + peak.get());
+        assertEquals(
+                10,
+                meterRegistry
+                        .get("usage.query.chunk")
+                        .tag("resolution", "raw")
+                        .tag("scope", "user")
+                        .tag("lane", "interactive")
+                        .timer()
+                        .count());
+    }
+}
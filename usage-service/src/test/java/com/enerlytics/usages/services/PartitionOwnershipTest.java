@@ -0,0 +1,77 @@
+package com.enerlytics.usages.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.stores.HotUsageTier;
+import com.enerlytics.usages.stores.PartitionCoverage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class PartitionOwnershipTest {
+
+    private final HotUsageTier hotTier =
+            new HotUsageTier(new SimpleMeterRegistry(), true, Duration.ofHours(1), Duration.ofMinutes(10), 1L << 20);
+
+    private static MockConsumer<String, Object> consumer(int partitions) {
+        MockConsumer<String, Object> consumer = new MockConsumer<>("earliest");
+        consumer.updatePartitions(
+                PartitionOwnership.TOPIC,
+                IntStream.range(0, partitions)
+                        .mapToObj(p -> new PartitionInfo(PartitionOwnership.TOPIC, p, null, null, null))
+                        .toList());
+        return consumer;
+    }
+
+    private static TopicPartition partition(int partition) {
+        return new TopicPartition(PartitionOwnership.TOPIC, partition);
+    }
+
+    @Test
+    @DisplayName("Should own the users hashed onto the assigned partitions")
+    void onPartitionsAssigned_OwnsMatchingUsers() {
+        // Arrange
+        PartitionOwnership ownership = new PartitionOwnership(hotTier, new PartitionCoverage());
+
+        // Act
+        ownership.onPartitionsAssigned(
+                consumer(4), List.of(partition(1), partition(3), new TopicPartition("other", 0)));
+
+        // Assert
+        assertEquals(4, ownership.shardCount());
+        assertArrayEquals(new int[] {1, 3}, ownership.ownedShards());
+        assertTrue(ownership.owns(5L));
+        assertTrue(ownership.owns(7L));
+        assertTrue(ownership.owns(UsageQuery.USER_SHARDS + 1L));
+        assertFalse(ownership.owns(4L));
+        assertFalse(ownership.owns(6L));
+    }
+
+    @Test
+    @DisplayName("Should hand users back when their partitions are revoked or lost")
+    void onPartitionsRevoked_ReleasesUsers() {
+        // Arrange
+        PartitionOwnership ownership = new PartitionOwnership(hotTier, new PartitionCoverage());
+        MockConsumer<String, Object> consumer = consumer(2);
+        ownership.onPartitionsAssigned(consumer, List.of(partition(0), partition(1)));
+
+        // Act
+        ownership.onPartitionsRevokedBeforeCommit(consumer, List.of(partition(0)));
+        ownership.onPartitionsLost(consumer, List.of(partition(1)));
+
+        // Assert
+        assertEquals(0, ownership.ownedShards().length);
+        assertFalse(ownership.owns(2L));
+        assertFalse(ownership.owns(3L));
+    }
+}
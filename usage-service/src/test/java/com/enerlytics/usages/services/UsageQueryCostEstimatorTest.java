@@ -0,0 +1,49 @@
+package com.enerlytics.usages.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.enerlytics.usages.dtos.QuerySegment;
+import com.enerlytics.usages.dtos.Resolution;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class UsageQueryCostEstimatorTest {
+
+    private static final Instant START = Instant.parse("2026-05-01T00:00:00Z");
+
+    private final UsageQueryCostEstimator estimator = new UsageQueryCostEstimator(Duration.ofMinutes(1));
+
+    @Test
+    @DisplayName("Should cost each segment by the point spacing of its resolution")
+    void estimate_WeightsByResolution() {
+        // Arrange
+        List<QuerySegment> segments = List.of(
+                new QuerySegment(Resolution.RAW, START, START.plus(Duration.ofMinutes(30))),
+                new QuerySegment(
+                        Resolution.HOURLY, START.plus(Duration.ofMinutes(30)), START.plus(Duration.ofHours(24))),
+                new QuerySegment(Resolution.DAILY, START.plus(Duration.ofHours(24)), START.plus(Duration.ofDays(31))));
+
+        // Act
+        long cost = estimator.estimate(10, segments);
+
+        // Assert
+        assertEquals(10L * (30 + 24 + 30), cost);
+    }
+
+    @Test
+    @DisplayName("Should saturate instead of overflowing for huge queries")
+    void estimate_Saturates() {
+        // Arrange
+        List<QuerySegment> segments =
+                List.of(new QuerySegment(Resolution.RAW, START, START.plus(Duration.ofDays(3_650_000))));
+
+        // Act
+        long cost = estimator.estimate(Integer.MAX_VALUE, segments);
+
+        // Assert
+        assertEquals(Long.MAX_VALUE, cost);
+    }
+}
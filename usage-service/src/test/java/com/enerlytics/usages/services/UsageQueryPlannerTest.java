@@ -0,0 +1,151 @@
+package com.enerlytics.usages.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.enerlytics.usages.dtos.QuerySegment;
+import com.enerlytics.usages.dtos.Resolution;
+import com.enerlytics.usages.stores.RollupWatermark;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class UsageQueryPlannerTest {
+
+    private final RollupWatermark rollupWatermark = new RollupWatermark();
+    private final UsageQueryPlanner planner = new UsageQueryPlanner(rollupWatermark);
+
+    UsageQueryPlannerTest() {
+        rollupWatermark.set(Instant.EPOCH);
+        ReflectionTestUtils.setField(planner, "rollupsEnabled", true);
+        ReflectionTestUtils.setField(planner, "settleDelay", Duration.ofMinutes(15));
+    }
+
+    @Test
+    @DisplayName("Should cover a multi-day range with daily, hourly and raw segments")
+    void plan_MultiDayRange() {
+        // Arrange
+        Instant now = Instant.parse("2026-05-10T12:30:00Z");
+        Instant start = Instant.parse("2026-05-07T12:30:00Z");
+
+        // Act
+        List<QuerySegment> segments = planner.plan(start, now, now);
+
+        // Assert
+        assertEquals(
+                List.of(
+                        segment(Resolution.RAW, "2026-05-07T12:30:00Z", "2026-05-07T13:00:00Z"),
+                        segment(Resolution.HOURLY, "2026-05-07T13:00:00Z", "2026-05-08T00:00:00Z"),
+                        segment(Resolution.DAILY, "2026-05-08T00:00:00Z", "2026-05-10T00:00:00Z"),
+                        segment(Resolution.HOURLY, "2026-05-10T00:00:00Z", "2026-05-10T12:00:00Z"),
+                        segment(Resolution.RAW, "2026-05-10T12:00:00Z", "2026-05-10T12:30:00Z")),
+                segments);
+    }
+
+    @Test
+    @DisplayName("Should keep the unsettled hour on raw data")
+    void plan_UnsettledHourStaysRaw() {
+        // Arrange
+        Instant now = Instant.parse("2026-05-10T12:10:00Z");
+        Instant start = Instant.parse("2026-05-10T09:10:00Z");
+
+        // Act
+        List<QuerySegment> segments = planner.plan(start, now, now);
+
+        // Assert
+        assertEquals(
+                List.of(
+                        segment(Resolution.RAW, "2026-05-10T09:10:00Z", "2026-05-10T10:00:00Z"),
+                        segment(Resolution.HOURLY, "2026-05-10T10:00:00Z", "2026-05-10T11:00:00Z"),
+                        segment(Resolution.RAW, "2026-05-10T11:00:00Z", "2026-05-10T12:10:00Z")),
+                segments);
+    }
+
+    @Test
+    @DisplayName("Should use a single raw segment when the range is shorter than an hour")
+    void plan_ShortRange() {
+        // Arrange
+        Instant now = Instant.parse("2026-05-10T12:40:00Z");
+        Instant start = Instant.parse("2026-05-10T12:05:00Z");
+
+        // Act
+        List<QuerySegment> segments = planner.plan(start, now, now);
+
+        // Assert
+        assertEquals(List.of(new QuerySegment(Resolution.RAW, start, now)), segments);
+    }
+
+    @Test
+    @DisplayName("Should keep aligned raw segments when rollups are disabled")
+    void plan_RollupsDisabled() {
+        // Arrange
+        ReflectionTestUtils.setField(planner, "rollupsEnabled", false);
+        Instant now = Instant.parse("2026-05-10T12:30:00Z");
+        Instant start = Instant.parse("2026-05-08T12:00:00Z");
+
+        // Act
+        List<QuerySegment> segments = planner.plan(start, now, now);
+
+        // Assert
+        assertEquals(
+                List.of(
+                        segment(Resolution.RAW, "2026-05-08T12:00:00Z", "2026-05-09T00:00:00Z"),
+                        segment(Resolution.RAW, "2026-05-09T00:00:00Z", "2026-05-10T00:00:00Z"),
+                        segment(Resolution.RAW, "2026-05-10T00:00:00Z", "2026-05-10T12:00:00Z"),
+                        segment(Resolution.RAW, "2026-05-10T12:00:00Z", "2026-05-10T12:30:00Z")),
+                segments);
+    }
+
+    @Test
+    @DisplayName("Should read raw data before the rollup watermark")
+    void plan_RawBeforeWatermark() {
+        // Arrange
+        rollupWatermark.set(Instant.parse("2026-05-09T00:00:00Z"));
+        Instant now = Instant.parse("2026-05-10T12:30:00Z");
+        Instant start = Instant.parse("2026-05-07T12:30:00Z");
+
+        // Act
+        List<QuerySegment> segments = planner.plan(start, now, now);
+
+        // Assert
+        assertEquals(
+                List.of(
+                        segment(Resolution.RAW, "2026-05-07T12:30:00Z", "2026-05-07T13:00:00Z"),
+                        segment(Resolution.RAW, "2026-05-07T13:00:00Z", "2026-05-08T00:00:00Z"),
+                        segment(Resolution.RAW, "2026-05-08T00:00:00Z", "2026-05-09T00:00:00Z"),
+                        segment(Resolution.DAILY, "2026-05-09T00:00:00Z", "2026-05-10T00:00:00Z"),
+                        segment(Resolution.HOURLY, "2026-05-10T00:00:00Z", "2026-05-10T12:00:00Z"),
+                        segment(Resolution.RAW, "2026-05-10T12:00:00Z", "2026-05-10T12:30:00Z")),
+                segments);
+    }
+
+    @Test
+    @DisplayName("Should split a segment reaching past the archive's read-after point at that day")
+    void plan_SplitsAtArchiveBoundary() {
+        // Arrange
+        ReflectionTestUtils.setField(planner, "archiveEnabled", true);
+        ReflectionTestUtils.setField(planner, "archiveReadAfter", Duration.ofDays(6));
+        Instant now = Instant.parse("2026-05-10T12:30:00Z");
+        Instant start = Instant.parse("2026-05-01T12:30:00Z");
+
+        // Act
+        List<QuerySegment> segments = planner.plan(start, now, now);
+
+        // Assert
+        assertEquals(
+                List.of(
+                        segment(Resolution.RAW, "2026-05-01T12:30:00Z", "2026-05-01T13:00:00Z"),
+                        segment(Resolution.HOURLY, "2026-05-01T13:00:00Z", "2026-05-02T00:00:00Z"),
+                        segment(Resolution.DAILY, "2026-05-02T00:00:00Z", "2026-05-04T00:00:00Z"),
+                        segment(Resolution.DAILY, "2026-05-04T00:00:00Z", "2026-05-10T00:00:00Z"),
+                        segment(Resolution.HOURLY, "2026-05-10T00:00:00Z", "2026-05-10T12:00:00Z"),
+                        segment(Resolution.RAW, "2026-05-10T12:00:00Z", "2026-05-10T12:30:00Z")),
+                segments);
+    }
+
+    private static QuerySegment segment(Resolution resolution, String start, String stop) {
+        return new QuerySegment(resolution, Instant.parse(start), Instant.parse(stop));
+    }
+}
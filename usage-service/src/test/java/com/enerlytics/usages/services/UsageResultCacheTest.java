@@ -0,0 +1,120 @@
+package com.enerlytics.usages.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.enerlytics.usages.dtos.QuerySegment;
+import com.enerlytics.usages.dtos.Resolution;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class UsageResultCacheTest {
+
+    private final UsageResultCache cache = new UsageResultCache(
+            new SimpleMeterRegistry(),
+            true,
+            1_000,
+            Duration.ofHours(6),
+            Duration.ofMinutes(15),
+            Duration.ofMinutes(150),
+            Duration.ofHours(49));
+
+    @Test
+    @DisplayName("Should load a settled segment only once")
+    void get_SettledSegmentIsCached() {
+        // Arrange
+        Instant now = Instant.parse("2026-05-10T12:30:00Z");
+        QuerySegment segment = new QuerySegment(
+                Resolution.HOURLY, Instant.parse("2026-05-10T09:00:00Z"), Instant.parse("2026-05-10T10:00:00Z"));
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        cache.get("1,2", segment, now, s -> sums(1L, loads.incrementAndGet()));
+        LongDoubleHashMap result = cache.get("1,2", segment, now, s -> sums(1L, loads.incrementAndGet()));
+
+        // Assert
+        assertEquals(1, loads.get());
+        assertEquals(sums(1L, 1.0), result);
+    }
+
+    @Test
+    @DisplayName("Should always recompute the open head segment")
+    void get_OpenSegmentIsRecomputed() {
+        // Arrange
+        Instant now = Instant.parse("2026-05-10T12:30:00Z");
+        QuerySegment segment = new QuerySegment(Resolution.RAW, Instant.parse("2026-05-10T12:00:00Z"), now);
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        cache.get("1,2", segment, now, s -> sums(1L, loads.incrementAndGet()));
+        cache.get("1,2", segment, now, s -> sums(1L, loads.incrementAndGet()));
+
+        // Assert
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should recompute an hourly segment its rollup task may still rewrite")
+    void get_HourlySegmentWithinRollupLookbackIsRecomputed() {
+        // Arrange
+        Instant now = Instant.parse("2026-05-10T12:30:00Z");
+        QuerySegment segment = new QuerySegment(
+                Resolution.HOURLY, Instant.parse("2026-05-10T10:00:00Z"), Instant.parse("2026-05-10T11:00:00Z"));
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        cache.get("1,2", segment, now, s -> sums(1L, loads.incrementAndGet()));
+        cache.get("1,2", segment, now, s -> sums(1L, loads.incrementAndGet()));
+
+        // Assert
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should recompute a user's settled segments after a late reading is stored")
+    void stored_LateReadingInvalidatesUserScope() {
+        // Arrange
+        Instant now = Instant.parse("2026-05-10T12:30:00Z");
+        QuerySegment segment = new QuerySegment(
+                Resolution.RAW, Instant.parse("2026-05-10T10:00:00Z"), Instant.parse("2026-05-10T11:00:00Z"));
+        String scope = UsageResultCache.userScope(7L);
+        cache.get(scope, segment, now, s -> sums(1L, 1.0));
+        cache.get("user:8", segment, now, s -> sums(1L, 1.0));
+
+        // Act
+        cache.stored(new UsageReading(1L, 7L, Instant.parse("2026-05-10T10:30:00Z"), 2.0));
+        LongDoubleHashMap result = cache.get(scope, segment, now, s -> sums(1L, 3.0));
+        LongDoubleHashMap other = cache.get("user:8", segment, now, s -> sums(1L, 3.0));
+
+        // Assert
+        assertEquals(sums(1L, 3.0), result);
+        assertEquals(sums(1L, 1.0), other);
+    }
+
+    @Test
+    @DisplayName("Should keep separate entries per device scope")
+    void get_ScopesAreIsolated() {
+        // Arrange
+        Instant now = Instant.parse("2026-05-10T12:30:00Z");
+        QuerySegment segment = new QuerySegment(
+                Resolution.DAILY, Instant.parse("2026-05-08T00:00:00Z"), Instant.parse("2026-05-09T00:00:00Z"));
+
+        // Act
+        cache.get("1", segment, now, s -> sums(1L, 1.0));
+        LongDoubleHashMap result = cache.get("2", segment, now, s -> sums(2L, 2.0));
+
+        // Assert
+        assertEquals(sums(2L, 2.0), result);
+    }
+
+    private static LongDoubleHashMap sums(long deviceId, double energyConsumed) {
+        LongDoubleHashMap sums = new LongDoubleHashMap();
+        sums.put(deviceId, energyConsumed);
+        return sums;
+    }
+}
@@ -0,0 +1,61 @@
+package com.enerlytics.usages.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.enerlytics.usages.dtos.DeviceEnergy;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class UsageServiceTest {
+
+    private static DeviceEnergy device(long deviceId, long userId, double energyConsumed) {
+        return DeviceEnergy.builder()
+                .deviceId(deviceId)
+                .userId(userId)
+                .energyConsumed(energyConsumed)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Should turn per-device sums into device energies")
+    void toDeviceEnergies_CopiesSums() {
+        // Arrange
+        LongDoubleHashMap usageByDevice = new LongDoubleHashMap();
+        usageByDevice.put(1, 2.5);
+        usageByDevice.put(2, 4.0);
+
+        // Act
+        List<DeviceEnergy> deviceEnergies = UsageService.toDeviceEnergies(usageByDevice);
+
+        // Assert
+        assertEquals(2, deviceEnergies.size());
+        assertEquals(
+                6.5,
+                deviceEnergies.stream()
+                        .mapToDouble(DeviceEnergy::getEnergyConsumed)
+                        .sum());
+    }
+
+    @Test
+    @DisplayName("Should report users whose devices together consumed more than their threshold")
+    void usersOverThreshold_SumsDevicesPerUser() {
+        // Arrange
+        Map<Long, List<DeviceEnergy>> byUser = UsageService.groupByUser(
+                List.of(device(1, 10, 3), device(2, 10, 4), device(3, 20, 1), device(4, 30, 9)));
+        Map<Long, Double> thresholds = new HashMap<>();
+        thresholds.put(10L, 5.0);
+        thresholds.put(20L, 5.0);
+        thresholds.put(30L, null);
+        thresholds.put(40L, 1.0);
+
+        // Act
+        Map<Long, Double> exceeded = UsageService.usersOverThreshold(byUser, thresholds);
+
+        // Assert
+        assertEquals(Map.of(10L, 7.0), exceeded);
+    }
+}
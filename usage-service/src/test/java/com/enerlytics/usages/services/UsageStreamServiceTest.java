@@ -0,0 +1,170 @@
+package com.enerlytics.usages.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.dtos.responses.UsageStreamScopeResponse;
+import com.enerlytics.usages.dtos.responses.UsageUpdateResponse;
+import com.enerlytics.usages.exceptions.QueryRejectedException;
+import com.enerlytics.usages.stores.PartitionCoverage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+class UsageStreamServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-05-01T12:00:00Z");
+
+    private final List<Runnable> pendingSends = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PartitionCoverage coverage = owningAll();
+    private final UsageStreamService service = new UsageStreamService(
+            meterRegistry,
+            pendingSends::add,
+            null,
+            coverage,
+            2,
+            Duration.ofMinutes(30),
+            Duration.ofHours(1),
+            Duration.ofSeconds(5));
+
+    @Test
+    @DisplayName("Should send the summed deltas of a user's readings and ignore other users")
+    void flush_SendsSummedDeltas() {
+        // Arrange
+        CapturingEmitter emitter = new CapturingEmitter();
+        service.subscribe(1L, List.of(10L, 11L), emitter);
+        service.publish(new UsageReading(10L, 1L, NOW, 1.5));
+        service.publish(new UsageReading(10L, 1L, NOW.plusSeconds(5), 2.0));
+        service.publish(new UsageReading(11L, 1L, NOW.plusSeconds(2), 4.0));
+        service.publish(new UsageReading(20L, 2L, NOW, 9.0));
+
+        // Act
+        service.flush();
+        runPendingSends();
+
+        // Assert
+        assertEquals(1, emitter.updates.size());
+        UsageUpdateResponse update = emitter.updates.getFirst();
+        assertEquals(3, update.readings());
+        assertEquals(NOW, update.from());
+        assertEquals(NOW.plusSeconds(5), update.to());
+        assertEquals(3.5, update.devices().get(10L));
+        assertEquals(4.0, update.devices().get(11L));
+        assertTrue(update.complete());
+    }
+
+    @Test
+    @DisplayName("Should merge updates for a subscriber whose previous send has not finished")
+    void flush_CoalescesWhileSending() {
+        // Arrange
+        CapturingEmitter emitter = new CapturingEmitter();
+        service.subscribe(1L, List.of(10L, 11L), emitter);
+        service.publish(new UsageReading(10L, 1L, NOW, 1.0));
+        service.flush();
+
+        // Act
+        service.publish(new UsageReading(10L, 1L, NOW.plusSeconds(1), 2.0));
+        service.flush();
+        service.publish(new UsageReading(10L, 1L, NOW.plusSeconds(2), 3.0));
+        service.flush();
+        runPendingSends();
+        service.flush();
+        runPendingSends();
+
+        // Assert
+        assertEquals(2, emitter.updates.size());
+        assertEquals(1.0, emitter.updates.get(0).devices().get(10L));
+        assertEquals(5.0, emitter.updates.get(1).devices().get(10L));
+        assertEquals(2, emitter.updates.get(1).readings());
+        assertEquals(2.0, meterRegistry.counter("usage.stream.coalesced").count());
+    }
+
+    @Test
+    @DisplayName("Should reject subscriptions beyond the limit")
+    void subscribe_RejectsBeyondLimit() {
+        // Arrange
+        service.subscribe(1L, List.of(), new CapturingEmitter());
+        service.subscribe(2L, List.of(), new CapturingEmitter());
+
+        // Act & Assert
+        assertThrows(QueryRejectedException.class, () -> service.subscribe(3L, List.of(), new CapturingEmitter()));
+        assertEquals(2.0, meterRegistry.get("usage.stream.subscribers").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should send the streamed devices as a scope event and again when a rebalance changes them")
+    void flush_SendsScopeChanges() {
+        // Arrange
+        long local = deviceOnPartition(0);
+        long remote = deviceOnPartition(1);
+        coverage.assign(2, List.of(0));
+        CapturingEmitter emitter = new CapturingEmitter();
+        service.subscribe(1L, List.of(local, remote), emitter);
+
+        // Act
+        service.publish(new UsageReading(local, 1L, NOW, 1.0));
+        service.flush();
+        runPendingSends();
+        service.flush();
+        runPendingSends();
+        coverage.revoke(List.of(0));
+        service.flush();
+        runPendingSends();
+
+        // Assert
+        assertEquals(2, emitter.scopes.size());
+        UsageStreamScopeResponse initial = emitter.scopes.getFirst();
+        assertFalse(initial.complete());
+        assertEquals(List.of(local, remote), initial.devices());
+        assertEquals(List.of(local), initial.streamedDevices());
+        assertEquals(List.of(), emitter.scopes.get(1).streamedDevices());
+        assertEquals(1, emitter.updates.size());
+        assertFalse(emitter.updates.getFirst().complete());
+    }
+
+    private static long deviceOnPartition(int partition) {
+        return LongStream.iterate(1, deviceId -> deviceId + 1)
+                .filter(deviceId -> PartitionCoverage.partitionOf(deviceId, 2) == partition)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static PartitionCoverage owningAll() {
+        PartitionCoverage coverage = new PartitionCoverage();
+        coverage.assign(1, List.of(0));
+        return coverage;
+    }
+
+    private void runPendingSends() {
+        List<Runnable> sends = new ArrayList<>(pendingSends);
+        pendingSends.clear();
+        sends.forEach(Runnable::run);
+    }
+
+    private static final class CapturingEmitter extends SseEmitter {
+
+        private final List<UsageUpdateResponse> updates = new ArrayList<>();
+        private final List<UsageStreamScopeResponse> scopes = new ArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            for (DataWithMediaType data : builder.build()) {
+                if (data.getData() instanceof UsageUpdateResponse update) {
+                    updates.add(update);
+                } else if (data.getData() instanceof UsageStreamScopeResponse scope) {
+                    scopes.add(scope);
+                }
+            }
+        }
+    }
+}
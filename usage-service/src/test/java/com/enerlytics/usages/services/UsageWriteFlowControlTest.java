@@ -0,0 +1,330 @@
+package com.enerlytics.usages.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.enerlytics.events.EnergyUsageEvent;
+import com.enerlytics.usages.dtos.UsageBucket;
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.exceptions.UsageWriteRejectedException;
+import com.enerlytics.usages.stores.PartitionCoverage;
+import com.enerlytics.usages.stores.UsageArchive;
+import com.enerlytics.usages.stores.UsageStore;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+class UsageWriteFlowControlTest {
+
+    private static final Instant START = Instant.parse("2026-05-01T00:00:00Z");
+
+    private final FlakyStore store = new FlakyStore();
+    private final PartitionedContainer container =
+            new PartitionedContainer(List.of(partition(0), partition(1), partition(2)));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<Long, Long> owners = new HashMap<>();
+    private final List<ConsumerRecord<?, ?>> deadLetters = new ArrayList<>();
+    private final UsageResultCache resultCache = new UsageResultCache(
+            meterRegistry,
+            true,
+            1_000,
+            Duration.ofHours(6),
+            Duration.ofMinutes(15),
+            Duration.ofMinutes(150),
+            Duration.ofHours(49));
+    private final UsageWriteFlowControl flowControl = new UsageWriteFlowControl(
+            store,
+            resultCache,
+            disabledArchive(store, meterRegistry),
+            owners::get,
+            new PipelineMetrics(meterRegistry),
+            () -> container,
+            (record, e) -> deadLetters.add(record),
+            meterRegistry,
+            Duration.ofSeconds(1),
+            0.2,
+            2,
+            8,
+            100,
+            3);
+
+    private static UsageArchive disabledArchive(UsageStore store, SimpleMeterRegistry meterRegistry) {
+        try {
+            return new UsageArchive(
+                    store,
+                    new PartitionCoverage(),
+                    meterRegistry,
+                    false,
+                    Path.of("unused"),
+                    1,
+                    Duration.ofHours(1),
+                    Duration.ofDays(6),
+                    Duration.ofDays(6),
+                    Duration.ofHours(1),
+                    1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static TopicPartition partition(int partition) {
+        return new TopicPartition("energy-usage", partition);
+    }
+
+    private Timer latency(String stage, String outcome) {
+        return meterRegistry
+                .get(PipelineMetrics.LATENCY)
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .timer();
+    }
+
+    private static UsageReading reading(int i) {
+        return new UsageReading(1L, 7L, START.plusSeconds(i), i);
+    }
+
+    @Test
+    @DisplayName("Should buffer failed writes and acknowledge them only once a retry stores them")
+    void write_RetriesFailedWrites() {
+        // Arrange
+        AtomicInteger stored = new AtomicInteger();
+        store.failing = true;
+        flowControl.write(List.of(reading(1)), stored::incrementAndGet);
+        flowControl.write(List.of(reading(2)), stored::incrementAndGet);
+
+        // Act
+        flowControl.retry();
+        int storedWhileFailing = stored.get();
+        store.failing = false;
+        flowControl.retry();
+
+        // Assert
+        assertEquals(0, storedWhileFailing);
+        assertEquals(2, stored.get());
+        assertEquals(0, flowControl.buffered());
+        assertEquals(List.of(reading(1), reading(2)), store.written);
+        assertEquals(3, latency("usage.store-write", "failure").count());
+        assertEquals(1, latency("usage.store-write", "success").count());
+        assertEquals(2, latency("usage.stored", "success").count());
+    }
+
+    @Test
+    @DisplayName("Should hold readings without an owner until a retry can tag them")
+    void write_TagsReadingsBeforeStoring() {
+        // Arrange
+        AtomicInteger stored = new AtomicInteger();
+        UsageReading untagged = new UsageReading(2L, null, START, 1.0);
+        flowControl.write(List.of(untagged), stored::incrementAndGet);
+
+        // Act
+        flowControl.retry();
+        int storedWithoutOwner = stored.get();
+        owners.put(2L, 9L);
+        flowControl.retry();
+
+        // Assert
+        assertEquals(0, storedWithoutOwner);
+        assertEquals(1, stored.get());
+        assertEquals(List.of(new UsageReading(2L, 9L, START, 1.0)), store.written);
+    }
+
+    @Test
+    @DisplayName("Should dead-letter a reading the store rejects and store the rest of its batch")
+    void retry_DeadLettersRejectedReadings() {
+        // Arrange
+        AtomicInteger stored = new AtomicInteger();
+        store.rejected.add(reading(2));
+        flowControl.write(List.of(reading(1), reading(2), reading(3)), stored::incrementAndGet);
+
+        // Act
+        flowControl.retry();
+
+        // Assert
+        assertEquals(1, stored.get());
+        assertEquals(0, flowControl.buffered());
+        assertEquals(List.of(reading(1), reading(3)), store.written);
+        assertEquals(1, deadLetters.size());
+        assertEquals("1", deadLetters.getFirst().key());
+        assertEquals(
+                new EnergyUsageEvent(1L, 2.0, START.plusSeconds(2)),
+                deadLetters.getFirst().value());
+    }
+
+    @Test
+    @DisplayName("Should dead-letter readings still failing after the maximum attempts")
+    void retry_DeadLettersExhaustedReadings() {
+        // Arrange
+        AtomicInteger stored = new AtomicInteger();
+        store.failing = true;
+        flowControl.write(List.of(reading(1)), stored::incrementAndGet);
+
+        // Act
+        flowControl.retry();
+        flowControl.retry();
+        int deadLetteredBeforeLastAttempt = deadLetters.size();
+        flowControl.retry();
+
+        // Assert
+        assertEquals(0, deadLetteredBeforeLastAttempt);
+        assertEquals(1, deadLetters.size());
+        assertEquals(1, stored.get());
+        assertEquals(0, flowControl.buffered());
+    }
+
+    @Test
+    @DisplayName("Should pause every partition as soon as the buffer is full instead of blocking")
+    void write_PausesWhenBufferFull() {
+        // Arrange
+        store.failing = true;
+
+        // Act
+        flowControl.write(List.of(reading(1), reading(2), reading(3), reading(4)), () -> {});
+        int pausedBelowCapacity = container.paused.size();
+        flowControl.write(List.of(reading(5), reading(6), reading(7), reading(8), reading(9)), () -> {});
+
+        // Assert
+        assertEquals(0, pausedBelowCapacity);
+        assertEquals(3, container.paused.size());
+        assertEquals(9, flowControl.buffered());
+    }
+
+    @Test
+    @DisplayName("Should pause every partition when writes fail and resume them one at a time once healthy")
+    void adjust_PausesAndRampsUp() {
+        // Arrange
+        store.failing = true;
+        flowControl.write(List.of(reading(1)), () -> {});
+        flowControl.write(List.of(reading(2)), () -> {});
+
+        // Act
+        flowControl.adjust();
+        Set<TopicPartition> pausedWhileFailing = new HashSet<>(container.paused);
+        store.failing = false;
+        flowControl.retry();
+        flowControl.adjust();
+        int pausedAfterFirstStep = container.paused.size();
+        flowControl.adjust();
+        flowControl.adjust();
+
+        // Assert
+        assertEquals(3, pausedWhileFailing.size());
+        assertEquals(2, pausedAfterFirstStep);
+        assertTrue(container.paused.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should not pause on a single failure below the minimum sample count")
+    void adjust_IgnoresTooFewSamples() {
+        // Arrange
+        store.failing = true;
+        flowControl.write(List.of(reading(1)), () -> {});
+
+        // Act
+        flowControl.adjust();
+
+        // Assert
+        assertFalse(container.paused.contains(partition(0)));
+    }
+
+    private static final class FlakyStore implements UsageStore {
+
+        private final List<UsageReading> written = new ArrayList<>();
+        private final Set<UsageReading> rejected = new HashSet<>();
+        private volatile boolean failing;
+
+        @Override
+        public void write(List<UsageReading> readings) {
+            if (failing) {
+                throw new IllegalStateException("store unavailable");
+            }
+            if (readings.stream().anyMatch(rejected::contains)) {
+                throw new UsageWriteRejectedException("field type conflict", null);
+            }
+            written.addAll(readings);
+        }
+
+        @Override
+        public LongDoubleHashMap sumByDevice(UsageQuery query) {
+            return new LongDoubleHashMap();
+        }
+
+        @Override
+        public List<UsageBucket> window(UsageQuery query, Duration every) {
+            return List.of();
+        }
+
+        @Override
+        public void scan(UsageQuery query, SeriesConsumer consumer) {}
+    }
+
+    private static final class PartitionedContainer implements MessageListenerContainer {
+
+        private final Collection<TopicPartition> assigned;
+        private final Set<TopicPartition> paused = new HashSet<>();
+
+        private PartitionedContainer(Collection<TopicPartition> assigned) {
+            this.assigned = assigned;
+        }
+
+        @Override
+        public Collection<TopicPartition> getAssignedPartitions() {
+            return assigned;
+        }
+
+        @Override
+        public void pausePartition(TopicPartition topicPartition) {
+            paused.add(topicPartition);
+        }
+
+        @Override
+        public void resumePartition(TopicPartition topicPartition) {
+            paused.remove(topicPartition);
+        }
+
+        @Override
+        public boolean isPartitionPauseRequested(TopicPartition topicPartition) {
+            return paused.contains(topicPartition);
+        }
+
+        @Override
+        public void setupMessageListener(Object messageListener) {}
+
+        @Override
+        public Map<String, Map<MetricName, ? extends Metric>> metrics() {
+            return Map.of();
+        }
+
+        @Override
+        public void start() {}
+
+        @Override
+        public void stop() {}
+
+        @Override
+        public boolean isRunning() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.enerlytics.usages.stores;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.enerlytics.usages.dtos.FleetDimension;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.dtos.external.DeviceServiceResponse;
+import com.enerlytics.usages.dtos.responses.FleetUsageResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class FleetRollupsTest {
+
+    private static final Instant START = Instant.parse("2026-05-01T10:30:00Z");
+    private static final DeviceServiceResponse HEATER = new DeviceServiceResponse(1L, "h", "HEATER", "Kitchen", 7L);
+    private static final DeviceServiceResponse LIGHT = new DeviceServiceResponse(2L, "l", "LIGHT", "Kitchen", 7L);
+    private static final DeviceServiceResponse PUMP = new DeviceServiceResponse(3L, "p", "HEATER", "Garage", 8L);
+
+    @Test
+    @DisplayName("Should total readings per device type and per location, largest first")
+    void totals_GroupsByDimension() {
+        // Arrange
+        Clock clock = Clock.fixed(START, ZoneOffset.UTC);
+        FleetRollups rollups =
+                new FleetRollups(new SimpleMeterRegistry(), clock, owningAll(clock), true, Duration.ofHours(48));
+        rollups.record(reading(1L, START.plusSeconds(60), 2.0), HEATER);
+        rollups.record(reading(2L, START.plusSeconds(120), 1.0), LIGHT);
+        rollups.record(reading(3L, START.plus(Duration.ofHours(2)), 4.0), PUMP);
+        rollups.record(reading(9L, START.plusSeconds(60), 0.5), null);
+
+        // Act
+        FleetUsageResponse byType = rollups.totals(FleetDimension.DEVICE_TYPE, START, START.plus(Duration.ofHours(3)));
+        FleetUsageResponse byLocation = rollups.totals(FleetDimension.LOCATION, START, START.plus(Duration.ofHours(1)));
+
+        // Assert
+        assertEquals("HEATER", byType.groups().getFirst().key());
+        assertEquals(6.0, byType.groups().getFirst().energyConsumed());
+        assertEquals(2, byType.groups().getFirst().readings());
+        assertEquals(3, byType.groups().size());
+        assertEquals("Kitchen", byLocation.groups().getFirst().key());
+        assertEquals(3.0, byLocation.groups().getFirst().energyConsumed());
+        assertEquals(FleetDimension.UNKNOWN, byLocation.groups().get(1).key());
+    }
+
+    @Test
+    @DisplayName("Should report completeness only for hours after startup and within retention")
+    void totals_ReportsCoverage() {
+        // Arrange
+        MutableClock clock = new MutableClock(START);
+        FleetRollups rollups =
+                new FleetRollups(new SimpleMeterRegistry(), clock, owningAll(clock), true, Duration.ofHours(2));
+        rollups.record(reading(1L, START.plus(Duration.ofMinutes(40)), 1.0), HEATER);
+
+        // Act
+        FleetUsageResponse sinceStartup = rollups.totals(FleetDimension.DEVICE_TYPE, START, START.plusSeconds(7200));
+        FleetUsageResponse nextHour =
+                rollups.totals(FleetDimension.DEVICE_TYPE, START.plus(Duration.ofMinutes(30)), START.plusSeconds(7200));
+        clock.instant = START.plus(Duration.ofHours(4));
+        rollups.evict();
+        FleetUsageResponse afterEviction =
+                rollups.totals(FleetDimension.DEVICE_TYPE, START.plus(Duration.ofMinutes(30)), clock.instant);
+
+        // Assert
+        assertFalse(sinceStartup.complete());
+        assertTrue(nextHour.complete());
+        assertEquals(1.0, nextHour.groups().getFirst().energyConsumed());
+        assertFalse(afterEviction.complete());
+        assertTrue(afterEviction.groups().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should report incomplete totals unless every partition was owned here for the whole range")
+    void totals_ReportsPartitionCoverage() {
+        // Arrange
+        MutableClock clock = new MutableClock(START.minus(Duration.ofHours(1)));
+        PartitionCoverage coverage = new PartitionCoverage(clock);
+        FleetRollups rollups = new FleetRollups(new SimpleMeterRegistry(), clock, coverage, true, Duration.ofHours(48));
+        coverage.assign(2, List.of(0));
+        clock.instant = START.plus(Duration.ofHours(2));
+
+        // Act
+        FleetUsageResponse onePartition = rollups.totals(FleetDimension.DEVICE_TYPE, START, clock.instant);
+        coverage.assign(2, List.of(1));
+        FleetUsageResponse beforeRebalance = rollups.totals(FleetDimension.DEVICE_TYPE, START, clock.instant);
+        FleetUsageResponse nextHour = rollups.totals(
+                FleetDimension.DEVICE_TYPE, START.plus(Duration.ofHours(3)), START.plus(Duration.ofHours(4)));
+        coverage.revoke(List.of(0));
+        FleetUsageResponse afterRevoke = rollups.totals(
+                FleetDimension.DEVICE_TYPE, START.plus(Duration.ofHours(3)), START.plus(Duration.ofHours(4)));
+
+        // Assert
+        assertFalse(onePartition.complete());
+        assertFalse(beforeRebalance.complete());
+        assertTrue(nextHour.complete());
+        assertFalse(afterRevoke.complete());
+    }
+
+    static PartitionCoverage owningAll(Clock clock) {
+        PartitionCoverage coverage = new PartitionCoverage(clock);
+        coverage.assign(1, List.of(0));
+        return coverage;
+    }
+
+    private static UsageReading reading(Long deviceId, Instant timestamp, double energy) {
+        return new UsageReading(deviceId, null, timestamp, energy);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.enerlytics.usages.stores;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.enerlytics.usages.dtos.responses.FluxQueryResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class FluxQueryProfilerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FluxQueryProfiler profiler = new FluxQueryProfiler(meterRegistry, Duration.ofMillis(100), false, 3);
+
+    private void record(String query, long millis) {
+        profiler.record(
+                "sum-by-device.raw",
+                query,
+                Instant.EPOCH,
+                Duration.ofMillis(millis).toNanos(),
+                "success",
+                2,
+                10,
+                null);
+    }
+
+    @Test
+    @DisplayName("Should list the slowest of the recent queries, slowest first")
+    void mostExpensive_OrdersRecentQueriesByDuration() {
+        // Arrange
+        record("q1", 500);
+        record("q2", 20);
+        record("q3", 300);
+        record("q4", 150);
+
+        // Act
+        List<FluxQueryResponse> queries = profiler.mostExpensive(2);
+
+        // Assert
+        assertEquals(
+                List.of("q3", "q4"),
+                queries.stream().map(FluxQueryResponse::query).toList());
+    }
+
+    @Test
+    @DisplayName("Should time queries and count their rows, tables and slow runs per type")
+    void record_UpdatesMeters() {
+        // Act
+        record("q1", 500);
+        record("q2", 20);
+
+        // Assert
+        assertEquals(
+                2,
+                meterRegistry
+                        .get("usage.flux.query")
+                        .tag("type", "sum-by-device.raw")
+                        .tag("outcome", "success")
+                        .timer()
+                        .count());
+        assertEquals(20, meterRegistry.get("usage.flux.rows").counter().count());
+        assertEquals(4, meterRegistry.get("usage.flux.tables").counter().count());
+        assertEquals(1, meterRegistry.get("usage.flux.slow").counter().count());
+    }
+}
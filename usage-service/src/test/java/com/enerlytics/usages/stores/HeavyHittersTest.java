@@ -0,0 +1,128 @@
+package com.enerlytics.usages.stores;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.enerlytics.usages.dtos.TopCandidates;
+import com.enerlytics.usages.dtos.TopDimension;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.dtos.responses.TopUsageEntryResponse;
+import com.enerlytics.usages.dtos.responses.TopUsageResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class HeavyHittersTest {
+
+    private static final Instant START = Instant.parse("2026-05-01T10:00:00Z");
+
+    @Test
+    @DisplayName("Should merge hourly summaries and rank devices and users by consumption")
+    void top_MergesHours() {
+        // Arrange
+        HeavyHitters heavyHitters = heavyHitters(10);
+        heavyHitters.record(new UsageReading(1L, 7L, START.plusSeconds(60), 5.0));
+        heavyHitters.record(new UsageReading(2L, 8L, START.plusSeconds(120), 3.0));
+        heavyHitters.record(new UsageReading(1L, 7L, START.plus(Duration.ofMinutes(70)), 1.0));
+        heavyHitters.record(new UsageReading(3L, 8L, START.plus(Duration.ofMinutes(80)), 4.0));
+
+        // Act
+        TopUsageResponse devices = heavyHitters.top(TopDimension.DEVICE, START, START.plus(Duration.ofHours(2)), 2);
+        TopUsageResponse users = heavyHitters.top(TopDimension.USER, START, START.plus(Duration.ofHours(2)), 1);
+
+        // Assert
+        assertEquals(2, devices.entries().size());
+        assertEquals(1L, devices.entries().getFirst().id());
+        assertEquals(6.0, devices.entries().getFirst().energyConsumed());
+        assertEquals(8L, users.entries().getFirst().id());
+        assertEquals(7.0, users.entries().getFirst().energyConsumed());
+        assertFalse(devices.exact());
+        assertTrue(devices.complete());
+    }
+
+    @Test
+    @DisplayName("Should widen the upper bound of a key missing from a full hour")
+    void top_BoundsUntrackedHours() {
+        // Arrange
+        HeavyHitters heavyHitters = heavyHitters(2);
+        heavyHitters.record(new UsageReading(1L, null, START.plusSeconds(60), 5.0));
+        heavyHitters.record(new UsageReading(2L, null, START.plusSeconds(60), 2.0));
+        heavyHitters.record(new UsageReading(3L, null, START.plusSeconds(60), 4.0));
+        heavyHitters.record(new UsageReading(3L, null, START.plus(Duration.ofMinutes(70)), 1.0));
+
+        // Act
+        TopUsageResponse devices = heavyHitters.top(TopDimension.DEVICE, START, START.plus(Duration.ofHours(2)), 2);
+
+        // Assert
+        TopUsageEntryResponse first = devices.entries().getFirst();
+        assertEquals(3L, first.id());
+        // first hour evicted device 2's counter (2.0) into device 3: 6.0 counted, 4.0 guaranteed
+        assertEquals(7.0, first.energyConsumed());
+        assertEquals(5.0, first.guaranteedEnergy());
+        TopUsageEntryResponse second = devices.entries().get(1);
+        assertEquals(1L, second.id());
+        assertEquals(5.0, second.guaranteedEnergy());
+    }
+
+    @Test
+    @DisplayName("Should pick as candidates every key whose upper bound reaches the n-th largest lower bound")
+    void candidates_KeepsKeysThatMayRank() {
+        // Arrange
+        HeavyHitters heavyHitters = heavyHitters(3);
+        heavyHitters.record(new UsageReading(1L, null, START.plusSeconds(60), 5.0));
+        heavyHitters.record(new UsageReading(2L, null, START.plusSeconds(60), 3.0));
+        heavyHitters.record(new UsageReading(3L, null, START.plusSeconds(60), 4.0));
+        heavyHitters.record(new UsageReading(4L, null, START.plusSeconds(60), 1.5));
+
+        // Act
+        TopCandidates one = heavyHitters.candidates(TopDimension.DEVICE, START, START.plus(Duration.ofHours(1)), 1);
+        TopCandidates two = heavyHitters.candidates(TopDimension.DEVICE, START, START.plus(Duration.ofHours(1)), 2);
+
+        // Assert
+        assertEquals(List.of(1L), one.ids());
+        assertTrue(one.complete());
+        // device 4 took over device 2's counter: 4.5 counted but only 1.5 guaranteed, so it may still beat device 3
+        assertEquals(List.of(1L, 4L, 3L), two.ids());
+        // and an untracked key may hold up to the smallest counter, 4.0, as much as the second-largest lower bound
+        assertFalse(two.complete());
+    }
+
+    @Test
+    @DisplayName("Should report incomplete answers unless every partition was owned here for the whole range")
+    void top_ReportsPartitionCoverage() {
+        // Arrange
+        Clock clock = Clock.fixed(START, ZoneOffset.UTC);
+        PartitionCoverage coverage = new PartitionCoverage(clock);
+        coverage.assign(2, List.of(0));
+        HeavyHitters heavyHitters =
+                new HeavyHitters(new SimpleMeterRegistry(), clock, coverage, true, 10, Duration.ofHours(25));
+        heavyHitters.record(new UsageReading(1L, 7L, START.plusSeconds(60), 5.0));
+
+        // Act
+        TopUsageResponse devices = heavyHitters.top(TopDimension.DEVICE, START, START.plus(Duration.ofHours(1)), 1);
+        TopCandidates candidates =
+                heavyHitters.candidates(TopDimension.DEVICE, START, START.plus(Duration.ofHours(1)), 1);
+
+        // Assert
+        assertEquals(1L, devices.entries().getFirst().id());
+        assertFalse(devices.complete());
+        assertFalse(candidates.complete());
+    }
+
+    private static HeavyHitters heavyHitters(int capacity) {
+        Clock clock = Clock.fixed(START, ZoneOffset.UTC);
+        return new HeavyHitters(
+                new SimpleMeterRegistry(),
+                clock,
+                FleetRollupsTest.owningAll(clock),
+                true,
+                capacity,
+                Duration.ofHours(25));
+    }
+}
@@ -0,0 +1,201 @@
+package com.enerlytics.usages.stores;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.enerlytics.usages.dtos.Resolution;
+import com.enerlytics.usages.dtos.UsageBucket;
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class HotUsageTierTest {
+
+    private static final Instant STARTED = Instant.parse("2026-05-10T00:00:00Z");
+
+    @Test
+    @DisplayName("Should sum owned devices for ranges seen since startup")
+    void sumByDevice_CoveredRange() {
+        // Arrange
+        HotUsageTier tier = tier(STARTED.plus(Duration.ofHours(3)), 1L << 30);
+        tier.append(new UsageReading(1L, 10L, STARTED.plusSeconds(60), 1.5));
+        tier.append(new UsageReading(1L, 10L, STARTED.plus(Duration.ofHours(2)), 2.5));
+        tier.append(new UsageReading(2L, 20L, STARTED.plusSeconds(120), 4.0));
+
+        // Act
+        Optional<LongDoubleHashMap> all =
+                tier.sumByDevice(query(STARTED, STARTED.plus(Duration.ofHours(3)), null), null);
+        Optional<LongDoubleHashMap> user =
+                tier.sumByDevice(query(STARTED, STARTED.plus(Duration.ofHours(1)), 10L), List.of(1L));
+
+        // Assert
+        assertEquals(4.0, all.orElseThrow().get(1L, 0.0));
+        assertEquals(4.0, all.orElseThrow().get(2L, 0.0));
+        assertEquals(2, all.orElseThrow().size());
+        assertEquals(1.5, user.orElseThrow().get(1L, 0.0));
+        assertEquals(1, user.orElseThrow().size());
+    }
+
+    @Test
+    @DisplayName("Should bucket a user's points per device for ranges seen since startup")
+    void window_CoveredRange() {
+        // Arrange
+        HotUsageTier tier = tier(STARTED.plus(Duration.ofHours(3)), 1L << 30);
+        tier.append(new UsageReading(1L, 10L, STARTED.plusSeconds(60), 1.5));
+        tier.append(new UsageReading(1L, 10L, STARTED.plusSeconds(120), 0.5));
+        tier.append(new UsageReading(1L, 10L, STARTED.plus(Duration.ofHours(2)), 2.5));
+        tier.append(new UsageReading(2L, 20L, STARTED.plusSeconds(120), 4.0));
+
+        // Act
+        Optional<List<UsageBucket>> buckets =
+                tier.window(query(STARTED, STARTED.plus(Duration.ofHours(3)), 10L), List.of(1L), Duration.ofHours(1));
+        Optional<List<UsageBucket>> beforeStartup = tier.window(
+                query(STARTED.minusSeconds(1), STARTED.plus(Duration.ofHours(3)), 10L),
+                List.of(1L),
+                Duration.ofHours(1));
+
+        // Assert
+        assertEquals(
+                List.of(new UsageBucket(1L, STARTED, 2.0), new UsageBucket(1L, STARTED.plus(Duration.ofHours(2)), 2.5)),
+                buckets.orElseThrow());
+        assertTrue(beforeStartup.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should decline ranges before startup, an out-of-order point or a point without an owner")
+    void sumByDevice_UncoveredRange() {
+        // Arrange
+        HotUsageTier tier = tier(STARTED.plus(Duration.ofHours(1)), 1L << 30);
+        tier.append(new UsageReading(1L, 10L, STARTED.plus(Duration.ofMinutes(30)), 1.0));
+        tier.append(new UsageReading(1L, 10L, STARTED.plus(Duration.ofMinutes(10)), 1.0));
+        tier.append(new UsageReading(3L, null, STARTED.plus(Duration.ofMinutes(40)), 1.0));
+
+        // Act
+        Optional<LongDoubleHashMap> beforeStartup =
+                tier.sumByDevice(query(STARTED.minusSeconds(1), STARTED.plus(Duration.ofHours(1)), 10L), List.of(1L));
+        Optional<LongDoubleHashMap> spanningRejected =
+                tier.sumByDevice(query(STARTED, STARTED.plus(Duration.ofHours(1)), 10L), List.of(1L));
+        Optional<LongDoubleHashMap> afterRejected = tier.sumByDevice(
+                query(STARTED.plus(Duration.ofMinutes(20)), STARTED.plus(Duration.ofHours(1)), 10L), List.of(1L));
+        Optional<LongDoubleHashMap> spanningUntagged = tier.sumByDevice(
+                query(STARTED.plus(Duration.ofMinutes(20)), STARTED.plus(Duration.ofHours(1)), 10L), List.of(1L, 3L));
+
+        // Assert
+        assertTrue(beforeStartup.isEmpty());
+        assertTrue(spanningRejected.isEmpty());
+        assertEquals(1.0, afterRejected.orElseThrow().get(1L, 0.0));
+        assertTrue(spanningUntagged.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should evict blocks past retention and stop answering for them")
+    void evict_DropsExpiredBlocks() {
+        // Arrange
+        MutableClock clock = new MutableClock(STARTED);
+        HotUsageTier tier = new HotUsageTier(
+                new SimpleMeterRegistry(), clock, true, Duration.ofHours(4), Duration.ofHours(2), 1L << 30);
+        tier.assign(1, List.of(0));
+        tier.append(new UsageReading(1L, 10L, STARTED.plusSeconds(60), 1.0));
+        tier.append(new UsageReading(1L, 10L, STARTED.plus(Duration.ofHours(5)), 2.0));
+
+        // Act
+        clock.instant = STARTED.plus(Duration.ofHours(6));
+        tier.evict();
+
+        // Assert
+        assertTrue(tier.sumByDevice(query(STARTED, clock.instant, 10L), List.of(1L))
+                .isEmpty());
+        assertEquals(
+                2.0,
+                tier.sumByDevice(query(STARTED.plus(Duration.ofHours(2)), clock.instant, 10L), List.of(1L))
+                        .orElseThrow()
+                        .get(1L, 0.0));
+    }
+
+    @Test
+    @DisplayName("Should decline devices on partitions it doesn't own and start over when one is assigned again")
+    void sumByDevice_UnownedPartitions() {
+        // Arrange
+        MutableClock clock = new MutableClock(STARTED);
+        HotUsageTier tier = new HotUsageTier(
+                new SimpleMeterRegistry(), clock, true, Duration.ofHours(24), Duration.ofHours(2), 1L << 30);
+        long owned = device(0, 2);
+        long foreign = device(1, 2);
+        tier.assign(2, List.of(0));
+        tier.append(new UsageReading(owned, 10L, STARTED.plusSeconds(60), 1.0));
+        tier.append(new UsageReading(foreign, 10L, STARTED.plusSeconds(60), 2.0));
+        clock.instant = STARTED.plus(Duration.ofHours(1));
+
+        // Act
+        Optional<LongDoubleHashMap> ownedOnly = tier.sumByDevice(query(STARTED, clock.instant, 10L), List.of(owned));
+        Optional<LongDoubleHashMap> withForeign =
+                tier.sumByDevice(query(STARTED, clock.instant, 10L), List.of(owned, foreign));
+        Optional<LongDoubleHashMap> fleet = tier.sumByDevice(query(STARTED, clock.instant, null), null);
+        tier.revoke(List.of(0));
+        tier.assign(2, List.of(0, 1));
+        Optional<LongDoubleHashMap> reassigned = tier.sumByDevice(query(STARTED, clock.instant, 10L), List.of(owned));
+
+        // Assert
+        assertEquals(1.0, ownedOnly.orElseThrow().get(owned, 0.0));
+        assertEquals(1, ownedOnly.orElseThrow().size());
+        assertTrue(withForeign.isEmpty());
+        assertTrue(fleet.isEmpty());
+        assertTrue(reassigned.isEmpty());
+    }
+
+    private static HotUsageTier tier(Instant now, long maxBytes) {
+        // the tier owns the only partition from STARTED, then is queried as of now
+        MutableClock clock = new MutableClock(STARTED);
+        HotUsageTier tier = new HotUsageTier(
+                new SimpleMeterRegistry(), clock, true, Duration.ofHours(24), Duration.ofHours(2), maxBytes);
+        tier.assign(1, List.of(0));
+        clock.instant = now;
+        return tier;
+    }
+
+    private static long device(int partition, int partitionCount) {
+        return LongStream.iterate(1, deviceId -> deviceId + 1)
+                .filter(deviceId -> PartitionCoverage.partitionOf(deviceId, partitionCount) == partition)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static UsageQuery query(Instant start, Instant stop, Long userId) {
+        return new UsageQuery(Resolution.RAW, start, stop, userId);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
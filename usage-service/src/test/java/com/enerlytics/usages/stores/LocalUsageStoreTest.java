@@ -0,0 +1,111 @@
+package com.enerlytics.usages.stores;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.enerlytics.usages.dtos.Resolution;
+import com.enerlytics.usages.dtos.UsageBucket;
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LocalUsageStoreTest {
+
+    private static final Instant START = Instant.parse("2026-05-10T00:00:00Z");
+
+    @TempDir
+    Path root;
+
+    @Test
+    @DisplayName("Should sum readings per device within the requested range and owner")
+    void sumByDevice_FiltersRangeAndOwner() throws Exception {
+        // Arrange
+        LocalUsageStore store = new LocalUsageStore(root, Duration.ofDays(1), 4);
+        store.write(List.of(
+                new UsageReading(1L, 10L, START, 1.0),
+                new UsageReading(1L, 10L, START.plusSeconds(60), 2.0),
+                new UsageReading(2L, 20L, START.plusSeconds(60), 5.0),
+                new UsageReading(1L, 10L, START.plus(Duration.ofDays(1)), 4.0)));
+
+        // Act
+        LongDoubleHashMap all =
+                store.sumByDevice(new UsageQuery(Resolution.RAW, START, START.plus(Duration.ofDays(1)), null));
+        LongDoubleHashMap user =
+                store.sumByDevice(new UsageQuery(Resolution.RAW, START, START.plus(Duration.ofDays(2)), 10L));
+
+        // Assert
+        assertEquals(3.0, all.get(1L, 0.0));
+        assertEquals(5.0, all.get(2L, 0.0));
+        assertEquals(1, user.size());
+        assertEquals(7.0, user.get(1L, 0.0));
+    }
+
+    @Test
+    @DisplayName("Should roll over full chunks and reopen persisted data")
+    void write_RollsChunksAndPersists() throws Exception {
+        // Arrange
+        LocalUsageStore store = new LocalUsageStore(root, Duration.ofDays(1), 2);
+        for (int i = 0; i < 5; i++) {
+            store.write(List.of(new UsageReading(1L, 10L, START.plusSeconds(i), 1.0)));
+        }
+        store.close();
+
+        // Act
+        LocalUsageStore reopened = new LocalUsageStore(root, Duration.ofDays(1), 2);
+        reopened.write(List.of(new UsageReading(1L, 10L, START.plusSeconds(10), 1.0)));
+        LongDoubleHashMap sums =
+                reopened.sumByDevice(new UsageQuery(Resolution.RAW, START, START.plus(Duration.ofHours(1)), 10L));
+
+        // Assert
+        assertEquals(6.0, sums.get(1L, 0.0));
+    }
+
+    @Test
+    @DisplayName("Should keep a device's earlier readings with their owner after it changes hands")
+    void sumByDevice_KeepsOwnerPerChunk() throws Exception {
+        // Arrange
+        LocalUsageStore store = new LocalUsageStore(root, Duration.ofDays(1), 16);
+        store.write(List.of(
+                new UsageReading(1L, 10L, START, 1.0),
+                new UsageReading(1L, 20L, START.plusSeconds(60), 2.0),
+                new UsageReading(1L, 10L, START.plusSeconds(120), 4.0)));
+        store.close();
+        LocalUsageStore reopened = new LocalUsageStore(root, Duration.ofDays(1), 16);
+        Instant stop = START.plus(Duration.ofDays(1));
+
+        // Act
+        LongDoubleHashMap previous = reopened.sumByDevice(new UsageQuery(Resolution.RAW, START, stop, 10L));
+        LongDoubleHashMap current = reopened.sumByDevice(new UsageQuery(Resolution.RAW, START, stop, 20L));
+        LongDoubleHashMap all = reopened.sumByDevice(new UsageQuery(Resolution.RAW, START, stop, null));
+
+        // Assert
+        assertEquals(5.0, previous.get(1L, 0.0));
+        assertEquals(2.0, current.get(1L, 0.0));
+        assertEquals(7.0, all.get(1L, 0.0));
+    }
+
+    @Test
+    @DisplayName("Should aggregate readings into aligned windows")
+    void window_AggregatesIntoBuckets() throws Exception {
+        // Arrange
+        LocalUsageStore store = new LocalUsageStore(root, Duration.ofDays(1), 16);
+        store.write(List.of(
+                new UsageReading(1L, 10L, START.plusSeconds(10), 1.0),
+                new UsageReading(1L, 10L, START.plusSeconds(3599), 2.0),
+                new UsageReading(1L, 10L, START.plusSeconds(3600), 4.0)));
+
+        // Act
+        List<UsageBucket> buckets = store.window(
+                new UsageQuery(Resolution.RAW, START, START.plus(Duration.ofHours(2)), 10L), Duration.ofHours(1));
+
+        // Assert
+        assertEquals(
+                List.of(new UsageBucket(1L, START, 3.0), new UsageBucket(1L, START.plusSeconds(3600), 4.0)), buckets);
+    }
+}
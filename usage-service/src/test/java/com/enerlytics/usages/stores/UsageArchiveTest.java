@@ -0,0 +1,200 @@
+package com.enerlytics.usages.stores;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.enerlytics.usages.dtos.Resolution;
+import com.enerlytics.usages.dtos.UsageBucket;
+import com.enerlytics.usages.dtos.UsageQuery;
+import com.enerlytics.usages.dtos.UsageReading;
+import com.enerlytics.usages.utils.LongDoubleHashMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UsageArchiveTest {
+
+    private static final Instant DAY = Instant.parse("2026-05-01T00:00:00Z");
+    private static final Instant NOW = Instant.parse("2026-05-10T12:00:00Z");
+
+    @TempDir
+    Path tempDir;
+
+    private final PartitionCoverage coverage = new PartitionCoverage();
+
+    private LocalUsageStore source;
+    private UsageArchive archive;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        source = new LocalUsageStore(tempDir.resolve("store"), Duration.ofDays(1), 1024);
+        coverage.assign(6, List.of(0));
+        archive = archive(tempDir.resolve("archive"), NOW);
+        source.write(List.of(
+                new UsageReading(1L, 10L, DAY.plus(Duration.ofHours(1)), 1.0),
+                new UsageReading(1L, 10L, DAY.plus(Duration.ofHours(13)), 2.0),
+                new UsageReading(2L, 20L, DAY.plus(Duration.ofHours(2)), 4.0),
+                new UsageReading(3L, 10L, DAY.plus(Duration.ofHours(23)), 8.0)));
+    }
+
+    @Test
+    @DisplayName("Should answer whole and partial days from an exported archive")
+    void sumByDevice_ReadsExportedDay() throws Exception {
+        // Arrange
+        archive.exportDay(LocalDate.of(2026, 5, 1));
+
+        // Act
+        LongDoubleHashMap day = archive.sumByDevice(query(DAY, DAY.plus(Duration.ofDays(1)), null))
+                .orElseThrow();
+        LongDoubleHashMap morning = archive.sumByDevice(query(DAY, DAY.plus(Duration.ofHours(12)), 10L))
+                .orElseThrow();
+
+        // Assert
+        assertEquals(3.0, day.get(1L, 0.0));
+        assertEquals(4.0, day.get(2L, 0.0));
+        assertEquals(8.0, day.get(3L, 0.0));
+        assertEquals(1.0, morning.get(1L, 0.0));
+        assertEquals(1, morning.size());
+    }
+
+    @Test
+    @DisplayName("Should bucket a user's archived raw points per device")
+    void window_ReadsExportedDay() throws Exception {
+        // Arrange
+        archive.exportDay(LocalDate.of(2026, 5, 1));
+
+        // Act
+        List<UsageBucket> buckets = archive.window(query(DAY, DAY.plus(Duration.ofDays(1)), 10L), Duration.ofHours(12))
+                .orElseThrow();
+
+        // Assert
+        assertEquals(
+                List.of(
+                        new UsageBucket(1L, DAY, 1.0),
+                        new UsageBucket(1L, DAY.plus(Duration.ofHours(12)), 2.0),
+                        new UsageBucket(3L, DAY.plus(Duration.ofHours(12)), 8.0)),
+                buckets);
+        assertTrue(archive.window(query(DAY, DAY.plus(Duration.ofDays(2)), 10L), Duration.ofHours(12))
+                .isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should decline ranges that are too recent or touch days not yet archived")
+    void sumByDevice_UncoveredRanges() throws Exception {
+        // Arrange
+        archive.exportDay(LocalDate.of(2026, 5, 1));
+
+        // Act & Assert
+        assertTrue(archive.sumByDevice(query(DAY, DAY.plus(Duration.ofDays(2)), null))
+                .isEmpty());
+        assertTrue(archive.sumByDevice(query(NOW.minus(Duration.ofDays(1)), NOW, null))
+                .isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should export pending settled days and reload them after restart")
+    void exportPendingDays_PersistsAcrossRestart() throws Exception {
+        // Arrange
+        source.write(List.of(new UsageReading(1L, 10L, NOW.minus(Duration.ofDays(5)), 16.0)));
+        Instant fiveDaysAgo = NOW.minus(Duration.ofDays(5)).truncatedTo(ChronoUnit.DAYS);
+
+        // Act
+        archive.exportPendingDays();
+        UsageArchive reopened = archive(tempDir.resolve("archive"), NOW);
+        LongDoubleHashMap sums = reopened.sumByDevice(query(fiveDaysAgo, fiveDaysAgo.plus(Duration.ofDays(1)), 10L))
+                .orElseThrow();
+
+        // Assert
+        assertEquals(16.0, sums.get(1L, 0.0));
+        assertTrue(reopened.sumByDevice(query(DAY, DAY.plus(Duration.ofDays(1)), null))
+                .isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should leave exports to the replica consuming partition 0 and pick up its days on refresh")
+    void exportPendingDays_OnlyOnExporter() throws Exception {
+        // Arrange
+        source.write(List.of(new UsageReading(1L, 10L, NOW.minus(Duration.ofDays(5)), 16.0)));
+        Instant fiveDaysAgo = NOW.minus(Duration.ofDays(5)).truncatedTo(ChronoUnit.DAYS);
+        UsageQuery query = query(fiveDaysAgo, fiveDaysAgo.plus(Duration.ofDays(1)), 10L);
+        coverage.revoke(List.of(0));
+        PartitionCoverage exporterCoverage = new PartitionCoverage();
+        exporterCoverage.assign(6, List.of(0, 1));
+        UsageArchive exporter = archive(tempDir.resolve("archive"), NOW, exporterCoverage);
+
+        // Act
+        archive.exportPendingDays();
+        boolean archivedBeforeExport = archive.sumByDevice(query).isPresent();
+        exporter.exportPendingDays();
+        archive.exportPendingDays();
+
+        // Assert
+        assertFalse(archivedBeforeExport);
+        assertEquals(16.0, archive.sumByDevice(query).orElseThrow().get(1L, 0.0));
+    }
+
+    @Test
+    @DisplayName("Should stop serving a day a late reading lands in and export it again once every replica refreshed")
+    void stored_LateReadingReexportsDay() throws Exception {
+        // Arrange
+        Instant fiveDaysAgo = NOW.minus(Duration.ofDays(5)).truncatedTo(ChronoUnit.DAYS);
+        UsageQuery query = query(fiveDaysAgo, fiveDaysAgo.plus(Duration.ofDays(1)), 10L);
+        UsageReading late = new UsageReading(1L, 10L, fiveDaysAgo.plus(Duration.ofHours(3)), 32.0);
+        archive.exportPendingDays();
+        UsageArchive replica = archive(tempDir.resolve("archive"), NOW);
+
+        // Act
+        source.write(List.of(late));
+        archive.stored(late);
+        boolean servedWhileStale = replica.sumByDevice(query).isPresent();
+        replica.exportPendingDays();
+        boolean servedAfterRefresh = replica.sumByDevice(query).isPresent();
+        archive.exportPendingDays();
+        boolean exportedBeforeRefreshWindow = archive.sumByDevice(query).isPresent();
+        UsageArchive later = archive(tempDir.resolve("archive"), NOW.plus(Duration.ofHours(2)));
+        later.exportPendingDays();
+        replica.exportPendingDays();
+
+        // Assert
+        assertTrue(servedWhileStale);
+        assertFalse(servedAfterRefresh);
+        assertFalse(exportedBeforeRefreshWindow);
+        assertEquals(32.0, later.sumByDevice(query).orElseThrow().get(1L, 0.0));
+        assertEquals(32.0, replica.sumByDevice(query).orElseThrow().get(1L, 0.0));
+    }
+
+    private UsageArchive archive(Path root, Instant now) throws Exception {
+        return archive(root, now, coverage);
+    }
+
+    private UsageArchive archive(Path root, Instant now, PartitionCoverage coverage) throws Exception {
+        return new UsageArchive(
+                source,
+                coverage,
+                new SimpleMeterRegistry(),
+                Clock.fixed(now, ZoneOffset.UTC),
+                true,
+                root,
+                4,
+                Duration.ofHours(1),
+                Duration.ofDays(6),
+                Duration.ofDays(2),
+                Duration.ofHours(1),
+                16);
+    }
+
+    private static UsageQuery query(Instant start, Instant stop, Long userId) {
+        return new UsageQuery(Resolution.RAW, start, stop, userId);
+    }
+}
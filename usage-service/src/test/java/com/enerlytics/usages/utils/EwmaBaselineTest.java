@@ -0,0 +1,46 @@
+package com.enerlytics.usages.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class EwmaBaselineTest {
+
+    @Test
+    @DisplayName("Should score a spike far above a noisy baseline and ordinary readings near zero")
+    void update_ScoresSpike() {
+        // Arrange
+        EwmaBaseline baseline = new EwmaBaseline(0.05, 30, 0.1);
+        for (int i = 0; i < 500; i++) {
+            baseline.update(10.0 + (i % 2 == 0 ? 1.0 : -1.0));
+        }
+
+        // Act
+        double ordinary = baseline.update(11.0);
+        double spike = baseline.update(30.0);
+
+        // Assert
+        assertEquals(10.0, baseline.mean(), 1.5);
+        assertTrue(Math.abs(ordinary) < 2.0);
+        assertTrue(spike > 10.0);
+    }
+
+    @Test
+    @DisplayName("Should not score while warming up")
+    void update_SkipsWarmup() {
+        // Arrange
+        EwmaBaseline baseline = new EwmaBaseline(0.05, 30, 0.1);
+
+        // Act
+        double warmingUp = Double.NaN;
+        for (int i = 0; i < 30; i++) {
+            warmingUp = baseline.update(i == 29 ? 1_000.0 : 1.0);
+        }
+
+        // Assert
+        assertTrue(Double.isNaN(warmingUp));
+        assertEquals(30, baseline.count());
+    }
+}
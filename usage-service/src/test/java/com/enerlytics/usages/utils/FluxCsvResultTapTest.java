@@ -0,0 +1,56 @@
+package com.enerlytics.usages.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class FluxCsvResultTapTest {
+
+    @Test
+    @DisplayName("Should count tables by their table column, not their headers, and pass lines through unchanged")
+    void accept_CountsAndForwards() {
+        // Arrange
+        List<String> lines = new ArrayList<>();
+        FluxCsvResultTap tap = new FluxCsvResultTap(lines::add);
+
+        // Act
+        tap.accept(",result,table,deviceId,_value\r");
+        tap.accept(",_result,0,1,2.5\r");
+        tap.accept(",_result,0,1,0.5\r");
+        tap.accept(",_result,1,2,1.25\r");
+        tap.accept("");
+        tap.accept(",result,table,deviceId,_value");
+        tap.accept(",_result,2,3,0.5");
+
+        // Assert
+        assertEquals(3, tap.tables());
+        assertEquals(4, tap.rows());
+        assertEquals(7, lines.size());
+        assertNull(tap.profile());
+    }
+
+    @Test
+    @DisplayName("Should divert profiler tables away from the collector")
+    void accept_DivertsProfilerTables() {
+        // Arrange
+        List<String> lines = new ArrayList<>();
+        FluxCsvResultTap tap = new FluxCsvResultTap(lines::add);
+
+        // Act
+        tap.accept(",result,table,deviceId,_value");
+        tap.accept(",_result,0,1,2.5");
+        tap.accept("");
+        tap.accept(",result,table,_measurement,TotalDuration\r");
+        tap.accept(",_profiler,0,profiler/query,1234567\r");
+
+        // Assert
+        assertEquals(List.of(",result,table,deviceId,_value", ",_result,0,1,2.5", ""), lines);
+        assertEquals(1, tap.tables());
+        assertEquals(1, tap.rows());
+        assertEquals(",result,table,_measurement,TotalDuration\n,_profiler,0,profiler/query,1234567", tap.profile());
+    }
+}
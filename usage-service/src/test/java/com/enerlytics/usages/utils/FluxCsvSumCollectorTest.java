@@ -0,0 +1,60 @@
+package com.enerlytics.usages.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class FluxCsvSumCollectorTest {
+
+    @Test
+    @DisplayName("Should sum rows across tables into the device map")
+    void accept_SumsAcrossTables() {
+        // Arrange
+        FluxCsvSumCollector collector = new FluxCsvSumCollector("deviceId");
+
+        // Act
+        collector.accept(",result,table,deviceId,_value\r");
+        collector.accept(",_result,0,1,2.5\r");
+        collector.accept(",_result,1,2,1.25\r");
+        collector.accept("");
+        collector.accept(",result,table,_value,deviceId");
+        collector.accept(",_result,2,0.5,1");
+
+        // Assert
+        assertEquals(3.0, collector.sums().get(1L, 0.0));
+        assertEquals(1.25, collector.sums().get(2L, 0.0));
+        assertEquals(3, collector.rows());
+        assertEquals(2, collector.tables());
+    }
+
+    @Test
+    @DisplayName("Should skip rows with a missing or non-numeric key")
+    void accept_SkipsInvalidKeys() {
+        // Arrange
+        FluxCsvSumCollector collector = new FluxCsvSumCollector("deviceId");
+
+        // Act
+        collector.accept(",result,table,deviceId,_value");
+        collector.accept(",_result,0,,2.5");
+        collector.accept(",_result,0,abc,2.5");
+        collector.accept(",_result,0,7,4");
+
+        // Assert
+        assertEquals(1, collector.sums().size());
+        assertEquals(4.0, collector.sums().get(7L, 0.0));
+        assertEquals(2, collector.skipped());
+    }
+
+    @Test
+    @DisplayName("Should fail on an error table")
+    void accept_ErrorTable() {
+        // Arrange
+        FluxCsvSumCollector collector = new FluxCsvSumCollector("deviceId");
+        collector.accept("error,reference");
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> collector.accept("bucket not found,"));
+    }
+}
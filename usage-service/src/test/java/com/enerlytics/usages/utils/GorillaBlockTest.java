@@ -0,0 +1,81 @@
+package com.enerlytics.usages.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class GorillaBlockTest {
+
+    @Test
+    @DisplayName("Should round-trip irregular timestamps and arbitrary values")
+    void append_RoundTripsPoints() {
+        // Arrange
+        Random random = new Random(42);
+        int count = 10_000;
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        long timestamp = 1_778_371_200_000L;
+        for (int i = 0; i < count; i++) {
+            timestamp += i % 100 == 0 ? random.nextInt(10_000_000) : 10_000 + random.nextInt(3_000) - 1_500;
+            timestamps[i] = timestamp;
+            values[i] = i % 7 == 0 ? values[Math.max(0, i - 1)] : random.nextDouble() * 5;
+        }
+        GorillaBlock block = new GorillaBlock();
+
+        // Act
+        for (int i = 0; i < count; i++) {
+            block.append(timestamps[i], values[i]);
+        }
+        block.trim();
+        long[] decodedTimestamps = new long[count];
+        double[] decodedValues = new double[count];
+        int[] index = new int[1];
+        block.forEach((t, v) -> {
+            decodedTimestamps[index[0]] = t;
+            decodedValues[index[0]++] = v;
+        });
+
+        // Assert
+        assertEquals(count, block.count());
+        assertArrayEquals(timestamps, decodedTimestamps);
+        assertArrayEquals(values, decodedValues);
+        assertEquals(block.sizeBytes(), block.capacityBytes());
+    }
+
+    @Test
+    @DisplayName("Should store regular readings in a few bytes per point")
+    void append_RegularReadingsCompress() {
+        // Arrange
+        GorillaBlock block = new GorillaBlock();
+        long start = 1_778_371_200_000L;
+
+        // Act
+        for (int i = 0; i < 720; i++) {
+            block.append(start + i * 10_000L, 0.25 * (i % 8));
+        }
+        block.trim();
+
+        // Assert
+        assertTrue(block.sizeBytes() < 720 * 4, "size was " + block.sizeBytes());
+    }
+
+    @Test
+    @DisplayName("Should reject timestamps older than the last appended point")
+    void append_RejectsOutOfOrder() {
+        // Arrange
+        GorillaBlock block = new GorillaBlock();
+        block.append(2_000L, 1.0);
+
+        // Act
+        boolean appended = block.append(1_000L, 2.0);
+
+        // Assert
+        assertFalse(appended);
+        assertEquals(1, block.count());
+    }
+}
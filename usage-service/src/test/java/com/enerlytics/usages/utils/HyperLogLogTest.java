@@ -0,0 +1,49 @@
+package com.enerlytics.usages.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+
+    @Test
+    @DisplayName("Should count distinct keys regardless of repeats")
+    void estimate_CountsDistinctKeys() {
+        // Arrange
+        HyperLogLog small = new HyperLogLog(12);
+        HyperLogLog large = new HyperLogLog(12);
+
+        // Act
+        for (int repeat = 0; repeat < 3; repeat++) {
+            for (long key = 1; key <= 100; key++) {
+                small.add(key);
+            }
+        }
+        for (long key = 1; key <= 500_000; key++) {
+            large.add(key);
+        }
+
+        // Assert
+        assertEquals(100, small.estimate(), 5);
+        assertEquals(500_000, large.estimate(), 500_000 * 0.05);
+    }
+
+    @Test
+    @DisplayName("Should estimate the union of merged sketches")
+    void merge_EstimatesUnion() {
+        // Arrange
+        HyperLogLog left = new HyperLogLog(12);
+        HyperLogLog right = new HyperLogLog(12);
+        for (long key = 0; key < 60_000; key++) {
+            left.add(key);
+            right.add(key + 40_000);
+        }
+
+        // Act
+        left.merge(right);
+
+        // Assert
+        assertEquals(100_000, left.estimate(), 100_000 * 0.05);
+    }
+}
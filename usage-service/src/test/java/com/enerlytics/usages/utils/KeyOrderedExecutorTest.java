@@ -0,0 +1,97 @@
+package com.enerlytics.usages.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class KeyOrderedExecutorTest {
+
+    @Test
+    @DisplayName("Should run tasks of one key in submission order")
+    void submit_KeepsPerKeyOrder() throws InterruptedException {
+        // Arrange
+        List<List<Integer>> seen = new ArrayList<>();
+        for (int key = 0; key < 8; key++) {
+            seen.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        CountDownLatch done = new CountDownLatch(8 * 500);
+
+        // Act
+        try (KeyOrderedExecutor executor = new KeyOrderedExecutor(Executors.newVirtualThreadPerTaskExecutor(), 64)) {
+            for (int i = 0; i < 500; i++) {
+                for (int key = 0; key < 8; key++) {
+                    int k = key;
+                    int sequence = i;
+                    executor.submit(key, () -> {
+                        seen.get(k).add(sequence);
+                        done.countDown();
+                    });
+                }
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+
+        // Assert
+        for (List<Integer> sequences : seen) {
+            assertEquals(500, sequences.size());
+            for (int i = 0; i < 500; i++) {
+                assertEquals(i, sequences.get(i));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should run different keys in parallel while a key waits behind its running task")
+    void submit_RunsKeysInParallel() throws InterruptedException {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherKeyRan = new CountDownLatch(1);
+        CountDownLatch sameKeyRan = new CountDownLatch(1);
+
+        try (KeyOrderedExecutor executor = new KeyOrderedExecutor(Executors.newVirtualThreadPerTaskExecutor(), 16)) {
+            // Act
+            executor.submit(1L, () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            executor.submit(1L, sameKeyRan::countDown);
+            executor.submit(2L, otherKeyRan::countDown);
+
+            // Assert
+            assertTrue(otherKeyRan.await(5, TimeUnit.SECONDS));
+            assertEquals(1, sameKeyRan.getCount());
+            assertEquals(2, executor.inFlight());
+            release.countDown();
+            assertTrue(sameKeyRan.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep running a key's tasks after one of them fails")
+    void submit_ContinuesAfterFailure() throws InterruptedException {
+        // Arrange
+        CountDownLatch ran = new CountDownLatch(1);
+
+        try (KeyOrderedExecutor executor = new KeyOrderedExecutor(Executors.newVirtualThreadPerTaskExecutor(), 16)) {
+            // Act
+            executor.submit(1L, () -> {
+                throw new IllegalStateException("boom");
+            });
+            executor.submit(1L, ran::countDown);
+
+            // Assert
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.enerlytics.usages.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class KllSketchTest {
+
+    private static final double[] RANKS = {0.0, 0.5, 0.95, 0.99, 1.0};
+
+    @Test
+    @DisplayName("Should estimate quantiles within the rank error of a large stream")
+    void quantiles_WithinRankError() {
+        // Arrange
+        KllSketch sketch = new KllSketch(200);
+
+        // Act
+        for (int i = 0; i < 1_000_000; i++) {
+            sketch.update((i * 7_919L) % 1_000_000);
+        }
+        double[] quantiles = sketch.quantiles(RANKS);
+
+        // Assert
+        assertEquals(1_000_000, sketch.count());
+        assertEquals(0.0, quantiles[0]);
+        assertEquals(999_999.0, quantiles[4]);
+        assertEquals(500_000, quantiles[1], 20_000);
+        assertEquals(950_000, quantiles[2], 20_000);
+        assertEquals(990_000, quantiles[3], 20_000);
+    }
+
+    @Test
+    @DisplayName("Should merge sketches into the quantiles of the combined stream")
+    void merge_CombinesStreams() {
+        // Arrange
+        KllSketch low = new KllSketch(200);
+        KllSketch high = new KllSketch(200);
+        for (int i = 0; i < 100_000; i++) {
+            low.update(i);
+            high.update(100_000 + i);
+        }
+
+        // Act
+        KllSketch merged = new KllSketch(200);
+        merged.merge(low);
+        merged.merge(high);
+        double[] quantiles = merged.quantiles(new double[] {0.25, 0.75});
+
+        // Assert
+        assertEquals(200_000, merged.count());
+        assertEquals(50_000, quantiles[0], 4_000);
+        assertEquals(150_000, quantiles[1], 4_000);
+        assertTrue(Double.isNaN(new KllSketch(200).quantiles(new double[] {0.5})[0]));
+    }
+}
@@ -0,0 +1,74 @@
+package com.enerlytics.usages.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LongDoubleHashMapTest {
+
+    @Test
+    @DisplayName("Should accumulate values and grow past the initial capacity")
+    void add_GrowsAndAccumulates() {
+        // Arrange
+        LongDoubleHashMap map = new LongDoubleHashMap(4);
+
+        // Act
+        for (long key = 0; key < 10_000; key++) {
+            map.add(key, 1.0);
+            map.add(key, 0.5);
+        }
+
+        // Assert
+        assertEquals(10_000, map.size());
+        assertEquals(1.5, map.get(9_999L, 0.0));
+        assertTrue(map.containsKey(0L));
+        assertFalse(map.containsKey(10_000L));
+    }
+
+    @Test
+    @DisplayName("Should merge another map")
+    void addAll_MergesValues() {
+        // Arrange
+        LongDoubleHashMap left = new LongDoubleHashMap();
+        left.put(1L, 1.0);
+        LongDoubleHashMap right = new LongDoubleHashMap();
+        right.put(1L, 2.0);
+        right.put(-5L, 3.0);
+
+        // Act
+        left.addAll(right);
+
+        // Assert
+        assertEquals(3.0, left.get(1L, 0.0));
+        assertEquals(3.0, left.get(-5L, 0.0));
+        assertEquals(2, left.keys().length);
+    }
+
+    @Test
+    @DisplayName("Should keep colliding keys reachable after removals")
+    void remove_KeepsProbeRunsIntact() {
+        // Arrange
+        LongDoubleHashMap map = new LongDoubleHashMap(4);
+        for (long key = 0; key < 1_000; key++) {
+            map.put(key, key);
+        }
+
+        // Act
+        for (long key = 0; key < 1_000; key += 2) {
+            map.remove(key);
+        }
+        map.remove(5_000L);
+
+        // Assert
+        assertEquals(500, map.size());
+        for (long key = 0; key < 1_000; key++) {
+            assertEquals(key % 2 == 0, !map.containsKey(key));
+            if (key % 2 == 1) {
+                assertEquals(key, map.get(key, -1.0));
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.enerlytics.usages.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LttbTest {
+
+    @Test
+    @DisplayName("Should keep every point when the series already fits the threshold")
+    void select_ReturnsAllWhenBelowThreshold() {
+        // Arrange
+        long[] x = {0, 1, 2, 3};
+        double[] y = {1, 2, 3, 4};
+
+        // Act
+        int[] selected = Lttb.select(x, y, 4, 10);
+
+        // Assert
+        assertArrayEquals(new int[] {0, 1, 2, 3}, selected);
+    }
+
+    @Test
+    @DisplayName("Should keep the endpoints and a spike that a flat series surrounds")
+    void select_KeepsEndpointsAndSpike() {
+        // Arrange
+        int count = 1_000;
+        long[] x = new long[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = i * 60_000L;
+            y[i] = 1.0;
+        }
+        y[437] = 50.0;
+
+        // Act
+        int[] selected = Lttb.select(x, y, count, 20);
+
+        // Assert
+        assertEquals(20, selected.length);
+        assertEquals(0, selected[0]);
+        assertEquals(count - 1, selected[19]);
+        boolean keptSpike = false;
+        for (int i = 0; i < selected.length; i++) {
+            keptSpike |= selected[i] == 437;
+            if (i > 0) {
+                assertTrue(selected[i] > selected[i - 1]);
+            }
+        }
+        assertTrue(keptSpike);
+    }
+}
@@ -0,0 +1,58 @@
+package com.enerlytics.usages.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class SpaceSavingTest {
+
+    @Test
+    @DisplayName("Should count exactly while there are fewer keys than counters")
+    void offer_ExactBelowCapacity() {
+        // Arrange
+        SpaceSaving summary = new SpaceSaving(8);
+
+        // Act
+        summary.offer(1L, 2.0);
+        summary.offer(2L, 5.0);
+        summary.offer(1L, 4.0);
+
+        // Assert
+        List<SpaceSaving.Counter> top = summary.top(2);
+        assertEquals(1L, top.get(0).key());
+        assertEquals(6.0, top.get(0).count());
+        assertEquals(0.0, top.get(0).error());
+        assertEquals(0.0, summary.minCount());
+    }
+
+    @Test
+    @DisplayName("Should keep heavy hitters with bounds around their true weight in a long tail")
+    void offer_TracksHeavyHittersInLongTail() {
+        // Arrange
+        SpaceSaving summary = new SpaceSaving(50);
+        Random random = new Random(42);
+        double[] truth = new double[10_000];
+
+        // Act
+        for (int i = 0; i < 200_000; i++) {
+            int key = i % 10 == 0 ? random.nextInt(5) : 5 + random.nextInt(truth.length - 5);
+            double weight = 1.0 + random.nextDouble();
+            truth[key] += weight;
+            summary.offer(key, weight);
+        }
+
+        // Assert
+        List<SpaceSaving.Counter> top = summary.top(5);
+        assertEquals(5, top.size());
+        for (SpaceSaving.Counter counter : top) {
+            assertTrue(counter.key() < 5);
+            assertTrue(counter.count() >= truth[(int) counter.key()] - 1e-6);
+            assertTrue(counter.count() - counter.error() <= truth[(int) counter.key()] + 1e-6);
+        }
+        assertTrue(summary.isFull());
+    }
+}